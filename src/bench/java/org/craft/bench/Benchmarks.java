@@ -0,0 +1,74 @@
+package org.craft.bench;
+
+import org.craft.utils.*;
+import org.craft.world.*;
+
+/**
+ * Runs every benchmark, and holds what they share. Benchmarks run headless, on generated terrain, and print their figures
+ */
+public class Benchmarks
+{
+
+    public static final long SEED = TestWorlds.SEED;
+
+    public static void main(String[] args) throws Exception
+    {
+        RaycastBenchmark.main(args);
+        EntityIndexBenchmark.main(args);
+        EntityTickBenchmark.main(args);
+        TerrainNoiseBenchmark.main(args);
+        ChunkMeshBenchmark.main(args);
+        VisibleChunksBenchmark.main(args);
+        PalettedStorageBenchmark.main(args);
+        ChunkMapBenchmark.main(args);
+        ChunkGenerationBenchmark.main(args);
+        RegionStorageBenchmark.main(args);
+        LightBenchmark.main(args);
+        PowerNetworksBenchmark.main(args);
+        BlockEditBenchmark.main(args);
+    }
+
+    /**
+     * Registers the blocks if they are not yet
+     */
+    public static void initBlocks()
+    {
+        TestWorlds.initBlocks();
+    }
+
+    /**
+     * Creates a world whose chunks from {@code -radius} to {@code radius - 1} on the horizontal axes, and from {@code minY} to
+     * {@code maxY} on the vertical one, are generated and decorated
+     */
+    public static World createTerrain(int radius, int minY, int maxY)
+    {
+        return TestWorlds.createTerrain(radius, minY, maxY);
+    }
+
+    /**
+     * Returns the y coordinate of the first air block above the highest solid block of given column, searching down from {@code maxY}
+     */
+    public static int getSurface(World world, int x, int z, int maxY)
+    {
+        int y = maxY;
+        while(y > 0 && !world.getBlockAt(x, y - 1, z).isSideOpaque(world, x, y - 1, z, EnumSide.TOP))
+            y-- ;
+        return y;
+    }
+
+    /**
+     * Prints the rate of given operations, done in given time
+     */
+    public static void report(String name, long operations, long nanos, String unit)
+    {
+        System.out.printf("%-48s %,14.0f %s/s%n", name, operations / (nanos / 1e9), unit);
+    }
+
+    /**
+     * Prints the throughput of given bytes, processed in given time
+     */
+    public static void reportBytes(String name, long bytes, long nanos)
+    {
+        System.out.printf("%-48s %,14.1f MiB/s%n", name, bytes / 1048576.0 / (nanos / 1e9));
+    }
+}
@@ -0,0 +1,75 @@
+package org.craft.bench;
+
+import org.craft.blocks.*;
+import org.craft.world.*;
+import org.craft.world.loaders.*;
+
+/**
+ * Measures filling a 64x64x64 box of empty chunks with stone through a {@link BlockEditSession}, and with
+ * {@link World#setBlock(int, int, int, Block)} for each block. The light updates queued by the edits are processed outside of the timings
+ */
+public class BlockEditBenchmark
+{
+
+    private static final int SIZE   = 64;
+    private static final int ROUNDS = 8;
+
+    public static void main(String[] args)
+    {
+        Benchmarks.initBlocks();
+        long sessionTime = Long.MAX_VALUE;
+        long setBlockTime = Long.MAX_VALUE;
+        long sink = 0;
+        // The first rounds warm the JIT up
+        for(int round = 0; round < ROUNDS; round++ )
+        {
+            World world = createWorld();
+            long start = System.nanoTime();
+            BlockEditSession session = new BlockEditSession(world);
+            session.fill(0, 0, 0, SIZE - 1, SIZE - 1, SIZE - 1, Blocks.stone);
+            sink += session.commit();
+            sessionTime = Math.min(sessionTime, System.nanoTime() - start);
+            world.getLightEngine().flush();
+            world.dispose();
+
+            world = createWorld();
+            start = System.nanoTime();
+            for(int x = 0; x < SIZE; x++ )
+            {
+                for(int y = 0; y < SIZE; y++ )
+                {
+                    for(int z = 0; z < SIZE; z++ )
+                        world.setBlock(x, y, z, Blocks.stone);
+                }
+            }
+            setBlockTime = Math.min(setBlockTime, System.nanoTime() - start);
+            sink += world.getBlockAt(SIZE - 1, SIZE - 1, SIZE - 1).getUniqueID();
+            world.getLightEngine().flush();
+            world.dispose();
+        }
+        Benchmarks.report("Fill 64x64x64, edit session", SIZE * SIZE * SIZE, sessionTime, "blocks");
+        Benchmarks.report("Fill 64x64x64, setBlock", SIZE * SIZE * SIZE, setBlockTime, "blocks");
+        if(sink == 0)
+            System.out.println();
+    }
+
+    /**
+     * Creates a world with the empty chunks holding the box
+     */
+    private static World createWorld()
+    {
+        FallbackWorldLoader loader = new FallbackWorldLoader();
+        BaseChunkProvider provider = new BaseChunkProvider(loader);
+        World world = new World("bench", provider, new WorldGenerator(Benchmarks.SEED), loader);
+        for(int x = 0; x < SIZE >> 4; x++ )
+        {
+            for(int y = 0; y < SIZE >> 4; y++ )
+            {
+                for(int z = 0; z < SIZE >> 4; z++ )
+                    provider.addChunk(world, new Chunk(world, new ChunkCoord(x, y, z)));
+            }
+        }
+        world.getLightEngine().flush();
+        return world;
+    }
+}
@@ -0,0 +1,93 @@
+package org.craft.bench;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.craft.world.*;
+
+/**
+ * Measures how many chunks per second are generated, decorated, added to a new world and lit, on the calling thread and by a
+ * {@link ChunkGenerationService} with several workers. The light thread runs alongside in both cases, so each round waits for it to be
+ * done
+ */
+public class ChunkGenerationBenchmark
+{
+
+    private static final int RADIUS = 6;
+    private static final int MIN_Y  = 9;
+    private static final int MAX_Y  = 12;
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args) throws Exception
+    {
+        runSequential();
+        runService(1);
+        runService(2);
+        runService(4);
+    }
+
+    private static void runSequential()
+    {
+        long best = Long.MAX_VALUE;
+        int chunks = 0;
+        // The first rounds warm the JIT up
+        for(int round = 0; round < ROUNDS; round++ )
+        {
+            World world = TestWorlds.createWorld();
+            ChunkProvider provider = world.getChunkProvider();
+            chunks = 0;
+            long start = System.nanoTime();
+            for(int x = -RADIUS; x < RADIUS; x++ )
+            {
+                for(int y = MIN_Y; y <= MAX_Y; y++ )
+                {
+                    for(int z = -RADIUS; z < RADIUS; z++ )
+                    {
+                        provider.getOrCreate(world, x, y, z);
+                        chunks++ ;
+                    }
+                }
+            }
+            world.getLightEngine().flush();
+            best = Math.min(best, System.nanoTime() - start);
+            world.dispose();
+        }
+        Benchmarks.report("Generation, calling thread", chunks, best, "chunks");
+    }
+
+    private static void runService(int threads) throws Exception
+    {
+        long best = Long.MAX_VALUE;
+        int chunks = 0;
+        for(int round = 0; round < ROUNDS; round++ )
+        {
+            World world = TestWorlds.createWorld();
+            ChunkGenerationService service = world.getChunkGenerationService();
+            service.setThreadsCount(threads);
+            service.setMaxChunksPerUpdate(Integer.MAX_VALUE);
+            List<Future<Chunk>> results = new ArrayList<Future<Chunk>>();
+            long start = System.nanoTime();
+            for(int x = -RADIUS; x < RADIUS; x++ )
+            {
+                for(int y = MIN_Y; y <= MAX_Y; y++ )
+                {
+                    for(int z = -RADIUS; z < RADIUS; z++ )
+                        results.add(service.request(x, y, z));
+                }
+            }
+            // The calling thread stands for the game thread, adding and decorating the chunks once the workers are done with them
+            while(service.getPendingCount() > 0)
+            {
+                service.update();
+                Thread.yield();
+            }
+            for(Future<Chunk> result : results)
+                result.get();
+            world.getLightEngine().flush();
+            best = Math.min(best, System.nanoTime() - start);
+            chunks = results.size();
+            world.dispose();
+        }
+        Benchmarks.report("Generation service, " + threads + " thread(s) (" + Runtime.getRuntime().availableProcessors() + " CPUs)", chunks, best, "chunks");
+    }
+}
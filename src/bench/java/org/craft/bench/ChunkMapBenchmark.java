@@ -0,0 +1,173 @@
+package org.craft.bench;
+
+import java.util.*;
+
+import org.craft.world.*;
+import org.craft.world.loaders.*;
+
+/**
+ * Compares chunk lookups from block coordinates through the former HashMap keyed by {@link ChunkCoord}, a {@link ChunkMap}, and
+ * {@link World#getChunk(int, int, int)} with its last chunk cache, while scanning a 64x64x64 area block by block and at random positions,
+ * with 4096 loaded chunks
+ */
+public class ChunkMapBenchmark
+{
+
+    private static final int CHUNKS_PER_AXIS = 16;
+    private static final int SCAN            = 64;
+    private static final int LOOKUPS         = 1 << 22;
+    private static final int ROUNDS          = 10;
+
+    public static void main(String[] args)
+    {
+        Benchmarks.initBlocks();
+        FallbackWorldLoader loader = new FallbackWorldLoader();
+        BaseChunkProvider provider = new BaseChunkProvider(loader);
+        World world = new World("bench", provider, new WorldGenerator(Benchmarks.SEED), loader);
+        ChunkMap map = new ChunkMap();
+        HashMap<ChunkCoord, Chunk> hashMap = new HashMap<ChunkCoord, Chunk>();
+        for(int x = 0; x < CHUNKS_PER_AXIS; x++ )
+        {
+            for(int y = 0; y < CHUNKS_PER_AXIS; y++ )
+            {
+                for(int z = 0; z < CHUNKS_PER_AXIS; z++ )
+                {
+                    Chunk chunk = new Chunk(world, new ChunkCoord(x, y, z));
+                    provider.addChunk(world, chunk);
+                    map.add(chunk);
+                    hashMap.put(chunk.getCoords(), chunk);
+                }
+            }
+        }
+        Random rng = new Random(3L);
+        int[] positions = new int[LOOKUPS * 3];
+        for(int i = 0; i < positions.length; i++ )
+            positions[i] = rng.nextInt(CHUNKS_PER_AXIS * 16);
+
+        long[] scan = new long[3];
+        long[] random = new long[3];
+        Arrays.fill(scan, Long.MAX_VALUE);
+        Arrays.fill(random, Long.MAX_VALUE);
+        long sink = 0;
+        // The first rounds warm the JIT up
+        for(int round = 0; round < ROUNDS; round++ )
+        {
+            long start = System.nanoTime();
+            sink += scanHashMap(hashMap);
+            scan[0] = Math.min(scan[0], System.nanoTime() - start);
+
+            start = System.nanoTime();
+            sink += scanChunkMap(map);
+            scan[1] = Math.min(scan[1], System.nanoTime() - start);
+
+            start = System.nanoTime();
+            sink += scanWorld(world);
+            scan[2] = Math.min(scan[2], System.nanoTime() - start);
+
+            start = System.nanoTime();
+            sink += randomHashMap(hashMap, positions);
+            random[0] = Math.min(random[0], System.nanoTime() - start);
+
+            start = System.nanoTime();
+            sink += randomChunkMap(map, positions);
+            random[1] = Math.min(random[1], System.nanoTime() - start);
+
+            start = System.nanoTime();
+            sink += randomWorld(world, positions);
+            random[2] = Math.min(random[2], System.nanoTime() - start);
+        }
+        String[] names =
+        {
+                "HashMap<ChunkCoord> + floor", "ChunkMap", "World.getChunk"
+        };
+        for(int i = 0; i < names.length; i++ )
+            Benchmarks.report("Scan 64^3, " + names[i], SCAN * SCAN * SCAN, scan[i], "lookups");
+        for(int i = 0; i < names.length; i++ )
+            Benchmarks.report("Random, " + names[i], LOOKUPS, random[i], "lookups");
+        if(sink == 0)
+            System.out.println();
+        world.dispose();
+    }
+
+    /**
+     * Returns 1 if given chunk is not null. The chunks are not dereferenced, so that only the cost of the lookups is measured
+     */
+    private static int count(Chunk chunk)
+    {
+        return chunk == null ? 0 : 1;
+    }
+
+    /**
+     * Looks chunks up as World.getChunk did before ChunkMap
+     */
+    private static Chunk getFromHashMap(HashMap<ChunkCoord, Chunk> hashMap, int x, int y, int z)
+    {
+        return hashMap.get(new ChunkCoord((int) Math.floor(x / 16f), (int) Math.floor(y / 16f), (int) Math.floor(z / 16f)));
+    }
+
+    private static long scanHashMap(HashMap<ChunkCoord, Chunk> hashMap)
+    {
+        long sink = 0;
+        for(int x = 0; x < SCAN; x++ )
+        {
+            for(int y = 0; y < SCAN; y++ )
+            {
+                for(int z = 0; z < SCAN; z++ )
+                    sink += count(getFromHashMap(hashMap, x, y, z));
+            }
+        }
+        return sink;
+    }
+
+    private static long scanChunkMap(ChunkMap map)
+    {
+        long sink = 0;
+        for(int x = 0; x < SCAN; x++ )
+        {
+            for(int y = 0; y < SCAN; y++ )
+            {
+                for(int z = 0; z < SCAN; z++ )
+                    sink += count(map.getAt(x >> 4, y >> 4, z >> 4));
+            }
+        }
+        return sink;
+    }
+
+    private static long scanWorld(World world)
+    {
+        long sink = 0;
+        for(int x = 0; x < SCAN; x++ )
+        {
+            for(int y = 0; y < SCAN; y++ )
+            {
+                for(int z = 0; z < SCAN; z++ )
+                    sink += count(world.getChunk(x, y, z));
+            }
+        }
+        return sink;
+    }
+
+    private static long randomHashMap(HashMap<ChunkCoord, Chunk> hashMap, int[] positions)
+    {
+        long sink = 0;
+        for(int i = 0; i < positions.length; i += 3)
+            sink += count(getFromHashMap(hashMap, positions[i], positions[i + 1], positions[i + 2]));
+        return sink;
+    }
+
+    private static long randomChunkMap(ChunkMap map, int[] positions)
+    {
+        long sink = 0;
+        for(int i = 0; i < positions.length; i += 3)
+            sink += count(map.getAt(positions[i] >> 4, positions[i + 1] >> 4, positions[i + 2] >> 4));
+        return sink;
+    }
+
+    private static long randomWorld(World world, int[] positions)
+    {
+        long sink = 0;
+        for(int i = 0; i < positions.length; i += 3)
+            sink += count(world.getChunk(positions[i], positions[i + 1], positions[i + 2]));
+        return sink;
+    }
+}
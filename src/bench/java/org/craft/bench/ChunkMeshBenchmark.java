@@ -0,0 +1,243 @@
+package org.craft.bench;
+
+import gnu.trove.*;
+
+import java.nio.*;
+import java.util.*;
+
+import org.craft.client.render.*;
+import org.craft.maths.*;
+import org.craft.world.*;
+
+/**
+ * Measures how fast chunks of generated terrain are meshed, by a {@link ChunkMeshBuilder} on the calling thread and by a
+ * {@link ChunkMeshService} with several workers. Blocks are drawn by the GL-free {@link ModelRenderers} of the tests.<br/>
+ * The vertices of the tiled meshes are then replayed into each {@link EnumVertexFormat} of a {@link MeshBuffer}, and into a list of
+ * {@link Vertex} copied into new buffers on each upload, as {@link OpenGLBuffer} did before meshes were written into mesh buffers.
+ */
+public class ChunkMeshBenchmark
+{
+
+    private static final int ROUNDS = 20;
+
+    public static void main(String[] args) throws InterruptedException
+    {
+        World world = Benchmarks.createTerrain(4, 9, 13);
+        List<Chunk> chunks = new ArrayList<Chunk>();
+        for(int x = -3; x < 3; x++ )
+        {
+            for(int y = 10; y <= 12; y++ )
+            {
+                for(int z = -3; z < 3; z++ )
+                    chunks.add(world.getChunkProvider().get(world, x, y, z));
+            }
+        }
+        ModelRenderers renderers = new ModelRenderers();
+        runBuilder("Mesh builder, floats", world, chunks, renderers, EnumVertexFormat.FLOATS);
+        runBuilder("Mesh builder, tiled", world, chunks, renderers, EnumVertexFormat.TILED);
+        runBuilder("Mesh builder, compact", world, chunks, renderers, EnumVertexFormat.COMPACT);
+        List<RecordedMesh> meshes = record(world, chunks, renderers);
+        runVertexList(meshes);
+        runMeshBuffer(meshes, EnumVertexFormat.FLOATS);
+        runMeshBuffer(meshes, EnumVertexFormat.TILED);
+        runMeshBuffer(meshes, EnumVertexFormat.COMPACT);
+        runService("Mesh service, 1 thread", world, chunks, renderers, 1);
+        runService("Mesh service, 2 threads", world, chunks, renderers, 2);
+        runService("Mesh service, 4 threads", world, chunks, renderers, 4);
+        world.dispose();
+    }
+
+    private static void runBuilder(String name, World world, List<Chunk> chunks, ModelRenderers renderers, EnumVertexFormat format)
+    {
+        ChunkMeshBuilder builder = new ChunkMeshBuilder(null, renderers);
+        MeshBuffer normal = new MeshBuffer(format);
+        MeshBuffer alpha = new MeshBuffer(format);
+        long vertices = 0;
+        long best = Long.MAX_VALUE;
+        // The first rounds warm the JIT up
+        for(int round = 0; round < ROUNDS; round++ )
+        {
+            vertices = 0;
+            long start = System.nanoTime();
+            for(Chunk chunk : chunks)
+            {
+                builder.build(new RegionSnapshot(world, chunk.getCoords()), 0, 200, 0, normal, alpha);
+                vertices += normal.getVerticesCount() + alpha.getVerticesCount();
+            }
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        Benchmarks.report(name, chunks.size(), best, "chunks");
+        Benchmarks.report(name + " (" + vertices / chunks.size() + " per chunk)", vertices, best, "vertices");
+    }
+
+    /**
+     * Builds the tiled meshes of given chunks and keeps their vertices as floats and their indices as ints
+     */
+    private static List<RecordedMesh> record(World world, List<Chunk> chunks, ModelRenderers renderers)
+    {
+        ChunkMeshBuilder builder = new ChunkMeshBuilder(null, renderers);
+        MeshBuffer normal = new MeshBuffer(EnumVertexFormat.TILED);
+        MeshBuffer alpha = new MeshBuffer(EnumVertexFormat.TILED);
+        List<RecordedMesh> meshes = new ArrayList<RecordedMesh>();
+        for(Chunk chunk : chunks)
+        {
+            builder.build(new RegionSnapshot(world, chunk.getCoords()), 0, 200, 0, normal, alpha);
+            meshes.add(new RecordedMesh(normal));
+            meshes.add(new RecordedMesh(alpha));
+        }
+        return meshes;
+    }
+
+    /**
+     * Replays the meshes into pooled {@link Vertex} objects and an int list, copied into new float and int buffers as each mesh is uploaded
+     */
+    private static void runVertexList(List<RecordedMesh> meshes)
+    {
+        ArrayList<Vertex> vertices = new ArrayList<Vertex>();
+        TIntArrayList indices = new TIntArrayList();
+        long best = Long.MAX_VALUE;
+        long verticesCount = 0;
+        long bytes = 0;
+        long sink = 0;
+        // The first rounds warm the JIT up
+        for(int round = 0; round < ROUNDS; round++ )
+        {
+            verticesCount = 0;
+            bytes = 0;
+            long start = System.nanoTime();
+            for(RecordedMesh mesh : meshes)
+            {
+                float[] data = mesh.vertices;
+                for(int i = 0; i < data.length; i += RecordedMesh.VERTEX_SIZE)
+                    vertices.add(Vertex.get(Vector3.get(mesh.originX + data[i], mesh.originY + data[i + 1], mesh.originZ + data[i + 2]), Vector2.get(data[i + 3], data[i + 4]), Vector3.get(data[i + 5], data[i + 6], data[i + 7])));
+                for(int index : mesh.indices)
+                    indices.add(index);
+
+                FloatBuffer verticesBuffer = ByteBuffer.allocateDirect(vertices.size() * Vertex.SIZE_IN_FLOATS * 4).order(ByteOrder.nativeOrder()).asFloatBuffer();
+                for(int i = 0; i < vertices.size(); i++ )
+                {
+                    Vertex vertex = vertices.get(i);
+                    verticesBuffer.put(vertex.getPos().getX()).put(vertex.getPos().getY()).put(vertex.getPos().getZ());
+                    verticesBuffer.put(vertex.getTexCoords().getX()).put(vertex.getTexCoords().getY());
+                    verticesBuffer.put(vertex.getColor().getX()).put(vertex.getColor().getY()).put(vertex.getColor().getZ());
+                }
+                verticesBuffer.flip();
+                IntBuffer indicesBuffer = ByteBuffer.allocateDirect(indices.size() * 4).order(ByteOrder.nativeOrder()).asIntBuffer();
+                for(int i = 0; i < indices.size(); i++ )
+                    indicesBuffer.put(indices.get(i));
+                indicesBuffer.flip();
+                sink += verticesBuffer.limit() + indicesBuffer.limit();
+                verticesCount += vertices.size();
+                bytes += verticesBuffer.limit() * 4 + indicesBuffer.limit() * 4;
+
+                for(Vertex vertex : vertices)
+                    vertex.dispose();
+                vertices.clear();
+                indices.clear();
+            }
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        reportReplay("Vertex replay, ArrayList<Vertex>", verticesCount, bytes, best);
+        if(sink == 0)
+            System.out.println();
+    }
+
+    /**
+     * Replays the meshes into a reused mesh buffer of given format, whose bytes are uploaded as they are
+     */
+    private static void runMeshBuffer(List<RecordedMesh> meshes, EnumVertexFormat format)
+    {
+        MeshBuffer buffer = new MeshBuffer(format);
+        long best = Long.MAX_VALUE;
+        long verticesCount = 0;
+        long bytes = 0;
+        long sink = 0;
+        for(int round = 0; round < ROUNDS; round++ )
+        {
+            verticesCount = 0;
+            bytes = 0;
+            long start = System.nanoTime();
+            for(RecordedMesh mesh : meshes)
+            {
+                buffer.clear();
+                buffer.setOrigin(mesh.originX, mesh.originY, mesh.originZ);
+                float[] data = mesh.vertices;
+                for(int i = 0; i < data.length; i += RecordedMesh.VERTEX_SIZE)
+                    buffer.addVertex(mesh.originX + data[i], mesh.originY + data[i + 1], mesh.originZ + data[i + 2], data[i + 3], data[i + 4], data[i + 5], data[i + 6], data[i + 7], data[i + 8], data[i + 9], data[i + 10], data[i + 11]);
+                for(int index : mesh.indices)
+                    buffer.addIndex(index);
+                buffer.setOffsetToEnd();
+                ByteBuffer vertexData = buffer.getVertexData();
+                ByteBuffer indexData = buffer.getIndexData();
+                sink += vertexData.limit() + indexData.limit();
+                verticesCount += buffer.getVerticesCount();
+                bytes += vertexData.limit() + indexData.limit();
+            }
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        reportReplay("Vertex replay, " + format.name().toLowerCase() + " mesh buffer", verticesCount, bytes, best);
+        if(sink == 0)
+            System.out.println();
+    }
+
+    private static void reportReplay(String name, long vertices, long bytes, long nanos)
+    {
+        Benchmarks.report(name, vertices, nanos, "vertices");
+        System.out.printf("%-48s %,14.1f bytes/vertex%n", name + ", uploaded", (double) bytes / vertices);
+    }
+
+    private static void runService(String name, World world, List<Chunk> chunks, ModelRenderers renderers, int threads) throws InterruptedException
+    {
+        ChunkMeshService service = new ChunkMeshService(null, renderers, threads);
+        long best = Long.MAX_VALUE;
+        for(int round = 0; round < ROUNDS; round++ )
+        {
+            long start = System.nanoTime();
+            for(Chunk chunk : chunks)
+                service.submit(world, chunk, 0, 200, 0);
+            int delivered = 0;
+            while(delivered < chunks.size())
+            {
+                ChunkMeshService.ChunkMesh mesh = service.poll();
+                if(mesh == null)
+                {
+                    Thread.yield();
+                    continue;
+                }
+                service.recycle(mesh);
+                delivered++ ;
+            }
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        service.shutdown();
+        Benchmarks.report(name + " (" + Runtime.getRuntime().availableProcessors() + " CPUs)", chunks.size(), best, "chunks");
+    }
+
+    /**
+     * Vertices and indices of a tiled mesh, read back from its mesh buffer
+     */
+    private static class RecordedMesh
+    {
+
+        private static final int VERTEX_SIZE = 12;
+
+        private final float      originX;
+        private final float      originY;
+        private final float      originZ;
+        private final float[]    vertices;
+        private final int[]      indices;
+
+        RecordedMesh(MeshBuffer buffer)
+        {
+            originX = buffer.getOriginX();
+            originY = buffer.getOriginY();
+            originZ = buffer.getOriginZ();
+            vertices = new float[buffer.getVerticesCount() * VERTEX_SIZE];
+            buffer.getVertexData().asFloatBuffer().get(vertices);
+            indices = new int[buffer.getIndicesCount()];
+            ByteBuffer indexData = buffer.getIndexData();
+            for(int i = 0; i < indices.length; i++ )
+                indices[i] = buffer.getIndexSize() == 4 ? indexData.getInt() : indexData.getShort() & 0xFFFF;
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package org.craft.bench;
+
+import java.util.*;
+
+import org.craft.entity.*;
+import org.craft.maths.*;
+import org.craft.utils.*;
+
+/**
+ * Compares the queries of an {@link EntityIndex} holding 10k entities spread over 512x512 blocks with linear scans of the entity list, and
+ * measures how long moving and dropping entities takes
+ */
+public class EntityIndexBenchmark
+{
+
+    private static final int   ENTITIES = 10000;
+    private static final float WIDTH    = 512;
+    private static final int   ROUNDS   = 5;
+
+    public static void main(String[] args)
+    {
+        Random rng = new Random(5L);
+        ArrayList<Entity> entities = new ArrayList<Entity>();
+        EntityIndex index = new EntityIndex();
+        for(int i = 0; i < ENTITIES; i++ )
+        {
+            Entity e = new Entity(null);
+            e.setSize(0.75f, 1.8f, 0.75f);
+            e.setLocation(rng.nextFloat() * WIDTH, 60 + rng.nextFloat() * 8, rng.nextFloat() * WIDTH);
+            e.velX = (rng.nextFloat() - 0.5f) * 0.4f;
+            e.velZ = (rng.nextFloat() - 0.5f) * 0.4f;
+            entities.add(e);
+            index.add(e);
+        }
+        float[][] rays = new float[20000][];
+        for(int i = 0; i < rays.length; i++ )
+        {
+            float yaw = rng.nextFloat() * (float) Math.PI * 2;
+            rays[i] = new float[]
+            {
+                    rng.nextFloat() * WIDTH, 62, rng.nextFloat() * WIDTH, (float) Math.cos(yaw), 0, (float) Math.sin(yaw)
+            };
+        }
+        CollisionInfos infos = new CollisionInfos();
+        ArrayList<Entity> result = new ArrayList<Entity>();
+        long scanRays = Long.MAX_VALUE;
+        long indexRays = Long.MAX_VALUE;
+        long scanBoxes = Long.MAX_VALUE;
+        long indexBoxes = Long.MAX_VALUE;
+        long moves = Long.MAX_VALUE;
+        for(int round = 0; round < ROUNDS; round++ )
+        {
+            long start = System.nanoTime();
+            for(int i = 0; i < rays.length / 20; i++ )
+                scanRay(entities, rays[i], infos);
+            scanRays = Math.min(scanRays, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            for(float[] ray : rays)
+                index.rayCast(ray[0], ray[1], ray[2], ray[3], ray[4], ray[5], 5f, null, infos);
+            indexRays = Math.min(indexRays, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            for(int i = 0; i < rays.length / 20; i++ )
+            {
+                result.clear();
+                scanBox(entities, rays[i][0], rays[i][2], result);
+            }
+            scanBoxes = Math.min(scanBoxes, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            for(float[] ray : rays)
+            {
+                result.clear();
+                index.getEntitiesInAABB(ray[0] - 4, 60, ray[2] - 4, ray[0] + 4, 68, ray[2] + 4, result);
+            }
+            indexBoxes = Math.min(indexBoxes, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            for(int update = 0; update < 20; update++ )
+            {
+                for(int i = 0; i < entities.size(); i++ )
+                {
+                    Entity e = entities.get(i);
+                    e.posX += e.velX;
+                    e.posZ += e.velZ;
+                    index.update(e);
+                }
+            }
+            moves = Math.min(moves, System.nanoTime() - start);
+        }
+        Benchmarks.report("Entity rays, linear scan", rays.length / 20, scanRays, "rays");
+        Benchmarks.report("Entity rays, index", rays.length, indexRays, "rays");
+        Benchmarks.report("8x8x8 entity queries, linear scan", rays.length / 20, scanBoxes, "queries");
+        Benchmarks.report("8x8x8 entity queries, index", rays.length, indexBoxes, "queries");
+        Benchmarks.report("Moving all 10k indexed entities", 20, moves, "updates");
+
+        // Drops 1% of the entities the way World.update does
+        long drops = Long.MAX_VALUE;
+        for(int round = 0; round < ROUNDS * 4; round++ )
+        {
+            for(int i = 0; i < entities.size(); i += 100)
+                entities.get(i).setDead();
+            long start = System.nanoTime();
+            int alive = 0;
+            for(int i = 0; i < entities.size(); i++ )
+            {
+                Entity e = entities.get(i);
+                if(e.isDead())
+                    index.remove(e);
+                else
+                    entities.set(alive++ , e);
+            }
+            entities.subList(alive, entities.size()).clear();
+            drops = Math.min(drops, System.nanoTime() - start);
+        }
+        System.out.printf("%-48s %14.3f ms%n", "Dropping 1% of the indexed entities", drops / 1e6);
+    }
+
+    private static Entity scanRay(List<Entity> entities, float[] ray, CollisionInfos infos)
+    {
+        float maxDist = 5f;
+        Entity hit = null;
+        for(int i = 0; i < entities.size(); i++ )
+        {
+            Entity e = entities.get(i);
+            float distance = e.getLocalBoundingBox().intersectRay(ray[0] - e.posX, ray[1] - e.posY, ray[2] - e.posZ, ray[3], ray[4], ray[5], maxDist, infos);
+            if(distance >= 0f)
+            {
+                maxDist = distance;
+                hit = e;
+            }
+        }
+        return hit;
+    }
+
+    private static void scanBox(List<Entity> entities, float x, float z, List<Entity> result)
+    {
+        for(int i = 0; i < entities.size(); i++ )
+        {
+            Entity e = entities.get(i);
+            Vector3 min = e.getLocalBoundingBox().getMinExtents();
+            Vector3 max = e.getLocalBoundingBox().getMaxExtents();
+            if(e.posX + min.getX() <= x + 4 && e.posX + max.getX() >= x - 4 && e.posY + min.getY() <= 68 && e.posY + max.getY() >= 60 && e.posZ + min.getZ() <= z + 4 && e.posZ + max.getZ() >= z - 4)
+                result.add(e);
+        }
+    }
+}
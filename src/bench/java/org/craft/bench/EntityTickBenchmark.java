@@ -0,0 +1,75 @@
+package org.craft.bench;
+
+import java.util.*;
+
+import org.craft.entity.*;
+import org.craft.world.*;
+
+/**
+ * Measures how many entity updates per second are done by 0.75x1.8 entities walking and jumping around generated terrain
+ */
+public class EntityTickBenchmark
+{
+
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args)
+    {
+        World world = Benchmarks.createTerrain(8, 9, 13);
+        run("Entity ticks, 1000 entities x 200 ticks", world, 1000, 200);
+        run("Entity ticks, 5000 entities x 100 ticks", world, 5000, 100);
+        world.dispose();
+    }
+
+    private static void run(String name, World world, int count, int ticks)
+    {
+        long best = Long.MAX_VALUE;
+        // The first rounds warm the JIT up
+        for(int round = 0; round < ROUNDS; round++ )
+        {
+            Random rng = new Random(7L);
+            Entity[] entities = new Entity[count];
+            for(int i = 0; i < count; i++ )
+            {
+                int x = rng.nextInt(112) - 56;
+                int z = rng.nextInt(112) - 56;
+                entities[i] = new Walker(world, rng.nextFloat() * (float) Math.PI * 2);
+                entities[i].setLocation(x + 0.1f, Benchmarks.getSurface(world, x, z, 13 * 16 + 15), z + 0.1f);
+            }
+            long start = System.nanoTime();
+            for(int tick = 0; tick < ticks; tick++ )
+            {
+                for(Entity e : entities)
+                    e.update();
+            }
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        Benchmarks.report(name, (long) count * ticks, best, "entity-ticks");
+    }
+
+    /**
+     * Walks straight ahead, stepping up on half blocks, and jumps now and then
+     */
+    private static class Walker extends Entity
+    {
+
+        private int ticks;
+
+        Walker(World world, float yaw)
+        {
+            super(world);
+            this.yaw = yaw;
+            this.stepHeight = 0.75f;
+            setSize(0.75f, 1.8f, 0.75f);
+        }
+
+        @Override
+        public void onEntityUpdate()
+        {
+            velX += (float) Math.cos(yaw) * 0.12f;
+            velZ += (float) Math.sin(yaw) * 0.12f;
+            if(onGround && ++ticks % 40 == 0)
+                velY = 0.25f;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package org.craft.bench;
+
+import java.util.*;
+
+import org.craft.world.*;
+
+/**
+ * Measures how fast the {@link LightEngine} lights a freshly generated region: the chunks are generated first, then added to the world and
+ * relit until no update is left, with the default batch size and with larger batches
+ */
+public class LightBenchmark
+{
+
+    private static final int RADIUS = 6;
+    private static final int MIN_Y  = 9;
+    private static final int MAX_Y  = 12;
+    private static final int ROUNDS = 6;
+
+    public static void main(String[] args)
+    {
+        run("Lighting, 16 chunks per batch", 16);
+        run("Lighting, 64 chunks per batch", 64);
+    }
+
+    private static void run(String name, int chunksPerBatch)
+    {
+        long best = Long.MAX_VALUE;
+        long nodes = 0;
+        int chunks = 0;
+        // The first rounds warm the JIT up
+        for(int round = 0; round < ROUNDS; round++ )
+        {
+            World world = TestWorlds.createWorld();
+            BaseChunkProvider provider = (BaseChunkProvider) world.getChunkProvider();
+            LightEngine lightEngine = world.getLightEngine();
+            lightEngine.setBatchSize(chunksPerBatch, 256);
+            List<Chunk> generated = new ArrayList<Chunk>();
+            for(int x = -RADIUS; x < RADIUS; x++ )
+            {
+                for(int y = MIN_Y; y <= MAX_Y; y++ )
+                {
+                    for(int z = -RADIUS; z < RADIUS; z++ )
+                        generated.add(provider.generateTerrain(world, x, y, z));
+                }
+            }
+            long start = System.nanoTime();
+            for(Chunk chunk : generated)
+                provider.addChunk(world, chunk);
+            lightEngine.flush();
+            long time = System.nanoTime() - start;
+            if(time < best)
+            {
+                best = time;
+                nodes = lightEngine.getProcessedNodesCount();
+            }
+            chunks = generated.size();
+            world.dispose();
+        }
+        Benchmarks.report(name, chunks, best, "chunks");
+        Benchmarks.report(name, nodes, best, "nodes");
+    }
+}
@@ -0,0 +1,136 @@
+package org.craft.bench;
+
+import java.util.*;
+
+import org.craft.world.*;
+
+/**
+ * Measures the heap taken by the blocks of a 20k chunks world, stored as the former short[16][16][16] and as {@link PalettedBlockStorage}
+ * with several mixes of chunks, and how fast every block of a chunk is read
+ */
+public class PalettedStorageBenchmark
+{
+
+    private static final int CHUNKS = 20000;
+    private static final int ROUNDS = 20;
+
+    public static void main(String[] args)
+    {
+        Random rng = new Random(1L);
+        long before = usedHeap();
+        short[][][][] arrays = new short[CHUNKS][][][];
+        for(int i = 0; i < CHUNKS; i++ )
+            arrays[i] = createArray(rng);
+        reportHeap("short[16][16][16]", usedHeap() - before);
+
+        PalettedBlockStorage[] storages = new PalettedBlockStorage[CHUNKS];
+        before = usedHeap();
+        for(int i = 0; i < CHUNKS; i++ )
+        {
+            // 40% of air, 50% of stone and 10% of surface chunks, as in generated terrain
+            int kind = rng.nextInt(10);
+            storages[i] = kind < 4 ? new PalettedBlockStorage(0) : kind < 9 ? new PalettedBlockStorage(1) : createSurface(rng);
+        }
+        reportHeap("Paletted, 40% air / 50% stone / 10% surface", usedHeap() - before);
+
+        Arrays.fill(storages, null);
+        before = usedHeap();
+        for(int i = 0; i < CHUNKS; i++ )
+            storages[i] = createMixed(rng, 12);
+        reportHeap("Paletted, 12 ids per chunk", usedHeap() - before);
+
+        long sink = 0;
+        long arrayTime = Long.MAX_VALUE;
+        long palettedTime = Long.MAX_VALUE;
+        int reads = 1000;
+        // The first rounds warm the JIT up
+        for(int round = 0; round < ROUNDS; round++ )
+        {
+            long start = System.nanoTime();
+            for(int i = 0; i < reads; i++ )
+            {
+                short[][][] blocks = arrays[i];
+                for(int x = 0; x < 16; x++ )
+                {
+                    for(int y = 0; y < 16; y++ )
+                    {
+                        for(int z = 0; z < 16; z++ )
+                            sink += blocks[x][y][z];
+                    }
+                }
+            }
+            arrayTime = Math.min(arrayTime, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            for(int i = 0; i < reads; i++ )
+            {
+                PalettedBlockStorage storage = storages[i];
+                for(int index = 0; index < PalettedBlockStorage.SIZE; index++ )
+                    sink += storage.get(index);
+            }
+            palettedTime = Math.min(palettedTime, System.nanoTime() - start);
+        }
+        Benchmarks.report("Reads, short[16][16][16]", (long) reads * PalettedBlockStorage.SIZE, arrayTime, "blocks");
+        Benchmarks.report("Reads, paletted (12 ids)", (long) reads * PalettedBlockStorage.SIZE, palettedTime, "blocks");
+        if(sink == 0)
+            System.out.println();
+    }
+
+    private static short[][][] createArray(Random rng)
+    {
+        short[][][] blocks = new short[16][16][16];
+        blocks[rng.nextInt(16)][rng.nextInt(16)][rng.nextInt(16)] = (short) rng.nextInt(12);
+        return blocks;
+    }
+
+    /**
+     * Creates the storage of a chunk holding the ground: stone, then dirt, grass and a few flowers under air
+     */
+    private static PalettedBlockStorage createSurface(Random rng)
+    {
+        PalettedBlockStorage storage = new PalettedBlockStorage(0);
+        for(int x = 0; x < 16; x++ )
+        {
+            for(int z = 0; z < 16; z++ )
+            {
+                int height = 6 + rng.nextInt(4);
+                for(int y = 0; y < height; y++ )
+                    storage.set(PalettedBlockStorage.index(x, y, z), y < height - 3 ? 1 : y < height - 1 ? 2 : 3);
+                if(rng.nextInt(8) == 0)
+                    storage.set(PalettedBlockStorage.index(x, height, z), 4 + rng.nextInt(2));
+            }
+        }
+        return storage;
+    }
+
+    private static PalettedBlockStorage createMixed(Random rng, int ids)
+    {
+        PalettedBlockStorage storage = new PalettedBlockStorage(0);
+        for(int index = 0; index < PalettedBlockStorage.SIZE; index++ )
+            storage.set(index, rng.nextInt(ids));
+        return storage;
+    }
+
+    private static void reportHeap(String name, long bytes)
+    {
+        System.out.printf("%-48s %,10.1f MiB (%,6d B/chunk)%n", name, bytes / (1024.0 * 1024.0), bytes / CHUNKS);
+    }
+
+    private static long usedHeap()
+    {
+        Runtime runtime = Runtime.getRuntime();
+        for(int i = 0; i < 4; i++ )
+        {
+            System.gc();
+            try
+            {
+                Thread.sleep(50);
+            }
+            catch(InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,150 @@
+package org.craft.bench;
+
+import java.util.*;
+
+import org.craft.blocks.*;
+import org.craft.world.*;
+import org.craft.world.loaders.*;
+
+/**
+ * Measures the {@link PowerNetworks} of a 100x100 grid of cables powered from one corner: building it, breaking and placing back single
+ * cables, with and without asking for the network count after each edit, which splits the networks which lost blocks, and cutting it in
+ * two with a row of cables. A breadth-first search of the whole grid, as done when networks were not cached, is given for reference
+ */
+public class PowerNetworksBenchmark
+{
+
+    private static final int SIZE   = 100;
+    private static final int Y      = 4;
+    private static final int ROUNDS = 8;
+    private static final int EDITS  = 2000;
+
+    public static void main(String[] args)
+    {
+        Benchmarks.initBlocks();
+        long buildTime = Long.MAX_VALUE;
+        long editTime = Long.MAX_VALUE;
+        long countedEditTime = Long.MAX_VALUE;
+        long cutTime = Long.MAX_VALUE;
+        long searchTime = Long.MAX_VALUE;
+        long visited = 0;
+        long sink = 0;
+        // The first rounds warm the JIT up
+        for(int round = 0; round < ROUNDS; round++ )
+        {
+            World world = createWorld();
+            PowerNetworks networks = world.getPowerNetworks();
+            long start = System.nanoTime();
+            world.setBlock(0, Y, 0, Blocks.powerSource);
+            for(int x = 0; x < SIZE; x++ )
+            {
+                for(int z = 0; z < SIZE; z++ )
+                {
+                    if(x != 0 || z != 0)
+                        world.setBlock(x, Y, z, Blocks.cable);
+                }
+            }
+            sink += networks.getNetworkCount();
+            buildTime = Math.min(buildTime, System.nanoTime() - start);
+
+            Random rng = new Random(round);
+            visited = 0;
+            start = System.nanoTime();
+            for(int i = 0; i < EDITS; i++ )
+            {
+                int x = 1 + rng.nextInt(SIZE - 1);
+                int z = 1 + rng.nextInt(SIZE - 1);
+                world.setBlock(x, Y, z, Blocks.air);
+                visited += networks.getLastVisitedNodes();
+                world.setBlock(x, Y, z, Blocks.cable);
+                visited += networks.getLastVisitedNodes();
+            }
+            sink += networks.getNetworkCount();
+            editTime = Math.min(editTime, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            for(int i = 0; i < EDITS; i++ )
+            {
+                int x = 1 + rng.nextInt(SIZE - 1);
+                int z = 1 + rng.nextInt(SIZE - 1);
+                world.setBlock(x, Y, z, Blocks.air);
+                sink += networks.getNetworkCount();
+                world.setBlock(x, Y, z, Blocks.cable);
+            }
+            countedEditTime = Math.min(countedEditTime, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            for(int z = 0; z < SIZE; z++ )
+                world.setBlock(SIZE / 2, Y, z, Blocks.air);
+            sink += networks.getNetworkCount();
+            for(int z = 0; z < SIZE; z++ )
+                world.setBlock(SIZE / 2, Y, z, Blocks.cable);
+            sink += networks.getNetworkCount();
+            cutTime = Math.min(cutTime, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            for(int i = 0; i < 10; i++ )
+                sink += search(world);
+            searchTime = Math.min(searchTime, (System.nanoTime() - start) / 10);
+            world.dispose();
+        }
+        Benchmarks.report("Power grid 100x100, build", SIZE * SIZE, buildTime, "blocks");
+        Benchmarks.report("Power grid 100x100, break and place", EDITS * 2, editTime, "edits");
+        System.out.printf("%-48s %,14.1f nodes/edit%n", "Power grid 100x100, visited", (double) visited / (EDITS * 2));
+        Benchmarks.report("Power grid 100x100, break, count and place", EDITS * 2, countedEditTime, "edits");
+        Benchmarks.report("Power grid 100x100, cut and join", 2, cutTime, "cuts");
+        Benchmarks.report("Power grid 100x100, full search", 1, searchTime, "searches");
+        if(sink == 0)
+            System.out.println();
+    }
+
+    /**
+     * Creates a world with the empty chunks holding the grid
+     */
+    private static World createWorld()
+    {
+        FallbackWorldLoader loader = new FallbackWorldLoader();
+        BaseChunkProvider provider = new BaseChunkProvider(loader);
+        World world = new World("bench", provider, new WorldGenerator(Benchmarks.SEED), loader);
+        for(int x = 0; x <= (SIZE - 1) >> 4; x++ )
+        {
+            for(int z = 0; z <= (SIZE - 1) >> 4; z++ )
+                provider.addChunk(world, new Chunk(world, new ChunkCoord(x, Y >> 4, z)));
+        }
+        return world;
+    }
+
+    /**
+     * Visits every cable connected to the power source and gives it the power of the source less its distance, and returns the sum of the
+     * power levels
+     */
+    private static long search(World world)
+    {
+        HashMap<Long, Integer> powers = new HashMap<Long, Integer>();
+        ArrayDeque<Long> queue = new ArrayDeque<Long>();
+        long origin = ChunkCoord.pack(0, Y, 0);
+        powers.put(origin, 15);
+        queue.add(origin);
+        long sum = 0;
+        while(!queue.isEmpty())
+        {
+            long position = queue.poll();
+            int power = powers.get(position);
+            sum += power;
+            int x = (int) (position << 1 >> 43);
+            int z = (int) (position << 43 >> 43);
+            for(int side = 0; side < 4; side++ )
+            {
+                int nx = x + (side == 0 ? 1 : side == 1 ? -1 : 0);
+                int nz = z + (side == 2 ? 1 : side == 3 ? -1 : 0);
+                long neighbor = ChunkCoord.pack(nx, Y, nz);
+                if(!powers.containsKey(neighbor) && world.getBlockAt(nx, Y, nz) instanceof IPowerableBlock)
+                {
+                    powers.put(neighbor, Math.max(0, power - 1));
+                    queue.add(neighbor);
+                }
+            }
+        }
+        return sum;
+    }
+}
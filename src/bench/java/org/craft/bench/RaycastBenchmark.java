@@ -0,0 +1,65 @@
+package org.craft.bench;
+
+import java.util.*;
+
+import org.craft.entity.*;
+import org.craft.utils.*;
+import org.craft.world.*;
+
+/**
+ * Measures the 5-block rays cast by players looking around generated terrain, without and with 50 entities in the area
+ */
+public class RaycastBenchmark
+{
+
+    private static final int RAYS   = 20000;
+    private static final int ROUNDS = 10;
+
+    public static void main(String[] args)
+    {
+        World world = Benchmarks.createTerrain(4, 8, 13);
+        Random rng = new Random(3L);
+        Entity[] players = new Entity[RAYS];
+        for(int i = 0; i < players.length; i++ )
+        {
+            int x = rng.nextInt(48) - 24;
+            int z = rng.nextInt(48) - 24;
+            players[i] = new Entity(world);
+            players[i].setLocation(x, Benchmarks.getSurface(world, x, z, 13 * 16 + 15), z);
+            players[i].yaw = (float) (rng.nextFloat() * Math.PI * 2);
+            players[i].pitch = (float) ((rng.nextFloat() - 0.2f) * Math.PI / 2);
+        }
+        run("Raycast, no entity", world, players);
+        for(int i = 0; i < 50; i++ )
+        {
+            int x = rng.nextInt(48) - 24;
+            int z = rng.nextInt(48) - 24;
+            Entity e = new Entity(world);
+            e.setLocation(x, Benchmarks.getSurface(world, x, z, 13 * 16 + 15), z);
+            world.spawn(e);
+        }
+        world.update(1);
+        run("Raycast, 50 entities", world, players);
+        world.dispose();
+    }
+
+    private static void run(String name, World world, Entity[] players)
+    {
+        CollisionInfos infos = new CollisionInfos();
+        int hits = 0;
+        long best = Long.MAX_VALUE;
+        // The first rounds warm the JIT up
+        for(int round = 0; round < ROUNDS; round++ )
+        {
+            long start = System.nanoTime();
+            for(int i = 0; i < players.length; i++ )
+            {
+                world.performRayCast(players[i], infos, 5f);
+                if(infos.type != CollisionInfos.CollisionType.NONE)
+                    hits++ ;
+            }
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        Benchmarks.report(name + " (" + hits / ROUNDS + " hits)", players.length, best, "rays");
+    }
+}
@@ -0,0 +1,114 @@
+package org.craft.bench;
+
+import java.io.*;
+import java.util.*;
+
+import org.craft.resources.*;
+import org.craft.utils.*;
+import org.craft.world.*;
+import org.craft.world.loaders.*;
+
+/**
+ * Measures how fast generated chunks are saved to and loaded from region files by a {@link RegionWorldLoader}, through memory mappings and
+ * plain reads. Throughputs are given both for the serialized chunks, before compression, and for the compressed bytes stored in the
+ * regions
+ */
+public class RegionStorageBenchmark
+{
+
+    private static final int RADIUS = 6;
+    private static final int MIN_Y  = 9;
+    private static final int MAX_Y  = 12;
+    private static final int ROUNDS = 8;
+
+    public static void main(String[] args) throws Exception
+    {
+        World world = Benchmarks.createTerrain(RADIUS, MIN_Y, MAX_Y);
+        List<Chunk> chunks = new ArrayList<Chunk>();
+        for(int x = -RADIUS; x < RADIUS; x++ )
+        {
+            for(int y = MIN_Y; y <= MAX_Y; y++ )
+            {
+                for(int z = -RADIUS; z < RADIUS; z++ )
+                    chunks.add(world.getChunkProvider().get(world, x, y, z));
+            }
+        }
+
+        long rawBytes = 0;
+        RegionWorldLoader serializer = new RegionWorldLoader(new ResourceLocation("bench"), new DiskSimpleResourceLoader());
+        for(Chunk c : chunks)
+        {
+            ByteDataBuffer buffer = new ByteDataBuffer();
+            ChunkCoord coords = c.getCoords();
+            serializer.writeChunk(buffer, c, coords.x, coords.y, coords.z);
+            buffer.flush();
+            rawBytes += buffer.toBytes().length;
+            buffer.close();
+        }
+
+        File folder = File.createTempFile("world", "");
+        folder.delete();
+        DiskSimpleResourceLoader diskLoader = new DiskSimpleResourceLoader(folder.getAbsolutePath());
+        ResourceLocation worldFolder = new ResourceLocation("bench");
+        long bytes = 0;
+        long saveTime = Long.MAX_VALUE;
+        long mappedTime = Long.MAX_VALUE;
+        long readTime = Long.MAX_VALUE;
+        // The first rounds warm the JIT up
+        for(int round = 0; round < ROUNDS; round++ )
+        {
+            delete(folder);
+            RegionWorldLoader loader = new RegionWorldLoader(worldFolder, diskLoader);
+            bytes = 0;
+            long start = System.nanoTime();
+            for(Chunk c : chunks)
+                bytes += loader.saveChunk(c);
+            loader.close();
+            saveTime = Math.min(saveTime, System.nanoTime() - start);
+
+            mappedTime = Math.min(mappedTime, load(new RegionWorldLoader(worldFolder, diskLoader, true), world, chunks));
+            readTime = Math.min(readTime, load(new RegionWorldLoader(worldFolder, diskLoader, false), world, chunks));
+        }
+        delete(folder);
+        world.dispose();
+
+        Benchmarks.report("Region save", chunks.size(), saveTime, "chunks");
+        Benchmarks.reportBytes("Region save, serialized", rawBytes, saveTime);
+        Benchmarks.reportBytes("Region save, compressed", bytes, saveTime);
+        Benchmarks.report("Region load, mapped", chunks.size(), mappedTime, "chunks");
+        Benchmarks.reportBytes("Region load, mapped, serialized", rawBytes, mappedTime);
+        Benchmarks.reportBytes("Region load, mapped, compressed", bytes, mappedTime);
+        Benchmarks.report("Region load, reads", chunks.size(), readTime, "chunks");
+        Benchmarks.reportBytes("Region load, reads, serialized", rawBytes, readTime);
+        Benchmarks.reportBytes("Region load, reads, compressed", bytes, readTime);
+        System.out.printf("%-48s %,14.0f bytes/chunk%n", "Region chunk size, serialized", (double) rawBytes / chunks.size());
+        System.out.printf("%-48s %,14.0f bytes/chunk%n", "Region chunk size, compressed", (double) bytes / chunks.size());
+    }
+
+    /**
+     * Loads every given chunk with given loader, closes it and returns the time taken
+     */
+    private static long load(RegionWorldLoader loader, World world, List<Chunk> chunks) throws IOException
+    {
+        long start = System.nanoTime();
+        for(Chunk c : chunks)
+        {
+            ChunkCoord coords = c.getCoords();
+            if(loader.loadChunk(world, coords.x, coords.y, coords.z) == null)
+                throw new IOException("Chunk " + coords + " was not saved");
+        }
+        loader.close();
+        return System.nanoTime() - start;
+    }
+
+    private static void delete(File file)
+    {
+        File[] children = file.listFiles();
+        if(children != null)
+        {
+            for(File child : children)
+                delete(child);
+        }
+        file.delete();
+    }
+}
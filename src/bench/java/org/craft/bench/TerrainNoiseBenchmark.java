@@ -0,0 +1,111 @@
+package org.craft.bench;
+
+import org.craft.maths.*;
+import org.craft.world.*;
+import org.craft.world.loaders.*;
+import org.craft.world.populators.*;
+
+/**
+ * Compares filling terrain column maps point by point with {@link NoiseField}, exact and on a coarser lattice, and measures how many chunk
+ * columns 8 chunks high go through the rock and grass populators per second
+ */
+public class TerrainNoiseBenchmark
+{
+
+    private static final int ROUNDS  = 5;
+    private static final int COLUMNS = 20000;
+
+    private static double    sink;
+
+    public static void main(String[] args)
+    {
+        Benchmarks.initBlocks();
+        NoiseField field = new NoiseField(Benchmarks.SEED);
+        double[] map = new double[256];
+        double[] grid = new double[4096];
+        long perPoint = Long.MAX_VALUE;
+        long exact = Long.MAX_VALUE;
+        long coarse = Long.MAX_VALUE;
+        long exactGrids = Long.MAX_VALUE;
+        long coarseGrids = Long.MAX_VALUE;
+        long generated = Long.MAX_VALUE;
+        // The first rounds warm the JIT up
+        for(int round = 0; round < ROUNDS; round++ )
+        {
+            long start = System.nanoTime();
+            for(int c = 0; c < COLUMNS / 4; c++ )
+            {
+                for(int x = 0; x < 16; x++ )
+                {
+                    for(int z = 0; z < 16; z++ )
+                        sink += MathHelper.perlinNoise((c << 4) + x, z, Benchmarks.SEED);
+                }
+            }
+            perPoint = Math.min(perPoint, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            for(int c = 0; c < COLUMNS; c++ )
+            {
+                field.fillColumnMap(map, c << 4, 0);
+                sink += map[c & 255];
+            }
+            exact = Math.min(exact, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            for(int c = 0; c < COLUMNS; c++ )
+            {
+                field.fillColumnMap(map, c << 4, 0, 4);
+                sink += map[c & 255];
+            }
+            coarse = Math.min(coarse, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            for(int c = 0; c < COLUMNS / 20; c++ )
+            {
+                field.fillDensityGrid(grid, c << 4, 0, 0, 32, 4, 1);
+                sink += grid[c & 4095];
+            }
+            exactGrids = Math.min(exactGrids, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            for(int c = 0; c < COLUMNS / 20; c++ )
+            {
+                field.fillDensityGrid(grid, c << 4, 0, 0, 32, 4, 4);
+                sink += grid[c & 4095];
+            }
+            coarseGrids = Math.min(coarseGrids, System.nanoTime() - start);
+
+            generated = Math.min(generated, generateColumns(round));
+        }
+        Benchmarks.report("Column maps, per point", COLUMNS / 4, perPoint, "maps");
+        Benchmarks.report("Column maps, exact", COLUMNS, exact, "maps");
+        Benchmarks.report("Column maps, lattice 4", COLUMNS, coarse, "maps");
+        Benchmarks.report("Density grids (4 octaves), lattice 1", COLUMNS / 20, exactGrids, "grids");
+        Benchmarks.report("Density grids (4 octaves), lattice 4", COLUMNS / 20, coarseGrids, "grids");
+        Benchmarks.report("Chunk columns 8 high, rock and grass", 1000, generated, "columns");
+        if(sink == 0)
+            System.out.println();
+    }
+
+    /**
+     * Generates 1000 chunk columns, from chunk y 9 to 16, which were not generated by earlier rounds, and returns how long it took
+     */
+    private static long generateColumns(int round)
+    {
+        WorldGenerator generator = new WorldGenerator(Benchmarks.SEED);
+        generator.addPopulator(new RockPopulator());
+        generator.addPopulator(new GrassPopulator());
+        FallbackWorldLoader loader = new FallbackWorldLoader();
+        BaseChunkProvider provider = new BaseChunkProvider(loader);
+        World world = new World("bench", provider, generator, loader);
+        long start = System.nanoTime();
+        for(int c = 0; c < 1000; c++ )
+        {
+            for(int y = 9; y < 17; y++ )
+                provider.generateTerrain(world, round * 1000 + c, y, 0);
+        }
+        long time = System.nanoTime() - start;
+        world.dispose();
+        return time;
+    }
+}
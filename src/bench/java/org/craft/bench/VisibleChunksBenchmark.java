@@ -0,0 +1,170 @@
+package org.craft.bench;
+
+import java.util.*;
+
+import org.craft.blocks.*;
+import org.craft.client.render.*;
+import org.craft.maths.*;
+import org.craft.world.*;
+
+/**
+ * Measures how many chunks a {@link ChunkCuller} keeps, and how long it takes, for cameras looking around above generated terrain and from
+ * rooms dug in the rock, with frustum culling only and with occlusion culling too. Needs no OpenGL context
+ */
+public class VisibleChunksBenchmark
+{
+
+    private static final int RADIUS          = 10;
+    private static final int MIN_Y           = 8;
+    private static final int MAX_Y           = 15;
+    private static final int RENDER_DISTANCE = 8;
+    private static final int ROUNDS          = 50;
+
+    public static void main(String[] args)
+    {
+        World world = Benchmarks.createTerrain(RADIUS, MIN_Y, MAX_Y);
+        Random rng = new Random(9L);
+        float[][] caves = new float[12][];
+        for(int i = 0; i < caves.length; i++ )
+        {
+            int x = rng.nextInt(RADIUS * 16) - RADIUS * 8;
+            int y = 130 + rng.nextInt(30);
+            int z = rng.nextInt(RADIUS * 16) - RADIUS * 8;
+            digRoom(world, x, y, z);
+            caves[i] = new float[]
+            {
+                    x + 0.5f, y + 1.5f, z + 0.5f, rng.nextFloat() * (float) Math.PI * 2, (rng.nextFloat() - 0.5f) * 0.8f
+            };
+        }
+        float[][] surface = new float[16][];
+        for(int i = 0; i < surface.length; i++ )
+        {
+            int x = rng.nextInt(RADIUS * 16) - RADIUS * 8;
+            int z = rng.nextInt(RADIUS * 16) - RADIUS * 8;
+            int y = Benchmarks.getSurface(world, x, z, MAX_Y * 16 + 15);
+            surface[i] = new float[]
+            {
+                    x + 0.5f, y + 1.7f, z + 0.5f, rng.nextFloat() * (float) Math.PI * 2, (rng.nextFloat() - 0.5f) * 0.8f
+            };
+        }
+
+        ChunkCuller culler = new ChunkCuller();
+        PaddedChunkSnapshot padded = new PaddedChunkSnapshot();
+        int[] queue = new int[PalettedBlockStorage.SIZE];
+        boolean[] visited = new boolean[PalettedBlockStorage.SIZE];
+        int chunks = 0;
+        long start = System.nanoTime();
+        for(int x = -RADIUS; x < RADIUS; x++ )
+        {
+            for(int y = MIN_Y; y <= MAX_Y; y++ )
+            {
+                for(int z = -RADIUS; z < RADIUS; z++ )
+                {
+                    ChunkCoord coords = new ChunkCoord(x, y, z);
+                    padded.fill(new RegionSnapshot(world, coords));
+                    culler.setVisibility(coords, ChunkVisibility.compute(padded, queue, visited));
+                    chunks++ ;
+                }
+            }
+        }
+        Benchmarks.report("Chunk connectivity (with snapshots)", chunks, System.nanoTime() - start, "chunks");
+
+        run("Surface cameras", world, culler, surface);
+        run("Cave cameras", world, culler, caves);
+        world.dispose();
+    }
+
+    private static void run(String name, World world, ChunkCuller culler, float[][] cameras)
+    {
+        ArrayList<Chunk> result = new ArrayList<Chunk>();
+        long inRange = 0;
+        long inFrustum = 0;
+        long visible = 0;
+        long frustumTime = Long.MAX_VALUE;
+        long occlusionTime = Long.MAX_VALUE;
+        Frustum[] frustums = new Frustum[cameras.length];
+        for(int i = 0; i < cameras.length; i++ )
+        {
+            frustums[i] = createFrustum(cameras[i]);
+            inRange += countInRange(world, cameras[i]);
+        }
+        // The first rounds warm the JIT up
+        for(int round = 0; round < ROUNDS; round++ )
+        {
+            culler.setOcclusionCulling(false);
+            inFrustum = 0;
+            long start = System.nanoTime();
+            for(int i = 0; i < cameras.length; i++ )
+            {
+                result.clear();
+                culler.getVisibleChunks(world, chunk(cameras[i][0]), chunk(cameras[i][1]), chunk(cameras[i][2]), RENDER_DISTANCE, frustums[i], result);
+                inFrustum += result.size();
+            }
+            frustumTime = Math.min(frustumTime, System.nanoTime() - start);
+
+            culler.setOcclusionCulling(true);
+            visible = 0;
+            start = System.nanoTime();
+            for(int i = 0; i < cameras.length; i++ )
+            {
+                result.clear();
+                culler.getVisibleChunks(world, chunk(cameras[i][0]), chunk(cameras[i][1]), chunk(cameras[i][2]), RENDER_DISTANCE, frustums[i], result);
+                visible += result.size();
+            }
+            occlusionTime = Math.min(occlusionTime, System.nanoTime() - start);
+        }
+        System.out.printf("%-48s %d in range -> %d frustum -> %d frustum + occlusion (per camera)%n", name + " (" + cameras.length + ")", inRange / cameras.length, inFrustum / cameras.length, visible / cameras.length);
+        Benchmarks.report(name + ", frustum", cameras.length, frustumTime, "frames");
+        Benchmarks.report(name + ", frustum + occlusion", cameras.length, occlusionTime, "frames");
+    }
+
+    /**
+     * Returns the number of loaded chunks within render distance of given camera
+     */
+    private static int countInRange(World world, float[] camera)
+    {
+        int count = 0;
+        for(int x = -RENDER_DISTANCE; x < RENDER_DISTANCE; x++ )
+        {
+            for(int y = -RENDER_DISTANCE; y < RENDER_DISTANCE; y++ )
+            {
+                for(int z = -RENDER_DISTANCE; z < RENDER_DISTANCE; z++ )
+                {
+                    if(world.getChunkProvider().get(world, chunk(camera[0]) + x, chunk(camera[1]) + y, chunk(camera[2]) + z) != null)
+                        count++ ;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Creates the frustum of a camera given as {x, y, z, yaw, pitch}, with the projection of the render engine
+     */
+    private static Frustum createFrustum(float[] camera)
+    {
+        Quaternion rotation = new Quaternion(Vector3.yAxis, camera[3]).mul(new Quaternion(Vector3.xAxis, camera[4]));
+        Matrix4 projection = Matrix4.get().initPerspective((float) Math.toRadians(90), 16f / 9f, 0.1f, 100f);
+        Matrix4 translation = Matrix4.get().initTranslation(-camera[0], -camera[1], -camera[2]);
+        Frustum frustum = new Frustum();
+        frustum.update(projection.mul(rotation.conjugate().toRotationMatrix().mul(translation)));
+        return frustum;
+    }
+
+    private static void digRoom(World world, int centerX, int centerY, int centerZ)
+    {
+        for(int x = centerX - 4; x < centerX + 4; x++ )
+        {
+            for(int y = centerY; y < centerY + 4; y++ )
+            {
+                for(int z = centerZ - 4; z < centerZ + 4; z++ )
+                    world.setBlock(x, y, z, Blocks.air);
+            }
+        }
+    }
+
+    private static int chunk(float coord)
+    {
+        return (int) Math.floor(coord / 16f);
+    }
+}
@@ -1,5 +1,7 @@
 package org.craft.blocks;
 
+import java.util.*;
+
 import org.craft.client.render.*;
 import org.craft.entity.*;
 import org.craft.items.*;
@@ -45,9 +47,10 @@ public class Block implements IStackable, BlockType
     }
 
     /**
-     * Returns if given side is opaque
+     * Returns if given side is opaque. Must only depend on the block and the side: chunk meshing caches the result per block, see
+     * {@link PaddedChunkSnapshot#getOpaqueSides(int)}
      */
-    public boolean isSideOpaque(World w, int x, int y, int z, EnumSide side)
+    public boolean isSideOpaque(IBlockAccess w, int x, int y, int z, EnumSide side)
     {
         return true;
     }
@@ -56,7 +59,7 @@ public class Block implements IStackable, BlockType
      * Returns if given side should be rendered.<br/>
      * Usage: BlockTransparent uses it to check if adjacent blocks are the same and hide side if they are.
      */
-    public boolean shouldSideBeRendered(World w, int x, int y, int z, EnumSide side)
+    public boolean shouldSideBeRendered(IBlockAccess w, int x, int y, int z, EnumSide side)
     {
         return true;
     }
@@ -75,10 +78,19 @@ public class Block implements IStackable, BlockType
      */
     public AABB getCollisionBox(World w, int x, int y, int z)
     {
-        Vector3 translation = Vector3.get(x, y, z);
-        AABB result = normalCubeAABB.translate(translation);
-        translation.dispose();
-        return result;
+        AABB box = getLocalCollisionBox(w, x, y, z);
+        if(box == null)
+            return null;
+        return box.translate(x, y, z);
+    }
+
+    /**
+     * Returns collision box relative to the block position, or null if entities go through the block. The returned box is shared and must
+     * not be modified nor disposed
+     */
+    public AABB getLocalCollisionBox(World w, int x, int y, int z)
+    {
+        return normalCubeAABB;
     }
 
     /**
@@ -105,6 +117,22 @@ public class Block implements IStackable, BlockType
         return false;
     }
 
+    /**
+     * Returns how much light is lost when going through this block, between 0 and 15. 15 blocks light completely
+     */
+    public int getLightOpacity()
+    {
+        return letLightGoThrough() ? 0 : 15;
+    }
+
+    /**
+     * Returns the block light level emitted by this block, between 0 and 15
+     */
+    public int getLightEmission()
+    {
+        return 0;
+    }
+
     /**
      * Called when a block is placed by an entity
      */
@@ -120,6 +148,23 @@ public class Block implements IStackable, BlockType
     {
     }
 
+    /**
+     * Returns true if this block should be given random ticks, see {@link #randomTick(World, int, int, int, Random)}
+     */
+    public boolean hasRandomTicks()
+    {
+        return false;
+    }
+
+    /**
+     * Called when this block has been picked by the random tick sampler of its world. Calls {@link #updateTick(World, int, int, int)} by
+     * default
+     */
+    public void randomTick(World world, int x, int y, int z, Random rng)
+    {
+        updateTick(world, x, y, z);
+    }
+
     /**
      * Sets the UID of this block
      * <br/>
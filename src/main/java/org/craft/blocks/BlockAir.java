@@ -17,12 +17,12 @@ public class BlockAir extends Block
         return false;
     }
 
-    public boolean isSideOpaque(World w, int x, int y, int z, EnumSide side)
+    public boolean isSideOpaque(IBlockAccess w, int x, int y, int z, EnumSide side)
     {
         return false;
     }
 
-    public AABB getCollisionBox(World w, int x, int y, int z)
+    public AABB getLocalCollisionBox(World w, int x, int y, int z)
     {
         return null;
     }
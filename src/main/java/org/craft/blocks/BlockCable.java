@@ -1,7 +1,7 @@
 package org.craft.blocks;
 
-import org.craft.blocks.states.*;
 import org.craft.client.render.*;
+import org.craft.entity.*;
 import org.craft.maths.*;
 import org.craft.utils.*;
 import org.craft.world.*;
@@ -26,12 +26,12 @@ public class BlockCable extends Block implements IPowerableBlock
         return false;
     }
 
-    public boolean isSideOpaque(World w, int x, int y, int z, EnumSide side)
+    public boolean isSideOpaque(IBlockAccess w, int x, int y, int z, EnumSide side)
     {
         return false;
     }
 
-    public AABB getCollisionBox(World w, int x, int y, int z)
+    public AABB getLocalCollisionBox(World w, int x, int y, int z)
     {
         return null;
     }
@@ -54,20 +54,17 @@ public class BlockCable extends Block implements IPowerableBlock
         return true;
     }
 
-    public void onBlockUpdate(World world, int x, int y, int z)
+    public void onBlockAdded(World w, int x, int y, int z, EnumSide side, Entity placer)
     {
-        Block northBlock = world.getBlockNextTo(x, y, z, EnumSide.NORTH);
-        Block southBlock = world.getBlockNextTo(x, y, z, EnumSide.SOUTH);
-        Block eastBlock = world.getBlockNextTo(x, y, z, EnumSide.EAST);
-        Block westBlock = world.getBlockNextTo(x, y, z, EnumSide.WEST);
+        super.onBlockAdded(w, x, y, z, side, placer);
+        // Power and connexions are computed by the power networks of the world when the block is set, and have just been cleared
+        w.getPowerNetworks().refresh(x, y, z);
+    }
 
-        int northFlag = northBlock instanceof IPowerableBlock ? 1 << 0 : 0;
-        int southFlag = southBlock instanceof IPowerableBlock ? 1 << 1 : 0;
-        int eastFlag = eastBlock instanceof IPowerableBlock ? 1 << 2 : 0;
-        int westFlag = westBlock instanceof IPowerableBlock ? 1 << 3 : 0;
-        int fullFlag = (northFlag | southFlag | eastFlag | westFlag);
-        world.setBlockState(x, y, z, BlockStates.cableConnexions, EnumConnexionStates.fromFlag(fullFlag), false);
-        world.setBlockState(x, y, z, BlockStates.electricPower, EnumPowerStates.fromPowerValue(world.getDirectElectricPowerAt(x, y, z) - 1), false);
+    @Override
+    public int getEmittedPower()
+    {
+        return 0;
     }
 
 }
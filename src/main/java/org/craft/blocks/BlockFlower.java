@@ -20,12 +20,12 @@ public class BlockFlower extends Block
         super(id);
     }
 
-    public boolean isSideOpaque(World w, int x, int y, int z, EnumSide side)
+    public boolean isSideOpaque(IBlockAccess w, int x, int y, int z, EnumSide side)
     {
         return false;
     }
 
-    public AABB getCollisionBox(World w, int x, int y, int z)
+    public AABB getLocalCollisionBox(World w, int x, int y, int z)
     {
         return null;
     }
@@ -21,12 +21,12 @@ public class BlockHalfSlab extends Block
         super(id);
     }
 
-    public boolean isSideOpaque(World w, int x, int y, int z, EnumSide side)
+    public boolean isSideOpaque(IBlockAccess w, int x, int y, int z, EnumSide side)
     {
         return side == EnumSide.BOTTOM;
     }
 
-    public boolean shouldSideBeRendered(World w, int x, int y, int z, EnumSide side)
+    public boolean shouldSideBeRendered(IBlockAccess w, int x, int y, int z, EnumSide side)
     {
         return true;
     }
@@ -36,12 +36,9 @@ public class BlockHalfSlab extends Block
         return true;
     }
 
-    public AABB getCollisionBox(World w, int x, int y, int z)
+    public AABB getLocalCollisionBox(World w, int x, int y, int z)
     {
-        Vector3 translation = Vector3.get(x, y, z);
-        AABB result = halfSlabBB.translate(translation);
-        translation.dispose();
-        return result;
+        return halfSlabBB;
     }
 
     public AABB getSelectionBox(World world, int x, int y, int z)
@@ -1,6 +1,5 @@
 package org.craft.blocks;
 
-import org.craft.blocks.states.*;
 import org.craft.entity.*;
 import org.craft.maths.*;
 import org.craft.utils.*;
@@ -24,19 +23,22 @@ public class BlockPowerSource extends Block implements IPowerableBlock
     public void onBlockAdded(World w, int x, int y, int z, EnumSide side, Entity placer)
     {
         super.onBlockAdded(w, x, y, z, side, placer);
-        w.setBlockState(x, y, z, BlockStates.electricPower, EnumPowerStates.POWER_15);
+        w.getPowerNetworks().refresh(x, y, z);
     }
 
-    public boolean isSideOpaque(World w, int x, int y, int z, EnumSide side)
+    @Override
+    public int getEmittedPower()
+    {
+        return 15;
+    }
+
+    public boolean isSideOpaque(IBlockAccess w, int x, int y, int z, EnumSide side)
     {
         return false;
     }
 
-    public AABB getCollisionBox(World w, int x, int y, int z)
+    public AABB getLocalCollisionBox(World w, int x, int y, int z)
     {
-        Vector3 translation = Vector3.get(x, y, z);
-        AABB result = aabb.translate(translation);
-        translation.dispose();
-        return result;
+        return aabb;
     }
 }
@@ -12,7 +12,7 @@ public class BlockTransparent extends Block
         super(id);
     }
 
-    public boolean isSideOpaque(World w, int x, int y, int z, EnumSide side)
+    public boolean isSideOpaque(IBlockAccess w, int x, int y, int z, EnumSide side)
     {
         return false;
     }
@@ -22,7 +22,7 @@ public class BlockTransparent extends Block
         return pass == EnumRenderPass.ALPHA;
     }
 
-    public boolean shouldSideBeRendered(World w, int x, int y, int z, EnumSide side)
+    public boolean shouldSideBeRendered(IBlockAccess w, int x, int y, int z, EnumSide side)
     {
         Block next = w.getBlockNextTo(x, y, z, side);
         return next != this;
@@ -5,4 +5,9 @@ package org.craft.blocks;
  */
 public interface IPowerableBlock
 {
+
+    /**
+     * Returns the power level this block gives to its network, between 0 and 15. Blocks next to it get that level minus one
+     */
+    public int getEmittedPower();
 }
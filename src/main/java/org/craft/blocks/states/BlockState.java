@@ -2,6 +2,28 @@ package org.craft.blocks.states;
 
 public abstract class BlockState
 {
+
+    /**
+     * An id given at registration used to index block states in packed storages
+     */
+    private int uniqueID = -1;
+
+    /**
+     * Sets the UID of this block state
+     */
+    void setUniqueID(int id)
+    {
+        this.uniqueID = id;
+    }
+
+    /**
+     * Returns the UID of this block state, or -1 if it has not been registered
+     */
+    public int getUniqueID()
+    {
+        return uniqueID;
+    }
+
     @Override
     public int hashCode()
     {
@@ -30,6 +30,32 @@ public final class BlockStates
      */
     public static final HashMap<BlockState, HashMap<String, IBlockStateValue>> BLOCK_STATES_VALUES_REGISTRY = new HashMap<BlockState, HashMap<String, IBlockStateValue>>();
 
+    /**
+     * Registered block states, indexed by their UID
+     */
+    private static final ArrayList<BlockState>                                 statesByID                   = new ArrayList<BlockState>();
+
+    /**
+     * Registered values of each block state, indexed by block state UID
+     */
+    private static final ArrayList<ArrayList<IBlockStateValue>>                valuesByStateID              = new ArrayList<ArrayList<IBlockStateValue>>();
+
+    /**
+     * Index + 1 of each registered value of each block state, indexed by block state UID. Only written while registering, so it is read
+     * without lock
+     */
+    private static final ArrayList<HashMap<IBlockStateValue, Integer>>         valueIndicesByStateID        = new ArrayList<HashMap<IBlockStateValue, Integer>>();
+
+    /**
+     * Interned sets of block state values, indexed by set id. Index 0 is the empty set
+     */
+    private static volatile PackedBlockStates[]                                packedSets                   = new PackedBlockStates[]
+                                                                                                            {
+                                                                                                                new PackedBlockStates(0, null, new IBlockStateValue[0])
+                                                                                                            };
+    private static int                                                         packedSetsCount              = 1;
+    private static final HashMap<BlockStatesObject, PackedBlockStates>         packedSetsByContent          = new HashMap<BlockStatesObject, PackedBlockStates>();
+
     /**
      * Registers all blocks states of the game
      */
@@ -65,6 +91,10 @@ public final class BlockStates
         }
         BLOCK_STATES_REGISTRY.put(state.toString(), state);
         BLOCK_STATES_VALUES_REGISTRY.put(state, new HashMap<String, IBlockStateValue>());
+        state.setUniqueID(statesByID.size());
+        statesByID.add(state);
+        valuesByStateID.add(new ArrayList<IBlockStateValue>());
+        valueIndicesByStateID.add(new HashMap<IBlockStateValue, Integer>());
     }
 
     /**
@@ -86,6 +116,9 @@ public final class BlockStates
         }
         HashMap<String, IBlockStateValue> map = BLOCK_STATES_VALUES_REGISTRY.get(state);
         map.put(value.toString(), value);
+        ArrayList<IBlockStateValue> values = valuesByStateID.get(state.getUniqueID());
+        values.add(value);
+        valueIndicesByStateID.get(state.getUniqueID()).put(value, values.size());
     }
 
     /**
@@ -96,4 +129,114 @@ public final class BlockStates
         return BLOCK_STATES_VALUES_REGISTRY.get(state).get(string);
     }
 
+    /**
+     * Returns the value of given state inside the packed set with given id, or null if unset
+     */
+    public static IBlockStateValue getPackedValue(int packedID, BlockState state)
+    {
+        if(packedID == 0)
+            return null;
+        return packedSets[packedID].get(state.getUniqueID());
+    }
+
+    /**
+     * Returns a read-only view of the packed set with given id, or null if it is the empty set.<br/>
+     * The returned object is shared and must not be modified.
+     */
+    public static BlockStatesObject getPackedStates(int packedID)
+    {
+        if(packedID == 0)
+            return null;
+        return packedSets[packedID].object;
+    }
+
+    /**
+     * Returns the id of the packed set obtained by setting given state to given value inside the packed set with given id.<br/>
+     * A null value removes the state from the set. Once a transition has been computed, this method neither allocates nor locks.
+     */
+    public static int withPackedValue(int packedID, BlockState state, IBlockStateValue value)
+    {
+        int stateID = state.getUniqueID();
+        if(stateID < 0)
+            throw new IllegalArgumentException("Block state " + state + " has not been registered");
+        int valueIndex = 0;
+        if(value != null)
+        {
+            Integer index = valueIndicesByStateID.get(stateID).get(value);
+            if(index == null)
+                throw new IllegalArgumentException("Value " + value + " has not been registered for block state " + state);
+            valueIndex = index;
+        }
+        int result = packedSets[packedID].getTransition(stateID, valueIndex);
+        if(result < 0)
+            result = computeTransition(packedID, state, value, valueIndex);
+        return result;
+    }
+
+    /**
+     * Interns the set obtained by setting given state to given value inside the packed set with given id, and caches the transition
+     */
+    private static synchronized int computeTransition(int packedID, BlockState state, IBlockStateValue value, int valueIndex)
+    {
+        int stateID = state.getUniqueID();
+        PackedBlockStates current = packedSets[packedID];
+        // Another thread may have computed it since the lookup
+        int result = current.getTransition(stateID, valueIndex);
+        if(result < 0)
+        {
+            BlockStatesObject newStates = new BlockStatesObject();
+            if(current.object != null)
+                newStates.getMap().putAll(current.object.getMap());
+            if(value == null)
+                newStates.getMap().remove(state);
+            else
+                newStates.set(state, value);
+            result = intern(newStates).id;
+            current.setTransition(stateID, valueIndex, result, valuesByStateID.get(stateID).size());
+        }
+        return result;
+    }
+
+    /**
+     * Returns the id of the packed set holding the same values as given object
+     */
+    public static synchronized int getPackedID(BlockStatesObject states)
+    {
+        if(states == null || states.size() == 0)
+            return 0;
+        BlockStatesObject copy = new BlockStatesObject();
+        for(Map.Entry<BlockState, IBlockStateValue> entry : states.getMap().entrySet())
+        {
+            if(entry.getValue() != null)
+                copy.set(entry.getKey(), entry.getValue());
+        }
+        return intern(copy).id;
+    }
+
+    private static PackedBlockStates intern(BlockStatesObject states)
+    {
+        if(states.size() == 0)
+            return packedSets[0];
+        PackedBlockStates packed = packedSetsByContent.get(states);
+        if(packed == null)
+        {
+            IBlockStateValue[] values = new IBlockStateValue[statesByID.size()];
+            for(Map.Entry<BlockState, IBlockStateValue> entry : states.getMap().entrySet())
+            {
+                values[entry.getKey().getUniqueID()] = entry.getValue();
+            }
+            packed = new PackedBlockStates(packedSetsCount, states, values);
+            PackedBlockStates[] sets = packedSets;
+            if(packedSetsCount >= sets.length)
+            {
+                PackedBlockStates[] newSets = new PackedBlockStates[sets.length * 2];
+                System.arraycopy(sets, 0, newSets, 0, sets.length);
+                sets = newSets;
+            }
+            sets[packedSetsCount++ ] = packed;
+            packedSets = sets;
+            packedSetsByContent.put(states, packed);
+        }
+        return packed;
+    }
 }
@@ -87,4 +87,20 @@ public class BlockStatesObject implements Iterable<IBlockStateValue>
     {
         return map.values().iterator();
     }
+
+    @Override
+    public boolean equals(Object o)
+    {
+        if(o instanceof BlockStatesObject)
+        {
+            return ((BlockStatesObject) o).map.equals(map);
+        }
+        return false;
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return map.hashCode();
+    }
 }
@@ -0,0 +1,74 @@
+package org.craft.blocks.states;
+
+/**
+ * An interned set of block state values identified by a small integer.<br/>
+ * Values are indexed by block state UID and transitions to other sets are cached so that chunks can store a single int per voxel.
+ */
+final class PackedBlockStates
+{
+
+    /**
+     * The id of this set, as stored in chunks. 0 is reserved for the empty set.
+     */
+    final int                id;
+
+    /**
+     * Read-only view of this set
+     */
+    final BlockStatesObject  object;
+
+    /**
+     * values[stateUID] is the value of the state with given UID, or null if unset
+     */
+    final IBlockStateValue[] values;
+
+    /**
+     * transitions[stateUID][valueIndex] is the id + 1 of the set obtained by setting given value, or 0 if not computed yet.<br/>
+     * Copied on write and read without lock: a reader sees either the previous table or the new one, published after the set it points to
+     */
+    volatile int[][]         transitions;
+
+    PackedBlockStates(int id, BlockStatesObject object, IBlockStateValue[] values)
+    {
+        this.id = id;
+        this.object = object;
+        this.values = values;
+        this.transitions = new int[values.length][];
+    }
+
+    /**
+     * Returns value of state with given UID, or null if unset
+     */
+    IBlockStateValue get(int stateUID)
+    {
+        if(stateUID < 0 || stateUID >= values.length)
+            return null;
+        return values[stateUID];
+    }
+
+    /**
+     * Returns cached transition or -1 if not computed yet
+     */
+    int getTransition(int stateUID, int valueIndex)
+    {
+        int[][] table = transitions;
+        if(stateUID >= table.length || table[stateUID] == null || valueIndex >= table[stateUID].length)
+            return -1;
+        return table[stateUID][valueIndex] - 1;
+    }
+
+    /**
+     * Caches a transition. Must be called with the lock of {@link BlockStates} held
+     */
+    void setTransition(int stateUID, int valueIndex, int result, int valuesCount)
+    {
+        int[][] table = new int[Math.max(transitions.length, stateUID + 1)][];
+        System.arraycopy(transitions, 0, table, 0, transitions.length);
+        int[] row = new int[Math.max(valuesCount + 1, valueIndex + 1)];
+        if(table[stateUID] != null)
+            System.arraycopy(table[stateUID], 0, row, 0, Math.min(table[stateUID].length, row.length));
+        row[valueIndex] = result + 1;
+        table[stateUID] = row;
+        transitions = table;
+    }
+}
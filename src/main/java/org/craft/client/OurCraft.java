@@ -341,7 +341,7 @@ public class OurCraft implements Runnable, Game
     {
         if(player != null)
         {
-            objectInFront = player.getObjectInFront(5f);
+            player.getObjectInFront(5f, objectInFront);
         }
         if(newMenu != currentMenu)
         {
@@ -550,38 +550,14 @@ public class OurCraft implements Runnable, Game
         ArrayList<Chunk> visibleChunks = new ArrayList<Chunk>();
         if(player != null)
         {
-            AABB chunkBB = new AABB(Vector3.NULL, Vector3.get(16, 16, 16));
             int renderDistance = 8;
-            int ox = (int) renderEngine.getRenderViewEntity().getX();
-            int oy = (int) renderEngine.getRenderViewEntity().getY();
-            int oz = (int) renderEngine.getRenderViewEntity().getZ();
-            for(int x = -renderDistance; x < renderDistance; x++ )
-            {
-                for(int y = -renderDistance; y < renderDistance; y++ )
-                {
-                    for(int z = -renderDistance; z < renderDistance; z++ )
-                    {
-                        int fx = x * 16 + ox;
-                        int fy = y * 16 + oy;
-                        int fz = z * 16 + oz;
-                        if(fy < 0)
-                            continue;
-                        synchronized(clientWorld)
-                        {
-                            Chunk c = clientWorld.getChunkProvider().get(clientWorld, (int) Math.floor((float) fx / 16f), (int) Math.floor((float) fy / 16f), (int) Math.floor((float) fz / 16f));
-                            if(c != null)
-                            {
-                                AABB chunkBox = chunkBB.translate(x, y, z);
-                                if(renderEngine.getFrustum().boxIn(chunkBox))
-                                {
-                                    visibleChunks.add(c);
-                                }
-                                chunkBox.dispose();
-                            }
-                        }
-                    }
-                }
-            }
+            Entity camera = renderEngine.getRenderViewEntity();
+            // Same eye position as RenderEngine.getProjectedViewMatrix
+            int cx = (int) Math.floor((camera.posX + 0.5f) / 16f);
+            int cy = (int) Math.floor((camera.posY + camera.getEyeOffset()) / 16f);
+            int cz = (int) Math.floor((camera.posZ + 0.5f) / 16f);
+            // Chunk lookups do not need the world lock, see ChunkMap
+            renderBlocks.getChunkCuller().getVisibleChunks(clientWorld, cx, cy, cz, renderDistance, renderEngine.getFrustum(), visibleChunks);
         }
         return visibleChunks;
     }
@@ -769,10 +745,15 @@ public class OurCraft implements Runnable, Game
         if(world == null)
         {
             if(clientWorld != null)
+            {
                 eventBus.fireEvent(new SpongeWorldUnloadEvent(this, clientWorld), null, null);
+                clientWorld.removeChunkUnloadListener(renderBlocks);
+                clientWorld.dispose();
+            }
         }
         else
         {
+            world.addChunkUnloadListener(renderBlocks);
             try
             {
                 world.getLoader().loadWorldConstants(world);
@@ -791,7 +772,11 @@ public class OurCraft implements Runnable, Game
      */
     public void setPlayer(EntityPlayer player)
     {
+        if(this.player != null && this.player.getWorld() != null)
+            this.player.getWorld().getChunkLifecycleManager().removeViewer(this.player);
         this.player = player;
+        if(player != null && player.getWorld() != null)
+            player.getWorld().getChunkLifecycleManager().addViewer(player);
     }
 
     /**
@@ -814,52 +799,42 @@ public class OurCraft implements Runnable, Game
     }
 
     /**
-     * Saves the current world
+     * Saves the current world. Only the snapshot and the copies of the modified chunks are taken on this thread, files are written by the
+     * world's {@link WorldSaveService}
      */
     public void saveWorld()
     {
         if(clientWorld.isRemote)
             return;
-        WorldLoader loader = clientWorld.getLoader();
-        ByteDataBuffer buffer = new ByteDataBuffer();
         try
         {
-            File worldFolder = new File(SystemUtils.getGameFolder(), "worlds/" + clientWorld.getName());
+            final File worldFolder = new File(SystemUtils.getGameFolder(), "worlds/" + clientWorld.getName());
             if(!worldFolder.exists())
                 worldFolder.mkdirs();
 
             render(0, false);
 
-            ImageIO.write(takeScreenshot(), "png", new File(worldFolder, "worldSnapshot.png"));
-
-            File chunkFolder = new File(worldFolder, "chunkData");
-            if(!chunkFolder.exists())
-                chunkFolder.mkdirs();
-            loader.writeWorldConstants(buffer, clientWorld);
-            buffer.flush();
-            buffer.close();
-            File worldData = new File(worldFolder, "world.data");
-            if(!worldData.exists())
-                worldData.createNewFile();
-            FileOutputStream worldDataOut = new FileOutputStream(worldData);
-            worldDataOut.write(buffer.toBytes());
-            worldDataOut.flush();
-            worldDataOut.close();
-            Iterator<Chunk> chunks = clientWorld.getChunkProvider().iterator();
-            while(chunks.hasNext())
+            final BufferedImage snapshot = takeScreenshot();
+            WorldSaveService saveService = clientWorld.getSaveService();
+            saveService.submit(new Runnable()
             {
-                ByteDataBuffer regionBuffer = new ByteDataBuffer();
-                Chunk chunk = chunks.next();
-                loader.writeChunk(regionBuffer, chunk, chunk.getCoords().x, chunk.getCoords().y, chunk.getCoords().z);
-                regionBuffer.flush();
-                regionBuffer.close();
-                byte[] regionRawData = regionBuffer.toBytes();
-                File regionFile = new File(worldFolder, "chunkData/chunk" + chunk.getCoords().x + "." + chunk.getCoords().y + "." + chunk.getCoords().z + ".data");
-                FileOutputStream out = new FileOutputStream(regionFile);
-                out.write(regionRawData);
-                out.flush();
-                out.close();
-            }
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        ByteArrayOutputStream out = new ByteArrayOutputStream();
+                        ImageIO.write(snapshot, "png", out);
+                        IOUtils.writeAtomically(new File(worldFolder, "worldSnapshot.png"), out.toByteArray(), out.size());
+                    }
+                    catch(IOException e)
+                    {
+                        Log.error("Failed to save world snapshot: " + e.getMessage());
+                    }
+                }
+            });
+            saveService.saveWorldConstants();
+            saveService.saveModifiedChunks();
         }
         catch(Exception e)
         {
@@ -921,6 +896,8 @@ public class OurCraft implements Runnable, Game
      */
     public void cleanup()
     {
+        if(renderBlocks != null)
+            renderBlocks.shutdown();
         renderEngine.dispose();
         AL.destroy();
         Display.destroy();
@@ -1,5 +1,6 @@
 package org.craft.client;
 
+import org.craft.client.network.packets.*;
 import org.craft.client.render.*;
 import org.craft.world.*;
 
@@ -26,6 +27,9 @@ public class ThreadGetChunksFromCamera extends Thread
                 int ox = (int) renderEngine.getRenderViewEntity().getX();
                 int oy = (int) renderEngine.getRenderViewEntity().getY();
                 int oz = (int) renderEngine.getRenderViewEntity().getZ();
+                // Lets the server keep the chunks around the player loaded
+                if(clientWorld != null && clientWorld.isRemote)
+                    game.sendPacket(new C2PlayerPosition(renderEngine.getRenderViewEntity().posX, renderEngine.getRenderViewEntity().posY, renderEngine.getRenderViewEntity().posZ));
                 for(int radius = 0; radius < renderDistance; radius++ )
                 {
                     for(int x = -radius; x < radius; x++ )
@@ -41,11 +45,19 @@ public class ThreadGetChunksFromCamera extends Thread
                                 if(fy < 0)
                                     continue yLoop;
                                 if(clientWorld != null)
-                                    synchronized(clientWorld)
-                                    {
-                                        if(!clientWorld.doesChunkExists((int) Math.floor(fx / 16f), (int) Math.floor(fy / 16f), (int) Math.floor(fz / 16f)))
-                                            clientWorld.createChunk((int) Math.floor(fx / 16f), (int) Math.floor(fy / 16f), (int) Math.floor(fz / 16f));
-                                    }
+                                {
+                                    int chunkX = (int) Math.floor(fx / 16f);
+                                    int chunkY = (int) Math.floor(fy / 16f);
+                                    int chunkZ = (int) Math.floor(fz / 16f);
+                                    if(clientWorld.getChunkGenerationService() != null)
+                                        clientWorld.getChunkGenerationService().request(chunkX, chunkY, chunkZ);
+                                    else
+                                        synchronized(clientWorld)
+                                        {
+                                            if(!clientWorld.doesChunkExists(chunkX, chunkY, chunkZ))
+                                                clientWorld.createChunk(chunkX, chunkY, chunkZ);
+                                        }
+                                }
                             }
                         }
                     }
@@ -7,7 +7,6 @@ import org.craft.client.*;
 import org.craft.client.gui.widgets.*;
 import org.craft.client.render.*;
 import org.craft.client.render.fonts.*;
-import org.craft.maths.*;
 import org.craft.resources.*;
 
 public abstract class Gui
@@ -60,22 +59,16 @@ public abstract class Gui
         return fontRenderer;
     }
 
-    private static Vector3 bottomLeftCornerPos  = Vector3.get(0, 0, 0);
-    private static Vector3 bottomRightCornerPos = Vector3.get(0, 0, 0);
-    private static Vector3 topLeftCornerPos     = Vector3.get(0, 0, 0);
-    private static Vector3 topRightCornerPos    = Vector3.get(0, 0, 0);
-
-    private static Vector2 bottomLeftCornerUV   = Vector2.get(0, 0);
-    private static Vector2 bottomRightCornerUV  = Vector2.get(0, 0);
-    private static Vector2 topLeftCornerUV      = Vector2.get(0, 0);
-    private static Vector2 topRightCornerUV     = Vector2.get(0, 0);
-
-    static
+    /**
+     * Draws textured rect at given coordinates
+     */
+    public static void drawTexturedRect(RenderEngine engine, int x, int y, int w, int h, float minU, float minV, float maxU, float maxV)
     {
-        buffer.addVertex(Vertex.get(bottomLeftCornerPos, bottomLeftCornerUV));
-        buffer.addVertex(Vertex.get(bottomRightCornerPos, bottomRightCornerUV));
-        buffer.addVertex(Vertex.get(topLeftCornerPos, topLeftCornerUV));
-        buffer.addVertex(Vertex.get(topRightCornerPos, topRightCornerUV));
+        buffer.clearAndDisposeVertices();
+        buffer.addVertex(x, y, 0, minU, minV, 1, 1, 1);
+        buffer.addVertex(x + w, y, 0, maxU, minV, 1, 1, 1);
+        buffer.addVertex(x + w, y + h, 0, maxU, maxV, 1, 1, 1);
+        buffer.addVertex(x, y + h, 0, minU, maxV, 1, 1, 1);
         buffer.addIndex(0);
         buffer.addIndex(1);
         buffer.addIndex(2);
@@ -83,21 +76,6 @@ public abstract class Gui
         buffer.addIndex(2);
         buffer.addIndex(3);
         buffer.addIndex(0);
-    }
-
-    /**
-     * Draws textured rect at given coordinates
-     */
-    public static void drawTexturedRect(RenderEngine engine, int x, int y, int w, int h, float minU, float minV, float maxU, float maxV)
-    {
-        bottomLeftCornerPos.set(x, y, 0);
-        bottomRightCornerPos.set(x + w, y, 0);
-        topLeftCornerPos.set(x + w, y + h, 0);
-        topRightCornerPos.set(x, y + h, 0);
-        bottomLeftCornerUV.set(minU, minV);
-        bottomRightCornerUV.set(maxU, minV);
-        topLeftCornerUV.set(maxU, maxV);
-        topRightCornerUV.set(minU, maxV);
         buffer.upload();
         engine.renderBuffer(buffer);
     }
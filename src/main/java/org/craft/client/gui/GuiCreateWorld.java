@@ -83,7 +83,7 @@ public class GuiCreateWorld extends Gui
             File worldFolder = new File(SystemUtils.getGameFolder(), "worlds/" + worldName);
             if(!worldFolder.exists())
                 worldFolder.mkdirs();
-            worldLoader = new VanillaWorldLoader(new ResourceLocation(worldName), new DiskSimpleResourceLoader(worldFolder.getParentFile().getAbsolutePath()));
+            worldLoader = new RegionWorldLoader(new ResourceLocation(worldName), new DiskSimpleResourceLoader(worldFolder.getParentFile().getAbsolutePath()));
             World clientWorld = new World(worldName, new BaseChunkProvider(worldLoader), generator, worldLoader);
 
             EntityPlayer player = new EntityPlayer(clientWorld, oc.getSession().getUUID());
@@ -135,7 +135,7 @@ public class GuiSelectWorld extends Gui
 
                 if(!worldFolder.exists())
                     worldFolder.mkdirs();
-                WorldLoader worldLoader = new VanillaWorldLoader(new ResourceLocation(worldFolder.getName()), new DiskSimpleResourceLoader(worldFolder.getParentFile().getAbsolutePath()));
+                WorldLoader worldLoader = new RegionWorldLoader(new ResourceLocation(worldFolder.getName()), new DiskSimpleResourceLoader(worldFolder.getParentFile().getAbsolutePath()));
 
                 HashMap<String, String> worldInfos = worldLoader.loadWorldInfos(worldDataFile);
                 File snapshotFile = new File(worldFolder, "worldSnapshot.png");
@@ -225,7 +225,9 @@ public class GuiSelectWorld extends Gui
             File worldFolder = new File(SystemUtils.getGameFolder(), "worlds/" + worldName);
             if(!worldFolder.exists())
                 worldFolder.mkdirs();
-            worldLoader = new VanillaWorldLoader(new ResourceLocation(worldName), new DiskSimpleResourceLoader(worldFolder.getParentFile().getAbsolutePath()));
+            RegionWorldLoader regionLoader = new RegionWorldLoader(new ResourceLocation(worldName), new DiskSimpleResourceLoader(worldFolder.getParentFile().getAbsolutePath()));
+            regionLoader.convertLegacyChunks();
+            worldLoader = regionLoader;
             World clientWorld = new World(worldName, new BaseChunkProvider(worldLoader), generator, worldLoader);
 
             EntityPlayer player = new EntityPlayer(clientWorld, oc.getSession().getUUID());
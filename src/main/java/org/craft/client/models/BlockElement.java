@@ -47,6 +47,11 @@ public class BlockElement
      */
     private boolean                    rescale;
 
+    /**
+     * Rotation built from the axis and the angle on first use, shared by the threads rendering this element
+     */
+    private volatile Quaternion        rotation;
+
     public BlockElement()
     {
         faces = new HashMap<String, BlockFace>();
@@ -114,6 +119,7 @@ public class BlockElement
     public void setRotationAxis(String axis)
     {
         this.rotAxis = axis;
+        this.rotation = null;
     }
 
     /**
@@ -130,6 +136,7 @@ public class BlockElement
     public void setRotationAngle(float angle)
     {
         this.angle = angle;
+        this.rotation = null;
     }
 
     /**
@@ -164,6 +171,29 @@ public class BlockElement
         return hasRotation;
     }
 
+    /**
+     * Returns the rotation of this element, or {@link Quaternion#NULL} if it has none. The returned quaternion must not be modified
+     */
+    public Quaternion getRotation()
+    {
+        if(!hasRotation)
+            return Quaternion.NULL;
+        Quaternion rotation = this.rotation;
+        if(rotation == null)
+        {
+            Vector3 axis = Vector3.xAxis;
+            if(rotAxis == null)
+                ;
+            else if(rotAxis.equalsIgnoreCase("y"))
+                axis = Vector3.yAxis;
+            else if(rotAxis.equalsIgnoreCase("z"))
+                axis = Vector3.zAxis;
+            rotation = new Quaternion(axis, (float) Math.toRadians(angle));
+            this.rotation = rotation;
+        }
+        return rotation;
+    }
+
     /**
      * Sets flag deciding if this element has a rotation
      */
@@ -1,19 +1,22 @@
 package org.craft.client.models;
 
 import org.craft.maths.*;
+import org.craft.utils.*;
 
 public class BlockFace
 {
 
-    private String  cullface;
-    private String  texture;
-    private Vector2 maxUV;
-    private Vector2 minUV;
+    private String   cullface;
+    private EnumSide cullSide;
+    private String   texture;
+    private Vector2  maxUV;
+    private Vector2  minUV;
 
     public BlockFace()
     {
         minUV = Vector2.NULL;
         maxUV = Vector2.get(1, 1);
+        cullSide = EnumSide.UNDEFINED;
     }
 
     /**
@@ -22,6 +25,15 @@ public class BlockFace
     public void setCullface(String cullface)
     {
         this.cullface = cullface;
+        this.cullSide = EnumSide.fromString(cullface);
+    }
+
+    /**
+     * Returns the side of the culling face, parsed once when it is set, or {@link EnumSide#UNDEFINED} if there is none
+     */
+    public EnumSide getCullSide()
+    {
+        return cullSide;
     }
 
     /**
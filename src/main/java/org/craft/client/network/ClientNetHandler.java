@@ -139,6 +139,12 @@ public class ClientNetHandler implements INetworkHandler
         this.channel = ctx.channel();
     }
 
+    @Override
+    public void onConnexionLost(ChannelHandlerContext ctx)
+    {
+        ;
+    }
+
     public void setGuiStatus(String status)
     {
         Gui menu = game.getCurrentMenu();
@@ -0,0 +1,60 @@
+package org.craft.client.network.packets;
+
+import io.netty.buffer.*;
+
+import org.craft.network.*;
+
+/**
+ * Sent regularly by the client so that the server knows around which point to keep chunks loaded
+ */
+public class C2PlayerPosition extends AbstractPacket
+{
+
+    private float x;
+    private float y;
+    private float z;
+
+    public C2PlayerPosition()
+    {
+        ;
+    }
+
+    public C2PlayerPosition(float x, float y, float z)
+    {
+        this.x = x;
+        this.y = y;
+        this.z = z;
+    }
+
+    @Override
+    public void decodeFrom(ByteBuf buffer)
+    {
+        x = buffer.readFloat();
+        y = buffer.readFloat();
+        z = buffer.readFloat();
+    }
+
+    @Override
+    public void encodeInto(ByteBuf buffer)
+    {
+        buffer.writeFloat(x);
+        buffer.writeFloat(y);
+        buffer.writeFloat(z);
+    }
+
+    public float getX()
+    {
+        return x;
+    }
+
+    public float getY()
+    {
+        return y;
+    }
+
+    public float getZ()
+    {
+        return z;
+    }
+
+}
@@ -0,0 +1,178 @@
+package org.craft.client.render;
+
+import java.util.*;
+
+import org.craft.maths.*;
+import org.craft.utils.*;
+import org.craft.world.*;
+
+/**
+ * Finds the chunks to render around the camera.<br/>
+ * With occlusion culling, chunks are walked from the one holding the camera, through the faces of each chunk which can be seen from the
+ * face it was entered by, as given by its {@link ChunkVisibility}. The walk never goes back towards the camera, and skips chunks outside of
+ * the frustum, so chunks hidden behind solid ground are never reached. Chunks which have not been meshed yet are seen through.<br/>
+ * Without it, every chunk in range inside of the frustum is rendered. Only meant to be used by the render thread.
+ */
+public class ChunkCuller
+{
+
+    private static final EnumSide[]              SIDES = EnumSide.values();
+
+    private HashMap<ChunkCoord, ChunkVisibility> visibilities;
+    private boolean                              occlusionCulling;
+    private int                                  size;
+    private int[]                                queue;
+    private int[]                                visitedStamps;
+    private byte[]                               entrySides;
+    private byte[]                               directions;
+    private int                                  stamp;
+
+    public ChunkCuller()
+    {
+        visibilities = new HashMap<ChunkCoord, ChunkVisibility>();
+        occlusionCulling = true;
+    }
+
+    /**
+     * Sets the visibility of the chunk at given coords, computed from its latest mesh
+     */
+    public void setVisibility(ChunkCoord coords, ChunkVisibility visibility)
+    {
+        visibilities.put(coords, visibility);
+    }
+
+    /**
+     * Forgets the visibility of the chunk at given coords, once it has been unloaded
+     */
+    public void removeVisibility(ChunkCoord coords)
+    {
+        visibilities.remove(coords);
+    }
+
+    /**
+     * Returns the visibility of given chunk, or {@link ChunkVisibility#OPEN} if it has not been meshed yet
+     */
+    public ChunkVisibility getVisibility(Chunk chunk)
+    {
+        ChunkVisibility visibility = visibilities.get(chunk.getCoords());
+        return visibility == null ? ChunkVisibility.OPEN : visibility;
+    }
+
+    public void setOcclusionCulling(boolean occlusionCulling)
+    {
+        this.occlusionCulling = occlusionCulling;
+    }
+
+    public boolean isOcclusionCulling()
+    {
+        return occlusionCulling;
+    }
+
+    /**
+     * Adds to given list the loaded chunks to render for a camera in given chunk. Chunks are looked up up to {@code renderDistance} chunks
+     * away on each axis, and never below y = 0
+     */
+    public void getVisibleChunks(World world, int cameraX, int cameraY, int cameraZ, int renderDistance, Frustum frustum, List<Chunk> result)
+    {
+        if(!occlusionCulling)
+        {
+            for(int x = -renderDistance; x < renderDistance; x++ )
+            {
+                for(int y = -renderDistance; y < renderDistance; y++ )
+                {
+                    for(int z = -renderDistance; z < renderDistance; z++ )
+                    {
+                        int cx = cameraX + x;
+                        int cy = cameraY + y;
+                        int cz = cameraZ + z;
+                        if(cy < 0 || !isInFrustum(frustum, cx, cy, cz))
+                            continue;
+                        Chunk c = world.getChunkProvider().get(world, cx, cy, cz);
+                        if(c != null)
+                            result.add(c);
+                    }
+                }
+            }
+            return;
+        }
+        prepare(renderDistance);
+        int start = cellIndex(renderDistance, renderDistance, renderDistance);
+        visitedStamps[start] = stamp;
+        entrySides[start] = -1;
+        directions[start] = 0;
+        queue[0] = start;
+        int head = 0;
+        int tail = 1;
+        while(head < tail)
+        {
+            int cell = queue[head++ ];
+            int x = cell / (size * size);
+            int y = cell / size % size;
+            int z = cell % size;
+            int cx = cameraX + x - renderDistance;
+            int cy = cameraY + y - renderDistance;
+            int cz = cameraZ + z - renderDistance;
+            if(cy < 0)
+                continue;
+            ChunkVisibility visibility = ChunkVisibility.OPEN;
+            Chunk c = world.getChunkProvider().get(world, cx, cy, cz);
+            if(c != null)
+            {
+                result.add(c);
+                visibility = getVisibility(c);
+            }
+            int entry = entrySides[cell];
+            for(int side = 0; side < 6; side++ )
+            {
+                EnumSide out = SIDES[side];
+                // Never walk back towards the camera
+                if((directions[cell] & 1 << out.opposite().ordinal()) != 0)
+                    continue;
+                if(entry >= 0 && !visibility.isConnected(entry, side))
+                    continue;
+                int nx = x + out.getTranslationX();
+                int ny = y + out.getTranslationY();
+                int nz = z + out.getTranslationZ();
+                if(nx < 0 || ny < 0 || nz < 0 || nx >= size || ny >= size || nz >= size)
+                    continue;
+                int next = cellIndex(nx, ny, nz);
+                if(visitedStamps[next] == stamp)
+                    continue;
+                visitedStamps[next] = stamp;
+                if(!isInFrustum(frustum, cx + out.getTranslationX(), cy + out.getTranslationY(), cz + out.getTranslationZ()))
+                    continue;
+                entrySides[next] = (byte) out.opposite().ordinal();
+                directions[next] = (byte) (directions[cell] | 1 << side);
+                queue[tail++ ] = next;
+            }
+        }
+    }
+
+    private boolean isInFrustum(Frustum frustum, int chunkX, int chunkY, int chunkZ)
+    {
+        return frustum.boxIn(chunkX * 16, chunkY * 16, chunkZ * 16, chunkX * 16 + 16, chunkY * 16 + 16, chunkZ * 16 + 16);
+    }
+
+    /**
+     * Sizes the working arrays for given render distance and starts a new walk
+     */
+    private void prepare(int renderDistance)
+    {
+        if(size != renderDistance * 2)
+        {
+            size = renderDistance * 2;
+            int volume = size * size * size;
+            queue = new int[volume];
+            visitedStamps = new int[volume];
+            entrySides = new byte[volume];
+            directions = new byte[volume];
+            stamp = 0;
+        }
+        stamp++ ;
+    }
+
+    private int cellIndex(int x, int y, int z)
+    {
+        return (x * size + y) * size + z;
+    }
+}
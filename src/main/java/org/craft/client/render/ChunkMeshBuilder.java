@@ -0,0 +1,335 @@
+package org.craft.client.render;
+
+import java.util.*;
+
+import org.craft.blocks.*;
+import org.craft.client.render.RenderBlocks.BlockRenderInfos;
+import org.craft.client.render.blocks.*;
+import org.craft.utils.*;
+import org.craft.world.*;
+
+/**
+ * Builds the meshes of a chunk, one per render pass, from a {@link RegionSnapshot} of the chunk and its neighbours. It neither reads the
+ * world nor calls OpenGL, so it can run on any thread, and meshes can be built and measured without an OpenGL context.<br/>
+ * The chunk and its border are first copied into a {@link PaddedChunkSnapshot}, which the renderers then read instead of the region. Full
+ * cubes, and the models of the normal pass which are plain cubes (see {@link AbstractBlockRenderer#getCubeIcons(IBlockAccess, Block, int, int, int)}),
+ * are merged by a {@link GreedyMesher}: their faces are culled with the opaque sides of their neighbours, cached per block id, so gathering
+ * them does not look up any chunk. Faces whose texture is only part of the atlas are merged only when the buffer has a tile rect (see
+ * {@link EnumVertexFormat#TILED}). Other blocks are drawn by their renderer. Blocks of the alpha pass are drawn from
+ * the farthest to the closest to the camera. A builder keeps its working arrays between builds and must only be used by one thread at a
+ * time.
+ */
+public class ChunkMeshBuilder
+{
+
+    private static final EnumSide[]                 SIDES = EnumSide.values();
+
+    private RenderEngine                            renderEngine;
+    private IBlockRendererProvider                  renderers;
+    private GreedyMesher                            greedyMesher;
+    private PaddedChunkSnapshot                     padded;
+    private int[]                                   sideOffsets;
+    private int[]                                   meshMaterials;
+    private byte[]                                  meshFaces;
+    private float[]                                 meshLights;
+    private ArrayList<TextureIcon>                  meshIcons;
+    private int[]                                   sideTextures;
+    private int                                     materialsCount;
+    private IdentityHashMap<TextureIcon[], Integer> modelMaterials;
+    private int[]                                   floodQueue;
+    private boolean[]                               floodVisited;
+    private ChunkVisibility                         visibility;
+
+    /**
+     * Renderers of the blocks met during the current build, by block id
+     */
+    private AbstractBlockRenderer[]                 blockRenderers;
+
+    /**
+     * Mesher materials of the full cubes met during the current build, by block id. 0 until resolved
+     */
+    private int[]                                   materials;
+
+    public ChunkMeshBuilder(RenderEngine renderEngine, IBlockRendererProvider renderers)
+    {
+        this.renderEngine = renderEngine;
+        this.renderers = renderers;
+        this.greedyMesher = new GreedyMesher();
+        this.padded = new PaddedChunkSnapshot();
+        sideOffsets = new int[6];
+        for(int side = 0; side < sideOffsets.length; side++ )
+            sideOffsets[side] = PaddedChunkSnapshot.getSideOffset(SIDES[side]);
+        meshMaterials = new int[PalettedBlockStorage.SIZE];
+        meshFaces = new byte[PalettedBlockStorage.SIZE];
+        meshLights = new float[PalettedBlockStorage.SIZE];
+        meshIcons = new ArrayList<TextureIcon>();
+        sideTextures = new int[6 * 16];
+        modelMaterials = new IdentityHashMap<TextureIcon[], Integer>();
+        floodQueue = new int[PalettedBlockStorage.SIZE];
+        floodVisited = new boolean[PalettedBlockStorage.SIZE];
+        visibility = ChunkVisibility.OPEN;
+        blockRenderers = new AbstractBlockRenderer[16];
+        materials = new int[16];
+    }
+
+    /**
+     * Clears given buffers, then fills them with the meshes of the center chunk of given region for the normal and the alpha passes, in the
+     * format of each buffer and relative to the corner of the chunk. The alpha pass is sorted for a camera at given coords. Both meshes are
+     * left empty if the center chunk was not loaded. The visibility of the chunk is then given by {@link #getVisibility()}
+     */
+    public void build(RegionSnapshot region, float cameraX, float cameraY, float cameraZ, MeshBuffer normal, MeshBuffer alpha)
+    {
+        normal.clear();
+        alpha.clear();
+        visibility = ChunkVisibility.OPEN;
+        if(region.getCenterSnapshot() == null)
+            return;
+        int baseX = region.getCenter().x * 16;
+        int baseY = region.getCenter().y * 16;
+        int baseZ = region.getCenter().z * 16;
+        normal.setOrigin(baseX, baseY, baseZ);
+        alpha.setOrigin(baseX, baseY, baseZ);
+        padded.fill(region);
+        visibility = ChunkVisibility.compute(padded, floodQueue, floodVisited);
+        // Renderers and icons may have been reloaded since the last build
+        Arrays.fill(blockRenderers, null);
+        Arrays.fill(materials, 0);
+        meshIcons.clear();
+        modelMaterials.clear();
+        materialsCount = 0;
+        int[] ids = padded.getBlockIDs();
+        int air = Blocks.air.getUniqueID();
+        boolean hasCubes = false;
+        ArrayList<BlockRenderInfos> alphaBlocks = null;
+        for(int x = 0; x < 16; x++ )
+        {
+            for(int y = 0; y < 16; y++ )
+            {
+                int cell = PaddedChunkSnapshot.index(x, y, 0);
+                for(int z = 0; z < 16; z++ , cell++ )
+                {
+                    int id = ids[cell];
+                    if(id == air)
+                        continue;
+                    Block b = Blocks.getByID(id);
+                    if(!b.shouldRender())
+                        continue;
+                    AbstractBlockRenderer renderer = getRenderer(id, b);
+                    if(renderer == null)
+                        continue;
+                    int fx = baseX + x;
+                    int fy = baseY + y;
+                    int fz = baseZ + z;
+                    if(renderer.shouldRenderInPass(EnumRenderPass.NORMAL, padded, b, fx, fy, fz))
+                    {
+                        // Cubes are merged into larger faces once the whole chunk has been visited
+                        int index = PalettedBlockStorage.index(x, y, z);
+                        TextureIcon[] cubeIcons;
+                        if(renderer instanceof FullCubeBlockRenderer)
+                        {
+                            meshMaterials[index] = getMaterial(id, (FullCubeBlockRenderer) renderer, b);
+                            meshFaces[index] = (byte) getVisibleFaces(b, ids, cell, fx, fy, fz);
+                            meshLights[index] = padded.getLightValue(cell);
+                            hasCubes = true;
+                        }
+                        else if((cubeIcons = renderer.getCubeIcons(padded, b, fx, fy, fz)) != null)
+                        {
+                            meshMaterials[index] = getModelMaterial(cubeIcons);
+                            meshFaces[index] = (byte) getVisibleModelFaces(ids, cell);
+                            meshLights[index] = padded.getLightValue(cell);
+                            hasCubes = true;
+                        }
+                        else
+                            renderer.render(renderEngine, normal, padded, b, fx, fy, fz);
+                    }
+                    if(renderer.shouldRenderInPass(EnumRenderPass.ALPHA, padded, b, fx, fy, fz))
+                    {
+                        if(alphaBlocks == null)
+                            alphaBlocks = new ArrayList<BlockRenderInfos>();
+                        BlockRenderInfos infos = new BlockRenderInfos();
+                        infos.block = b;
+                        infos.x = fx;
+                        infos.y = fy;
+                        infos.z = fz;
+                        alphaBlocks.add(infos);
+                    }
+                }
+            }
+        }
+        if(hasCubes)
+            renderCubes(normal, baseX, baseY, baseZ);
+        if(alphaBlocks != null)
+        {
+            Collections.sort(alphaBlocks, new BlockDistanceComparator(cameraX, cameraY, cameraZ));
+            for(BlockRenderInfos infos : alphaBlocks)
+                getRenderer(infos.block.getUniqueID(), infos.block).render(renderEngine, alpha, padded, infos.block, infos.x, infos.y, infos.z);
+        }
+    }
+
+    /**
+     * Returns the visibility of the chunk last given to {@link #build(RegionSnapshot, float, float, float, MeshBuffer, MeshBuffer)}
+     */
+    public ChunkVisibility getVisibility()
+    {
+        return visibility;
+    }
+
+    /**
+     * Returns the sides of the full cube in given cell which are not hidden by their neighbour, as bits in the order of
+     * {@link EnumSide#ordinal()}. Same result as {@link FullCubeBlockRenderer#getVisibleFaces(IBlockAccess, Block, int, int, int)}, where a
+     * face is hidden by a neighbour opaque on the same side
+     */
+    private int getVisibleFaces(Block block, int[] ids, int cell, int x, int y, int z)
+    {
+        int faces = 0;
+        for(int side = 0; side < sideOffsets.length; side++ )
+        {
+            if((PaddedChunkSnapshot.getOpaqueSides(ids[cell + sideOffsets[side]]) & 1 << side) == 0 && block.shouldSideBeRendered(padded, x, y, z, SIDES[side]))
+                faces |= 1 << side;
+        }
+        return faces;
+    }
+
+    /**
+     * Returns the sides of the model cube in given cell which are not hidden by their neighbour. Same result as
+     * {@link BlockModelRenderer#render(RenderEngine, MeshBuffer, IBlockAccess, Block, int, int, int)}, where a face is hidden by a neighbour
+     * opaque on the opposite side
+     */
+    private int getVisibleModelFaces(int[] ids, int cell)
+    {
+        int faces = 0;
+        for(int side = 0; side < sideOffsets.length; side++ )
+        {
+            if((PaddedChunkSnapshot.getOpaqueSides(ids[cell + sideOffsets[side]]) & 1 << SIDES[side].opposite().ordinal()) == 0)
+                faces |= 1 << side;
+        }
+        return faces;
+    }
+
+    private AbstractBlockRenderer getRenderer(int id, Block block)
+    {
+        if(id >= blockRenderers.length)
+        {
+            blockRenderers = Arrays.copyOf(blockRenderers, id + 1);
+            materials = Arrays.copyOf(materials, id + 1);
+        }
+        AbstractBlockRenderer renderer = blockRenderers[id];
+        if(renderer == null)
+        {
+            renderer = renderers.getRenderer(block);
+            blockRenderers[id] = renderer;
+        }
+        return renderer;
+    }
+
+    private int getMaterial(int id, FullCubeBlockRenderer renderer, Block block)
+    {
+        int material = materials[id];
+        if(material == 0)
+        {
+            TextureIcon icon = renderer.getIcon(renderEngine, block);
+            material = addMaterial(icon, icon, icon, icon, icon, icon);
+            materials[id] = material;
+        }
+        return material;
+    }
+
+    /**
+     * Returns the material of a model cube. Renderers return the same array for the same model, so materials are looked up by identity
+     */
+    private int getModelMaterial(TextureIcon[] icons)
+    {
+        Integer material = modelMaterials.get(icons);
+        if(material == null)
+        {
+            material = addMaterial(icons[0], icons[1], icons[2], icons[3], icons[4], icons[5]);
+            modelMaterials.put(icons, material);
+        }
+        return material;
+    }
+
+    /**
+     * Adds a material drawing each side, in the order of {@link EnumSide#ordinal()}, with given icons and returns it
+     */
+    private int addMaterial(TextureIcon north, TextureIcon south, TextureIcon east, TextureIcon west, TextureIcon top, TextureIcon bottom)
+    {
+        // Material 0 is never drawn
+        int material = ++materialsCount;
+        if((material + 1) * 6 > sideTextures.length)
+            sideTextures = Arrays.copyOf(sideTextures, sideTextures.length * 2);
+        sideTextures[material * 6 + EnumSide.NORTH.ordinal()] = getTexture(north);
+        sideTextures[material * 6 + EnumSide.SOUTH.ordinal()] = getTexture(south);
+        sideTextures[material * 6 + EnumSide.EAST.ordinal()] = getTexture(east);
+        sideTextures[material * 6 + EnumSide.WEST.ordinal()] = getTexture(west);
+        sideTextures[material * 6 + EnumSide.TOP.ordinal()] = getTexture(top);
+        sideTextures[material * 6 + EnumSide.BOTTOM.ordinal()] = getTexture(bottom);
+        return material;
+    }
+
+    /**
+     * Merges the faces of the cubes gathered for the chunk and adds them to given buffer
+     */
+    private void renderCubes(MeshBuffer buffer, int baseX, int baseY, int baseZ)
+    {
+        boolean tiled = buffer.getFormat().hasTileRect();
+        greedyMesher.build(meshMaterials, meshFaces, meshLights, sideTextures, meshIcons.toArray(new TextureIcon[meshIcons.size()]), tiled, baseX, baseY, baseZ);
+        float[] vertices = greedyMesher.getVertices();
+        for(int i = 0; i < greedyMesher.getVerticesCount(); i++ )
+        {
+            int j = i * GreedyMesher.VERTEX_SIZE;
+            float light = vertices[j + 5];
+            buffer.addVertex(vertices[j], vertices[j + 1], vertices[j + 2], vertices[j + 3], vertices[j + 4], light, light, light, vertices[j + 6], vertices[j + 7], vertices[j + 8], vertices[j + 9]);
+        }
+        int[] indices = greedyMesher.getIndices();
+        for(int i = 0; i < greedyMesher.getIndicesCount(); i++ )
+            buffer.addIndex(indices[i]);
+        buffer.setOffsetToEnd();
+        Arrays.fill(meshMaterials, 0);
+    }
+
+    /**
+     * Returns the index of given icon among the textures given to the mesher. Icons are compared by their texture coordinates, as texture
+     * maps may return a new icon on each call
+     */
+    private int getTexture(TextureIcon icon)
+    {
+        for(int texture = 0; texture < meshIcons.size(); texture++ )
+        {
+            TextureIcon other = meshIcons.get(texture);
+            if(other.getMinU() == icon.getMinU() && other.getMinV() == icon.getMinV() && other.getMaxU() == icon.getMaxU() && other.getMaxV() == icon.getMaxV())
+                return texture;
+        }
+        meshIcons.add(icon);
+        return meshIcons.size() - 1;
+    }
+
+    /**
+     * Sorts blocks from the farthest to the closest to a point
+     */
+    private static class BlockDistanceComparator implements Comparator<BlockRenderInfos>
+    {
+
+        private final float x;
+        private final float y;
+        private final float z;
+
+        BlockDistanceComparator(float x, float y, float z)
+        {
+            this.x = x;
+            this.y = y;
+            this.z = z;
+        }
+
+        @Override
+        public int compare(BlockRenderInfos a, BlockRenderInfos b)
+        {
+            float adx = a.x - x;
+            float ady = a.y - y;
+            float adz = a.z - z;
+            float bdx = b.x - x;
+            float bdy = b.y - y;
+            float bdz = b.z - z;
+            return Float.compare(bdx * bdx + bdy * bdy + bdz * bdz, adx * adx + ady * ady + adz * adz);
+        }
+    }
+}
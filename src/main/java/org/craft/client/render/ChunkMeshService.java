@@ -0,0 +1,336 @@
+package org.craft.client.render;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+import org.craft.utils.*;
+import org.craft.world.*;
+
+/**
+ * Builds chunk meshes on a pool of worker threads, so that rebuilding a chunk does not stall the render thread.<br/>
+ * Each request snapshots the chunk and its neighbours with a {@link RegionSnapshot} once a worker picks it up, then fills pooled
+ * {@link MeshBuffer}s with a {@link ChunkMeshBuilder}. Requests closest to the camera, as it was when they were made, are built first.
+ * Only the latest request for a chunk is kept: an older one is skipped by the workers or dropped once built, as is a request for a chunk
+ * which has been {@link #cancel(ChunkCoord) cancelled}.<br/>
+ * Built meshes are polled by the render thread, which uploads them to OpenGL and gives their buffers back with
+ * {@link #recycle(ChunkMesh)}.
+ */
+public class ChunkMeshService
+{
+
+    /**
+     * Highest number of unused mesh buffers kept for later builds
+     */
+    private static final int                        MAX_POOLED_BUFFERS = 64;
+
+    private RenderEngine                            renderEngine;
+    private IBlockRendererProvider                  renderers;
+    private int                                     threadsCount;
+    private ExecutorService                         executor;
+    private ConcurrentHashMap<ChunkCoord, MeshTask> latest;
+    private ConcurrentLinkedQueue<MeshTask>         built;
+    private ConcurrentLinkedQueue<MeshBuffer>       pool;
+    private AtomicInteger                           pooledCount;
+    private ThreadLocal<ChunkMeshBuilder>           builders;
+    private AtomicLong                              sequence;
+    private AtomicLong                              builtMeshes;
+    private AtomicLong                              staleMeshes;
+    private volatile EnumVertexFormat               vertexFormat;
+
+    public ChunkMeshService(RenderEngine renderEngine, IBlockRendererProvider renderers)
+    {
+        this(renderEngine, renderers, Math.max(1, Runtime.getRuntime().availableProcessors() - 1));
+    }
+
+    public ChunkMeshService(RenderEngine renderEngine, IBlockRendererProvider renderers, int threadsCount)
+    {
+        this.renderEngine = renderEngine;
+        this.renderers = renderers;
+        this.threadsCount = threadsCount;
+        latest = new ConcurrentHashMap<ChunkCoord, MeshTask>();
+        built = new ConcurrentLinkedQueue<MeshTask>();
+        pool = new ConcurrentLinkedQueue<MeshBuffer>();
+        pooledCount = new AtomicInteger();
+        builders = new ThreadLocal<ChunkMeshBuilder>();
+        sequence = new AtomicLong();
+        builtMeshes = new AtomicLong();
+        staleMeshes = new AtomicLong();
+        vertexFormat = EnumVertexFormat.COMPACT;
+    }
+
+    /**
+     * Requests the meshes of given chunk, for a camera at given coords. Replaces any request for the same chunk which has not been polled
+     * yet
+     */
+    public void submit(World world, Chunk chunk, float cameraX, float cameraY, float cameraZ)
+    {
+        ChunkCoord coords = chunk.getCoords();
+        float dx = coords.x * 16 + 8 - cameraX;
+        float dy = coords.y * 16 + 8 - cameraY;
+        float dz = coords.z * 16 + 8 - cameraZ;
+        MeshTask task = new MeshTask(world, coords, cameraX, cameraY, cameraZ, dx * dx + dy * dy + dz * dz, sequence.getAndIncrement());
+        latest.put(coords, task);
+        getExecutor().execute(task);
+    }
+
+    /**
+     * Returns true if the meshes of given chunk have been requested and not polled yet
+     */
+    public boolean isPending(ChunkCoord coords)
+    {
+        return latest.containsKey(coords);
+    }
+
+    /**
+     * Drops the pending request for given chunk, if any
+     */
+    public void cancel(ChunkCoord coords)
+    {
+        latest.remove(coords);
+    }
+
+    /**
+     * Returns the next built mesh which is still the latest request of its chunk, or null if there is none. Stale meshes are recycled on the
+     * way
+     */
+    public ChunkMesh poll()
+    {
+        MeshTask task;
+        while((task = built.poll()) != null)
+        {
+            if(latest.remove(task.coords, task))
+                return task.mesh;
+            staleMeshes.incrementAndGet();
+            recycle(task.mesh);
+        }
+        return null;
+    }
+
+    /**
+     * Gives the buffers of a polled mesh back to the pool, once they have been uploaded
+     */
+    public void recycle(ChunkMesh mesh)
+    {
+        recycle(mesh.normal);
+        recycle(mesh.alpha);
+    }
+
+    /**
+     * Stops the workers and drops every pending request
+     */
+    public void shutdown()
+    {
+        if(executor != null)
+            executor.shutdownNow();
+        executor = null;
+        latest.clear();
+        built.clear();
+    }
+
+    /**
+     * Sets the number of worker threads. Only taken into account if no mesh has been requested yet
+     */
+    public void setThreadsCount(int threadsCount)
+    {
+        this.threadsCount = threadsCount;
+    }
+
+    public int getThreadsCount()
+    {
+        return threadsCount;
+    }
+
+    /**
+     * Sets the format of the vertices of the meshes built from now on, {@link EnumVertexFormat#COMPACT} by default. Formats with a tile rect
+     * let cubes of any texture be merged into larger faces. The compact format has one in 24 bytes per vertex, where
+     * {@link EnumVertexFormat#TILED} takes 48 and {@link EnumVertexFormat#FLOATS}, without tile rect, 32
+     */
+    public void setVertexFormat(EnumVertexFormat vertexFormat)
+    {
+        this.vertexFormat = vertexFormat;
+    }
+
+    public EnumVertexFormat getVertexFormat()
+    {
+        return vertexFormat;
+    }
+
+    /**
+     * Returns the number of requests which have not been polled yet
+     */
+    public int getPendingCount()
+    {
+        return latest.size();
+    }
+
+    /**
+     * Returns the number of meshes built by the workers
+     */
+    public long getBuiltMeshesCount()
+    {
+        return builtMeshes.get();
+    }
+
+    /**
+     * Returns the number of requests skipped or dropped because a newer request had been made for their chunk
+     */
+    public long getStaleMeshesCount()
+    {
+        return staleMeshes.get();
+    }
+
+    private MeshBuffer obtainBuffer()
+    {
+        MeshBuffer buffer = pool.poll();
+        if(buffer == null)
+            return new MeshBuffer(vertexFormat);
+        pooledCount.decrementAndGet();
+        buffer.setFormat(vertexFormat);
+        return buffer;
+    }
+
+    private void recycle(MeshBuffer buffer)
+    {
+        if(buffer == null || pooledCount.incrementAndGet() > MAX_POOLED_BUFFERS)
+        {
+            pooledCount.decrementAndGet();
+            return;
+        }
+        buffer.clear();
+        pool.add(buffer);
+    }
+
+    private ChunkMeshBuilder getBuilder()
+    {
+        ChunkMeshBuilder builder = builders.get();
+        if(builder == null)
+        {
+            builder = new ChunkMeshBuilder(renderEngine, renderers);
+            builders.set(builder);
+        }
+        return builder;
+    }
+
+    private ExecutorService getExecutor()
+    {
+        if(executor == null)
+        {
+            executor = new ThreadPoolExecutor(threadsCount, threadsCount, 0L, TimeUnit.MILLISECONDS, new PriorityBlockingQueue<Runnable>(), new ThreadFactory()
+            {
+                private int count;
+
+                @Override
+                public Thread newThread(Runnable r)
+                {
+                    Thread thread = new Thread(r, "Chunk mesh builder #" + (count++ ));
+                    thread.setDaemon(true);
+                    thread.setPriority(Thread.NORM_PRIORITY - 1);
+                    return thread;
+                }
+            });
+        }
+        return executor;
+    }
+
+    /**
+     * Meshes of a chunk for the normal and the alpha passes
+     */
+    public static class ChunkMesh
+    {
+
+        private final ChunkCoord coords;
+        private MeshBuffer       normal;
+        private MeshBuffer       alpha;
+        private ChunkVisibility  visibility;
+
+        ChunkMesh(ChunkCoord coords)
+        {
+            this.coords = coords;
+            this.visibility = ChunkVisibility.OPEN;
+        }
+
+        public ChunkCoord getCoords()
+        {
+            return coords;
+        }
+
+        /**
+         * Returns which faces of the chunk can be seen from which others, as it was when it was meshed
+         */
+        public ChunkVisibility getVisibility()
+        {
+            return visibility;
+        }
+
+        /**
+         * Returns the mesh of given pass
+         */
+        public MeshBuffer getBuffer(EnumRenderPass pass)
+        {
+            return pass == EnumRenderPass.ALPHA ? alpha : normal;
+        }
+    }
+
+    /**
+     * Request for the meshes of a chunk. Closest requests come first, then oldest ones
+     */
+    private class MeshTask implements Runnable, Comparable<MeshTask>
+    {
+
+        private final World      world;
+        private final ChunkCoord coords;
+        private final float      cameraX;
+        private final float      cameraY;
+        private final float      cameraZ;
+        private final float      distance;
+        private final long       order;
+        private final ChunkMesh  mesh;
+
+        MeshTask(World world, ChunkCoord coords, float cameraX, float cameraY, float cameraZ, float distance, long order)
+        {
+            this.world = world;
+            this.coords = coords;
+            this.cameraX = cameraX;
+            this.cameraY = cameraY;
+            this.cameraZ = cameraZ;
+            this.distance = distance;
+            this.order = order;
+            this.mesh = new ChunkMesh(coords);
+        }
+
+        @Override
+        public void run()
+        {
+            if(latest.get(coords) != this)
+            {
+                staleMeshes.incrementAndGet();
+                return;
+            }
+            mesh.normal = obtainBuffer();
+            mesh.alpha = obtainBuffer();
+            try
+            {
+                ChunkMeshBuilder builder = getBuilder();
+                builder.build(new RegionSnapshot(world, coords), cameraX, cameraY, cameraZ, mesh.normal, mesh.alpha);
+                mesh.visibility = builder.getVisibility();
+                builtMeshes.incrementAndGet();
+            }
+            catch(Throwable t)
+            {
+                // The chunk is left without mesh until it changes again
+                Log.error("Failed to build mesh of chunk " + coords.x + ", " + coords.y + ", " + coords.z + ": " + t.getMessage());
+                mesh.normal.clear();
+                mesh.alpha.clear();
+            }
+            built.add(this);
+        }
+
+        @Override
+        public int compareTo(MeshTask other)
+        {
+            if(distance != other.distance)
+                return distance < other.distance ? -1 : 1;
+            return order < other.order ? -1 : (order == other.order ? 0 : 1);
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package org.craft.client.render;
+
+import org.craft.utils.*;
+import org.craft.world.*;
+
+/**
+ * Which faces of a chunk can be seen from which other faces through the chunk. Two faces are connected if a path of blocks which are not
+ * opaque on every side joins them inside the chunk. Computed when the chunk is meshed, and used by {@link ChunkCuller} to skip chunks
+ * hidden behind solid ground.<br/>
+ * Connections are stored as the bits of a long, bit {@code from * 6 + to} for faces in the order of {@link EnumSide#ordinal()}.
+ */
+public class ChunkVisibility
+{
+
+    /**
+     * Every face connected to every other face
+     */
+    public static final long            ALL_CONNECTED = (1L << 36) - 1L;
+
+    /**
+     * Visibility of the chunks which have not been meshed yet, through which everything can be seen
+     */
+    public static final ChunkVisibility OPEN          = new ChunkVisibility(ALL_CONNECTED);
+
+    /**
+     * Bits of the blocks which are opaque on every side
+     */
+    private static final int            ALL_SIDES     = 0x3F;
+
+    private final long                  connections;
+
+    public ChunkVisibility(long connections)
+    {
+        this.connections = connections;
+    }
+
+    /**
+     * Returns true if face {@code to} can be seen from face {@code from}, both given by their {@link EnumSide#ordinal()}
+     */
+    public boolean isConnected(int from, int to)
+    {
+        return (connections & 1L << from * 6 + to) != 0;
+    }
+
+    public boolean isConnected(EnumSide from, EnumSide to)
+    {
+        return isConnected(from.ordinal(), to.ordinal());
+    }
+
+    public long getConnections()
+    {
+        return connections;
+    }
+
+    /**
+     * Flood fills the blocks of the chunk held by given snapshot which are not opaque on every side, and connects the faces each filled area
+     * touches. Given arrays are working space and must hold at least 4096 values
+     */
+    public static ChunkVisibility compute(PaddedChunkSnapshot padded, int[] queue, boolean[] visited)
+    {
+        int[] ids = padded.getBlockIDs();
+        long connections = 0L;
+        for(int i = 0; i < PalettedBlockStorage.SIZE; i++ )
+            visited[i] = false;
+        for(int start = 0; start < PalettedBlockStorage.SIZE && connections != ALL_CONNECTED; start++ )
+        {
+            if(visited[start] || isOpaque(ids, start))
+                continue;
+            visited[start] = true;
+            queue[0] = start;
+            int head = 0;
+            int tail = 1;
+            int faces = 0;
+            while(head < tail)
+            {
+                int index = queue[head++ ];
+                int x = index >> 8;
+                int y = index >> 4 & 15;
+                int z = index & 15;
+                if(x == 0)
+                    faces |= 1 << EnumSide.WEST.ordinal();
+                else
+                    tail = visit(ids, index - 256, queue, tail, visited);
+                if(x == 15)
+                    faces |= 1 << EnumSide.EAST.ordinal();
+                else
+                    tail = visit(ids, index + 256, queue, tail, visited);
+                if(y == 0)
+                    faces |= 1 << EnumSide.BOTTOM.ordinal();
+                else
+                    tail = visit(ids, index - 16, queue, tail, visited);
+                if(y == 15)
+                    faces |= 1 << EnumSide.TOP.ordinal();
+                else
+                    tail = visit(ids, index + 16, queue, tail, visited);
+                if(z == 0)
+                    faces |= 1 << EnumSide.NORTH.ordinal();
+                else
+                    tail = visit(ids, index - 1, queue, tail, visited);
+                if(z == 15)
+                    faces |= 1 << EnumSide.SOUTH.ordinal();
+                else
+                    tail = visit(ids, index + 1, queue, tail, visited);
+            }
+            for(int from = 0; from < 6; from++ )
+            {
+                if((faces & 1 << from) != 0)
+                    connections |= (long) faces << from * 6;
+            }
+        }
+        if(connections == ALL_CONNECTED)
+            return OPEN;
+        return new ChunkVisibility(connections);
+    }
+
+    /**
+     * Queues the block at given index if it has not been visited yet and is not opaque, and returns the new end of the queue
+     */
+    private static int visit(int[] ids, int index, int[] queue, int tail, boolean[] visited)
+    {
+        if(visited[index] || isOpaque(ids, index))
+            return tail;
+        visited[index] = true;
+        queue[tail] = index;
+        return tail + 1;
+    }
+
+    /**
+     * Returns true if the block at given index of the chunk, as given by {@link PalettedBlockStorage#index(int, int, int)}, is opaque on
+     * every side
+     */
+    private static boolean isOpaque(int[] ids, int index)
+    {
+        int id = ids[PaddedChunkSnapshot.index(index >> 8, index >> 4 & 15, index & 15)];
+        return PaddedChunkSnapshot.getOpaqueSides(id) == ALL_SIDES;
+    }
+}
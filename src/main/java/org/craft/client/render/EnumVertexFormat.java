@@ -0,0 +1,160 @@
+package org.craft.client.render;
+
+import static org.lwjgl.opengl.GL11.*;
+import static org.lwjgl.opengl.GL30.*;
+
+/**
+ * Layouts of the vertices written by a {@link MeshBuffer} and read by {@link RenderEngine#renderBuffer(OpenGLBuffer, int)}
+ */
+public enum EnumVertexFormat
+{
+    /**
+     * Layout of {@link Vertex}: 3 floats for the position, 2 floats for the texture coordinates and 3 floats for the color. 32 bytes per
+     * vertex
+     */
+    FLOATS(Vertex.SIZE_IN_FLOATS * 4, GL_FLOAT, 1f, GL_FLOAT, 12, GL_FLOAT, false, 20, GL_FLOAT, false, -1),
+
+    /**
+     * Layout of {@link #FLOATS} followed by 4 floats for the tile rect: the min U and V coordinates and the size of the texture the
+     * coordinates repeat, see {@link MeshBuffer#addVertex(float, float, float, float, float, float, float, float, float, float, float, float)}.
+     * 48 bytes per vertex
+     */
+    TILED(48, GL_FLOAT, 1f, GL_FLOAT, 12, GL_FLOAT, false, 20, GL_FLOAT, false, 32),
+
+    /**
+     * 3 shorts for the position relative to the origin of the mesh, in 1/{@link #COMPACT_POSITION_SCALE} of a block, then 2 bytes of padding,
+     * 2 half floats for the texture coordinates, 4 normalized bytes for the color, alpha last, and 4 normalized shorts for the tile rect. 24
+     * bytes per vertex.<br/>
+     * Positions must be within 127 blocks of the origin. Texture coordinates are half floats rather than normalized shorts so that they can
+     * go past 1, which merged faces rely on to repeat their texture
+     */
+    COMPACT(24, GL_SHORT, 1f / EnumVertexFormat.COMPACT_POSITION_SCALE, GL_HALF_FLOAT, 8, GL_UNSIGNED_BYTE, true, 12, GL_SHORT, true, 16);
+
+    /**
+     * Number of steps per block of the positions of the compact format
+     */
+    public static final int COMPACT_POSITION_SCALE = 256;
+
+    private int             sizeInBytes;
+    private int             positionType;
+    private float           positionScale;
+    private int             texCoordsType;
+    private int             texCoordsOffset;
+    private int             colorType;
+    private boolean         colorNormalized;
+    private int             colorOffset;
+    private int             tileRectType;
+    private boolean         tileRectNormalized;
+    private int             tileRectOffset;
+
+    private EnumVertexFormat(int sizeInBytes, int positionType, float positionScale, int texCoordsType, int texCoordsOffset, int colorType, boolean colorNormalized, int colorOffset, int tileRectType, boolean tileRectNormalized, int tileRectOffset)
+    {
+        this.sizeInBytes = sizeInBytes;
+        this.positionType = positionType;
+        this.positionScale = positionScale;
+        this.texCoordsType = texCoordsType;
+        this.texCoordsOffset = texCoordsOffset;
+        this.colorType = colorType;
+        this.colorNormalized = colorNormalized;
+        this.colorOffset = colorOffset;
+        this.tileRectType = tileRectType;
+        this.tileRectNormalized = tileRectNormalized;
+        this.tileRectOffset = tileRectOffset;
+    }
+
+    /**
+     * Returns the size of one vertex, in bytes
+     */
+    public int getSizeInBytes()
+    {
+        return sizeInBytes;
+    }
+
+    /**
+     * Returns the OpenGL type of the components of the position, which is always at the start of the vertex
+     */
+    public int getPositionType()
+    {
+        return positionType;
+    }
+
+    /**
+     * Returns the size of one step of the position, in blocks
+     */
+    public float getPositionScale()
+    {
+        return positionScale;
+    }
+
+    /**
+     * Returns the OpenGL type of the components of the texture coordinates
+     */
+    public int getTexCoordsType()
+    {
+        return texCoordsType;
+    }
+
+    /**
+     * Returns the offset of the texture coordinates in the vertex, in bytes
+     */
+    public int getTexCoordsOffset()
+    {
+        return texCoordsOffset;
+    }
+
+    /**
+     * Returns the OpenGL type of the components of the color
+     */
+    public int getColorType()
+    {
+        return colorType;
+    }
+
+    /**
+     * Returns true if the components of the color are integers mapped to [0;1]
+     */
+    public boolean isColorNormalized()
+    {
+        return colorNormalized;
+    }
+
+    /**
+     * Returns the offset of the color in the vertex, in bytes
+     */
+    public int getColorOffset()
+    {
+        return colorOffset;
+    }
+
+    /**
+     * Returns true if vertices of this format carry a tile rect, which lets merged faces repeat a texture of an atlas
+     */
+    public boolean hasTileRect()
+    {
+        return tileRectOffset >= 0;
+    }
+
+    /**
+     * Returns the OpenGL type of the components of the tile rect
+     */
+    public int getTileRectType()
+    {
+        return tileRectType;
+    }
+
+    /**
+     * Returns true if the components of the tile rect are integers mapped to [-1;1]
+     */
+    public boolean isTileRectNormalized()
+    {
+        return tileRectNormalized;
+    }
+
+    /**
+     * Returns the offset of the tile rect in the vertex, in bytes, or -1 if this format has none
+     */
+    public int getTileRectOffset()
+    {
+        return tileRectOffset;
+    }
+}
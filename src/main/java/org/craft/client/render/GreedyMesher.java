@@ -0,0 +1,314 @@
+package org.craft.client.render;
+
+import java.util.*;
+
+import org.craft.utils.*;
+
+/**
+ * Builds the mesh of the full cubes of a chunk, merging the visible faces which lie in the same plane and have the same texture and light
+ * into rectangles as large as possible.<br/>
+ * Cells are given as arrays of 16x16x16 values indexed by {@code x << 8 | y << 4 | z}: the material of each cell (0 when there is no cube
+ * to mesh), the visible sides of the cube as bits in the order of {@link EnumSide#ordinal()}, and its light. Each material draws each side
+ * with one of the textures. A merged face repeats its texture once per block:
+ * <ul>
+ * <li>when tiled, its texture coordinates are given in blocks and each vertex carries the rect of the texture in the atlas, which the shader
+ * wraps the coordinates into (see {@link EnumVertexFormat#TILED});</li>
+ * <li>otherwise, it goes past the texture coordinates, which relies on the texture wrapping, so only faces whose texture covers its whole
+ * image are merged and the other ones are emitted one per block.</li>
+ * </ul>
+ * Faces are laid out as {@link org.craft.client.render.blocks.FullCubeBlockRenderer} lays them out, in world coordinates, into arrays of
+ * {@link #VERTEX_SIZE} floats per vertex and of indices, so meshes can be built without an OpenGL context.
+ */
+public class GreedyMesher
+{
+
+    /**
+     * Number of floats per vertex: 3 for the position, 2 for the texture coordinates, 1 for the light and 4 for the tile rect (min U and V,
+     * then size), which is empty when the mesh is not tiled
+     */
+    public static final int      VERTEX_SIZE = 10;
+
+    /**
+     * For each side: the axis it faces (0 for x, 1 for y, 2 for z), the axis along the U texture coordinate, the axis along the V texture
+     * coordinate, and 1 if the face is on the far side of the cell
+     */
+    private static final int[][] SIDE_AXES =
+    {
+            {
+                    2, 0, 1, 0
+            },
+            {
+                    2, 0, 1, 1
+            },
+            {
+                    0, 2, 1, 1
+            },
+            {
+                    0, 2, 1, 0
+            },
+            {
+                    1, 0, 2, 1
+            },
+            {
+                    1, 0, 2, 0
+            }
+    };
+
+    private int[]                sideTextures;
+    private TextureIcon[]        textures;
+    private boolean              tiled;
+    private float[]              vertices;
+    private int                  verticesCount;
+    private int[]                indices;
+    private int                  indicesCount;
+    private int                  quadsCount;
+    private int[]                maskMaterials;
+    private float[]              maskLights;
+    private int[]                position;
+    private float[]              start;
+    private float[]              size;
+
+    /**
+     * Tile rect of the quad being added, all 0 when the mesh is not tiled
+     */
+    private float[]              tile;
+
+    public GreedyMesher()
+    {
+        vertices = new float[VERTEX_SIZE * 4 * 64];
+        indices = new int[6 * 64];
+        maskMaterials = new int[256];
+        maskLights = new float[256];
+        position = new int[3];
+        start = new float[3];
+        size = new float[3];
+        tile = new float[4];
+    }
+
+    /**
+     * Builds the mesh of given cells, cell (0, 0, 0) being at given world coordinates, and returns the number of quads. The side of a cube of
+     * material {@code m} is drawn with texture {@code textures[sideTextures[m * 6 + side]]}. Material 0 is never drawn. Faces of different
+     * textures are never merged, textures being compared by index
+     */
+    public int build(int[] materials, byte[] faces, float[] lights, int[] sideTextures, TextureIcon[] textures, boolean tiled, int baseX, int baseY, int baseZ)
+    {
+        this.sideTextures = sideTextures;
+        this.textures = textures;
+        this.tiled = tiled;
+        verticesCount = 0;
+        indicesCount = 0;
+        quadsCount = 0;
+        for(int side = 0; side < SIDE_AXES.length; side++ )
+            buildSide(side, materials, faces, lights, baseX, baseY, baseZ);
+        this.textures = null;
+        return quadsCount;
+    }
+
+    /**
+     * Returns the vertices of the last mesh, {@link #VERTEX_SIZE} floats each. The array may be longer than the mesh
+     */
+    public float[] getVertices()
+    {
+        return vertices;
+    }
+
+    public int getVerticesCount()
+    {
+        return verticesCount;
+    }
+
+    /**
+     * Returns the indices of the last mesh, six per quad. The array may be longer than the mesh
+     */
+    public int[] getIndices()
+    {
+        return indices;
+    }
+
+    public int getIndicesCount()
+    {
+        return indicesCount;
+    }
+
+    public int getQuadsCount()
+    {
+        return quadsCount;
+    }
+
+    /**
+     * Returns true if faces drawn with given icon can be merged without tile rect, that is if the icon covers its whole texture
+     */
+    public static boolean canRepeat(TextureIcon icon)
+    {
+        return icon.getMinU() == 0f && icon.getMinV() == 0f && icon.getMaxU() == 1f && icon.getMaxV() == 1f;
+    }
+
+    private void buildSide(int side, int[] materials, byte[] faces, float[] lights, int baseX, int baseY, int baseZ)
+    {
+        int[] axes = SIDE_AXES[side];
+        int bit = 1 << side;
+        for(int layer = 0; layer < 16; layer++ )
+        {
+            // Gathers the visible faces of the layer, indexed by v << 4 | u
+            int visible = 0;
+            position[axes[0]] = layer;
+            for(int v = 0; v < 16; v++ )
+            {
+                position[axes[2]] = v;
+                for(int u = 0; u < 16; u++ )
+                {
+                    position[axes[1]] = u;
+                    int index = position[0] << 8 | position[1] << 4 | position[2];
+                    int material = (faces[index] & bit) != 0 ? materials[index] : 0;
+                    // The mask holds texture indices plus one, so that 0 still means no face
+                    if(material != 0)
+                        material = sideTextures[material * 6 + side] + 1;
+                    maskMaterials[v << 4 | u] = material;
+                    if(material != 0)
+                    {
+                        maskLights[v << 4 | u] = lights[index];
+                        visible++ ;
+                    }
+                }
+            }
+            if(visible == 0)
+                continue;
+            for(int v = 0; v < 16; v++ )
+            {
+                for(int u = 0; u < 16;)
+                {
+                    int material = maskMaterials[v << 4 | u];
+                    if(material == 0)
+                    {
+                        u++ ;
+                        continue;
+                    }
+                    float light = maskLights[v << 4 | u];
+                    TextureIcon icon = textures[material - 1];
+                    int width = 1;
+                    int height = 1;
+                    if(tiled || canRepeat(icon))
+                    {
+                        while(u + width < 16 && matches(v << 4 | (u + width), material, light))
+                            width++ ;
+                        while(v + height < 16 && rowMatches(v + height, u, width, material, light))
+                            height++ ;
+                    }
+                    for(int dv = 0; dv < height; dv++ )
+                        Arrays.fill(maskMaterials, ((v + dv) << 4) + u, ((v + dv) << 4) + u + width, 0);
+                    addQuad(side, layer, u, v, width, height, icon, light, baseX, baseY, baseZ);
+                    u += width;
+                }
+            }
+        }
+    }
+
+    private boolean matches(int maskIndex, int material, float light)
+    {
+        return maskMaterials[maskIndex] == material && maskLights[maskIndex] == light;
+    }
+
+    private boolean rowMatches(int v, int u, int width, int material, float light)
+    {
+        for(int i = 0; i < width; i++ )
+        {
+            if(!matches(v << 4 | (u + i), material, light))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Adds a face of {@code width} by {@code height} blocks, with the vertex order and texture coordinates of the faces drawn by
+     * {@link org.craft.client.render.blocks.AbstractBlockRenderer}
+     */
+    private void addQuad(int side, int layer, int u, int v, int width, int height, TextureIcon icon, float light, int baseX, int baseY, int baseZ)
+    {
+        int[] axes = SIDE_AXES[side];
+        size[axes[0]] = 0;
+        start[axes[0]] = layer + axes[3];
+        start[axes[1]] = u;
+        start[axes[2]] = v;
+        size[axes[1]] = width;
+        size[axes[2]] = height;
+        float x = baseX + start[0];
+        float y = baseY + start[1];
+        float z = baseZ + start[2];
+        float sizeX = size[0];
+        float sizeY = size[1];
+        float sizeZ = size[2];
+
+        float minU;
+        float minV;
+        float maxU;
+        float maxV;
+        if(tiled)
+        {
+            // Coordinates in blocks, wrapped into the texture by the shader
+            minU = 0;
+            minV = 0;
+            maxU = width;
+            maxV = height;
+            tile[0] = icon.getMinU();
+            tile[1] = icon.getMinV();
+            tile[2] = icon.getMaxU() - icon.getMinU();
+            tile[3] = icon.getMaxV() - icon.getMinV();
+        }
+        else
+        {
+            minU = icon.getMinU();
+            minV = icon.getMinV();
+            maxU = minU + (icon.getMaxU() - minU) * width;
+            maxV = minV + (icon.getMaxV() - minV) * height;
+        }
+
+        ensureCapacity();
+        int first = verticesCount;
+        if(axes[0] == 1)
+        {
+            // Top and bottom faces are flipped
+            addVertex(x, y + sizeY, z, minU, minV, light);
+            addVertex(x, y, z + sizeZ, minU, maxV, light);
+            addVertex(x + sizeX, y + sizeY, z + sizeZ, maxU, maxV, light);
+            addVertex(x + sizeX, y, z, maxU, minV, light);
+        }
+        else
+        {
+            addVertex(x, y, z, minU, maxV, light);
+            addVertex(x, y + sizeY, z, minU, minV, light);
+            addVertex(x + sizeX, y + sizeY, z + sizeZ, maxU, minV, light);
+            addVertex(x + sizeX, y, z + sizeZ, maxU, maxV, light);
+        }
+        indices[indicesCount++ ] = first;
+        indices[indicesCount++ ] = first + 1;
+        indices[indicesCount++ ] = first + 2;
+        indices[indicesCount++ ] = first + 2;
+        indices[indicesCount++ ] = first + 3;
+        indices[indicesCount++ ] = first;
+        quadsCount++ ;
+    }
+
+    private void addVertex(float x, float y, float z, float u, float v, float light)
+    {
+        int i = verticesCount * VERTEX_SIZE;
+        vertices[i] = x;
+        vertices[i + 1] = y;
+        vertices[i + 2] = z;
+        vertices[i + 3] = u;
+        vertices[i + 4] = v;
+        vertices[i + 5] = light;
+        vertices[i + 6] = tile[0];
+        vertices[i + 7] = tile[1];
+        vertices[i + 8] = tile[2];
+        vertices[i + 9] = tile[3];
+        verticesCount++ ;
+    }
+
+    private void ensureCapacity()
+    {
+        if((verticesCount + 4) * VERTEX_SIZE > vertices.length)
+            vertices = Arrays.copyOf(vertices, vertices.length * 2);
+        if(indicesCount + 6 > indices.length)
+            indices = Arrays.copyOf(indices, indices.length * 2);
+    }
+}
@@ -0,0 +1,13 @@
+package org.craft.client.render;
+
+import org.craft.blocks.*;
+import org.craft.client.render.blocks.*;
+
+public interface IBlockRendererProvider
+{
+
+    /**
+     * Returns the renderer drawing given block, or null if it has none. Called by the threads building chunk meshes
+     */
+    public AbstractBlockRenderer getRenderer(Block block);
+}
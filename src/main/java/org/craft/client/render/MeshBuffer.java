@@ -0,0 +1,318 @@
+package org.craft.client.render;
+
+import java.nio.*;
+
+/**
+ * Vertices and indices of a mesh, written straight into direct buffers in the layout of an {@link EnumVertexFormat} so that they can be
+ * given to OpenGL as they are, in one copy. Unlike {@link OpenGLBuffer}, it does not need an OpenGL context, so meshes can be built on any
+ * thread and uploaded later with {@link OpenGLBuffer#upload(MeshBuffer, int)}.<br/>
+ * Positions are written relative to an origin, near which the compact format is precise. Indices are relative to an offset, as in
+ * {@link OffsettedOpenGLBuffer}. They are written as shorts until one of them does not fit, then all of them are widened to ints. The
+ * buffers grow as needed and are kept by {@link #clear()}, so a mesh buffer is meant to be reused.
+ */
+public class MeshBuffer
+{
+
+    /**
+     * Highest index which can be written as an unsigned short
+     */
+    private static final int MAX_SHORT_INDEX = 0xFFFF;
+
+    private EnumVertexFormat format;
+    private ByteBuffer       vertices;
+    private ByteBuffer       indices;
+    private boolean          intIndices;
+    private int              offset;
+    private int              max;
+    private float            originX;
+    private float            originY;
+    private float            originZ;
+
+    public MeshBuffer()
+    {
+        this(EnumVertexFormat.FLOATS);
+    }
+
+    public MeshBuffer(EnumVertexFormat format)
+    {
+        this(format, 1024);
+    }
+
+    /**
+     * Creates a mesh buffer with room for given number of quads
+     */
+    public MeshBuffer(EnumVertexFormat format, int quads)
+    {
+        this.format = format;
+        vertices = createBuffer(quads * 4 * format.getSizeInBytes());
+        indices = createBuffer(quads * 6 * 2);
+    }
+
+    /**
+     * Adds a vertex at the end of the vertices
+     */
+    public void addVertex(float x, float y, float z, float u, float v, float r, float g, float b)
+    {
+        addVertex(x, y, z, u, v, r, g, b, 0, 0, 0, 0);
+    }
+
+    /**
+     * Adds a vertex at the end of the vertices, whose texture coordinates repeat the texture of given tile rect: the shader maps them to
+     * {@code tileMin + fract(coords) * tileSize}, so that a merged face can repeat a texture of an atlas. A tile rect of size 0 leaves the
+     * coordinates as they are. The tile rect is dropped if the format has none
+     */
+    public void addVertex(float x, float y, float z, float u, float v, float r, float g, float b, float tileMinU, float tileMinV, float tileSizeU, float tileSizeV)
+    {
+        if(vertices.remaining() < format.getSizeInBytes())
+            vertices = grow(vertices);
+        if(format == EnumVertexFormat.COMPACT)
+        {
+            vertices.putShort(toFixed(x - originX)).putShort(toFixed(y - originY)).putShort(toFixed(z - originZ)).putShort((short) 0);
+            vertices.putShort(toHalf(u)).putShort(toHalf(v));
+            vertices.put(toUnsignedByte(r)).put(toUnsignedByte(g)).put(toUnsignedByte(b)).put((byte) 0xFF);
+            vertices.putShort(toNormalizedShort(tileMinU)).putShort(toNormalizedShort(tileMinV)).putShort(toNormalizedShort(tileSizeU)).putShort(toNormalizedShort(tileSizeV));
+        }
+        else
+        {
+            vertices.putFloat(x - originX).putFloat(y - originY).putFloat(z - originZ).putFloat(u).putFloat(v).putFloat(r).putFloat(g).putFloat(b);
+            if(format == EnumVertexFormat.TILED)
+                vertices.putFloat(tileMinU).putFloat(tileMinV).putFloat(tileSizeU).putFloat(tileSizeV);
+        }
+    }
+
+    /**
+     * Adds a copy of given vertex at the end of the vertices, then disposes it
+     */
+    public void addVertex(Vertex vertex)
+    {
+        addVertex(vertex.getPos().getX(), vertex.getPos().getY(), vertex.getPos().getZ(), vertex.getTexCoords().getX(), vertex.getTexCoords().getY(), vertex.getColor().getX(), vertex.getColor().getY(), vertex.getColor().getZ());
+        vertex.dispose();
+    }
+
+    /**
+     * Adds an index, relative to the current offset
+     */
+    public void addIndex(int index)
+    {
+        int value = offset + index;
+        if(!intIndices && value > MAX_SHORT_INDEX)
+            widenIndices();
+        if(indices.remaining() < 4)
+            indices = grow(indices);
+        if(intIndices)
+            indices.putInt(value);
+        else
+            indices.putShort((short) value);
+        if(index > max)
+            max = index;
+    }
+
+    /**
+     * Sets current offset at the end of the indices list
+     */
+    public void setOffsetToEnd()
+    {
+        offset += max + 1;
+        max = 0;
+    }
+
+    /**
+     * Sets the point the positions are written relative to, which {@link RenderEngine#renderBuffer(OpenGLBuffer, int)} adds back. Must be
+     * called before adding vertices
+     */
+    public void setOrigin(float x, float y, float z)
+    {
+        originX = x;
+        originY = y;
+        originZ = z;
+    }
+
+    public float getOriginX()
+    {
+        return originX;
+    }
+
+    public float getOriginY()
+    {
+        return originY;
+    }
+
+    public float getOriginZ()
+    {
+        return originZ;
+    }
+
+    public EnumVertexFormat getFormat()
+    {
+        return format;
+    }
+
+    /**
+     * Sets the format of the next vertices. Clears the buffer if it changes
+     */
+    public void setFormat(EnumVertexFormat format)
+    {
+        if(this.format != format)
+        {
+            clear();
+            this.format = format;
+        }
+    }
+
+    /**
+     * Returns the number of vertices added since the last clear
+     */
+    public int getVerticesCount()
+    {
+        return vertices.position() / format.getSizeInBytes();
+    }
+
+    /**
+     * Returns the number of indices added since the last clear
+     */
+    public int getIndicesCount()
+    {
+        return indices.position() / getIndexSize();
+    }
+
+    /**
+     * Returns the size of one index in bytes: 2 while all indices fit in an unsigned short, 4 otherwise
+     */
+    public int getIndexSize()
+    {
+        return intIndices ? 4 : 2;
+    }
+
+    /**
+     * Returns a view of the vertices added since the last clear, from position 0 to the last byte
+     */
+    public ByteBuffer getVertexData()
+    {
+        ByteBuffer data = vertices.duplicate().order(ByteOrder.nativeOrder());
+        data.flip();
+        return data;
+    }
+
+    /**
+     * Returns a view of the indices added since the last clear, from position 0 to the last byte
+     */
+    public ByteBuffer getIndexData()
+    {
+        ByteBuffer data = indices.duplicate().order(ByteOrder.nativeOrder());
+        data.flip();
+        return data;
+    }
+
+    /**
+     * Returns the size in bytes of the direct buffers held by this mesh buffer
+     */
+    public int getCapacityInBytes()
+    {
+        return vertices.capacity() + indices.capacity();
+    }
+
+    /**
+     * Removes all vertices and indices and resets the offset, the origin and the index size. The buffers are kept
+     */
+    public void clear()
+    {
+        clearVertices();
+        clearIndices();
+        originX = 0;
+        originY = 0;
+        originZ = 0;
+    }
+
+    /**
+     * Removes all vertices. The indices are kept
+     */
+    public void clearVertices()
+    {
+        vertices.clear();
+    }
+
+    /**
+     * Removes all indices and resets the offset and the index size. The vertices are kept
+     */
+    public void clearIndices()
+    {
+        indices.clear();
+        intIndices = false;
+        offset = 0;
+        max = 0;
+    }
+
+    /**
+     * Rewrites the indices added so far as ints
+     */
+    private void widenIndices()
+    {
+        ByteBuffer shorts = getIndexData();
+        ByteBuffer ints = createBuffer(Math.max(indices.capacity() * 2, 4));
+        while(shorts.hasRemaining())
+            ints.putInt(shorts.getShort() & 0xFFFF);
+        indices = ints;
+        intIndices = true;
+    }
+
+    private static short toFixed(float value)
+    {
+        return (short) Math.round(value * EnumVertexFormat.COMPACT_POSITION_SCALE);
+    }
+
+    private static byte toUnsignedByte(float value)
+    {
+        if(value <= 0f)
+            return 0;
+        if(value >= 1f)
+            return (byte) 0xFF;
+        return (byte) (value * 255f + 0.5f);
+    }
+
+    /**
+     * Maps given value, between -1 and 1, to a short which OpenGL maps back to [-1;1]
+     */
+    private static short toNormalizedShort(float value)
+    {
+        if(value <= -1f)
+            return -Short.MAX_VALUE;
+        if(value >= 1f)
+            return Short.MAX_VALUE;
+        return (short) Math.round(value * Short.MAX_VALUE);
+    }
+
+    /**
+     * Converts given float to the bits of the closest half float, rounding ties to even
+     */
+    private static short toHalf(float value)
+    {
+        int bits = Float.floatToIntBits(value);
+        int sign = bits >>> 16 & 0x8000;
+        int abs = bits & 0x7FFFFFFF;
+        // At least 65520, which rounds past the highest half float, or infinity or NaN
+        if(abs >= 0x477FF000)
+            return (short) (sign | (abs > 0x7F800000 ? 0x7E00 : 0x7C00));
+        // Normal half float: rebias the exponent from 127 to 15 and round the mantissa from 23 to 10 bits
+        if(abs >= 0x38800000)
+            return (short) (sign | (abs - 0x38000000 + 0xFFF + (abs >>> 13 & 1)) >>> 13);
+        // Subnormal half float, or zero
+        if(abs < 0x33000000)
+            return (short) sign;
+        int shift = 126 - (abs >>> 23);
+        int mantissa = abs & 0x7FFFFF | 0x800000;
+        return (short) (sign | (mantissa + (1 << shift - 1) - 1 + (mantissa >>> shift & 1)) >>> shift);
+    }
+
+    private static ByteBuffer grow(ByteBuffer buffer)
+    {
+        ByteBuffer bigger = createBuffer(buffer.capacity() * 2);
+        buffer.flip();
+        bigger.put(buffer);
+        return bigger;
+    }
+
+    private static ByteBuffer createBuffer(int size)
+    {
+        return ByteBuffer.allocateDirect(Math.max(size, 64)).order(ByteOrder.nativeOrder());
+    }
+}
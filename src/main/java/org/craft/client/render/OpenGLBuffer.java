@@ -1,24 +1,29 @@
 package org.craft.client.render;
 
+import static org.lwjgl.opengl.GL11.*;
 import static org.lwjgl.opengl.GL15.*;
-import gnu.trove.*;
 
-import java.nio.*;
 import java.util.*;
 
 import org.craft.maths.*;
-import org.lwjgl.*;
-import org.lwjgl.opengl.*;
 
+/**
+ * Vertex and index buffers in OpenGL. Vertices and indices are added to a {@link MeshBuffer} in the layout of {@link Vertex}, then sent to
+ * OpenGL in one copy by {@link #upload()}. Meshes built elsewhere, in any {@link EnumVertexFormat}, are sent with
+ * {@link #upload(MeshBuffer, int)}.
+ */
 public class OpenGLBuffer
 {
 
-    private int               vboID;
-    private int               iboID;
-    private ArrayList<Vertex> vertices = new ArrayList<Vertex>();
-    private TIntArrayList     indices  = new TIntArrayList();
-    private int               indicesLength;
-    private int               verticesLength;
+    private int              vboID;
+    private int              iboID;
+    private MeshBuffer       data;
+    private int              indicesLength;
+    private int              indexType;
+    private EnumVertexFormat format;
+    private float            originX;
+    private float            originY;
+    private float            originZ;
 
     /**
      * Creates an empty OpenGLBuffer instance
@@ -27,6 +32,9 @@ public class OpenGLBuffer
     {
         vboID = glGenBuffers();
         iboID = glGenBuffers();
+        data = new MeshBuffer(EnumVertexFormat.FLOATS, 16);
+        indexType = GL_UNSIGNED_SHORT;
+        format = EnumVertexFormat.FLOATS;
     }
 
     /**
@@ -40,42 +48,35 @@ public class OpenGLBuffer
     }
 
     /**
-     * Uploads data to OpenGL
+     * Uploads data to OpenGL, as data rewritten every few frames
      */
     public void upload()
+    {
+        upload(data, GL_DYNAMIC_DRAW);
+    }
+
+    /**
+     * Uploads the vertices and indices of given mesh to OpenGL, in one copy each. The mesh is left untouched.<br/>
+     * {@code usage} is the usage hint given to OpenGL: GL_STATIC_DRAW for meshes drawn many times before being replaced, such as chunk
+     * meshes, GL_DYNAMIC_DRAW for data rewritten every few frames
+     */
+    public void upload(MeshBuffer mesh, int usage)
     {
         glBindBuffer(GL_ARRAY_BUFFER, vboID);
-        FloatBuffer verticesBuffer = BufferUtils.createFloatBuffer(verticesLength * Vertex.SIZE_IN_FLOATS);
-        for(int i = 0; i < verticesLength; i++ )
-        {
-            Vertex vertex = vertices.get(i);
-            verticesBuffer.put(vertex.getPos().getX());
-            verticesBuffer.put(vertex.getPos().getY());
-            verticesBuffer.put(vertex.getPos().getZ());
-
-            verticesBuffer.put(vertex.getTexCoords().getX());
-            verticesBuffer.put(vertex.getTexCoords().getY());
-
-            verticesBuffer.put(vertex.getColor().getX());
-            verticesBuffer.put(vertex.getColor().getY());
-            verticesBuffer.put(vertex.getColor().getZ());
-        }
-        verticesBuffer.flip();
-        GL15.glBufferData(GL_ARRAY_BUFFER, verticesBuffer, GL_DYNAMIC_DRAW);
+        glBufferData(GL_ARRAY_BUFFER, mesh.getVertexData(), usage);
 
         glBindBuffer(GL_ELEMENT_ARRAY_BUFFER, iboID);
-        indicesLength = indices.size();
-        IntBuffer indicesBuffer = BufferUtils.createIntBuffer(indicesLength);
-        for(int i = 0; i < indicesLength; i++ )
-        {
-            int indice = indices.get(i);
-            indicesBuffer.put(indice);
-        }
-        indicesBuffer.flip();
-        glBufferData(GL_ELEMENT_ARRAY_BUFFER, indicesBuffer, GL_DYNAMIC_DRAW);
+        glBufferData(GL_ELEMENT_ARRAY_BUFFER, mesh.getIndexData(), usage);
 
         glBindBuffer(GL_ARRAY_BUFFER, 0);
         glBindBuffer(GL_ELEMENT_ARRAY_BUFFER, 0);
+
+        indicesLength = mesh.getIndicesCount();
+        indexType = mesh.getIndexSize() == 2 ? GL_UNSIGNED_SHORT : GL_UNSIGNED_INT;
+        format = mesh.getFormat();
+        originX = mesh.getOriginX();
+        originY = mesh.getOriginY();
+        originZ = mesh.getOriginZ();
     }
 
     /**
@@ -83,7 +84,7 @@ public class OpenGLBuffer
      */
     public void setIndices(List<Integer> newIndices)
     {
-        indices.clear();
+        data.clearIndices();
         for(int index : newIndices)
             addIndex(index);
     }
@@ -97,34 +98,30 @@ public class OpenGLBuffer
     }
 
     /**
-     * Clears old vertices plus dispose them if disposePrevious is true and add all vertices from given list
+     * Clears old vertices and add all vertices from given list. Vertices are copied and disposed when added, so there is nothing left to
+     * dispose, whatever disposePrevious is
      */
     public void setVertices(List<Vertex> newVertices, boolean disposePrevious)
     {
-        if(disposePrevious)
-            clearAndDisposeVertices();
-        else
-        {
-            verticesLength = 0;
-        }
+        data.clearVertices();
         for(Vertex v : newVertices)
             addVertex(v);
     }
 
     /**
-     * Adds a new vertex at the end of vertices' list
+     * Adds a copy of given vertex at the end of vertices' list, then disposes it
      */
     public void addVertex(Vertex v)
     {
-        if(vertices.size() <= verticesLength)
-        {
-            vertices.add(v);
-        }
-        else
-        {
-            vertices.set(verticesLength, v);
-        }
-        verticesLength++ ;
+        data.addVertex(v);
+    }
+
+    /**
+     * Adds a new vertex at the end of vertices' list
+     */
+    public void addVertex(float x, float y, float z, float u, float v, float r, float g, float b)
+    {
+        data.addVertex(x, y, z, u, v, r, g, b);
     }
 
     /**
@@ -132,7 +129,7 @@ public class OpenGLBuffer
      */
     public void addIndex(int i)
     {
-        indices.add(i);
+        data.addIndex(i);
     }
 
     /**
@@ -152,11 +149,45 @@ public class OpenGLBuffer
     }
 
     /**
-     * Gets indices list size
+     * Gets the number of indices uploaded to OpenGL
      */
     public int getIndicesCount()
     {
-        return indices.size();
+        return indicesLength;
+    }
+
+    /**
+     * Returns the OpenGL type of the indices uploaded to OpenGL
+     */
+    public int getIndexType()
+    {
+        return indexType;
+    }
+
+    /**
+     * Returns the layout of the vertices uploaded to OpenGL
+     */
+    public EnumVertexFormat getFormat()
+    {
+        return format;
+    }
+
+    /**
+     * Returns the point the positions uploaded to OpenGL are relative to, if they are in the compact format
+     */
+    public float getOriginX()
+    {
+        return originX;
+    }
+
+    public float getOriginY()
+    {
+        return originY;
+    }
+
+    public float getOriginZ()
+    {
+        return originZ;
     }
 
     /**
@@ -164,7 +195,6 @@ public class OpenGLBuffer
      */
     public void clear()
     {
-        indices.clear();
         clearAndDisposeVertices();
         upload();
     }
@@ -180,23 +210,18 @@ public class OpenGLBuffer
     }
 
     /**
-     * Disposes and clear vertices list.<br/>
+     * Clears vertices and indices lists, whose data is already in OpenGL once uploaded.<br/>
      * Usage: Buffers than require to be uploaded only one time and rendered multiple times.
      */
     public void clearAndDisposeVertices()
     {
-        verticesLength = 0;
-        for(Vertex v : vertices)
-        {
-            v.dispose();
-        }
+        data.clear();
     }
 
     public void setToCube()
     {
         // TODO: Finish
         clearAndDisposeVertices();
-        indices.clear();
         int index = 0;
         addVertex(Vertex.get(Vector3.get(0, 0, 0), Vector2.get(0, 0)));
         addVertex(Vertex.get(Vector3.get(1, 0, 0), Vector2.get(1, 0)));
@@ -237,20 +262,4 @@ public class OpenGLBuffer
         upload();
         clearAndDisposeVertices();
     }
-
-    /**
-     * Gets vertex at given index
-     */
-    public Vertex getVertex(int vertexIndex)
-    {
-        return vertices.get(vertexIndex);
-    }
-
-    /**
-     * Gets index at given index
-     */
-    public int getIndex(int indexIndex)
-    {
-        return indices.get(indexIndex);
-    }
 }
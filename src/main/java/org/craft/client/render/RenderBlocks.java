@@ -1,20 +1,23 @@
 package org.craft.client.render;
 
 import static org.lwjgl.opengl.GL11.*;
+import static org.lwjgl.opengl.GL15.*;
 
 import java.util.*;
+import java.util.concurrent.*;
 
 import com.google.common.collect.*;
 
 import org.craft.blocks.*;
 import org.craft.client.*;
 import org.craft.client.models.*;
+import org.craft.client.render.ChunkMeshService.ChunkMesh;
 import org.craft.client.render.blocks.*;
 import org.craft.resources.*;
 import org.craft.utils.*;
 import org.craft.world.*;
 
-public class RenderBlocks
+public class RenderBlocks implements IChunkUnloadListener, IBlockRendererProvider
 {
 
     public static class BlockRenderInfos
@@ -25,21 +28,24 @@ public class RenderBlocks
         public int   z;
     }
 
-    private HashMap<ChunkCoord, OffsettedOpenGLBuffer> chunkBuffersPass0;
-    private HashMap<ChunkCoord, OffsettedOpenGLBuffer> chunkBuffersPass1;
-    private RenderEngine                               renderEngine;
-    private HashMap<Block, AbstractBlockRenderer>      renderers;
-    private Comparator<Chunk>                          chunkComparator;
-    private Comparator<BlockRenderInfos>               blockComparator;
-    private ModelLoader                                modelLoader;
-    private FullCubeBlockRenderer                      fallbackRenderer;
-    private TextureMap                                 blockMap;
-    public static ResourceLocation                     blockMapLoc;
+    private HashMap<ChunkCoord, OpenGLBuffer>     chunkBuffersPass0;
+    private HashMap<ChunkCoord, OpenGLBuffer>     chunkBuffersPass1;
+    private RenderEngine                          renderEngine;
+    private HashMap<Block, AbstractBlockRenderer> renderers;
+    private Comparator<Chunk>                     chunkComparator;
+    private ModelLoader                           modelLoader;
+    private FullCubeBlockRenderer                 fallbackRenderer;
+    private TextureMap                            blockMap;
+    private ChunkMeshService                      meshService;
+    private ChunkCuller                           chunkCuller;
+    private int                                   maxUploadsPerFrame;
+    private ConcurrentLinkedQueue<ChunkCoord>     unloadedChunks;
+    public static ResourceLocation                blockMapLoc;
 
     /**
      * Creates a new block map
      */
-    public void createBlockMap(RenderEngine engine)
+    public synchronized void createBlockMap(RenderEngine engine)
     {
         blockMap = new TextureMap(OurCraft.getOurCraft().getAssetsLoader(), new ResourceLocation("ourcraft/textures", "blocks"), true);
         renderers.clear();
@@ -62,10 +68,14 @@ public class RenderBlocks
     public RenderBlocks(RenderEngine engine, ModelLoader modelLoader, ResourceLocation resourceLocation)
     {
         this.renderEngine = engine;
-        chunkBuffersPass0 = new HashMap<ChunkCoord, OffsettedOpenGLBuffer>();
-        chunkBuffersPass1 = new HashMap<ChunkCoord, OffsettedOpenGLBuffer>();
+        chunkBuffersPass0 = new HashMap<ChunkCoord, OpenGLBuffer>();
+        chunkBuffersPass1 = new HashMap<ChunkCoord, OpenGLBuffer>();
         this.modelLoader = modelLoader;
         this.fallbackRenderer = new FullCubeBlockRenderer();
+        this.meshService = new ChunkMeshService(engine, this);
+        this.chunkCuller = new ChunkCuller();
+        this.maxUploadsPerFrame = 8;
+        this.unloadedChunks = new ConcurrentLinkedQueue<ChunkCoord>();
         renderers = Maps.newHashMap();
         createBlockMap(engine);
     }
@@ -73,15 +83,16 @@ public class RenderBlocks
     /**
      * Registers a block renderer for given block
      */
-    public void registerBlockRenderer(Block block, AbstractBlockRenderer renderer)
+    public synchronized void registerBlockRenderer(Block block, AbstractBlockRenderer renderer)
     {
         renderers.put(block, renderer);
     }
 
     /**
-     * Gets renderer for given block
+     * Gets renderer for given block. Called by the threads building chunk meshes
      */
-    public AbstractBlockRenderer getRenderer(Block block)
+    @Override
+    public synchronized AbstractBlockRenderer getRenderer(Block block)
     {
         if(renderers.containsKey(block))
         {
@@ -110,28 +121,107 @@ public class RenderBlocks
     }
 
     /**
-     * Clears the buffer and setup required informations in order to start rendering
+     * Returns the service building the chunk meshes
      */
-    public void startRendering(OffsettedOpenGLBuffer buffer)
+    public ChunkMeshService getMeshService()
     {
-        buffer.setOffset(0);
-        buffer.clear();
+        return meshService;
     }
 
     /**
-     * Uploads buffer data to OpenGL
+     * Returns the culler finding the chunks to render, which is given the visibility of each chunk once meshed
      */
-    public void flush(OpenGLBuffer buffer)
+    public ChunkCuller getChunkCuller()
     {
-        buffer.upload();
-        buffer.clearAndDisposeVertices();
+        return chunkCuller;
     }
 
     /**
-     * Renders visible chunks from World instance 'w'
+     * Sets the maximum number of chunk meshes uploaded to OpenGL per frame
+     */
+    public void setMaxUploadsPerFrame(int maxUploadsPerFrame)
+    {
+        this.maxUploadsPerFrame = maxUploadsPerFrame;
+    }
+
+    public int getMaxUploadsPerFrame()
+    {
+        return maxUploadsPerFrame;
+    }
+
+    /**
+     * Stops the threads building chunk meshes
+     */
+    public void shutdown()
+    {
+        meshService.shutdown();
+    }
+
+    /**
+     * Uploads up to {@link #getMaxUploadsPerFrame()} meshes built by the mesh service to the buffers of their chunk
+     */
+    private void uploadBuiltMeshes()
+    {
+        ChunkMesh mesh;
+        for(int i = 0; i < maxUploadsPerFrame && (mesh = meshService.poll()) != null; i++ )
+        {
+            upload(chunkBuffersPass0, mesh.getCoords(), mesh.getBuffer(EnumRenderPass.NORMAL));
+            upload(chunkBuffersPass1, mesh.getCoords(), mesh.getBuffer(EnumRenderPass.ALPHA));
+            chunkCuller.setVisibility(mesh.getCoords(), mesh.getVisibility());
+            meshService.recycle(mesh);
+        }
+    }
+
+    /**
+     * Queues the release of the resources of given chunk, which is done on the render thread
+     */
+    @Override
+    public void onChunkUnloaded(World world, Chunk chunk)
+    {
+        unloadedChunks.add(chunk.getCoords());
+    }
+
+    /**
+     * Drops the pending mesh requests, the buffers and the visibility of the chunks unloaded since the last frame
+     */
+    private void releaseUnloadedChunks()
+    {
+        ChunkCoord coords;
+        while((coords = unloadedChunks.poll()) != null)
+        {
+            meshService.cancel(coords);
+            release(chunkBuffersPass0, coords);
+            release(chunkBuffersPass1, coords);
+            chunkCuller.removeVisibility(coords);
+        }
+    }
+
+    private void release(HashMap<ChunkCoord, OpenGLBuffer> map, ChunkCoord coords)
+    {
+        OpenGLBuffer buffer = map.remove(coords);
+        if(buffer != null)
+            buffer.dispose();
+    }
+
+    private void upload(HashMap<ChunkCoord, OpenGLBuffer> map, ChunkCoord coords, MeshBuffer mesh)
+    {
+        OpenGLBuffer buffer = map.get(coords);
+        if(buffer == null)
+        {
+            buffer = new OpenGLBuffer();
+            map.put(coords, buffer);
+        }
+        // Chunk meshes are drawn every frame and only replaced when the chunk changes
+        buffer.upload(mesh, GL_STATIC_DRAW);
+    }
+
+    /**
+     * Renders visible chunks from World instance 'w'.<br/>
+     * Chunks which changed are sent to the mesh service, and are drawn with their previous mesh until the new one has been uploaded
      */
     public void render(World w, List<Chunk> visiblesChunks)
     {
+        releaseUnloadedChunks();
         if(visiblesChunks.size() != 0)
         {
             if(chunkComparator == null)
@@ -154,9 +244,24 @@ public class RenderBlocks
                     }
                 };
             Collections.sort(visiblesChunks, chunkComparator);
+            float cameraX = renderEngine.getRenderViewEntity().posX;
+            float cameraY = renderEngine.getRenderViewEntity().posY;
+            float cameraZ = renderEngine.getRenderViewEntity().posZ;
+            for(Chunk c : visiblesChunks)
+            {
+                // The flag is cleared before the worker snapshots the chunk, so a change made in between requests a new mesh
+                if(c.isDirty() || (!chunkBuffersPass0.containsKey(c.getCoords()) && !meshService.isPending(c.getCoords())))
+                {
+                    c.cleanUpDirtiness();
+                    meshService.submit(w, c, cameraX, cameraY, cameraZ);
+                }
+            }
+            uploadBuiltMeshes();
+            renderEngine.bindLocation(blockMapLoc);
             for(int passId = 0; passId < 2; passId++ )
             {
                 EnumRenderPass currentPass = EnumRenderPass.fromID(passId);
+                HashMap<ChunkCoord, OpenGLBuffer> map = currentPass == EnumRenderPass.ALPHA ? chunkBuffersPass1 : chunkBuffersPass0;
                 if(currentPass == EnumRenderPass.ALPHA)
                 {
                     glDepthMask(false);
@@ -164,108 +269,9 @@ public class RenderBlocks
                 }
                 for(Chunk c : visiblesChunks)
                 {
-                    OffsettedOpenGLBuffer buffer = null;
-                    HashMap<ChunkCoord, OffsettedOpenGLBuffer> map = null;
-                    if(currentPass == EnumRenderPass.NORMAL)
-                    {
-                        map = chunkBuffersPass0;
-                    }
-                    else if(currentPass == EnumRenderPass.ALPHA)
-                    {
-                        map = chunkBuffersPass1;
-                    }
-                    buffer = map.get(c.getCoords());
-                    if(buffer == null)
-                    {
-                        map.put(c.getCoords(), new OffsettedOpenGLBuffer());
-                        buffer = map.get(c.getCoords());
-                    }
-                    if(c.isDirty() || buffer == null)
-                    {
-                        startRendering(buffer);
-                        if(currentPass == EnumRenderPass.NORMAL)
-                        {
-                            for(int x = 0; x < 16; x++ )
-                            {
-                                for(int y = 0; y < 16; y++ )
-                                {
-                                    for(int z = 0; z < 16; z++ )
-                                    {
-                                        Block b = c.getBlock(w, x + c.getCoords().x * 16, y + c.getCoords().y * 16, z + c.getCoords().z * 16);
-                                        if(b != null && b.shouldRender())
-                                        {
-                                            AbstractBlockRenderer renderer = getRenderer(b);
-                                            int fx = x + c.getCoords().x * 16;
-                                            int fy = y + c.getCoords().y * 16;
-                                            int fz = z + c.getCoords().z * 16;
-                                            if(renderer != null && renderer.shouldRenderInPass(currentPass, w, b, fx, fy, fz))
-                                                renderer.render(renderEngine, buffer, w, b, fx, fy, fz);
-                                        }
-                                    }
-                                }
-                            }
-                        }
-                        else
-                        {
-                            ArrayList<BlockRenderInfos> infosList = new ArrayList<RenderBlocks.BlockRenderInfos>();
-                            for(int x = 0; x < 16; x++ )
-                            {
-                                for(int y = 0; y < 16; y++ )
-                                {
-                                    for(int z = 0; z < 16; z++ )
-                                    {
-                                        Block b = c.getBlock(w, x + c.getCoords().x * 16, y + c.getCoords().y * 16, z + c.getCoords().z * 16);
-                                        if(b != null && b.shouldRender())
-                                        {
-                                            AbstractBlockRenderer renderer = getRenderer(b);
-                                            int fx = x + c.getCoords().x * 16;
-                                            int fy = y + c.getCoords().y * 16;
-                                            int fz = z + c.getCoords().z * 16;
-                                            if(renderer != null && renderer.shouldRenderInPass(currentPass, w, b, fx, fy, fz))
-                                            {
-                                                BlockRenderInfos infos = new BlockRenderInfos();
-                                                infos.block = b;
-                                                infos.x = x + c.getCoords().x * 16;
-                                                infos.y = y + c.getCoords().y * 16;
-                                                infos.z = z + c.getCoords().z * 16;
-                                                infosList.add(infos);
-                                            }
-                                        }
-                                    }
-                                }
-                            }
-                            if(blockComparator == null)
-                                blockComparator = new Comparator<BlockRenderInfos>()
-                                {
-
-                                    @Override
-                                    public int compare(BlockRenderInfos a, BlockRenderInfos b)
-                                    {
-                                        float adx = a.x - renderEngine.getRenderViewEntity().posX;
-                                        float ady = a.y - renderEngine.getRenderViewEntity().posY;
-                                        float adz = a.z - renderEngine.getRenderViewEntity().posZ;
-                                        float adist = (float) Math.sqrt(adx * adx + ady * ady + adz * adz);
-
-                                        float bdx = b.x - renderEngine.getRenderViewEntity().posX;
-                                        float bdy = b.y - renderEngine.getRenderViewEntity().posY;
-                                        float bdz = b.z - renderEngine.getRenderViewEntity().posZ;
-                                        float bdist = (float) Math.sqrt(bdx * bdx + bdy * bdy + bdz * bdz);
-                                        return Float.compare(bdist, adist);
-                                    }
-                                };
-                            Collections.sort(infosList, blockComparator);
-                            for(BlockRenderInfos infos : infosList)
-                            {
-                                getRenderer(infos.block).render(renderEngine, buffer, w, infos.block, infos.x, infos.y, infos.z);
-                            }
-                        }
-                        flush(buffer);
-
-                        if(currentPass == EnumRenderPass.ALPHA)
-                            c.cleanUpDirtiness();
-                    }
-                    renderEngine.bindLocation(blockMapLoc);
-                    renderEngine.renderBuffer(buffer);
+                    OpenGLBuffer buffer = map.get(c.getCoords());
+                    if(buffer != null)
+                        renderEngine.renderBuffer(buffer);
                 }
                 if(currentPass == EnumRenderPass.ALPHA)
                 {
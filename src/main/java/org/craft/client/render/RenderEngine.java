@@ -122,21 +122,45 @@ public class RenderEngine implements IDisposable
      */
     public void renderBuffer(OpenGLBuffer buffer, int mode)
     {
+        EnumVertexFormat format = buffer.getFormat();
+        Matrix4 meshMatrix = null;
+        if(format.getPositionScale() != 1f || buffer.getOriginX() != 0f || buffer.getOriginY() != 0f || buffer.getOriginZ() != 0f)
+        {
+            // Brings the positions of the buffer back to world space
+            Matrix4 toWorld = Matrix4.get().initScale(format.getPositionScale(), format.getPositionScale(), format.getPositionScale());
+            toWorld.set(0, 3, buffer.getOriginX());
+            toWorld.set(1, 3, buffer.getOriginY());
+            toWorld.set(2, 3, buffer.getOriginZ());
+            meshMatrix = modelMatrix.mul(toWorld);
+            toWorld.dispose();
+            currentShader.setUniform("modelview", meshMatrix);
+        }
+
         glEnableVertexAttribArray(0);
         glEnableVertexAttribArray(1);
         glEnableVertexAttribArray(2);
+        // Without tile rect, the attribute keeps its default value (0, 0, 0, 1), whose size of 0 leaves texture coordinates as they are
+        if(format.hasTileRect())
+            glEnableVertexAttribArray(3);
 
         glBindBuffer(GL_ARRAY_BUFFER, buffer.getVboID());
-        glVertexAttribPointer(0, 3, GL_FLOAT, false, Vertex.SIZE_IN_FLOATS * 4, 0);
-        glVertexAttribPointer(1, 2, GL_FLOAT, false, Vertex.SIZE_IN_FLOATS * 4, 12);
-        glVertexAttribPointer(2, 3, GL_FLOAT, false, Vertex.SIZE_IN_FLOATS * 4, 20);
+        glVertexAttribPointer(0, 3, format.getPositionType(), false, format.getSizeInBytes(), 0);
+        glVertexAttribPointer(1, 2, format.getTexCoordsType(), false, format.getSizeInBytes(), format.getTexCoordsOffset());
+        glVertexAttribPointer(2, 3, format.getColorType(), format.isColorNormalized(), format.getSizeInBytes(), format.getColorOffset());
+        if(format.hasTileRect())
+            glVertexAttribPointer(3, 4, format.getTileRectType(), format.isTileRectNormalized(), format.getSizeInBytes(), format.getTileRectOffset());
 
         glBindBuffer(GL_ELEMENT_ARRAY_BUFFER, buffer.getIboID());
-        glDrawElements(mode, buffer.getIndicesCount(), GL_UNSIGNED_INT, 0);
+        glDrawElements(mode, buffer.getIndicesCount(), buffer.getIndexType(), 0);
 
+        if(format.hasTileRect())
+            glDisableVertexAttribArray(3);
         glDisableVertexAttribArray(2);
         glDisableVertexAttribArray(1);
         glDisableVertexAttribArray(0);
+
+        if(meshMatrix != null)
+            currentShader.setUniform("modelview", modelMatrix);
     }
 
     /**
@@ -149,10 +173,10 @@ public class RenderEngine implements IDisposable
             if(translationMatrix == null)
                 translationMatrix = Matrix4.get();
             Quaternion camRot = renderViewEntity.getQuaternionRotation();
-            Vector3 camPos = Vector3.get(-renderViewEntity.posX - 0.5f, -renderViewEntity.posY - renderViewEntity.getEyeOffset(), -renderViewEntity.posZ - 0.5f);
-            frustum.update(fov, ratio, nearDist, farDist, camPos, camRot.getForward(), camRot.getUp());
-            camPos.dispose();
-            return projection.mul(camRot.conjugate().toRotationMatrix().mul(translationMatrix.initTranslation(-renderViewEntity.posX - 0.5f, -renderViewEntity.posY - renderViewEntity.getEyeOffset(), -renderViewEntity.posZ - 0.5f)));
+            Matrix4 projectedView = projection.mul(camRot.conjugate().toRotationMatrix().mul(translationMatrix.initTranslation(-renderViewEntity.posX - 0.5f, -renderViewEntity.posY - renderViewEntity.getEyeOffset(), -renderViewEntity.posZ - 0.5f)));
+            if(projection == projection3dMatrix)
+                frustum.update(projectedView);
+            return projectedView;
         }
         return projection;
     }
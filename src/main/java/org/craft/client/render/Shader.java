@@ -44,6 +44,12 @@ public class Shader implements IDisposable
         glAttachShader(program, vertexId);
         glAttachShader(program, fragmentId);
 
+        // Locations given to the attributes by RenderEngine#renderBuffer
+        glBindAttribLocation(program, 0, "pos");
+        glBindAttribLocation(program, 1, "texCoords");
+        glBindAttribLocation(program, 2, "vertexColor");
+        glBindAttribLocation(program, 3, "tileRect");
+
         glLinkProgram(program);
         if(glGetProgrami(program, GL_LINK_STATUS) == 0)
         {
@@ -110,13 +110,17 @@ public class Vertex extends AbstractReference implements IDisposable
     public static Vertex get(Vector3 pos, Vector2 texCoords, Vector3 color)
     {
         Vertex v = null;
-        if(unused.isEmpty())
+        synchronized(unused)
+        {
+            if(!unused.isEmpty())
+                v = unused.pop();
+        }
+        if(v == null)
         {
             v = new Vertex(pos, texCoords, color);
         }
         else
         {
-            v = unused.pop();
             v.pos = pos;
             v.texCoords = texCoords;
             v.color = color;
@@ -8,17 +8,17 @@ import org.craft.world.*;
 public abstract class AbstractBlockRenderer
 {
 
-    private static final TextureIcon NULLICON = new NullTextureIcon();
+    protected static final TextureIcon NULLICON = new NullTextureIcon();
 
     /**
      * Renders given block at given coords
      */
-    public abstract void render(RenderEngine engine, OffsettedOpenGLBuffer buffer, World w, Block b, int x, int y, int z);
+    public abstract void render(RenderEngine engine, MeshBuffer buffer, IBlockAccess w, Block b, int x, int y, int z);
 
     /**
      * Convinience method to render a face
      */
-    public void renderFace(OffsettedOpenGLBuffer buffer, World w, Block b, int x, int y, int z, TextureIcon icon, Vector3 startPos, Vector3 size)
+    public void renderFace(MeshBuffer buffer, IBlockAccess w, Block b, int x, int y, int z, TextureIcon icon, Vector3 startPos, Vector3 size)
     {
         renderFace(buffer, w, b, x, y, z, icon, startPos, size, false);
     }
@@ -26,7 +26,7 @@ public abstract class AbstractBlockRenderer
     /**
      * Convinience method to render a face
      */
-    public void renderFace(OffsettedOpenGLBuffer buffer, World w, Block b, int x, int y, int z, TextureIcon icon, Vector3 startPos, Vector3 size, boolean flipZ)
+    public void renderFace(MeshBuffer buffer, IBlockAccess w, Block b, int x, int y, int z, TextureIcon icon, Vector3 startPos, Vector3 size, boolean flipZ)
     {
         Vector2 maxUV = Vector2.get(1, 1);
         renderFace(buffer, w, b, x, y, z, icon, startPos, size, flipZ, Vector2.NULL, maxUV);
@@ -36,7 +36,7 @@ public abstract class AbstractBlockRenderer
     /**
      * Convinience method to render a face
      */
-    public void renderFace(OffsettedOpenGLBuffer buffer, World w, Block b, int x, int y, int z, TextureIcon icon, Vector3 startPos, Vector3 size, boolean flipZ, Vector2 minUV, Vector2 maxUV)
+    public void renderFace(MeshBuffer buffer, IBlockAccess w, Block b, int x, int y, int z, TextureIcon icon, Vector3 startPos, Vector3 size, boolean flipZ, Vector2 minUV, Vector2 maxUV)
     {
         renderFace(buffer, w, b, x, y, z, icon, startPos, size, flipZ, minUV, maxUV, Vector3.NULL, Quaternion.NULL);
     }
@@ -44,19 +44,16 @@ public abstract class AbstractBlockRenderer
     /**
      * Convinience method to render a face
      */
-    public void renderFace(OffsettedOpenGLBuffer buffer, World w, Block b, int x, int y, int z, TextureIcon icon, Vector3 startPos, Vector3 size, boolean flipV, Vector2 minUV, Vector2 maxUV, Vector3 rotationOrigin, Quaternion rotation)
+    public void renderFace(MeshBuffer buffer, IBlockAccess w, Block b, int x, int y, int z, TextureIcon icon, Vector3 startPos, Vector3 size, boolean flipV, Vector2 minUV, Vector2 maxUV, Vector3 rotationOrigin, Quaternion rotation)
     {
-        Chunk chunk = w.getChunk(x, y, z);
-        if(chunk == null)
-            return;
-        float lightValue = chunk.getLightValue(w, x, y, z);
+        float lightValue = w.getLightValue(x, y, z);
         renderFace(lightValue, buffer, w, b, x, y, z, icon, startPos, size, flipV, minUV, maxUV, rotationOrigin, rotation);
     }
 
     /**
      * Convinience method to render a face
      */
-    public void renderFace(float lightValue, OffsettedOpenGLBuffer buffer, World w, Block b, int x, int y, int z, TextureIcon icon, Vector3 startPos, Vector3 size, boolean flipV, Vector2 minUV, Vector2 maxUV, Vector3 rotationOrigin, Quaternion rotation)
+    public void renderFace(float lightValue, MeshBuffer buffer, IBlockAccess w, Block b, int x, int y, int z, TextureIcon icon, Vector3 startPos, Vector3 size, boolean flipV, Vector2 minUV, Vector2 maxUV, Vector3 rotationOrigin, Quaternion rotation)
     {
         renderFace(lightValue, buffer, w, b, x, y, z, icon, startPos, size, flipV, minUV, maxUV, rotationOrigin, rotation, false);
     }
@@ -64,15 +61,16 @@ public abstract class AbstractBlockRenderer
     /**
      * Convinience method to render a face
      */
-    public void renderFace(float lightValue, OffsettedOpenGLBuffer buffer, World w, Block b, int x, int y, int z, TextureIcon icon, Vector3 startPos, Vector3 size, boolean flipV, Vector2 minUV, Vector2 maxUV, Vector3 rotationOrigin, Quaternion rotation, boolean rescale)
+    public void renderFace(float lightValue, MeshBuffer buffer, IBlockAccess w, Block b, int x, int y, int z, TextureIcon icon, Vector3 startPos, Vector3 size, boolean flipV, Vector2 minUV, Vector2 maxUV, Vector3 rotationOrigin, Quaternion rotation, boolean rescale)
     {
-        float startX = startPos.getX();
-        float startY = startPos.getY();
-        float startZ = startPos.getZ();
+        renderFace(lightValue, buffer, w, b, x, y, z, icon, startPos.getX(), startPos.getY(), startPos.getZ(), size.getX(), size.getY(), size.getZ(), flipV, minUV, maxUV, rotationOrigin, rotation, rescale);
+    }
 
-        float width = size.getX();
-        float height = size.getY();
-        float depth = size.getZ();
+    /**
+     * Renders a face starting at given point with given size, one of which must be 0
+     */
+    public void renderFace(float lightValue, MeshBuffer buffer, IBlockAccess w, Block b, int x, int y, int z, TextureIcon icon, float startX, float startY, float startZ, float width, float height, float depth, boolean flipV, Vector2 minUV, Vector2 maxUV, Vector3 rotationOrigin, Quaternion rotation, boolean rescale)
+    {
         if(icon == null)
             icon = NULLICON;
         float deltaX = icon.getMaxU() - icon.getMinU();
@@ -177,8 +175,18 @@ public abstract class AbstractBlockRenderer
         buffer.setOffsetToEnd();
     }
 
+    /**
+     * Returns the icons of the six sides, in the order of {@link org.craft.utils.EnumSide#ordinal()}, if this renderer draws the block at
+     * given coords as a plain unit cube whose faces are each hidden by the neighbour on their side, so that the cube can be meshed with the
+     * full cubes of its chunk. Returns null otherwise, which is the default
+     */
+    public TextureIcon[] getCubeIcons(IBlockAccess w, Block b, int x, int y, int z)
+    {
+        return null;
+    }
+
     /**
      * Returns true if block should be rendered in given pass
      */
-    public abstract boolean shouldRenderInPass(EnumRenderPass pass, World w, Block b, int x, int y, int z);
+    public abstract boolean shouldRenderInPass(EnumRenderPass pass, IBlockAccess w, Block b, int x, int y, int z);
 }
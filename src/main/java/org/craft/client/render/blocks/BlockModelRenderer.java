@@ -16,9 +16,15 @@ import org.craft.world.*;
 public class BlockModelRenderer extends AbstractBlockRenderer
 {
 
+    private static final TextureIcon[]                          NOT_A_CUBE = new TextureIcon[0];
+
     private HashMap<BlockVariant, HashMap<String, TextureIcon>> icons;
     private List<BlockVariant>                                  blockVariants;
-    private static Quaternion                                   rotationQuaternion;
+
+    /**
+     * Icons of the sides of the models which are plain unit cubes, {@link #NOT_A_CUBE} for the other ones
+     */
+    private HashMap<BlockModel, TextureIcon[]>                  cubeIcons;
 
     /**
      * Creates a new renderer for given block variants
@@ -29,107 +35,152 @@ public class BlockModelRenderer extends AbstractBlockRenderer
         icons = Maps.newHashMap();
         for(BlockVariant v : list)
             icons.put(v, new HashMap<String, TextureIcon>());
-        if(rotationQuaternion == null)
-            rotationQuaternion = new Quaternion();
+        cubeIcons = Maps.newHashMap();
     }
 
     @Override
-    public void render(RenderEngine engine, OffsettedOpenGLBuffer buffer, World w, Block b, int x, int y, int z)
+    public void render(RenderEngine engine, MeshBuffer buffer, IBlockAccess w, Block b, int x, int y, int z)
     {
         if(!b.shouldRender())
             return;
-        Chunk chunk = w.getChunk(x, y, z);
-        if(chunk == null)
-            return;
         BlockVariant variant = getVariant(w, b, x, y, z);
 
         if(variant == null)
             return;
-        BlockModel blockModel = variant.getModels().get(w.getRNG().nextInt(variant.getModels().size())); // TODO: random model ?
-        float lightValue = chunk.getLightValue(w, x, y, z);
+        BlockModel blockModel = getModel(variant, x, y, z);
+        float lightValue = w.getLightValue(x, y, z);
         for(int i = 0; i < blockModel.getElementsCount(); i++ )
         {
             BlockElement element = blockModel.getElement(i);
-            if(element.hasRotation())
-            {
-                Vector3 axis = Vector3.xAxis;
-                if(element.getRotationAxis() == null)
-                    ;
-                else if(element.getRotationAxis().equalsIgnoreCase("y"))
-                    axis = Vector3.yAxis;
-                else if(element.getRotationAxis().equalsIgnoreCase("z"))
-                    axis = Vector3.zAxis;
-                rotationQuaternion.init(axis, (float) Math.toRadians(element.getRotationAngle()));
-            }
-            Set<Entry<String, BlockFace>> entries = element.getFaces().entrySet();
-            Vector3 startPos = element.getFrom();
-            Vector3 size = element.getTo().sub(startPos);
-            for(Entry<String, BlockFace> entry : entries)
+            // Shared by the threads rendering blocks, never modified
+            Quaternion rotation = element.getRotation();
+            Vector3 from = element.getFrom();
+            Vector3 to = element.getTo();
+            float startX = from.getX();
+            float startY = from.getY();
+            float startZ = from.getZ();
+            float sizeX = to.getX() - startX;
+            float sizeY = to.getY() - startY;
+            float sizeZ = to.getZ() - startZ;
+            for(Entry<String, BlockFace> entry : element.getFaces().entrySet())
             {
-                Vector3 faceStart = Vector3.NULL;
-                Vector3 faceSize = Vector3.NULL;
-                TextureIcon icon = getTexture(blockModel, variant, entry.getValue().getTexture());
-                boolean flip = false;
-                EnumSide cullface = EnumSide.fromString(entry.getValue().getCullface());
+                BlockFace face = entry.getValue();
+                EnumSide cullface = face.getCullSide();
                 if(cullface != EnumSide.UNDEFINED)
                 {
-                    Block next = w.getBlockNextTo(x, y, z, cullface);
-                    if(next.isSideOpaque(w, x, y, z, cullface.opposite()))
-                    {
+                    int next = w.getBlockNextTo(x, y, z, cullface).getUniqueID();
+                    if((PaddedChunkSnapshot.getOpaqueSides(next) & 1 << cullface.opposite().ordinal()) != 0)
                         continue;
-                    }
-                }
-                if(entry.getKey().equals("up"))
-                {
-                    faceStart = Vector3.get(startPos.getX(), startPos.getY() + size.getY(), startPos.getZ());
-                    faceSize = Vector3.get(size.getX(), 0, size.getZ());
-                    flip = true;
-                }
-                else if(entry.getKey().equals("down"))
-                {
-                    faceStart = Vector3.get(startPos.getX(), startPos.getY(), startPos.getZ());
-                    faceSize = Vector3.get(size.getX(), 0, size.getZ());
-                    flip = true;
-                }
-
-                else if(entry.getKey().equals("west"))
-                {
-                    faceStart = Vector3.get(startPos.getX(), startPos.getY(), startPos.getZ());
-                    faceSize = Vector3.get(0, size.getY(), size.getZ());
-                }
-                else if(entry.getKey().equals("east"))
-                {
-                    faceStart = Vector3.get(startPos.getX() + size.getX(), startPos.getY(), startPos.getZ());
-                    faceSize = Vector3.get(0, size.getY(), size.getZ());
-                }
-
-                else if(entry.getKey().equals("north"))
-                {
-                    faceStart = Vector3.get(startPos.getX(), startPos.getY(), startPos.getZ());
-                    faceSize = Vector3.get(size.getX(), size.getY(), 0);
-                }
-                else if(entry.getKey().equals("south"))
-                {
-                    faceStart = Vector3.get(startPos.getX(), startPos.getY(), startPos.getZ() + size.getZ());
-                    faceSize = Vector3.get(size.getX(), size.getY(), 0);
                 }
+                String name = entry.getKey();
+                TextureIcon icon = getTexture(blockModel, variant, face.getTexture());
+                if(name.equals("up"))
+                    renderFace(lightValue, buffer, w, b, x, y, z, icon, startX, startY + sizeY, startZ, sizeX, 0, sizeZ, true, face.getMinUV(), face.getMaxUV(), element.getRotationOrigin(), rotation, element.shouldRescale());
+                else if(name.equals("down"))
+                    renderFace(lightValue, buffer, w, b, x, y, z, icon, startX, startY, startZ, sizeX, 0, sizeZ, true, face.getMinUV(), face.getMaxUV(), element.getRotationOrigin(), rotation, element.shouldRescale());
+                else if(name.equals("west"))
+                    renderFace(lightValue, buffer, w, b, x, y, z, icon, startX, startY, startZ, 0, sizeY, sizeZ, false, face.getMinUV(), face.getMaxUV(), element.getRotationOrigin(), rotation, element.shouldRescale());
+                else if(name.equals("east"))
+                    renderFace(lightValue, buffer, w, b, x, y, z, icon, startX + sizeX, startY, startZ, 0, sizeY, sizeZ, false, face.getMinUV(), face.getMaxUV(), element.getRotationOrigin(), rotation, element.shouldRescale());
+                else if(name.equals("north"))
+                    renderFace(lightValue, buffer, w, b, x, y, z, icon, startX, startY, startZ, sizeX, sizeY, 0, false, face.getMinUV(), face.getMaxUV(), element.getRotationOrigin(), rotation, element.shouldRescale());
+                else if(name.equals("south"))
+                    renderFace(lightValue, buffer, w, b, x, y, z, icon, startX, startY, startZ + sizeZ, sizeX, sizeY, 0, false, face.getMinUV(), face.getMaxUV(), element.getRotationOrigin(), rotation, element.shouldRescale());
+            }
+        }
+    }
 
-                else
-                {
-                    continue;
-                }
-                renderFace(lightValue, buffer, w, b, x, y, z, icon, faceStart, faceSize, flip, entry.getValue().getMinUV(), entry.getValue().getMaxUV(), element.getRotationOrigin(), rotationQuaternion, element.shouldRescale());
-                faceSize.dispose();
-                faceStart.dispose();
+    /**
+     * Returns the icons of the sides of the model drawn at given coords if it is made of a single unrotated element filling the block, with
+     * six faces each culled by the neighbour on their side
+     */
+    @Override
+    public TextureIcon[] getCubeIcons(IBlockAccess w, Block b, int x, int y, int z)
+    {
+        BlockVariant variant = getVariant(w, b, x, y, z);
+        if(variant == null)
+            return null;
+        BlockModel blockModel = getModel(variant, x, y, z);
+        TextureIcon[] result;
+        synchronized(this)
+        {
+            result = cubeIcons.get(blockModel);
+            if(result == null)
+            {
+                result = createCubeIcons(blockModel, variant);
+                cubeIcons.put(blockModel, result);
             }
-            size.dispose();
         }
+        return result == NOT_A_CUBE ? null : result;
+    }
+
+    private TextureIcon[] createCubeIcons(BlockModel blockModel, BlockVariant variant)
+    {
+        if(blockModel.getElementsCount() != 1)
+            return NOT_A_CUBE;
+        BlockElement element = blockModel.getElement(0);
+        if(element.hasRotation() && element.getRotationAngle() != 0f)
+            return NOT_A_CUBE;
+        Vector3 from = element.getFrom();
+        Vector3 to = element.getTo();
+        if(from.getX() != 0f || from.getY() != 0f || from.getZ() != 0f || to.getX() != 1f || to.getY() != 1f || to.getZ() != 1f)
+            return NOT_A_CUBE;
+        if(element.getFaces().size() != 6)
+            return NOT_A_CUBE;
+        TextureIcon[] result = new TextureIcon[6];
+        for(Entry<String, BlockFace> entry : element.getFaces().entrySet())
+        {
+            BlockFace face = entry.getValue();
+            EnumSide side = getFaceSide(entry.getKey());
+            if(side == EnumSide.UNDEFINED || face.getCullSide() != side || result[side.ordinal()] != null)
+                return NOT_A_CUBE;
+            TextureIcon icon = getTexture(blockModel, variant, face.getTexture());
+            if(icon == null)
+                icon = NULLICON;
+            // Part of the icon the face is drawn with, as computed by renderFace
+            float deltaU = icon.getMaxU() - icon.getMinU();
+            float deltaV = icon.getMaxV() - icon.getMinV();
+            Vector2 minUV = face.getMinUV();
+            Vector2 maxUV = face.getMaxUV();
+            result[side.ordinal()] = new TextureRegion(null, icon.getMinU() + minUV.getX() * deltaU, icon.getMinV() + minUV.getY() * deltaV, icon.getMinU() + maxUV.getX() * deltaU, icon.getMinV() + maxUV.getY() * deltaV);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the side of the face of given name in a model, {@link EnumSide#UNDEFINED} if the name is not one of the faces drawn by
+     * {@link #render(RenderEngine, MeshBuffer, IBlockAccess, Block, int, int, int)}
+     */
+    private static EnumSide getFaceSide(String name)
+    {
+        if(name.equals("up"))
+            return EnumSide.TOP;
+        else if(name.equals("down"))
+            return EnumSide.BOTTOM;
+        else if(name.equals("west"))
+            return EnumSide.WEST;
+        else if(name.equals("east"))
+            return EnumSide.EAST;
+        else if(name.equals("north"))
+            return EnumSide.NORTH;
+        else if(name.equals("south"))
+            return EnumSide.SOUTH;
+        return EnumSide.UNDEFINED;
+    }
+
+    /**
+     * Picks the model of given variant drawn at given coords, from the position so that it stays the same when the chunk is rebuilt
+     */
+    private BlockModel getModel(BlockVariant variant, int x, int y, int z)
+    {
+        List<BlockModel> models = variant.getModels();
+        return models.get((((x * 3129871) ^ (z * 116129781) ^ y) & 0x7FFFFFFF) % models.size());
     }
 
     /**
      * Returns most revelant variant depending on block states values at (x,y,z)
      */
-    private BlockVariant getVariant(World w, Block b, int x, int y, int z)
+    private BlockVariant getVariant(IBlockAccess w, Block b, int x, int y, int z)
     {
         BlockVariant variant = null;
         for(BlockVariant v : blockVariants)
@@ -146,9 +197,10 @@ public class BlockModelRenderer extends AbstractBlockRenderer
     }
 
     /**
-     * Gets TextureIcon from texture variable found in json model file
+     * Gets TextureIcon from texture variable found in json model file. Icons are cached on first use, which may happen on several threads
+     * at once
      */
-    private TextureIcon getTexture(BlockModel blockModel, BlockVariant variant, String texture)
+    private synchronized TextureIcon getTexture(BlockModel blockModel, BlockVariant variant, String texture)
     {
         if(texture == null)
             return null;
@@ -160,16 +212,22 @@ public class BlockModelRenderer extends AbstractBlockRenderer
                 icons.get(variant).put(texture, icon);
             }
             else
-            {
-                TextureMap blockMap = (TextureMap) OurCraft.getOurCraft().getRenderEngine().getByLocation(RenderBlocks.blockMapLoc);
-                icons.get(variant).put(texture, blockMap.get(texture + ".png"));
-            }
+                icons.get(variant).put(texture, getIcon(texture));
         }
         return icons.get(variant).get(texture);
     }
 
+    /**
+     * Gets the icon of given texture path from the block texture map
+     */
+    protected TextureIcon getIcon(String texture)
+    {
+        TextureMap blockMap = (TextureMap) OurCraft.getOurCraft().getRenderEngine().getByLocation(RenderBlocks.blockMapLoc);
+        return blockMap.get(texture + ".png");
+    }
+
     @Override
-    public boolean shouldRenderInPass(EnumRenderPass currentPass, World w, Block b, int x, int y, int z)
+    public boolean shouldRenderInPass(EnumRenderPass currentPass, IBlockAccess w, Block b, int x, int y, int z)
     {
         BlockVariant variant = getVariant(w, b, x, y, z);
         if(variant == null)
@@ -9,65 +9,72 @@ import org.craft.world.*;
 public class FullCubeBlockRenderer extends AbstractBlockRenderer
 {
 
+    private static final EnumSide[] SIDES =
+    {
+            EnumSide.NORTH, EnumSide.SOUTH, EnumSide.WEST, EnumSide.EAST, EnumSide.TOP, EnumSide.BOTTOM
+    };
+
     @Override
     /**
      * Draws a full cube from the given block
      */
-    public void render(RenderEngine engine, OffsettedOpenGLBuffer buffer, World world, Block block, int x, int y, int z)
+    public void render(RenderEngine engine, MeshBuffer buffer, IBlockAccess world, Block block, int x, int y, int z)
     {
         if(!block.shouldRender())
             return;
-        EnumSide side = EnumSide.NORTH;
-        Chunk chunk = world.getChunk(x, y, z);
-        if(chunk == null)
-            return;
-        float lightValue = chunk.getLightValue(world, x, y, z);
-        TextureIcon icon = ((TextureMap) engine.getByLocation(RenderBlocks.blockMapLoc)).get("bedrock.png");
-        if(!world.getBlockNextTo(x, y, z, side).isSideOpaque(world, x + side.getTranslationX(), y + side.getTranslationY(), z + side.getTranslationZ(), side) && block.shouldSideBeRendered(world, x, y, z, side))
-        {
-            drawNorthFace(buffer, world, block, lightValue, icon, x, y, z);
-        }
-
-        side = EnumSide.SOUTH;
-        if(!world.getBlockNextTo(x, y, z, side).isSideOpaque(world, x + side.getTranslationX(), y + side.getTranslationY(), z + side.getTranslationZ(), side) && block.shouldSideBeRendered(world, x, y, z, side))
-        {
-            drawSouthFace(buffer, world, block, lightValue, icon, x, y, z);
-        }
-
-        side = EnumSide.WEST;
-        if(!world.getBlockNextTo(x, y, z, side).isSideOpaque(world, x + side.getTranslationX(), y + side.getTranslationY(), z + side.getTranslationZ(), side) && block.shouldSideBeRendered(world, x, y, z, side))
-        {
-            drawWestFace(buffer, world, block, lightValue, icon, x, y, z);
-        }
-
-        side = EnumSide.EAST;
-        if(!world.getBlockNextTo(x, y, z, side).isSideOpaque(world, x + side.getTranslationX(), y + side.getTranslationY(), z + side.getTranslationZ(), side) && block.shouldSideBeRendered(world, x, y, z, side))
+        TextureIcon icon = getIcon(engine, block);
+        int faces = getVisibleFaces(world, block, x, y, z);
+        for(EnumSide side : SIDES)
         {
-            drawEastFace(buffer, world, block, lightValue, icon, x, y, z);
+            if((faces & 1 << side.ordinal()) == 0)
+                continue;
+            float lightValue = world.getBrightness(x + side.getTranslationX(), y + side.getTranslationY(), z + side.getTranslationZ());
+            if(side == EnumSide.NORTH)
+                drawNorthFace(buffer, world, block, lightValue, icon, x, y, z);
+            else if(side == EnumSide.SOUTH)
+                drawSouthFace(buffer, world, block, lightValue, icon, x, y, z);
+            else if(side == EnumSide.WEST)
+                drawWestFace(buffer, world, block, lightValue, icon, x, y, z);
+            else if(side == EnumSide.EAST)
+                drawEastFace(buffer, world, block, lightValue, icon, x, y, z);
+            else if(side == EnumSide.TOP)
+                drawTopFace(buffer, world, block, lightValue, icon, x, y, z);
+            else
+                drawBottomFace(buffer, world, block, lightValue, icon, x, y, z);
         }
+    }
 
-        side = EnumSide.TOP;
-        if(!world.getBlockNextTo(x, y, z, side).isSideOpaque(world, x + side.getTranslationX(), y + side.getTranslationY(), z + side.getTranslationZ(), side) && block.shouldSideBeRendered(world, x, y, z, side))
-        {
-            drawTopFace(buffer, world, block, lightValue, icon, x, y, z);
-        }
+    /**
+     * Returns the icon drawn on every face of given block
+     */
+    public TextureIcon getIcon(RenderEngine engine, Block block)
+    {
+        return ((TextureMap) engine.getByLocation(RenderBlocks.blockMapLoc)).get("bedrock.png");
+    }
 
-        side = EnumSide.BOTTOM;
-        if(!world.getBlockNextTo(x, y, z, side).isSideOpaque(world, x + side.getTranslationX(), y + side.getTranslationY(), z + side.getTranslationZ(), side) && block.shouldSideBeRendered(world, x, y, z, side))
+    /**
+     * Returns the sides of the block at given coords which are not hidden by their neighbour, as bits in the order of
+     * {@link EnumSide#ordinal()}
+     */
+    public int getVisibleFaces(IBlockAccess world, Block block, int x, int y, int z)
+    {
+        int faces = 0;
+        for(EnumSide side : SIDES)
         {
-            drawBottomFace(buffer, world, block, lightValue, icon, x, y, z);
+            if(!world.getBlockNextTo(x, y, z, side).isSideOpaque(world, x + side.getTranslationX(), y + side.getTranslationY(), z + side.getTranslationZ(), side) && block.shouldSideBeRendered(world, x, y, z, side))
+                faces |= 1 << side.ordinal();
         }
-
+        return faces;
     }
 
-    public void drawNorthFace(OffsettedOpenGLBuffer buffer, World world, Block block, float lightValue, TextureIcon icon, int x, int y, int z)
+    public void drawNorthFace(MeshBuffer buffer, IBlockAccess world, Block block, float lightValue, TextureIcon icon, int x, int y, int z)
     {
         Vector3 sizeVec = Vector3.get(1, 1, 0);
         renderFace(buffer, world, block, x, y, z, icon, Vector3.NULL, sizeVec);
         sizeVec.dispose();
     }
 
-    public void drawSouthFace(OffsettedOpenGLBuffer buffer, World world, Block block, float lightValue, TextureIcon icon, int x, int y, int z)
+    public void drawSouthFace(MeshBuffer buffer, IBlockAccess world, Block block, float lightValue, TextureIcon icon, int x, int y, int z)
     {
         Vector3 startPos = Vector3.get(0, 0, 1);
         Vector3 sizeVec = Vector3.get(1, 1, 0);
@@ -76,7 +83,7 @@ public class FullCubeBlockRenderer extends AbstractBlockRenderer
         startPos.dispose();
     }
 
-    public void drawWestFace(OffsettedOpenGLBuffer buffer, World world, Block block, float lightValue, TextureIcon icon, int x, int y, int z)
+    public void drawWestFace(MeshBuffer buffer, IBlockAccess world, Block block, float lightValue, TextureIcon icon, int x, int y, int z)
     {
         Vector3 startPos = Vector3.NULL;
         Vector3 sizeVec = Vector3.get(0, 1, 1);
@@ -84,7 +91,7 @@ public class FullCubeBlockRenderer extends AbstractBlockRenderer
         sizeVec.dispose();
     }
 
-    public void drawEastFace(OffsettedOpenGLBuffer buffer, World world, Block block, float lightValue, TextureIcon icon, int x, int y, int z)
+    public void drawEastFace(MeshBuffer buffer, IBlockAccess world, Block block, float lightValue, TextureIcon icon, int x, int y, int z)
     {
         Vector3 startPos = Vector3.get(1, 0, 0);
         Vector3 sizeVec = Vector3.get(0, 1, 1);
@@ -93,7 +100,7 @@ public class FullCubeBlockRenderer extends AbstractBlockRenderer
         startPos.dispose();
     }
 
-    public void drawTopFace(OffsettedOpenGLBuffer buffer, World world, Block block, float lightValue, TextureIcon icon, int x, int y, int z)
+    public void drawTopFace(MeshBuffer buffer, IBlockAccess world, Block block, float lightValue, TextureIcon icon, int x, int y, int z)
     {
         Vector3 startPos = Vector3.get(0, 1f, 0);
         Vector3 sizeVec = Vector3.get(1, 0, 1);
@@ -102,7 +109,7 @@ public class FullCubeBlockRenderer extends AbstractBlockRenderer
         startPos.dispose();
     }
 
-    public void drawBottomFace(OffsettedOpenGLBuffer buffer, World world, Block block, float lightValue, TextureIcon icon, int x, int y, int z)
+    public void drawBottomFace(MeshBuffer buffer, IBlockAccess world, Block block, float lightValue, TextureIcon icon, int x, int y, int z)
     {
         Vector3 startPos = Vector3.get(0, 0, 0);
         Vector3 sizeVec = Vector3.get(1, 0, 1);
@@ -112,7 +119,7 @@ public class FullCubeBlockRenderer extends AbstractBlockRenderer
     }
 
     @Override
-    public boolean shouldRenderInPass(EnumRenderPass currentPass, World w, Block b, int x, int y, int z)
+    public boolean shouldRenderInPass(EnumRenderPass currentPass, IBlockAccess w, Block b, int x, int y, int z)
     {
         return b.shouldRenderInPass(currentPass);
     }
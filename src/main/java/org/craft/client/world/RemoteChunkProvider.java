@@ -32,7 +32,10 @@ public class RemoteChunkProvider extends ChunkProvider
     @Override
     public Chunk get(World world, int chunkX, int chunkY, int chunkZ)
     {
-        return chunkMap.getAt(chunkX, chunkY, chunkZ);
+        Chunk c = chunkMap.getAt(chunkX, chunkY, chunkZ);
+        if(c != null)
+            c.setLastAccess(accessClock);
+        return c;
     }
 
     @Override
@@ -64,7 +67,27 @@ public class RemoteChunkProvider extends ChunkProvider
         if(pending.contains(c.getCoords()))
             pending.remove(c.getCoords());
         if(!chunkMap.contains(c.getCoords()))
+        {
+            c.setLastAccess(accessClock);
             chunkMap.add(c);
+            c.onAddedToWorld();
+            w.getChunkLifecycleManager().onChunkLoaded(c);
+        }
+    }
+
+    @Override
+    public Chunk removeChunk(World world, int chunkX, int chunkY, int chunkZ)
+    {
+        Chunk c = chunkMap.remove(chunkX, chunkY, chunkZ);
+        if(c != null)
+            c.onRemovedFromWorld();
+        return c;
+    }
+
+    @Override
+    public int getLoadedChunksCount()
+    {
+        return chunkMap.size();
     }
 
     @Override
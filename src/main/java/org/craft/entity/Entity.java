@@ -43,6 +43,13 @@ public class Entity implements org.spongepowered.api.entity.Entity
     private UUID              uuid;
     protected float           stepHeight = 0.f;
     private boolean           wasOnGround;
+    private EntityCollider    collider;
+
+    /**
+     * Bucket of the {@link EntityIndex} this entity is in, and its slot in it
+     */
+    EntityIndex.Bucket        indexBucket;
+    int                       indexSlot  = -1;
 
     public static final float G          = 9.81f / 360f;
 
@@ -78,6 +85,14 @@ public class Entity implements org.spongepowered.api.entity.Entity
         return boundingBox.translate(Vector3.get(posX, posY, posZ));
     }
 
+    /**
+     * Returns the bounding box of this entity relative to its position. Must not be modified
+     */
+    public AABB getLocalBoundingBox()
+    {
+        return boundingBox;
+    }
+
     /**
      * Updates entity (gravity, movements)
      */
@@ -86,39 +101,53 @@ public class Entity implements org.spongepowered.api.entity.Entity
         wasOnGround = onGround;
         onGround = true;
 
-        if(canGo(posX + velX, posY, posZ))
+        if(collider == null)
+            collider = new EntityCollider();
+        collider.gather(worldObj, boundingBox, posX, posY, posZ, velX, velY, velZ, wasOnGround ? stepHeight : 0f);
+
+        float dx = collider.clipX(posX, posY, posZ, velX);
+        if(dx == velX)
         {
             posX += velX;
         }
-        else if(canGo(posX + velX, posY + stepHeight, posZ) && wasOnGround)
+        else if(stepHeight > 0f && wasOnGround && collider.isFree(posX + velX, posY + stepHeight, posZ))
         {
             velY = 0;
             posX += velX;
             posY += stepHeight;
         }
         else
+        {
+            posX += dx;
             velX = 0;
+        }
 
-        if(canGo(posX, posY, posZ + velZ))
+        float dz = collider.clipZ(posX, posY, posZ, velZ);
+        if(dz == velZ)
         {
             posZ += velZ;
         }
-        else if(canGo(posX, posY + stepHeight, posZ + velZ) && wasOnGround)
+        else if(stepHeight > 0f && wasOnGround && collider.isFree(posX, posY + stepHeight, posZ + velZ))
         {
             velY = 0;
             posZ += velZ;
             posY += stepHeight;
         }
         else
+        {
+            posZ += dz;
             velZ = 0;
+        }
 
-        if(canGo(posX, posY + velY, posZ))
+        float dy = collider.clipY(posX, posY, posZ, velY);
+        if(dy == velY)
         {
             posY += velY;
             onGround = false;
         }
         else
         {
+            posY += dy;
             velY = 0;
         }
 
@@ -152,44 +181,6 @@ public class Entity implements org.spongepowered.api.entity.Entity
 
     }
 
-    /**
-     * Checks if entity can go at given position
-     */
-    private boolean canGo(float nx, float ny, float nz)
-    {
-        AABB boundingBox = this.boundingBox.translate(nx, ny, nz);
-        Vector3 min = boundingBox.getMinExtents();
-        Vector3 max = boundingBox.getMaxExtents();
-        int startX = (int) Math.round(min.getX() - 0.5f);
-        int startY = (int) Math.round(min.getY() - 0.5f);
-        int startZ = (int) Math.round(min.getZ() - 0.5f);
-        int endX = (int) Math.round(max.getX() + 0.5f);
-        int endY = (int) Math.round(max.getY() + 0.5f);
-        int endZ = (int) Math.round(max.getZ() + 0.5f);
-        for(int x = startX; x <= endX; x++ )
-        {
-            for(int y = startY; y <= endY; y++ )
-            {
-                for(int z = startZ; z <= endZ; z++ )
-                {
-                    if(worldObj.getChunk(x, y, z) == null)
-                        return false;
-                    Block block = worldObj.getBlockAt(x, y, z);
-                    if(block == null)
-                        continue;
-                    AABB blockBB = block.getCollisionBox(worldObj, x, y, z);
-                    if(blockBB == null)
-                        continue;
-                    if(boundingBox.intersectAABB(blockBB))
-                    {
-                        return false;
-                    }
-                }
-            }
-        }
-        return true;
-    }
-
     public float getEyeOffset()
     {
         return 0.0f;
@@ -324,7 +315,14 @@ public class Entity implements org.spongepowered.api.entity.Entity
      */
     public CollisionInfos getObjectInFront(float maxDist)
     {
-        CollisionInfos infos = new CollisionInfos();
+        return getObjectInFront(maxDist, new CollisionInfos());
+    }
+
+    /**
+     * Performs a raycast to get object in front of entity, writing the result into given infos which are returned
+     */
+    public CollisionInfos getObjectInFront(float maxDist, CollisionInfos infos)
+    {
         worldObj.performRayCast(this, infos, maxDist);
         return infos;
     }
@@ -0,0 +1,217 @@
+package org.craft.entity;
+
+import java.util.*;
+
+import org.craft.blocks.*;
+import org.craft.maths.*;
+import org.craft.world.*;
+
+/**
+ * Resolves the movements of an entity against the collision boxes of the blocks around it.<br/>
+ * The boxes of the blocks the entity may reach during a tick are gathered once by {@link #gather(World, AABB, float, float, float, float, float, float, float)}
+ * into a reused array, then each move is clipped along one axis at a time against them. Blocks in chunks which are not loaded are full
+ * cubes, so that entities do not fall out of the loaded world.<br/>
+ * Boxes are stored relative to a block near the entity so that small gaps and contacts are not lost to float precision far from the world
+ * origin. Overlaps smaller than {@link #EPSILON} are ignored, which lets an entity resting on a block slide along it.
+ */
+public class EntityCollider
+{
+
+    /**
+     * Overlap between two boxes under which they are considered to be touching
+     */
+    public static final float EPSILON = 1.0E-3f;
+
+    /**
+     * Collision boxes, as six floats each: min x, min y, min z, max x, max y, max z
+     */
+    private float[]           boxes;
+    private int               count;
+    private int               originX;
+    private int               originY;
+    private int               originZ;
+    private float             minX;
+    private float             minY;
+    private float             minZ;
+    private float             maxX;
+    private float             maxY;
+    private float             maxZ;
+
+    public EntityCollider()
+    {
+        boxes = new float[6 * 32];
+    }
+
+    /**
+     * Gathers the collision boxes of the blocks which given box (relative to the entity) may touch while going from given position by up to
+     * given amounts on each axis, plus {@code stepHeight} upwards twice (once per horizontal axis)
+     */
+    public void gather(World world, AABB box, float x, float y, float z, float dx, float dy, float dz, float stepHeight)
+    {
+        Vector3 min = box.getMinExtents();
+        Vector3 max = box.getMaxExtents();
+        minX = min.getX();
+        minY = min.getY();
+        minZ = min.getZ();
+        maxX = max.getX();
+        maxY = max.getY();
+        maxZ = max.getZ();
+        originX = (int) Math.floor(x);
+        originY = (int) Math.floor(y);
+        originZ = (int) Math.floor(z);
+        count = 0;
+
+        int startX = (int) Math.floor(x + minX + Math.min(dx, 0f));
+        int startY = (int) Math.floor(y + minY + Math.min(dy, 0f));
+        int startZ = (int) Math.floor(z + minZ + Math.min(dz, 0f));
+        int endX = (int) Math.floor(x + maxX + Math.max(dx, 0f));
+        int endY = (int) Math.floor(y + maxY + Math.max(dy, 0f) + stepHeight * 2f);
+        int endZ = (int) Math.floor(z + maxZ + Math.max(dz, 0f));
+        for(int blockX = startX; blockX <= endX; blockX++ )
+        {
+            for(int blockZ = startZ; blockZ <= endZ; blockZ++ )
+            {
+                for(int blockY = startY; blockY <= endY; blockY++ )
+                {
+                    Chunk chunk = world.getChunk(blockX, blockY, blockZ);
+                    if(chunk == null)
+                    {
+                        add(blockX, blockY, blockZ, 0f, 0f, 0f, 1f, 1f, 1f);
+                        continue;
+                    }
+                    Block block = chunk.getChunkBlock(blockX & 15, blockY & 15, blockZ & 15);
+                    if(block == Blocks.air)
+                        continue;
+                    AABB blockBox = block.getLocalCollisionBox(world, blockX, blockY, blockZ);
+                    if(blockBox == null)
+                        continue;
+                    Vector3 blockMin = blockBox.getMinExtents();
+                    Vector3 blockMax = blockBox.getMaxExtents();
+                    add(blockX, blockY, blockZ, blockMin.getX(), blockMin.getY(), blockMin.getZ(), blockMax.getX(), blockMax.getY(), blockMax.getZ());
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the number of boxes gathered by the last call to {@link #gather(World, AABB, float, float, float, float, float, float, float)}
+     */
+    public int getBoxCount()
+    {
+        return count;
+    }
+
+    /**
+     * Returns how far the box can go along the X axis from given position, up to {@code dx}
+     */
+    public float clipX(float x, float y, float z, float dx)
+    {
+        float boxMinX = x - originX + minX;
+        float boxMaxX = x - originX + maxX;
+        float boxMinY = y - originY + minY;
+        float boxMaxY = y - originY + maxY;
+        float boxMinZ = z - originZ + minZ;
+        float boxMaxZ = z - originZ + maxZ;
+        for(int i = 0; i < count * 6; i += 6)
+        {
+            if(!overlaps(boxMinY, boxMaxY, boxes[i + 1], boxes[i + 4]) || !overlaps(boxMinZ, boxMaxZ, boxes[i + 2], boxes[i + 5]))
+                continue;
+            dx = clip(boxMinX, boxMaxX, boxes[i], boxes[i + 3], dx);
+        }
+        return dx;
+    }
+
+    /**
+     * Returns how far the box can go along the Y axis from given position, up to {@code dy}
+     */
+    public float clipY(float x, float y, float z, float dy)
+    {
+        float boxMinX = x - originX + minX;
+        float boxMaxX = x - originX + maxX;
+        float boxMinY = y - originY + minY;
+        float boxMaxY = y - originY + maxY;
+        float boxMinZ = z - originZ + minZ;
+        float boxMaxZ = z - originZ + maxZ;
+        for(int i = 0; i < count * 6; i += 6)
+        {
+            if(!overlaps(boxMinX, boxMaxX, boxes[i], boxes[i + 3]) || !overlaps(boxMinZ, boxMaxZ, boxes[i + 2], boxes[i + 5]))
+                continue;
+            dy = clip(boxMinY, boxMaxY, boxes[i + 1], boxes[i + 4], dy);
+        }
+        return dy;
+    }
+
+    /**
+     * Returns how far the box can go along the Z axis from given position, up to {@code dz}
+     */
+    public float clipZ(float x, float y, float z, float dz)
+    {
+        float boxMinX = x - originX + minX;
+        float boxMaxX = x - originX + maxX;
+        float boxMinY = y - originY + minY;
+        float boxMaxY = y - originY + maxY;
+        float boxMinZ = z - originZ + minZ;
+        float boxMaxZ = z - originZ + maxZ;
+        for(int i = 0; i < count * 6; i += 6)
+        {
+            if(!overlaps(boxMinX, boxMaxX, boxes[i], boxes[i + 3]) || !overlaps(boxMinY, boxMaxY, boxes[i + 1], boxes[i + 4]))
+                continue;
+            dz = clip(boxMinZ, boxMaxZ, boxes[i + 2], boxes[i + 5], dz);
+        }
+        return dz;
+    }
+
+    /**
+     * Returns true if the box at given position does not overlap any gathered box
+     */
+    public boolean isFree(float x, float y, float z)
+    {
+        float boxMinX = x - originX + minX;
+        float boxMaxX = x - originX + maxX;
+        float boxMinY = y - originY + minY;
+        float boxMaxY = y - originY + maxY;
+        float boxMinZ = z - originZ + minZ;
+        float boxMaxZ = z - originZ + maxZ;
+        for(int i = 0; i < count * 6; i += 6)
+        {
+            if(overlaps(boxMinX, boxMaxX, boxes[i], boxes[i + 3]) && overlaps(boxMinY, boxMaxY, boxes[i + 1], boxes[i + 4]) && overlaps(boxMinZ, boxMaxZ, boxes[i + 2], boxes[i + 5]))
+                return false;
+        }
+        return true;
+    }
+
+    private void add(int blockX, int blockY, int blockZ, float minX, float minY, float minZ, float maxX, float maxY, float maxZ)
+    {
+        int i = count * 6;
+        if(i == boxes.length)
+            boxes = Arrays.copyOf(boxes, boxes.length * 2);
+        float x = blockX - originX;
+        float y = blockY - originY;
+        float z = blockZ - originZ;
+        boxes[i] = x + minX;
+        boxes[i + 1] = y + minY;
+        boxes[i + 2] = z + minZ;
+        boxes[i + 3] = x + maxX;
+        boxes[i + 4] = y + maxY;
+        boxes[i + 5] = z + maxZ;
+        count++ ;
+    }
+
+    private static boolean overlaps(float min, float max, float otherMin, float otherMax)
+    {
+        return min < otherMax - EPSILON && max > otherMin + EPSILON;
+    }
+
+    /**
+     * Clips a move of {@code delta} along an axis so that the interval [min, max] does not go through [otherMin, otherMax]. Intervals already
+     * overlapping do not stop the move, so that an entity stuck in a block can get out of it
+     */
+    private static float clip(float min, float max, float otherMin, float otherMax, float delta)
+    {
+        if(delta > 0f && max <= otherMin + EPSILON)
+            return Math.min(delta, Math.max(otherMin - max, 0f));
+        if(delta < 0f && min >= otherMax - EPSILON)
+            return Math.max(delta, Math.min(otherMax - min, 0f));
+        return delta;
+    }
+}
@@ -0,0 +1,249 @@
+package org.craft.entity;
+
+import java.util.*;
+
+import org.craft.maths.*;
+import org.craft.utils.*;
+import org.craft.world.*;
+
+/**
+ * Spatial index of the entities of a world: entities are kept in buckets by the chunk their position is in, so that queries only look at
+ * the buckets around the queried area. An entity knows its bucket and its slot in it, so moving or removing it is a swap with the last
+ * entity of its bucket.<br/>
+ * Positions are only read when {@link #update(Entity)} is called, which the world does after updating each entity. Must only be used on the
+ * thread updating the world.
+ */
+public class EntityIndex
+{
+
+    private HashMap<Long, Bucket> buckets;
+    private int                   size;
+
+    /**
+     * Largest distance an entity bounding box goes from the entity position, on any axis. Queries are extended by it so that entities whose
+     * bounding box goes out of the chunk they are in are found
+     */
+    private float                 margin;
+
+    public EntityIndex()
+    {
+        buckets = new HashMap<Long, Bucket>();
+    }
+
+    /**
+     * Adds an entity to the index
+     */
+    public void add(Entity e)
+    {
+        if(e.indexBucket != null)
+            return;
+        AABB box = e.getLocalBoundingBox();
+        margin = Math.max(margin, Math.max(box.getMaxExtents().max(), -box.getMinExtents().min()));
+        insert(e, bucketKey(e));
+        size++ ;
+    }
+
+    /**
+     * Removes an entity from the index
+     */
+    public void remove(Entity e)
+    {
+        if(e.indexBucket == null)
+            return;
+        detach(e);
+        size-- ;
+    }
+
+    /**
+     * Moves an entity to the bucket of its current position if it left the chunk of its bucket
+     */
+    public void update(Entity e)
+    {
+        Bucket bucket = e.indexBucket;
+        if(bucket == null)
+            return;
+        long key = bucketKey(e);
+        if(bucket.key != key)
+        {
+            detach(e);
+            insert(e, key);
+        }
+    }
+
+    /**
+     * Returns the number of entities in the index
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * Adds to {@code result} the entities whose bounding box intersects the box between given coords
+     */
+    public void getEntitiesInAABB(float minX, float minY, float minZ, float maxX, float maxY, float maxZ, List<Entity> result)
+    {
+        int minChunkX = chunkCoord(minX - margin);
+        int minChunkY = chunkCoord(minY - margin);
+        int minChunkZ = chunkCoord(minZ - margin);
+        int maxChunkX = chunkCoord(maxX + margin);
+        int maxChunkY = chunkCoord(maxY + margin);
+        int maxChunkZ = chunkCoord(maxZ + margin);
+        for(int chunkX = minChunkX; chunkX <= maxChunkX; chunkX++ )
+        {
+            for(int chunkY = minChunkY; chunkY <= maxChunkY; chunkY++ )
+            {
+                for(int chunkZ = minChunkZ; chunkZ <= maxChunkZ; chunkZ++ )
+                {
+                    Bucket bucket = buckets.get(ChunkCoord.pack(chunkX, chunkY, chunkZ));
+                    if(bucket == null)
+                        continue;
+                    for(int i = 0; i < bucket.size; i++ )
+                    {
+                        Entity e = bucket.entities[i];
+                        AABB box = e.getLocalBoundingBox();
+                        Vector3 min = box.getMinExtents();
+                        Vector3 max = box.getMaxExtents();
+                        if(e.posX + min.getX() <= maxX && e.posX + max.getX() >= minX && e.posY + min.getY() <= maxY && e.posY + max.getY() >= minY && e.posZ + min.getZ() <= maxZ && e.posZ + max.getZ() >= minZ)
+                            result.add(e);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds to {@code result} the entities whose position is at most {@code radius} blocks away from given coords
+     */
+    public void getEntitiesInRange(float x, float y, float z, float radius, List<Entity> result)
+    {
+        float radiusSq = radius * radius;
+        for(int chunkX = chunkCoord(x - radius); chunkX <= chunkCoord(x + radius); chunkX++ )
+        {
+            for(int chunkY = chunkCoord(y - radius); chunkY <= chunkCoord(y + radius); chunkY++ )
+            {
+                for(int chunkZ = chunkCoord(z - radius); chunkZ <= chunkCoord(z + radius); chunkZ++ )
+                {
+                    Bucket bucket = buckets.get(ChunkCoord.pack(chunkX, chunkY, chunkZ));
+                    if(bucket == null)
+                        continue;
+                    for(int i = 0; i < bucket.size; i++ )
+                    {
+                        Entity e = bucket.entities[i];
+                        float dx = e.posX - x;
+                        float dy = e.posY - y;
+                        float dz = e.posZ - z;
+                        if(dx * dx + dy * dy + dz * dz <= radiusSq)
+                            result.add(e);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the closest entity other than {@code ignored} whose bounding box is hit by given ray within {@code maxDist} blocks, or null.
+     * The direction must be normalized. When an entity is hit, the distance to it and the side of its bounding box which is hit are
+     * written into {@code infos}
+     */
+    public Entity rayCast(float originX, float originY, float originZ, float dirX, float dirY, float dirZ, float maxDist, Entity ignored, CollisionInfos infos)
+    {
+        float endX = originX + dirX * maxDist;
+        float endY = originY + dirY * maxDist;
+        float endZ = originZ + dirZ * maxDist;
+        int minChunkX = chunkCoord(Math.min(originX, endX) - margin);
+        int minChunkY = chunkCoord(Math.min(originY, endY) - margin);
+        int minChunkZ = chunkCoord(Math.min(originZ, endZ) - margin);
+        int maxChunkX = chunkCoord(Math.max(originX, endX) + margin);
+        int maxChunkY = chunkCoord(Math.max(originY, endY) + margin);
+        int maxChunkZ = chunkCoord(Math.max(originZ, endZ) + margin);
+        Entity hitEntity = null;
+        for(int chunkX = minChunkX; chunkX <= maxChunkX; chunkX++ )
+        {
+            for(int chunkY = minChunkY; chunkY <= maxChunkY; chunkY++ )
+            {
+                for(int chunkZ = minChunkZ; chunkZ <= maxChunkZ; chunkZ++ )
+                {
+                    Bucket bucket = buckets.get(ChunkCoord.pack(chunkX, chunkY, chunkZ));
+                    if(bucket == null)
+                        continue;
+                    for(int i = 0; i < bucket.size; i++ )
+                    {
+                        Entity e = bucket.entities[i];
+                        if(e == ignored)
+                            continue;
+                        // Testing the ray moved by the opposite of the entity position avoids translating its bounding box
+                        float hit = e.getLocalBoundingBox().intersectRay(originX - e.posX, originY - e.posY, originZ - e.posZ, dirX, dirY, dirZ, maxDist, infos);
+                        if(hit >= 0f)
+                        {
+                            hitEntity = e;
+                            maxDist = hit;
+                            infos.distance = hit;
+                        }
+                    }
+                }
+            }
+        }
+        return hitEntity;
+    }
+
+    private void insert(Entity e, long key)
+    {
+        Bucket bucket = buckets.get(key);
+        if(bucket == null)
+        {
+            bucket = new Bucket(key);
+            buckets.put(key, bucket);
+        }
+        if(bucket.size == bucket.entities.length)
+            bucket.entities = Arrays.copyOf(bucket.entities, bucket.size * 2);
+        bucket.entities[bucket.size] = e;
+        e.indexBucket = bucket;
+        e.indexSlot = bucket.size;
+        bucket.size++ ;
+    }
+
+    /**
+     * Removes an entity from its bucket by moving the last entity of the bucket into its slot
+     */
+    private void detach(Entity e)
+    {
+        Bucket bucket = e.indexBucket;
+        int last = --bucket.size;
+        Entity moved = bucket.entities[last];
+        bucket.entities[e.indexSlot] = moved;
+        moved.indexSlot = e.indexSlot;
+        bucket.entities[last] = null;
+        e.indexBucket = null;
+        e.indexSlot = -1;
+        if(bucket.size == 0)
+            buckets.remove(bucket.key);
+    }
+
+    private static long bucketKey(Entity e)
+    {
+        return ChunkCoord.pack(chunkCoord(e.posX), chunkCoord(e.posY), chunkCoord(e.posZ));
+    }
+
+    private static int chunkCoord(float coord)
+    {
+        return (int) Math.floor(coord) >> 4;
+    }
+
+    /**
+     * Entities whose position is in a given chunk
+     */
+    static class Bucket
+    {
+
+        private final long key;
+        private Entity[]   entities;
+        private int        size;
+
+        Bucket(long key)
+        {
+            this.key = key;
+            this.entities = new Entity[4];
+        }
+    }
+}
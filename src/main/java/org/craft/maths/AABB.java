@@ -40,6 +40,51 @@ public class AABB implements IDisposable
         return maxDistance <= 0.f;
     }
 
+    /**
+     * Returns the distance along given ray at which it enters this AABB, 0 if the ray starts inside it, or -1 if it misses it or enters it
+     * further than {@code maxDist}. The direction must be normalized.<br/>
+     * If the ray enters it and {@code infos} is not null, the side through which it enters is written into {@code infos.side}.
+     */
+    public float intersectRay(float originX, float originY, float originZ, float dirX, float dirY, float dirZ, float maxDist, CollisionInfos infos)
+    {
+        float near = 0f;
+        float far = maxDist;
+        EnumSide side = EnumSide.UNDEFINED;
+        for(int axis = 0; axis < 3; axis++ )
+        {
+            float origin = axis == 0 ? originX : (axis == 1 ? originY : originZ);
+            float dir = axis == 0 ? dirX : (axis == 1 ? dirY : dirZ);
+            float min = axis == 0 ? minExtents.getX() : (axis == 1 ? minExtents.getY() : minExtents.getZ());
+            float max = axis == 0 ? maxExtents.getX() : (axis == 1 ? maxExtents.getY() : maxExtents.getZ());
+            if(dir == 0f)
+            {
+                if(origin < min || origin > max)
+                    return -1f;
+                continue;
+            }
+            float inverse = 1f / dir;
+            float enter = ((dir > 0f ? min : max) - origin) * inverse;
+            float exit = ((dir > 0f ? max : min) - origin) * inverse;
+            if(enter > near)
+            {
+                near = enter;
+                if(axis == 0)
+                    side = dir > 0f ? EnumSide.WEST : EnumSide.EAST;
+                else if(axis == 1)
+                    side = dir > 0f ? EnumSide.BOTTOM : EnumSide.TOP;
+                else
+                    side = dir > 0f ? EnumSide.NORTH : EnumSide.SOUTH;
+            }
+            if(exit < far)
+                far = exit;
+            if(near > far)
+                return -1f;
+        }
+        if(infos != null)
+            infos.side = side;
+        return near;
+    }
+
     public Vector3 getMinExtents()
     {
         return minExtents;
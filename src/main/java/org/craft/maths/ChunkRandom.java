@@ -0,0 +1,112 @@
+package org.craft.maths;
+
+import java.util.*;
+
+/**
+ * SplitMix64 generator usable wherever a {@link Random} is expected.<br/>
+ * Much faster than Random (no atomic seed update) but not thread-safe: use {@link #split()} to get an independent stream for another
+ * thread or task.
+ */
+public class ChunkRandom extends Random
+{
+
+    private static final long serialVersionUID = 1L;
+    private static final long GOLDEN_GAMMA     = 0x9e3779b97f4a7c15L;
+
+    private long              state;
+    private double            nextNextGaussian;
+    private boolean           haveNextNextGaussian;
+
+    public ChunkRandom(long seed)
+    {
+        super(seed);
+    }
+
+    /**
+     * Returns the seed of the stream used by given populator on given chunk. Only depends on its arguments, so any chunk can be generated in
+     * any order, on any thread
+     */
+    public static long chunkSeed(long worldSeed, int chunkX, int chunkY, int chunkZ, int populatorIndex)
+    {
+        long h = mix64(worldSeed + GOLDEN_GAMMA);
+        h = mix64(h ^ (chunkX * 0x632be59bd9b4e019L));
+        h = mix64(h ^ (chunkY * 0x85157af5L));
+        h = mix64(h ^ (chunkZ * 0xd1342543de82ef95L));
+        return mix64(h + populatorIndex * GOLDEN_GAMMA);
+    }
+
+    /**
+     * Restarts the stream from given seed. The second value of the last {@link #nextGaussian()} call is forgotten too, so a reused generator
+     * gives the same values as a new one
+     */
+    @Override
+    public void setSeed(long seed)
+    {
+        state = seed;
+        haveNextNextGaussian = false;
+    }
+
+    /**
+     * Returns a new generator whose stream does not overlap with this one's in practice
+     */
+    public ChunkRandom split()
+    {
+        return new ChunkRandom(mix64(nextLong()));
+    }
+
+    @Override
+    public long nextLong()
+    {
+        state += GOLDEN_GAMMA;
+        return mix64(state);
+    }
+
+    @Override
+    public int nextInt()
+    {
+        return (int) (nextLong() >>> 32);
+    }
+
+    @Override
+    protected int next(int bits)
+    {
+        return (int) (nextLong() >>> (64 - bits));
+    }
+
+    /**
+     * Same polar method as {@link Random#nextGaussian()}, which keeps its cached value out of reach of {@link #setSeed(long)}
+     */
+    @Override
+    public double nextGaussian()
+    {
+        if(haveNextNextGaussian)
+        {
+            haveNextNextGaussian = false;
+            return nextNextGaussian;
+        }
+        double v1;
+        double v2;
+        double s;
+        do
+        {
+            v1 = 2 * nextDouble() - 1;
+            v2 = 2 * nextDouble() - 1;
+            s = v1 * v1 + v2 * v2;
+        }
+        while(s >= 1 || s == 0);
+        double multiplier = StrictMath.sqrt(-2 * StrictMath.log(s) / s);
+        nextNextGaussian = v2 * multiplier;
+        haveNextNextGaussian = true;
+        return v1 * multiplier;
+    }
+
+    /**
+     * SplitMix64 finalizer
+     */
+    private static long mix64(long z)
+    {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
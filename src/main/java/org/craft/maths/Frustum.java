@@ -9,68 +9,53 @@ public class Frustum
     public final static int RIGHT  = 3;
     public final static int NEAR   = 4;
     public final static int FAR    = 5;
-    private Plane[]         planes;
+
+    /**
+     * Planes as {a, b, c, d}, with (a, b, c) a unit normal pointing inside: a point is on the inner side of a plane if
+     * {@code a * x + b * y + c * z + d >= 0}
+     */
+    private float[][]       planes;
 
     public Frustum()
     {
-        planes = new Plane[6];
-        for(int i = 0; i < planes.length; i++ )
-            planes[i] = new Plane();
+        planes = new float[6][4];
     }
 
-    public void update(float radangle, float ratio, float nearD, float farD, Vector3 camPos, Vector3 camRot, Vector3 camUp)
+    /**
+     * Extracts the planes from given matrix, which projects world space to clip space as it is given to the shaders, so that the frustum
+     * holds exactly what OpenGL does not clip
+     */
+    public void update(Matrix4 projectedView)
     {
-        float tang = (float) Math.tan(radangle * 0.5f);
-        float nearPlaneH = nearD * tang;
-        float nearPlaneW = nearPlaneH * ratio;
-
-        float farPlaneH = farD * tang;
-        float farPlaneW = farPlaneH * ratio;
-
-        Vector3 nearCenter, farCenter, xAxis, yAxis, zAxis;
-
-        zAxis = camPos.sub(1).normalize();
-
-        xAxis = camUp.mul(zAxis).normalize();
-
-        yAxis = zAxis.cross(xAxis);
-
-        nearCenter = camPos.sub(zAxis.mul(nearD));
-
-        farCenter = camPos.sub(zAxis.mul(farD));
-
-        planes[NEAR].setNormalAndPoint(zAxis.negative(), nearCenter);
-        planes[FAR].setNormalAndPoint(zAxis, farCenter);
-
-        Vector3 aux, normal;
-
-        aux = (nearCenter.add(yAxis.mul(nearPlaneH))).sub(camPos);
-        aux.normalize();
-        normal = aux.mul(xAxis);
-        planes[TOP].setNormalAndPoint(normal, nearCenter.add(yAxis.mul(nearPlaneH)));
-
-        aux = (nearCenter.sub(yAxis.mul(nearPlaneH))).sub(camPos);
-        aux.normalize();
-        normal = xAxis.mul(aux);
-        planes[BOTTOM].setNormalAndPoint(normal, nearCenter.sub(yAxis.mul(nearPlaneH)));
-
-        aux = (nearCenter.sub(xAxis.mul(nearPlaneW))).sub(camPos);
-        aux.normalize();
-        normal = aux.cross(yAxis);
-        planes[LEFT].setNormalAndPoint(normal, nearCenter.sub(xAxis.mul(nearPlaneW)));
-
-        aux = (nearCenter.add(xAxis.mul(nearPlaneW))).sub(camPos);
-        aux.normalize();
-        normal = yAxis.cross(aux);
-        planes[RIGHT].setNormalAndPoint(normal, nearCenter.add(xAxis.mul(nearPlaneW)));
-
+        for(int i = 0; i < 4; i++ )
+        {
+            float row0 = projectedView.get(0, i);
+            float row1 = projectedView.get(1, i);
+            float row2 = projectedView.get(2, i);
+            float row3 = projectedView.get(3, i);
+            planes[LEFT][i] = row3 + row0;
+            planes[RIGHT][i] = row3 - row0;
+            planes[BOTTOM][i] = row3 + row1;
+            planes[TOP][i] = row3 - row1;
+            planes[NEAR][i] = row3 + row2;
+            planes[FAR][i] = row3 - row2;
+        }
+        for(float[] plane : planes)
+        {
+            float length = (float) Math.sqrt(plane[0] * plane[0] + plane[1] * plane[1] + plane[2] * plane[2]);
+            if(length != 0f)
+            {
+                for(int i = 0; i < 4; i++ )
+                    plane[i] /= length;
+            }
+        }
     }
 
     public boolean pointIn(Vector3 point)
     {
-        for(Plane plane : planes)
+        for(float[] plane : planes)
         {
-            if(plane.getDistance(point) < 0)
+            if(getDistance(plane, point.getX(), point.getY(), point.getZ()) < 0)
                 return false;
         }
         return true;
@@ -78,9 +63,9 @@ public class Frustum
 
     public boolean sphereIn(Vector3 center, float radius)
     {
-        for(Plane plane : planes)
+        for(float[] plane : planes)
         {
-            if(plane.getDistance(center) < -radius)
+            if(getDistance(plane, center.getX(), center.getY(), center.getZ()) < -radius)
                 return false;
         }
         return true;
@@ -88,22 +73,32 @@ public class Frustum
 
     public boolean boxIn(AABB aabb)
     {
-        int in, out;
-        for(int i = 0; i < 6; i++ )
+        Vector3 min = aabb.getMinExtents();
+        Vector3 max = aabb.getMaxExtents();
+        return boxIn(min.getX(), min.getY(), min.getZ(), max.getX(), max.getY(), max.getZ());
+    }
+
+    /**
+     * Returns false if the box between given corners is fully outside of the frustum. Boxes near the corners of the frustum may be kept
+     * while being outside of it
+     */
+    public boolean boxIn(float minX, float minY, float minZ, float maxX, float maxY, float maxZ)
+    {
+        for(float[] plane : planes)
         {
-            out = 0;
-            in = 0;
-            for(int pointIndex = 0; pointIndex < 8 && (in == 0 || out == 0); pointIndex++ )
-            {
-                if(planes[i].getDistance(aabb.getVertex(pointIndex)) < 0.f)
-                    out++ ;
-                else
-                    in++ ;
-            }
-            if(in == 0)
+            // Corner of the box the furthest on the inner side of the plane
+            float x = plane[0] >= 0 ? maxX : minX;
+            float y = plane[1] >= 0 ? maxY : minY;
+            float z = plane[2] >= 0 ? maxZ : minZ;
+            if(getDistance(plane, x, y, z) < 0)
                 return false;
         }
         return true;
     }
 
+    private static float getDistance(float[] plane, float x, float y, float z)
+    {
+        return plane[0] * x + plane[1] * y + plane[2] * z + plane[3];
+    }
+
 }
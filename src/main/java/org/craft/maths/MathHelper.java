@@ -1,11 +1,12 @@
 package org.craft.maths;
 
 import java.util.*;
+import java.util.concurrent.*;
 
 public class MathHelper
 {
 
-    private static HashMap<Long, ImprovedNoise> noiseGenerators = new HashMap<Long, ImprovedNoise>();
+    private static ConcurrentHashMap<Long, ImprovedNoise> noiseGenerators = new ConcurrentHashMap<Long, ImprovedNoise>();
 
     public static double roundToNearestMultiple(double number, double multiple)
     {
@@ -47,11 +48,15 @@ public class MathHelper
 
     private static ImprovedNoise getNoiseGenerator(long seed)
     {
-        if(!noiseGenerators.containsKey(seed))
+        ImprovedNoise generator = noiseGenerators.get(seed);
+        if(generator == null)
         {
-            noiseGenerators.put(seed, new ImprovedNoise(seed));
+            generator = new ImprovedNoise(seed);
+            ImprovedNoise previous = noiseGenerators.putIfAbsent(seed, generator);
+            if(previous != null)
+                generator = previous;
         }
-        return noiseGenerators.get(seed);
+        return generator;
     }
 
     public static int[] shuffle(int[] perm, long seed)
@@ -359,22 +359,13 @@ public final class Matrix4 extends AbstractReference implements IDisposable
     public static Matrix4 get()
     {
         Matrix4 v = null;
-        if(unused.isEmpty())
+        synchronized(unused)
         {
-            v = new Matrix4();
-        }
-        else
-        {
-            try
-            {
+            if(!unused.isEmpty())
                 v = unused.pop();
-            }
-            catch(Exception e)
-            {
-                e.printStackTrace();
-                v = new Matrix4();
-            }
         }
+        if(v == null)
+            v = new Matrix4();
         v.increaseReferenceCounter();
         return v;
     }
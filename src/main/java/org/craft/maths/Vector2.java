@@ -181,15 +181,15 @@ public final class Vector2 extends AbstractReference implements IDisposable
     public static Vector2 get(float x, float y)
     {
         Vector2 v = null;
-        if(unused.isEmpty())
+        synchronized(unused)
         {
-            v = new Vector2(x, y);
+            if(!unused.isEmpty())
+                v = unused.pop();
         }
+        if(v == null)
+            v = new Vector2(x, y);
         else
-        {
-            v = unused.pop();
             v.set(x, y);
-        }
         v.increaseReferenceCounter();
         return v;
     }
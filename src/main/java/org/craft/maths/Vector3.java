@@ -308,23 +308,15 @@ public class Vector3 extends AbstractReference implements IDisposable, IBufferWr
     public static Vector3 get(float x, float y, float z)
     {
         Vector3 v = null;
-        if(unused.isEmpty() || unused.size() == 0)
+        synchronized(unused)
         {
-            v = new Vector3(x, y, z);
+            if(!unused.isEmpty())
+                v = unused.pop();
         }
+        if(v == null)
+            v = new Vector3(x, y, z);
         else
-        {
-            try
-            {
-                v = unused.pop();
-            }
-            catch(Exception e)
-            {
-                e.printStackTrace();
-                v = new Vector3(x, y, z);
-            }
             v.set(x, y, z);
-        }
         v.increaseReferenceCounter();
         return v;
     }
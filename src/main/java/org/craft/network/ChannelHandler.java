@@ -33,6 +33,12 @@ public abstract class ChannelHandler extends ChannelInboundHandlerAdapter
         netHandler.onConnexionEstablished(ctx);
     }
 
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx)
+    {
+        netHandler.onConnexionLost(ctx);
+    }
+
     @Override
     public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause)
     {
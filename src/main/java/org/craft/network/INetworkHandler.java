@@ -8,4 +8,6 @@ public interface INetworkHandler
     void handlePacket(ChannelHandlerContext ctx, AbstractPacket packet);
 
     void onConnexionEstablished(ChannelHandlerContext ctx);
+
+    void onConnexionLost(ChannelHandlerContext ctx);
 }
@@ -2,12 +2,13 @@ package org.craft.resources;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.*;
 
 public class DiskSimpleResourceLoader extends ResourceLoader
 {
 
-    private HashMap<String, AbstractResource> resources = new HashMap<String, AbstractResource>();
-    private String                            base;
+    private ConcurrentHashMap<String, AbstractResource> resources = new ConcurrentHashMap<String, AbstractResource>();
+    private String                                      base;
 
     public DiskSimpleResourceLoader()
     {
@@ -61,6 +62,22 @@ public class DiskSimpleResourceLoader extends ResourceLoader
         return resources.containsKey(location.getFullPath());
     }
 
+    /**
+     * Drops the cached resource at given location so that the next read hits the disk again
+     */
+    public void unload(ResourceLocation location)
+    {
+        resources.remove(complete(location).getFullPath());
+    }
+
+    /**
+     * Returns the file backing given location
+     */
+    public File getFile(ResourceLocation location)
+    {
+        return new File(complete(location).getFullPath());
+    }
+
     @Override
     public List<AbstractResource> getAllResources(ResourceLocation location) throws Exception
     {
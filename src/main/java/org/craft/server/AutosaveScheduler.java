@@ -0,0 +1,240 @@
+package org.craft.server;
+
+import org.craft.utils.*;
+import org.craft.world.*;
+
+/**
+ * Periodically saves the server world without blowing the tick.<br/>
+ * Every {@link #getInterval()} ticks a save cycle starts: the world constants are queued, then each tick copies at most
+ * {@link #getChunksPerTick()} modified chunks and hands them to the world's {@link WorldSaveService}. No chunk is copied while the I/O
+ * thread is more than {@link #getMaxPendingChunks()} chunks behind, so a slow disk delays the cycle instead of piling up copies in memory.
+ * The cycle ends once the pass of the save service over the loaded chunks is complete.<br/>
+ * Chunks copied by the {@link ChunkLifecycleManager} to be saved before being unloaded go through the same service: they are counted against
+ * the chunks copied per tick, the lifecycle manager being given the same budget, and reported along with the cycle.
+ */
+public class AutosaveScheduler
+{
+
+    private WorldSaveService      saveService;
+    private ChunkLifecycleManager lifecycle;
+    private int                   interval;
+    private int                   chunksPerTick;
+    private int                   maxPendingChunks;
+    private int                   ticksToNextSave;
+    private boolean               saving;
+
+    private long                  cycleStart;
+    private int                   cycleTicks;
+    private int                   cycleChunks;
+    private int                   cycleEvictionChunks;
+    private volatile long         lastCycleLag;
+    private volatile int          lastCycleTicks;
+    private volatile int          lastCycleChunks;
+    private volatile int          lastCycleEvictionChunks;
+    private long                  maxTickCost;
+    private long                  cycles;
+    private long                  evictionChunks;
+
+    /**
+     * Creates a scheduler saving given world every {@code interval} ticks and copying at most {@code chunksPerTick} chunks per tick
+     */
+    public AutosaveScheduler(World world, int interval, int chunksPerTick)
+    {
+        this.saveService = world.getSaveService();
+        this.lifecycle = world.getChunkLifecycleManager();
+        this.interval = interval;
+        this.chunksPerTick = chunksPerTick;
+        this.maxPendingChunks = chunksPerTick * 16;
+        this.ticksToNextSave = interval;
+        lifecycle.setSaveBudget(chunksPerTick, maxPendingChunks);
+    }
+
+    /**
+     * Called once per server tick, after the world has been updated
+     */
+    public void update()
+    {
+        // Chunks copied this tick by the lifecycle manager, which runs during the world update
+        int evictionSaves = lifecycle.getLastUpdateSaves();
+        long tickCost = lifecycle.getLastUpdateSaveCost();
+        evictionChunks += evictionSaves;
+        if(saving || (interval > 0 && --ticksToNextSave <= 0))
+            tickCost += saveBatch(chunksPerTick - evictionSaves, evictionSaves);
+        maxTickCost = Math.max(maxTickCost, tickCost);
+    }
+
+    /**
+     * Copies at most {@code budget} modified chunks, starting a cycle if none is in progress, and returns the time spent copying them
+     */
+    private long saveBatch(int budget, int evictionSaves)
+    {
+        if(!saving)
+            startCycle();
+        cycleTicks++ ;
+        cycleEvictionChunks += evictionSaves;
+        if(budget <= 0 || saveService.getPendingCount() > maxPendingChunks)
+            return 0;
+        int queued = saveService.saveModifiedChunks(budget);
+        cycleChunks += queued;
+        if(queued < budget)
+            endCycle();
+        return saveService.getLastCopyDuration();
+    }
+
+    /**
+     * Queues every modified chunk at once and blocks until everything has been written. Used when the server stops
+     */
+    public void flush()
+    {
+        if(!saving)
+            startCycle();
+        cycleTicks++ ;
+        cycleChunks += saveService.saveModifiedChunks();
+        endCycle();
+        saveService.flush();
+        Log.message("Server world saved: " + this);
+    }
+
+    private void startCycle()
+    {
+        saving = true;
+        cycleStart = System.nanoTime();
+        cycleTicks = 0;
+        cycleChunks = 0;
+        cycleEvictionChunks = 0;
+        saveService.saveWorldConstants();
+    }
+
+    private void endCycle()
+    {
+        saving = false;
+        ticksToNextSave = interval;
+        cycles++ ;
+        final long start = cycleStart;
+        final int ticks = cycleTicks;
+        final int chunks = cycleChunks;
+        final int evictedChunks = cycleEvictionChunks;
+        // Runs after the last batch of this cycle, so the lag covers both the copies and the writes
+        saveService.submit(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                lastCycleLag = System.nanoTime() - start;
+                lastCycleTicks = ticks;
+                lastCycleChunks = chunks;
+                lastCycleEvictionChunks = evictedChunks;
+            }
+        });
+    }
+
+    /**
+     * Returns true if a save cycle is in progress
+     */
+    public boolean isSaving()
+    {
+        return saving;
+    }
+
+    /**
+     * Sets the number of ticks between the end of a save cycle and the start of the next one. 0 or less disables autosaving
+     */
+    public void setInterval(int interval)
+    {
+        this.interval = interval;
+        this.ticksToNextSave = interval;
+    }
+
+    public int getInterval()
+    {
+        return interval;
+    }
+
+    /**
+     * Sets the maximum number of chunks copied per tick, by a save cycle and by unloading chunks together
+     */
+    public void setChunksPerTick(int chunksPerTick)
+    {
+        this.chunksPerTick = chunksPerTick;
+        lifecycle.setSaveBudget(chunksPerTick, maxPendingChunks);
+    }
+
+    public int getChunksPerTick()
+    {
+        return chunksPerTick;
+    }
+
+    /**
+     * Sets the number of chunks waiting to be written above which no more chunks are copied
+     */
+    public void setMaxPendingChunks(int maxPendingChunks)
+    {
+        this.maxPendingChunks = maxPendingChunks;
+        lifecycle.setSaveBudget(chunksPerTick, maxPendingChunks);
+    }
+
+    public int getMaxPendingChunks()
+    {
+        return maxPendingChunks;
+    }
+
+    /**
+     * Returns the time between the start of the last complete cycle and the moment its last chunk was written, in nanoseconds
+     */
+    public long getLastCycleLag()
+    {
+        return lastCycleLag;
+    }
+
+    /**
+     * Returns the number of ticks the last complete cycle was spread over
+     */
+    public int getLastCycleTicks()
+    {
+        return lastCycleTicks;
+    }
+
+    /**
+     * Returns the number of chunks queued by the last complete cycle
+     */
+    public int getLastCycleChunks()
+    {
+        return lastCycleChunks;
+    }
+
+    /**
+     * Returns the number of chunks copied to be saved before being unloaded during the last complete cycle. Their writes are part of the lag
+     * of the cycle
+     */
+    public int getLastCycleEvictionChunks()
+    {
+        return lastCycleEvictionChunks;
+    }
+
+    /**
+     * Returns the number of chunks copied to be saved before being unloaded since this scheduler was created
+     */
+    public long getEvictionChunksCount()
+    {
+        return evictionChunks;
+    }
+
+    /**
+     * Returns the longest time a single tick spent copying chunks, for a save cycle or to unload them, in nanoseconds
+     */
+    public long getMaxTickCost()
+    {
+        return maxTickCost;
+    }
+
+    public long getCyclesCount()
+    {
+        return cycles;
+    }
+
+    @Override
+    public String toString()
+    {
+        return cycles + " saves, last one " + lastCycleChunks + " chunks (and " + lastCycleEvictionChunks + " unloaded ones) over " + lastCycleTicks + " ticks, " + (lastCycleLag / 1000000) + " ms lag, " + (maxTickCost / 1000) + " us max tick cost, " + evictionChunks + " chunks saved on unload, " + saveService.getPendingCount() + " chunks pending, " + saveService.getWrittenBytes() / 1024 + " KB written, " + saveService.getFailedSavesCount() + " failed";
+    }
+}
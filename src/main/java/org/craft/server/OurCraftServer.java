@@ -6,8 +6,10 @@ import java.util.*;
 import javax.swing.*;
 
 import org.craft.blocks.*;
+import org.craft.blocks.states.*;
 import org.craft.client.*;
 import org.craft.commands.*;
+import org.craft.entity.*;
 import org.craft.items.*;
 import org.craft.modding.*;
 import org.craft.modding.events.*;
@@ -62,6 +64,7 @@ public class OurCraftServer implements Game, CommandSource
     private boolean               running;
     private AssetLoader           assetsLoader;
     private WorldLoader           worldLoader;
+    private AutosaveScheduler     autosaveScheduler;
 
     public OurCraftServer()
     {
@@ -79,7 +82,16 @@ public class OurCraftServer implements Game, CommandSource
         gen.addPopulator(new GrassPopulator());
         gen.addPopulator(new FlowerPopulator());
         gen.addPopulator(new TreePopulator());
-        worldLoader = new VanillaWorldLoader(new ResourceLocation("worlds"), new DiskSimpleResourceLoader());
+        RegionWorldLoader regionLoader = new RegionWorldLoader(new ResourceLocation("worlds"), new DiskSimpleResourceLoader());
+        try
+        {
+            regionLoader.convertLegacyChunks();
+        }
+        catch(IOException e)
+        {
+            e.printStackTrace();
+        }
+        worldLoader = regionLoader;
         serverWorld = new org.craft.world.World("test-world", new BaseChunkProvider(worldLoader), gen, worldLoader);
     }
 
@@ -106,6 +118,7 @@ public class OurCraftServer implements Game, CommandSource
         Commands.init();
         Commands.register(new StopCommand(), "stop");
         Blocks.init();
+        BlockStates.init();
         Items.init();
         try
         {
@@ -134,10 +147,16 @@ public class OurCraftServer implements Game, CommandSource
 
         expectedFrameRate = 60;
         timeBetweenUpdates = 1000000000 / expectedFrameRate;
+        int autosaveInterval = (int) (Integer.parseInt(properties.get("autosave")) * expectedFrameRate);
+        autosaveScheduler = new AutosaveScheduler(serverWorld, autosaveInterval, Integer.parseInt(properties.get("autosaveChunks")));
+        serverWorld.getEntityTicker().setThreadsCount(Integer.parseInt(properties.get("entityThreads")));
         while(running)
         {
             tick();
         }
+        Log.message("Saving world");
+        autosaveScheduler.flush();
+        serverWorld.dispose();
         if(serverGui != null)
             serverGui.dispose();
         serverWrapper.stop();
@@ -310,6 +329,7 @@ public class OurCraftServer implements Game, CommandSource
     private void update(double delta)
     {
         serverWorld.update(delta);
+        autosaveScheduler.update();
     }
 
     public static OurCraftServer getServer()
@@ -332,12 +352,44 @@ public class OurCraftServer implements Game, CommandSource
         return worldLoader;
     }
 
+    public AutosaveScheduler getAutosaveScheduler()
+    {
+        return autosaveScheduler;
+    }
+
+    /**
+     * Adds given player to the online players and keeps the chunks around it loaded. Called by the network threads when a client joins
+     */
+    public void addPlayer(EntityPlayer player)
+    {
+        synchronized(onlinePlayers)
+        {
+            onlinePlayers.add(player);
+        }
+        serverWorld.getChunkLifecycleManager().addViewer(player);
+    }
+
+    /**
+     * Removes a player added with {@link #addPlayer(EntityPlayer)}. Called by the network threads when a client leaves
+     */
+    public void removePlayer(EntityPlayer player)
+    {
+        synchronized(onlinePlayers)
+        {
+            onlinePlayers.remove(player);
+        }
+        serverWorld.getChunkLifecycleManager().removeViewer(player);
+    }
+
     @Override
     public void sendMessage(String message)
     {
         Log.message("[Command] " + message);
     }
 
+    /**
+     * Stops the server. The world is saved and every pending write is waited for once the current tick is over
+     */
     public void shutdown()
     {
         running = false;
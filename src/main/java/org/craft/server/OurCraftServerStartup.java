@@ -19,6 +19,9 @@ public class OurCraftServerStartup
             HashMap<String, String> properties = new HashMap<String, String>();
             properties.put("port", "35565");
             properties.put("nogui", "false");
+            properties.put("autosave", "300");
+            properties.put("autosaveChunks", "32");
+            properties.put("entityThreads", "1");
             String current = null;
             for(int i = 0; i < args.length; i++ )
             {
@@ -5,6 +5,7 @@ import io.netty.channel.*;
 import org.craft.client.*;
 import org.craft.client.network.packets.*;
 import org.craft.client.render.fonts.*;
+import org.craft.entity.*;
 import org.craft.network.*;
 import org.craft.server.*;
 import org.craft.server.network.packets.*;
@@ -14,22 +15,42 @@ import org.craft.world.*;
 public class ServerNetHandler implements INetworkHandler
 {
 
+    /**
+     * Player of the connection, created once the client has sent its infos
+     */
+    private EntityPlayer player;
+
     @Override
-    public void handlePacket(ChannelHandlerContext ctx, AbstractPacket packet)
+    public void handlePacket(final ChannelHandlerContext ctx, AbstractPacket packet)
     {
         if(packet instanceof C0PlayerInfos)
         {
             C0PlayerInfos playerInfos = (C0PlayerInfos) packet;
             SessionManager.getInstance().registerSession(playerInfos.getSession());
             OurCraftServer.getServer().getNettyWrapper().registerChannel(playerInfos.getSession().getId(), ctx.channel());
+            player = new EntityPlayer(OurCraftServer.getServer().getServerWorld(), playerInfos.getSession().getUUID());
+            OurCraftServer.getServer().addPlayer(player);
             OurCraftServer.getServer().broadcastMessage(TextFormatting.generateFromColor(200, 200, 50) + I18n.format("players.joined", playerInfos.getSession().getDisplayName()));
         }
+        else if(packet instanceof C2PlayerPosition)
+        {
+            C2PlayerPosition position = (C2PlayerPosition) packet;
+            if(player != null)
+                player.setLocation(position.getX(), position.getY(), position.getZ());
+        }
         else if(packet instanceof C1AskForChunk)
         {
             C1AskForChunk chunkAsked = (C1AskForChunk) packet;
             World w = OurCraftServer.getServer().getServerWorld();
-            Chunk c = w.getChunkProvider().getOrCreate(w, chunkAsked.getChunkX(), chunkAsked.getChunkY(), chunkAsked.getChunkZ());
-            ChannelHelper.writeAndFlush(new S2ChunkData(c), ctx);
+            // Generation happens on worker threads, the chunk is sent once it has been added to the world
+            w.getChunkGenerationService().request(chunkAsked.getChunkX(), chunkAsked.getChunkY(), chunkAsked.getChunkZ(), new IChunkGenerationListener()
+            {
+                @Override
+                public void onChunkReady(World world, Chunk c)
+                {
+                    ChannelHelper.writeAndFlush(new S2ChunkData(c), ctx);
+                }
+            });
         }
     }
 
@@ -39,4 +60,14 @@ public class ServerNetHandler implements INetworkHandler
         ;
     }
 
+    @Override
+    public void onConnexionLost(ChannelHandlerContext ctx)
+    {
+        if(player != null)
+        {
+            OurCraftServer.getServer().removePlayer(player);
+            player = null;
+        }
+    }
+
 }
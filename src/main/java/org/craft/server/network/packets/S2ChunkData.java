@@ -10,15 +10,21 @@ import org.craft.world.*;
 
 public class S2ChunkData extends AbstractPacket
 {
-    private Chunk chunk;
+    private Chunk         chunk;
+    private ChunkSnapshot snapshot;
 
     public S2ChunkData()
     {
     }
 
+    /**
+     * Creates a packet sending the blocks given chunk has now. They are read from a snapshot when the packet is encoded, on the network
+     * thread, so the chunk can keep changing meanwhile
+     */
     public S2ChunkData(Chunk c)
     {
         this.chunk = c;
+        this.snapshot = c.getSnapshot();
     }
 
     @Override
@@ -58,16 +64,16 @@ public class S2ChunkData extends AbstractPacket
     @Override
     public void encodeInto(ByteBuf buffer)
     {
-        buffer.writeInt(chunk.getCoords().x);
-        buffer.writeInt(chunk.getCoords().y);
-        buffer.writeInt(chunk.getCoords().z);
+        buffer.writeInt(snapshot.getCoords().x);
+        buffer.writeInt(snapshot.getCoords().y);
+        buffer.writeInt(snapshot.getCoords().z);
         for(int x = 0; x < 16; x++ )
         {
             for(int y = 0; y < 16; y++ )
             {
                 for(int z = 0; z < 16; z++ )
                 {
-                    ByteBufUtils.writeString(buffer, chunk.getChunkBlock(x, y, z).getId());
+                    ByteBufUtils.writeString(buffer, snapshot.getBlock(x, y, z).getId());
                 }
             }
         }
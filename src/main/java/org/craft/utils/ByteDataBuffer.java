@@ -57,7 +57,7 @@ public class ByteDataBuffer implements Flushable, Closeable, DataInput, DataOutp
 
     private int next()
     {
-        return buffer[index++ ];
+        return buffer[index++ ] & 0xFF;
     }
 
     public int readableBytes() throws IOException
@@ -112,10 +112,10 @@ public class ByteDataBuffer implements Flushable, Closeable, DataInput, DataOutp
     @Override
     public void readFully(byte[] b, int off, int len) throws IOException
     {
-        for(int i = off; i < len + off; i++ )
-        {
-            b[off + i] = (byte) next();
-        }
+        if(len > buffer.length - index)
+            throw new EOFException();
+        System.arraycopy(buffer, index, b, off, len);
+        index += len;
     }
 
     public int readInt() throws IOException
@@ -1,6 +1,8 @@
 package org.craft.utils;
 
 import java.io.*;
+import java.lang.reflect.*;
+import java.nio.*;
 
 /**
  * VERY VERY OLD, NEEDS TO BE UPDATED
@@ -45,6 +47,71 @@ public final class IOUtils
         return ous.toByteArray();
     }
 
+    /**
+     * Writes given data to a temporary file next to {@code file} then renames it, so that {@code file} never holds partial data
+     */
+    public static void writeAtomically(File file, byte[] data, int length) throws IOException
+    {
+        File parent = file.getAbsoluteFile().getParentFile();
+        if(!parent.exists())
+            parent.mkdirs();
+        File temp = new File(parent, file.getName() + ".tmp");
+        FileOutputStream out = new FileOutputStream(temp);
+        try
+        {
+            out.write(data, 0, length);
+            out.flush();
+            out.getFD().sync();
+        }
+        finally
+        {
+            out.close();
+        }
+        if(!temp.renameTo(file))
+        {
+            // Some platforms refuse to rename over an existing file
+            file.delete();
+            if(!temp.renameTo(file))
+                throw new IOException("Could not rename " + temp + " to " + file);
+        }
+    }
+
+    /**
+     * Releases the memory mapping behind given buffer right away instead of when it is collected. Neither the buffer nor any view of it
+     * must be used afterwards. Returns false if this JVM offers no way to do it, in which case the mapping is released once collected
+     */
+    public static boolean unmap(MappedByteBuffer buffer)
+    {
+        try
+        {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            invokeCleaner.invoke(theUnsafe.get(null), buffer);
+            return true;
+        }
+        catch(Exception e)
+        {
+            // Unsafe.invokeCleaner only exists since Java 9
+        }
+        try
+        {
+            // Before Java 9, mapped buffers hold a sun.misc.Cleaner
+            Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+            cleanerMethod.setAccessible(true);
+            Object cleaner = cleanerMethod.invoke(buffer);
+            if(cleaner == null)
+                return false;
+            cleaner.getClass().getMethod("clean").invoke(cleaner);
+            return true;
+        }
+        catch(Exception e)
+        {
+            return false;
+        }
+    }
+
     public static void deleteFolderContents(File folder)
     {
         File[] files = folder.listFiles();
@@ -30,42 +30,105 @@ public class BaseChunkProvider extends ChunkProvider
     public void addChunk(World world, Chunk c)
     {
         if(!chunkMap.contains(c.getCoords()))
+        {
             chunkMap.add(c);
+            c.onAddedToWorld();
+        }
     }
 
     @Override
     public Chunk get(World world, int chunkX, int chunkY, int chunkZ)
     {
-        return chunkMap.getAt(chunkX, chunkY, chunkZ);
+        Chunk c = chunkMap.getAt(chunkX, chunkY, chunkZ);
+        if(c != null)
+            c.setLastAccess(accessClock);
+        return c;
     }
 
     @Override
     public Chunk create(World world, int chunkX, int chunkY, int chunkZ)
+    {
+        Chunk chunk = loadChunk(world, chunkX, chunkY, chunkZ);
+        if(chunk != null)
+        {
+            addLoadedChunk(world, chunk);
+            return chunk;
+        }
+        chunk = generateTerrain(world, chunkX, chunkY, chunkZ);
+        addGeneratedChunk(world, chunk);
+        return chunk;
+    }
+
+    /**
+     * Reads chunk at given chunk coordinates from the world storage, or returns null if it has never been saved.<br/>
+     * Does not touch the chunk list, so it can be called from any thread.
+     */
+    public Chunk loadChunk(World world, int chunkX, int chunkY, int chunkZ)
     {
         try
         {
             Chunk chunk = loader.loadChunk(world, chunkX, chunkY, chunkZ);
             if(chunk != null)
-            {
-                addChunk(world, chunk);
-                return chunk;
-            }
+                chunk.clearModified();
+            return chunk;
         }
         catch(IOException e)
         {
             e.printStackTrace();
         }
-        Chunk newChunk = new Chunk(world, new ChunkCoord(chunkX, chunkY, chunkZ));
-        addChunk(world, newChunk);
-        world.getGenerator().populateChunk(world, newChunk);
-        newChunk.markDirty();
-        return newChunk;
+        return null;
+    }
+
+    /**
+     * Creates a new chunk and runs the terrain populators on it. Does not touch the chunk list, so it can be called from any thread.
+     */
+    public Chunk generateTerrain(World world, int chunkX, int chunkY, int chunkZ)
+    {
+        Chunk chunk = new Chunk(world, new ChunkCoord(chunkX, chunkY, chunkZ));
+        world.getGenerator().generateTerrain(world, chunk);
+        return chunk;
+    }
+
+    /**
+     * Adds a chunk returned by {@link #loadChunk(World, int, int, int)}. Must be called on the thread updating the world
+     */
+    public void addLoadedChunk(World world, Chunk chunk)
+    {
+        chunk.setLastAccess(accessClock);
+        addChunk(world, chunk);
+        world.getChunkLifecycleManager().onChunkLoaded(chunk);
+    }
+
+    /**
+     * Adds a chunk returned by {@link #generateTerrain(World, int, int, int)} and decorates it. Must be called on the thread updating the world
+     */
+    public void addGeneratedChunk(World world, Chunk chunk)
+    {
+        chunk.setLastAccess(accessClock);
+        addChunk(world, chunk);
+        world.getGenerator().decorateChunk(world, chunk);
+        chunk.markDirty();
     }
 
     @Override
     public boolean doesChunkExists(World world, int chunkX, int chunkY, int chunkZ)
     {
-        return chunkMap.contains(ChunkCoord.get(chunkX, chunkY, chunkZ));
+        return chunkMap.contains(chunkX, chunkY, chunkZ);
+    }
+
+    @Override
+    public Chunk removeChunk(World world, int chunkX, int chunkY, int chunkZ)
+    {
+        Chunk c = chunkMap.remove(chunkX, chunkY, chunkZ);
+        if(c != null)
+            c.onRemovedFromWorld();
+        return c;
+    }
+
+    @Override
+    public int getLoadedChunksCount()
+    {
+        return chunkMap.size();
     }
 
     @Override
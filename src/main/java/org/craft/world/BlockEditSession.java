@@ -0,0 +1,361 @@
+package org.craft.world;
+
+import java.util.*;
+
+import org.craft.blocks.*;
+import org.craft.blocks.states.*;
+import org.craft.utils.*;
+
+/**
+ * Collects block edits and applies them chunk by chunk when {@link #commit()} is called.<br/>
+ * Unlike {@link World#setBlock(int, int, int, Block)}, which looks up the neighbouring chunks and notifies the neighbouring blocks for every
+ * block, a commit recomputes the highest block once per edited column, marks each edited chunk and each touched neighbour chunk dirty once,
+ * and notifies each block around the edited area once.<br/>
+ * The blocks and states of each chunk are written in a single call holding the chunk lock, so a {@link ChunkSnapshot} sees all the edits
+ * of its chunk or none. The whole commit holds the world lock, which {@link RegionSnapshot} also takes to snapshot its chunks, so a region
+ * never mixes edited and unedited chunks of a commit. Readers snapshotting chunks one by one without the world lock, such as
+ * {@link org.craft.server.network.packets.S2ChunkData}, may see a commit spanning several chunks applied to some of them only.<br/>
+ * Edits in chunks which are not loaded when the session is committed are dropped.
+ */
+public class BlockEditSession
+{
+
+    private World                           world;
+    private LinkedHashMap<Long, ChunkEdits> edits;
+    private ChunkEdits                      lastEdits;
+    private boolean                         notifyNeighbors;
+    private int                             editsCount;
+
+    public BlockEditSession(World world)
+    {
+        this.world = world;
+        this.notifyNeighbors = true;
+        edits = new LinkedHashMap<Long, ChunkEdits>();
+    }
+
+    /**
+     * Sets whether blocks in and around the edited area are notified of the changes when committing. Enabled by default
+     */
+    public void setNotifyNeighbors(boolean notifyNeighbors)
+    {
+        this.notifyNeighbors = notifyNeighbors;
+    }
+
+    /**
+     * Sets block at given coords when the session is committed
+     */
+    public void setBlock(int x, int y, int z, Block block)
+    {
+        if(block == null)
+            block = Blocks.air;
+        getEdits(x >> 4, y >> 4, z >> 4).setBlock(x & 15, y & 15, z & 15, block.getUniqueID());
+    }
+
+    /**
+     * Sets block state at given coords when the session is committed. Block states are applied after blocks
+     */
+    public void setBlockState(int x, int y, int z, BlockState state, IBlockStateValue value)
+    {
+        getEdits(x >> 4, y >> 4, z >> 4).addState(PalettedBlockStorage.index(x & 15, y & 15, z & 15), state, value);
+    }
+
+    /**
+     * Fills the box between given coords (all inclusive) with given block when the session is committed
+     */
+    public void fill(int minX, int minY, int minZ, int maxX, int maxY, int maxZ, Block block)
+    {
+        if(block == null)
+            block = Blocks.air;
+        int id = block.getUniqueID();
+        for(int chunkX = minX >> 4; chunkX <= maxX >> 4; chunkX++ )
+        {
+            for(int chunkY = minY >> 4; chunkY <= maxY >> 4; chunkY++ )
+            {
+                for(int chunkZ = minZ >> 4; chunkZ <= maxZ >> 4; chunkZ++ )
+                {
+                    ChunkEdits chunkEdits = getEdits(chunkX, chunkY, chunkZ);
+                    int startX = Math.max(minX, chunkX << 4) & 15;
+                    int startY = Math.max(minY, chunkY << 4) & 15;
+                    int startZ = Math.max(minZ, chunkZ << 4) & 15;
+                    int endX = Math.min(maxX, (chunkX << 4) + 15) & 15;
+                    int endY = Math.min(maxY, (chunkY << 4) + 15) & 15;
+                    int endZ = Math.min(maxZ, (chunkZ << 4) + 15) & 15;
+                    for(int x = startX; x <= endX; x++ )
+                    {
+                        for(int y = startY; y <= endY; y++ )
+                        {
+                            for(int z = startZ; z <= endZ; z++ )
+                                chunkEdits.setBlock(x, y, z, id);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the block at given coords as it will be once the session is committed
+     */
+    public Block getBlockAt(int x, int y, int z)
+    {
+        ChunkEdits chunkEdits = edits.get(ChunkCoord.pack(x >> 4, y >> 4, z >> 4));
+        if(chunkEdits != null)
+        {
+            int id = chunkEdits.getBlock(PalettedBlockStorage.index(x & 15, y & 15, z & 15));
+            if(id >= 0)
+                return Blocks.getByID(id);
+        }
+        return world.getBlockAt(x, y, z);
+    }
+
+    /**
+     * Returns the number of block edits waiting to be committed
+     */
+    public int getEditsCount()
+    {
+        return editsCount;
+    }
+
+    /**
+     * Applies every edit and clears the session so that it can be reused. Returns the number of blocks written
+     */
+    public int commit()
+    {
+        int written = 0;
+        synchronized(world)
+        {
+            HashSet<Chunk> neighbors = new HashSet<Chunk>();
+            ArrayList<ChunkEdits> applied = new ArrayList<ChunkEdits>();
+            ArrayList<int[]> powerChanges = new ArrayList<int[]>();
+            long[] lightChanges = new long[editsCount];
+            int lightChangesCount = 0;
+            ChunkProvider provider = world.getChunkProvider();
+            for(ChunkEdits chunkEdits : edits.values())
+            {
+                Chunk chunk = provider.get(world, chunkEdits.chunkX, chunkEdits.chunkY, chunkEdits.chunkZ);
+                if(chunk == null)
+                    continue;
+                applied.add(chunkEdits);
+                if(chunkEdits.count > 0)
+                    lightChangesCount = collectChanges(chunk, chunkEdits, lightChanges, lightChangesCount, powerChanges);
+                chunk.applyEdits(chunkEdits.ids, chunkEdits.count, chunkEdits.columns, chunkEdits.states);
+                written += chunkEdits.count;
+
+                for(EnumSide side : EnumSide.values())
+                {
+                    if((chunkEdits.borders & borderFlag(side)) != 0)
+                    {
+                        Chunk neighbor = provider.get(world, chunkEdits.chunkX + side.getTranslationX(), chunkEdits.chunkY + side.getTranslationY(), chunkEdits.chunkZ + side.getTranslationZ());
+                        if(neighbor != null)
+                            neighbors.add(neighbor);
+                    }
+                }
+            }
+            for(Chunk neighbor : neighbors)
+                neighbor.markDirty();
+            for(int[] change : powerChanges)
+                world.getPowerNetworks().onBlockChanged(change[0], change[1], change[2], Blocks.getByID(change[3]), world.getBlockAt(change[0], change[1], change[2]));
+
+            if(notifyNeighbors)
+                notifyBlocks(applied);
+            // The light thread does not take the world lock, so it must only see the edited blocks once they are written. It is woken last so
+            // that it does not compete with the notifications
+            world.getLightEngine().onBlocksChanged(lightChanges, lightChangesCount);
+        }
+        edits.clear();
+        lastEdits = null;
+        editsCount = 0;
+        return written;
+    }
+
+    /**
+     * Collects the edited blocks of given chunk whose opacity or emitted light changes, packed with {@link ChunkCoord#pack(int, int, int)}
+     * from {@code lightChangesCount} on, and the edits which add or remove a {@link IPowerableBlock} as {x, y, z, previous block id}. Returns
+     * the new count of light changes. Must be called before the edits are written
+     */
+    private int collectChanges(Chunk chunk, ChunkEdits chunkEdits, long[] lightChanges, int lightChangesCount, ArrayList<int[]> powerChanges)
+    {
+        for(int i = 0; i < PalettedBlockStorage.SIZE; i++ )
+        {
+            int id = chunkEdits.ids[i];
+            if(id < 0)
+                continue;
+            int previous = chunk.blocks.get(i);
+            int x = chunkEdits.worldX(i);
+            int y = chunkEdits.worldY(i);
+            int z = chunkEdits.worldZ(i);
+            if(LightEngine.getOpacity(previous) != LightEngine.getOpacity(id) || LightEngine.getEmission(previous) != LightEngine.getEmission(id))
+                lightChanges[lightChangesCount++ ] = ChunkCoord.pack(x, y, z);
+            if(previous != id && (Blocks.getByID(previous) instanceof IPowerableBlock || Blocks.getByID(id) instanceof IPowerableBlock))
+                powerChanges.add(new int[]
+                {
+                        x, y, z, previous
+                });
+        }
+        return lightChangesCount;
+    }
+
+    /**
+     * Notifies every edited block with {@link World#updateBlock(int, int, int)}, then every block around them which has not been edited
+     * with {@link World#updateBlockFromNeighbor(int, int, int)}, each block being notified only once
+     */
+    private void notifyBlocks(ArrayList<ChunkEdits> applied)
+    {
+        HashSet<Long> notified = new HashSet<Long>();
+        for(ChunkEdits chunkEdits : applied)
+        {
+            for(int i = 0; i < PalettedBlockStorage.SIZE; i++ )
+            {
+                if(!chunkEdits.isEdited(i))
+                    continue;
+                int x = chunkEdits.worldX(i);
+                int y = chunkEdits.worldY(i);
+                int z = chunkEdits.worldZ(i);
+                world.updateBlock(x, y, z);
+                for(EnumSide side : EnumSide.values())
+                {
+                    if(side == EnumSide.UNDEFINED)
+                        continue;
+                    int nx = x + side.getTranslationX();
+                    int ny = y + side.getTranslationY();
+                    int nz = z + side.getTranslationZ();
+                    if(isEdited(nx, ny, nz, chunkEdits))
+                        continue;
+                    if(notified.add(ChunkCoord.pack(nx, ny, nz)))
+                        world.updateBlockFromNeighbor(nx, ny, nz);
+                }
+            }
+        }
+    }
+
+    private boolean isEdited(int x, int y, int z, ChunkEdits hint)
+    {
+        ChunkEdits chunkEdits = hint;
+        if(chunkEdits.chunkX != x >> 4 || chunkEdits.chunkY != y >> 4 || chunkEdits.chunkZ != z >> 4)
+            chunkEdits = edits.get(ChunkCoord.pack(x >> 4, y >> 4, z >> 4));
+        return chunkEdits != null && chunkEdits.isEdited(PalettedBlockStorage.index(x & 15, y & 15, z & 15));
+    }
+
+    private ChunkEdits getEdits(int chunkX, int chunkY, int chunkZ)
+    {
+        ChunkEdits chunkEdits = lastEdits;
+        if(chunkEdits != null && chunkEdits.chunkX == chunkX && chunkEdits.chunkY == chunkY && chunkEdits.chunkZ == chunkZ)
+            return chunkEdits;
+        long key = ChunkCoord.pack(chunkX, chunkY, chunkZ);
+        chunkEdits = edits.get(key);
+        if(chunkEdits == null)
+        {
+            chunkEdits = new ChunkEdits(chunkX, chunkY, chunkZ);
+            edits.put(key, chunkEdits);
+        }
+        lastEdits = chunkEdits;
+        return chunkEdits;
+    }
+
+    private static int borderFlag(EnumSide side)
+    {
+        return side == EnumSide.UNDEFINED ? 0 : 1 << side.ordinal();
+    }
+
+    /**
+     * Edits of a single chunk
+     */
+    private class ChunkEdits
+    {
+
+        private final int                  chunkX;
+        private final int                  chunkY;
+        private final int                  chunkZ;
+        private int[]                      ids;
+        private int                        count;
+        private boolean[]                  columns;
+        private int                        borders;
+        private final ArrayList<StateEdit> states;
+
+        ChunkEdits(int chunkX, int chunkY, int chunkZ)
+        {
+            this.chunkX = chunkX;
+            this.chunkY = chunkY;
+            this.chunkZ = chunkZ;
+            this.states = new ArrayList<StateEdit>();
+        }
+
+        void setBlock(int x, int y, int z, int id)
+        {
+            if(ids == null)
+            {
+                ids = new int[PalettedBlockStorage.SIZE];
+                Arrays.fill(ids, -1);
+                columns = new boolean[256];
+            }
+            int index = PalettedBlockStorage.index(x, y, z);
+            if(ids[index] < 0)
+            {
+                count++ ;
+                editsCount++ ;
+            }
+            ids[index] = id;
+            columns[x << 4 | z] = true;
+            if(x == 0)
+                borders |= borderFlag(EnumSide.WEST);
+            else if(x == 15)
+                borders |= borderFlag(EnumSide.EAST);
+            if(y == 0)
+                borders |= borderFlag(EnumSide.BOTTOM);
+            else if(y == 15)
+                borders |= borderFlag(EnumSide.TOP);
+            if(z == 0)
+                borders |= borderFlag(EnumSide.NORTH);
+            else if(z == 15)
+                borders |= borderFlag(EnumSide.SOUTH);
+        }
+
+        void addState(int index, BlockState state, IBlockStateValue value)
+        {
+            states.add(new StateEdit(index, state, value));
+        }
+
+        int getBlock(int index)
+        {
+            return ids == null ? -1 : ids[index];
+        }
+
+        boolean isEdited(int index)
+        {
+            return ids != null && ids[index] >= 0;
+        }
+
+        int worldX(int index)
+        {
+            return (chunkX << 4) + (index >> 8);
+        }
+
+        int worldY(int index)
+        {
+            return (chunkY << 4) + (index >> 4 & 15);
+        }
+
+        int worldZ(int index)
+        {
+            return (chunkZ << 4) + (index & 15);
+        }
+    }
+
+    /**
+     * Block state edit, applied by {@link Chunk#applyEdits(int[], int, boolean[], List)}
+     */
+    static class StateEdit
+    {
+
+        final int              index;
+        final BlockState       state;
+        final IBlockStateValue value;
+
+        StateEdit(int index, BlockState state, IBlockStateValue value)
+        {
+            this.index = index;
+            this.state = state;
+            this.value = value;
+        }
+    }
+}
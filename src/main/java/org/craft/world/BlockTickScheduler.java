@@ -0,0 +1,205 @@
+package org.craft.world;
+
+import java.util.*;
+
+import org.craft.blocks.*;
+
+/**
+ * Runs the block ticks of a world: ticks scheduled with {@link World#scheduleUpdate(int, int, int, int)}, ordered by due tick, and random
+ * ticks given every world tick to {@link #getRandomTicksPerChunk()} blocks picked at random in each loaded chunk. Only chunks holding at
+ * least one block which {@link Block#hasRandomTicks() asks for random ticks} are sampled.
+ */
+public class BlockTickScheduler
+{
+
+    private static final byte[] randomTicking = new byte[1 << 16];
+
+    static
+    {
+        Arrays.fill(randomTicking, (byte) -1);
+    }
+
+    private World                        world;
+    private PriorityQueue<ScheduledTick> queue;
+    private HashSet<Long>                scheduledPositions;
+    private Random                       rng;
+    private long                         currentTick;
+    private long                         scheduledCount;
+    private int                          randomTicksPerChunk;
+    private int                          maxScheduledTicksPerUpdate;
+    private int                          lastScheduledTicks;
+    private int                          lastRandomTicks;
+
+    public BlockTickScheduler(World world, long seed)
+    {
+        this.world = world;
+        this.rng = new Random(seed);
+        this.randomTicksPerChunk = 3;
+        this.maxScheduledTicksPerUpdate = 65536;
+        queue = new PriorityQueue<ScheduledTick>();
+        scheduledPositions = new HashSet<Long>();
+    }
+
+    /**
+     * Schedules a tick of the block at given coords in {@code delay} world ticks. Does nothing if a tick is already scheduled at these
+     * coords
+     */
+    public void scheduleUpdate(int x, int y, int z, int delay)
+    {
+        long position = pack(x, y, z);
+        if(!scheduledPositions.add(position))
+            return;
+        queue.add(new ScheduledTick(x, y, z, world.getBlockAt(x, y, z), currentTick + Math.max(1, delay), scheduledCount++ ));
+    }
+
+    /**
+     * Returns true if a tick is scheduled at given coords
+     */
+    public boolean isScheduled(int x, int y, int z)
+    {
+        return scheduledPositions.contains(pack(x, y, z));
+    }
+
+    /**
+     * Advances the tick counter by one, then runs the scheduled ticks which are due and the random ticks
+     */
+    public void update()
+    {
+        currentTick++ ;
+        lastScheduledTicks = 0;
+        while(!queue.isEmpty() && queue.peek().dueTick <= currentTick && lastScheduledTicks < maxScheduledTicksPerUpdate)
+        {
+            ScheduledTick tick = queue.poll();
+            scheduledPositions.remove(pack(tick.x, tick.y, tick.z));
+            lastScheduledTicks++ ;
+            // Ticks of unloaded chunks and of blocks replaced in the meantime are dropped
+            if(world.getChunk(tick.x, tick.y, tick.z) == null || world.getBlockAt(tick.x, tick.y, tick.z) != tick.block)
+                continue;
+            tick.block.updateTick(world, tick.x, tick.y, tick.z);
+        }
+
+        lastRandomTicks = 0;
+        if(randomTicksPerChunk <= 0)
+            return;
+        ArrayList<Chunk> chunks = new ArrayList<Chunk>();
+        for(Chunk c : world.getChunkProvider())
+        {
+            if(hasRandomTicks(c.blocks))
+                chunks.add(c);
+        }
+        for(Chunk c : chunks)
+        {
+            ChunkCoord coords = c.getCoords();
+            for(int i = 0; i < randomTicksPerChunk; i++ )
+            {
+                int index = rng.nextInt(PalettedBlockStorage.SIZE);
+                Block block = Blocks.getByID(c.blocks.get(index));
+                if(!block.hasRandomTicks())
+                    continue;
+                block.randomTick(world, (coords.x << 4) + (index >> 8), (coords.y << 4) + (index >> 4 & 15), (coords.z << 4) + (index & 15), rng);
+                lastRandomTicks++ ;
+            }
+        }
+    }
+
+    private static boolean hasRandomTicks(PalettedBlockStorage storage)
+    {
+        for(int i = 0; i < storage.getPaletteSize(); i++ )
+        {
+            int id = storage.getPaletteValue(i) & 0xFFFF;
+            if(randomTicking[id] < 0)
+                randomTicking[id] = (byte) (Blocks.getByID(id).hasRandomTicks() ? 1 : 0);
+            if(randomTicking[id] == 1)
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns the number of world ticks run so far
+     */
+    public long getCurrentTick()
+    {
+        return currentTick;
+    }
+
+    /**
+     * Sets the number of blocks picked in each loaded chunk every tick
+     */
+    public void setRandomTicksPerChunk(int randomTicksPerChunk)
+    {
+        this.randomTicksPerChunk = randomTicksPerChunk;
+    }
+
+    public int getRandomTicksPerChunk()
+    {
+        return randomTicksPerChunk;
+    }
+
+    /**
+     * Sets the maximum number of scheduled ticks run by a single update. Remaining ticks are run by the next updates
+     */
+    public void setMaxScheduledTicksPerUpdate(int maxScheduledTicksPerUpdate)
+    {
+        this.maxScheduledTicksPerUpdate = maxScheduledTicksPerUpdate;
+    }
+
+    /**
+     * Returns the number of ticks waiting in the queue
+     */
+    public int getScheduledCount()
+    {
+        return queue.size();
+    }
+
+    /**
+     * Returns the number of scheduled ticks run by the last update
+     */
+    public int getLastScheduledTicks()
+    {
+        return lastScheduledTicks;
+    }
+
+    /**
+     * Returns the number of random ticks given by the last update
+     */
+    public int getLastRandomTicks()
+    {
+        return lastRandomTicks;
+    }
+
+    private static long pack(int x, int y, int z)
+    {
+        return ((long) x & 0x1FFFFFL) << 42 | ((long) y & 0x1FFFFFL) << 21 | ((long) z & 0x1FFFFFL);
+    }
+
+    private static class ScheduledTick implements Comparable<ScheduledTick>
+    {
+
+        private final int   x;
+        private final int   y;
+        private final int   z;
+        private final Block block;
+        private final long  dueTick;
+        private final long  order;
+
+        ScheduledTick(int x, int y, int z, Block block, long dueTick, long order)
+        {
+            this.x = x;
+            this.y = y;
+            this.z = z;
+            this.block = block;
+            this.dueTick = dueTick;
+            this.order = order;
+        }
+
+        @Override
+        public int compareTo(ScheduledTick other)
+        {
+            if(dueTick != other.dueTick)
+                return dueTick < other.dueTick ? -1 : 1;
+            // Ticks due at the same time run in scheduling order
+            return order < other.order ? -1 : (order == other.order ? 0 : 1);
+        }
+    }
+}
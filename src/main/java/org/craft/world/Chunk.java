@@ -6,58 +6,66 @@ import com.google.common.base.Optional;
 
 import org.craft.blocks.*;
 import org.craft.blocks.states.*;
-import org.craft.maths.*;
 import org.craft.spongeimpl.math.*;
+import org.craft.utils.*;
 import org.spongepowered.api.entity.*;
 import org.spongepowered.api.math.*;
 import org.spongepowered.api.world.biome.*;
 
+/**
+ * A 16x16x16 section of a world.<br/>
+ * Writes go through the methods of the chunk, which hold its lock and count each change in its {@link #getVersion() version}. Other threads
+ * read it through a {@link #getSnapshot() snapshot}: the storages it shares with a snapshot are frozen, and the chunk writes into a copy of
+ * them instead. Direct reads of the storages are only safe on the thread writing the chunk.
+ */
 public class Chunk implements org.spongepowered.api.world.Chunk
 {
 
-    public short[][][]                         blocks;
+    public volatile PalettedBlockStorage       blocks;
     public int[][]                             highest;
-    public float[][][]                         lightValues;
-    public HashMap<Vector3, BlockStatesObject> blockStatesObjects;
+    public volatile NibbleArray                skyLight;
+    public volatile NibbleArray                blockLight;
+    public volatile PalettedBlockStorage       blockStates;
     private ChunkCoord                         coords;
-    private boolean                            isDirty;
+    private volatile boolean                   isDirty;
+    private volatile boolean                   isModified;
+    private long                               lastAccess;
+    private boolean                            isInWorld;
     private World                              owner;
+    private volatile long                      version;
+    private ChunkSnapshot                      snapshot;
 
     public Chunk(World owner, ChunkCoord coords)
     {
         this.owner = owner;
         this.coords = coords;
-        this.blocks = new short[16][16][16];
+        this.blocks = new PalettedBlockStorage(Blocks.air.getUniqueID());
         this.highest = new int[16][16];
-        this.lightValues = new float[16][16][16];
-        blockStatesObjects = new HashMap<Vector3, BlockStatesObject>();
+        this.skyLight = new NibbleArray();
+        this.blockLight = new NibbleArray();
+        this.blockStates = new PalettedBlockStorage(0);
         for(int x = 0; x < 16; x++ )
         {
             Arrays.fill(highest[x], -1);
-            for(int y = 0; y < 16; y++ )
-            {
-                Arrays.fill(blocks[x][y], Blocks.air.getUniqueID());
-                Arrays.fill(lightValues[x][y], 1f);
-            }
         }
     }
 
     /**
-     * Returns light value in Chunk from given world space
+     * Returns the brightness used to render the block at given world coordinates, between 0 and 1. Blocks which stop light are lit by the
+     * brightest of their neighbours
      */
-    public float getLightValue(World w, int worldX, int worldY, int worldZ)
+    public float getLightValue(IBlockAccess w, int worldX, int worldY, int worldZ)
     {
-        int x = worldX % 16;
-        int y = worldY % 16;
-        int z = worldZ % 16;
-
-        if(x < 0)
-            x = 16 + x;
-        if(y < 0)
-            y = 16 + y;
-        if(z < 0)
-            z = 16 + z;
-        return lightValues[x][y][z];
+        int index = PalettedBlockStorage.index(worldX & 15, worldY & 15, worldZ & 15);
+        if(LightEngine.getOpacity(blocks.get(index)) < LightEngine.MAX_LEVEL)
+            return LightEngine.getBrightness(Math.max(skyLight.get(index), blockLight.get(index)));
+        int level = 0;
+        for(EnumSide side : EnumSide.values())
+        {
+            if(side != EnumSide.UNDEFINED)
+                level = Math.max(level, w.getLightLevel(worldX + side.getTranslationX(), worldY + side.getTranslationY(), worldZ + side.getTranslationZ()));
+        }
+        return LightEngine.getBrightness(level);
     }
 
     /**
@@ -76,28 +84,7 @@ public class Chunk implements org.spongepowered.api.world.Chunk
         if(z < 0)
             z = 16 + z;
 
-        return Blocks.getByID(blocks[x][y][z]);
-    }
-
-    /**
-     * Sets light value in Chunk from given world space
-     */
-    public void setLightValue(World world, int worldX, int worldY, int worldZ, float lightValue)
-    {
-        int x = worldX % 16;
-        int y = worldY % 16;
-        int z = worldZ % 16;
-
-        if(x < 0)
-            x = 16 + x;
-        if(y < 0)
-            y = 16 + y;
-        if(z < 0)
-            z = 16 + z;
-        lightValues[x][y][z] = lightValue;
-        isDirty = true;
-
-        markNeighbors(x, y, z);
+        return Blocks.getByID(blocks.get(PalettedBlockStorage.index(x, y, z)));
     }
 
     /**
@@ -138,39 +125,204 @@ public class Chunk implements org.spongepowered.api.world.Chunk
         isDirty = false;
     }
 
-    public void fill(Block block)
+    /**
+     * Returns true if this chunk has been modified since it was last saved.<br/>
+     * Unlike {@link #isDirty()}, this flag is not cleared by the renderer.
+     */
+    public boolean isModified()
+    {
+        return isModified;
+    }
+
+    /**
+     * Marks this chunk as needing to be saved
+     */
+    public void markModified()
+    {
+        isModified = true;
+    }
+
+    /**
+     * Called once this chunk has been saved
+     */
+    public void clearModified()
     {
+        isModified = false;
+    }
+
+    /**
+     * Returns the value of the provider access clock when this chunk was last looked up
+     */
+    public long getLastAccess()
+    {
+        return lastAccess;
+    }
+
+    /**
+     * Sets the value of the provider access clock when this chunk was last looked up
+     */
+    public void setLastAccess(long lastAccess)
+    {
+        this.lastAccess = lastAccess;
+    }
+
+    /**
+     * Returns a copy of the blocks, block states and light of this chunk. The copy is not part of the world, so it can be saved from another
+     * thread while this chunk keeps being modified. It shares the storages of a {@link #getSnapshot() snapshot}, so it costs no copy until
+     * either chunk is written
+     */
+    public Chunk copy()
+    {
+        ChunkSnapshot snapshot = getSnapshot();
+        Chunk copy = new Chunk(owner, coords);
+        copy.blocks = snapshot.getBlocks();
+        copy.blockStates = snapshot.getBlockStatesStorage();
+        copy.skyLight = snapshot.getSkyLightArray();
+        copy.blockLight = snapshot.getBlockLightArray();
         for(int x = 0; x < 16; x++ )
-            for(int y = 0; y < 16; y++ )
-            {
-                for(int z = 0; z < 16; z++ )
-                {
-                    setChunkBlock(x, y, z, block);
-                    markNeighbors(x, y, z);
-                }
-            }
+        {
+            for(int z = 0; z < 16; z++ )
+                copy.highest[x][z] = snapshot.getHighest(x, z);
+        }
+        return copy;
     }
 
     /**
-     * Returns light value in Chunk from given chunk space
+     * Returns the number of changes made to the blocks, block states and light of this chunk so far
      */
-    public float getChunkLightValue(int x, int y, int z)
+    public long getVersion()
     {
-        return lightValues[x][y][z];
+        return version;
     }
 
     /**
-     * Sets light value in Chunk from given chunk space
+     * Returns an immutable view of the current blocks, block states and light of this chunk, which can be read from any thread. Successive
+     * calls return the same snapshot as long as the chunk has not been changed
      */
-    public void setChunkLightValue(int x, int y, int z, float lightValue)
+    public synchronized ChunkSnapshot getSnapshot()
     {
-        lightValues[x][y][z] = lightValue;
+        if(snapshot == null || snapshot.getVersion() != version)
+        {
+            blocks.freeze();
+            blockStates.freeze();
+            skyLight.freeze();
+            blockLight.freeze();
+            int[] heights = new int[256];
+            for(int x = 0; x < 16; x++ )
+                System.arraycopy(highest[x], 0, heights, x << 4, 16);
+            snapshot = new ChunkSnapshot(coords, version, blocks, blockStates, skyLight, blockLight, heights);
+        }
+        return snapshot;
+    }
+
+    /**
+     * Returns the current block storage, frozen so that it can be read from any thread. Cheaper than {@link #getSnapshot()} when only the
+     * blocks are needed
+     */
+    public synchronized PalettedBlockStorage getBlocksSnapshot()
+    {
+        blocks.freeze();
+        return blocks;
+    }
+
+    /**
+     * Sets the sky light level at given index in the storage
+     */
+    public synchronized void setSkyLight(int index, int level)
+    {
+        if(skyLight.isFrozen())
+            skyLight = skyLight.copy();
+        skyLight.set(index, level);
+        version++ ;
+    }
+
+    /**
+     * Sets the block light level at given index in the storage
+     */
+    public synchronized void setBlockLight(int index, int level)
+    {
+        if(blockLight.isFrozen())
+            blockLight = blockLight.copy();
+        blockLight.set(index, level);
+        version++ ;
+    }
+
+    /**
+     * Returns true if this chunk has been added to its world's chunk provider
+     */
+    public boolean isInWorld()
+    {
+        return isInWorld;
+    }
+
+    /**
+     * Called by chunk providers once this chunk has been added. Neighbours are marked dirty once so that they take it into account.<br/>
+     * Until then, changes to this chunk do not touch the chunk provider, which allows building chunks off the game thread.
+     */
+    public void onAddedToWorld()
+    {
+        isInWorld = true;
+        markNeighbors(0, 0, 0);
+        owner.getLightEngine().onChunkAdded(this);
+        owner.getPowerNetworks().onChunkAdded(this);
+    }
+
+    /**
+     * Called by chunk providers once this chunk has been removed
+     */
+    public void onRemovedFromWorld()
+    {
+        isInWorld = false;
+        owner.getLightEngine().onChunkRemoved(this);
+        owner.getPowerNetworks().onChunkRemoved(this);
+    }
+
+    /**
+     * Fills the whole chunk with given block. The block storage is reset to a single value.
+     */
+    public synchronized void fill(Block block)
+    {
+        if(block == null)
+            block = Blocks.air;
+        blocks = new PalettedBlockStorage(block.getUniqueID());
+        version++ ;
+        int highestValue = block == Blocks.air ? -1 : 15;
+        for(int x = 0; x < 16; x++ )
+            Arrays.fill(highest[x], highestValue);
+        markModified();
         markDirty();
-        markNeighbors(x, y, z);
+        markNeighbors(0, 0, 0);
+    }
+
+    /**
+     * Returns the light level in Chunk from given chunk space: the highest of the sky and block light levels
+     */
+    public int getChunkLightLevel(int x, int y, int z)
+    {
+        int index = PalettedBlockStorage.index(x, y, z);
+        return Math.max(skyLight.get(index), blockLight.get(index));
+    }
+
+    /**
+     * Returns sky light level in Chunk from given chunk space
+     */
+    public int getChunkSkyLight(int x, int y, int z)
+    {
+        return skyLight.get(PalettedBlockStorage.index(x, y, z));
+    }
+
+    /**
+     * Returns block light level in Chunk from given chunk space
+     */
+    public int getChunkBlockLight(int x, int y, int z)
+    {
+        return blockLight.get(PalettedBlockStorage.index(x, y, z));
     }
 
     private void markNeighbors(int x, int y, int z)
     {
+        if(!isInWorld)
+            return;
         Chunk c = owner.getChunkProvider().get(owner, coords.x - 1, coords.y, coords.z);
         if(c != null)
             c.markDirty();
@@ -201,7 +353,7 @@ public class Chunk implements org.spongepowered.api.world.Chunk
      */
     public Block getChunkBlock(int x, int y, int z)
     {
-        Block b = Blocks.getByID(blocks[x][y][z]);
+        Block b = Blocks.getByID(blocks.get(PalettedBlockStorage.index(x, y, z)));
         if(b == null)
             return Blocks.air;
         return b;
@@ -210,12 +362,12 @@ public class Chunk implements org.spongepowered.api.world.Chunk
     /**
      * Sets block in Chunk from given chunk space
      */
-    public void setChunkBlock(int x, int y, int z, Block block)
+    public synchronized void setChunkBlock(int x, int y, int z, Block block)
     {
         if(block == null)
             block = Blocks.air;
         else
-            blocks[x][y][z] = block.getUniqueID();
+            blocksForWrite().set(PalettedBlockStorage.index(x, y, z), block.getUniqueID());
 
         if(y >= highest[x][z])
         {
@@ -235,10 +387,110 @@ public class Chunk implements org.spongepowered.api.world.Chunk
                 highest[x][z] = y;
             }
         }
+        markModified();
         markDirty();
         markNeighbors(x, y, z);
     }
 
+    /**
+     * Recomputes the highest block of every column, after the storage has been written directly
+     */
+    public synchronized void updateHighest()
+    {
+        version++ ;
+        for(int x = 0; x < 16; x++ )
+        {
+            for(int z = 0; z < 16; z++ )
+                updateHighest(x, z);
+        }
+    }
+
+    private void updateHighest(int x, int z)
+    {
+        int y = 15;
+        while(y >= 0 && blocks.get(PalettedBlockStorage.index(x, y, z)) == Blocks.air.getUniqueID())
+            y-- ;
+        highest[x][z] = y;
+    }
+
+    /**
+     * Writes the blocks and block states edited by a {@link BlockEditSession} at once, holding the lock of this chunk, so a snapshot sees
+     * either all of them or none. Every index of {@code ids} holding a value other than -1 is set to that block id, then the states are
+     * applied in order. The highest block is only recomputed for the columns flagged in {@code columns} (indexed by {@code x << 4 | z}), the
+     * version is counted once, and neighbours are not marked dirty, which is left to the session.
+     */
+    synchronized void applyEdits(int[] ids, int editsCount, boolean[] columns, List<BlockEditSession.StateEdit> states)
+    {
+        if(editsCount > 0)
+        {
+            boolean uniform = editsCount == PalettedBlockStorage.SIZE;
+            for(int i = 1; uniform && i < PalettedBlockStorage.SIZE; i++ )
+                uniform = ids[i] == ids[0];
+            if(uniform)
+                blocks = new PalettedBlockStorage(ids[0]);
+            else
+            {
+                if(blocks.isFrozen())
+                    blocks = blocks.copy();
+                for(int i = 0; i < PalettedBlockStorage.SIZE; i++ )
+                {
+                    if(ids[i] >= 0)
+                        blocks.set(i, ids[i]);
+                }
+            }
+            for(int x = 0; x < 16; x++ )
+            {
+                for(int z = 0; z < 16; z++ )
+                {
+                    if(columns[x << 4 | z])
+                        updateHighest(x, z);
+                }
+            }
+        }
+        if(!states.isEmpty())
+        {
+            if(blockStates.isFrozen())
+                blockStates = blockStates.copy();
+            for(BlockEditSession.StateEdit edit : states)
+                blockStates.set(edit.index, BlockStates.withPackedValue(blockStates.get(edit.index), edit.state, edit.value));
+        }
+        version++ ;
+        markModified();
+        markDirty();
+    }
+
+    /**
+     * Writes a single block state, without marking neighbours dirty
+     */
+    synchronized void applyBlockStateEdit(int index, BlockState state, IBlockStateValue value)
+    {
+        statesForWrite().set(index, BlockStates.withPackedValue(blockStates.get(index), state, value));
+        markModified();
+        markDirty();
+    }
+
+    /**
+     * Returns the block storage for a write, after copying it if it is shared with a snapshot, and counts the change
+     */
+    private PalettedBlockStorage blocksForWrite()
+    {
+        if(blocks.isFrozen())
+            blocks = blocks.copy();
+        version++ ;
+        return blocks;
+    }
+
+    /**
+     * Returns the block states storage for a write, after copying it if it is shared with a snapshot, and counts the change
+     */
+    private PalettedBlockStorage statesForWrite()
+    {
+        if(blockStates.isFrozen())
+            blockStates = blockStates.copy();
+        version++ ;
+        return blockStates;
+    }
+
     /**
      * Returns highest block in Chunk from given chunk space
      */
@@ -278,9 +530,11 @@ public class Chunk implements org.spongepowered.api.world.Chunk
     /**
      * Sets a block state at given value from coords in chunk space
      */
-    public void setChunkBlockState(int x, int y, int z, BlockState state, IBlockStateValue value)
+    public synchronized void setChunkBlockState(int x, int y, int z, BlockState state, IBlockStateValue value)
     {
-        getBlockStateObject(x, y, z, true).set(state, value);
+        int index = PalettedBlockStorage.index(x, y, z);
+        statesForWrite().set(index, BlockStates.withPackedValue(blockStates.get(index), state, value));
+        markModified();
         markNeighbors(x, y, z);
         markDirty();
     }
@@ -306,14 +560,9 @@ public class Chunk implements org.spongepowered.api.world.Chunk
     /**
      * Returns requested block state value from chunk space
      */
-    private IBlockStateValue getChunkBlockState(int x, int y, int z, BlockState state)
+    public IBlockStateValue getChunkBlockState(int x, int y, int z, BlockState state)
     {
-        BlockStatesObject o = getBlockStateObject(x, y, z, false);
-        if(o != null)
-        {
-            return o.get(state);
-        }
-        return null;
+        return BlockStates.getPackedValue(blockStates.get(PalettedBlockStorage.index(x, y, z)), state);
     }
 
     public void clearStates(int worldX, int worldY, int worldZ)
@@ -331,32 +580,10 @@ public class Chunk implements org.spongepowered.api.world.Chunk
         clearChunkState(x, y, z);
     }
 
-    public void clearChunkState(int x, int y, int z)
+    public synchronized void clearChunkState(int x, int y, int z)
     {
-        BlockStatesObject o = getBlockStateObject(x, y, z, false);
-        if(o != null)
-        {
-            o.clear();
-            Vector3 v = Vector3.get(x, y, z);
-            blockStatesObjects.put(v, null);
-        }
-    }
-
-    public void update()
-    {
-        for(int x = 0; x < 16; x++ )
-        {
-            for(int z = 0; z < 16; z++ )
-            {
-                int maxY = (int) Math.round(4f * MathHelper.perlinNoise(x + this.getCoords().x * 16, z + this.getCoords().z * 16, owner.getGenerator().getSeed())) - (this.getCoords().y - 11) * 16 + 1;
-                for(int y = 0; y <= maxY && y < 16; y++ )
-                {
-                    Block b = Blocks.getByID(blocks[x][y][z]);
-                    if(b != null)
-                        b.updateTick(owner, x, y, z);
-                }
-            }
-        }
+        statesForWrite().set(PalettedBlockStorage.index(x, y, z), 0);
+        markModified();
     }
 
     public BlockStatesObject getBlockStates(int worldX, int worldY, int worldZ)
@@ -371,19 +598,15 @@ public class Chunk implements org.spongepowered.api.world.Chunk
             y = 16 + y;
         if(z < 0)
             z = 16 + z;
-        return getBlockStateObject(x, y, z, false);
+        return getChunkBlockStates(x, y, z);
     }
 
-    private BlockStatesObject getBlockStateObject(int x, int y, int z, boolean forceGen)
+    /**
+     * Returns a read-only view of the block states at given coords in chunk space, or null if there is none
+     */
+    public BlockStatesObject getChunkBlockStates(int x, int y, int z)
     {
-        Vector3 v = Vector3.get(x, y, z);
-        BlockStatesObject object = blockStatesObjects.get(v);
-        if(object == null && forceGen)
-        {
-            blockStatesObjects.put(v, new BlockStatesObject());
-            object = blockStatesObjects.get(v);
-        }
-        return object;
+        return BlockStates.getPackedStates(blockStates.get(PalettedBlockStorage.index(x, y, z)));
     }
 
     @Override
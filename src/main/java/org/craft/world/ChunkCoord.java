@@ -37,11 +37,20 @@ public class ChunkCoord
     }
 
     /**
-     * Returns a chunk coords instance from given coordinates
+     * Packs given chunk coordinates into a single long (21 bits per axis)
+     */
+    public static long pack(int chunkX, int chunkY, int chunkZ)
+    {
+        return ((long) chunkX & 0x1FFFFFL) << 42 | ((long) chunkY & 0x1FFFFFL) << 21 | ((long) chunkZ & 0x1FFFFFL);
+    }
+
+    /**
+     * Returns a new chunk coords instance from given coordinates.<br/>
+     * Instances are not pooled: chunk lookups go through {@link #pack(int, int, int)} and allocate none, and the coords given here are held by
+     * chunks or sets of pending chunks, which could not share them since their fields are mutable.
      */
     public static ChunkCoord get(int chunkX, int chunkY, int chunkZ)
     {
-        // TODO pooling
         return new ChunkCoord(chunkX, chunkY, chunkZ);
     }
 }
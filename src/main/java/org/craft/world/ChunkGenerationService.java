@@ -0,0 +1,285 @@
+package org.craft.world;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+import org.craft.utils.*;
+
+/**
+ * Loads and generates chunks on a pool of worker threads.<br/>
+ * Workers only read the chunk from the disk or run the terrain populators on a chunk which is not in the world yet. Adding the chunk to the
+ * world and running the {@link IWorldDecorator}s, which may write into neighbouring chunks, is done by {@link #update()} on the thread
+ * updating the world.<br/>
+ * Concurrent requests for the same chunk share a single task.
+ */
+public class ChunkGenerationService
+{
+
+    private World                               world;
+    private BaseChunkProvider                   provider;
+    private int                                 threadsCount;
+    private int                                 maxChunksPerUpdate;
+    private ExecutorService                     executor;
+    private HashMap<Long, PendingChunk>         pending;
+    private ConcurrentLinkedQueue<PendingChunk> ready;
+    private AtomicLong                          generatedChunks;
+    private AtomicLong                          loadedChunks;
+
+    public ChunkGenerationService(World world, BaseChunkProvider provider)
+    {
+        this(world, provider, Math.max(1, Runtime.getRuntime().availableProcessors() - 1));
+    }
+
+    public ChunkGenerationService(World world, BaseChunkProvider provider, int threadsCount)
+    {
+        this.world = world;
+        this.provider = provider;
+        this.threadsCount = threadsCount;
+        this.maxChunksPerUpdate = 16;
+        pending = new HashMap<Long, PendingChunk>();
+        ready = new ConcurrentLinkedQueue<PendingChunk>();
+        generatedChunks = new AtomicLong();
+        loadedChunks = new AtomicLong();
+    }
+
+    /**
+     * Requests the chunk at given chunk coordinates. The returned future completes once the chunk has been added to the world
+     */
+    public Future<Chunk> request(int chunkX, int chunkY, int chunkZ)
+    {
+        return request(chunkX, chunkY, chunkZ, null);
+    }
+
+    /**
+     * Requests the chunk at given chunk coordinates. If the chunk is already in the world, {@code listener} is called right away on the
+     * calling thread, otherwise it is called by {@link #update()} once the chunk has been added
+     */
+    public Future<Chunk> request(int chunkX, int chunkY, int chunkZ, IChunkGenerationListener listener)
+    {
+        Chunk existing;
+        synchronized(world)
+        {
+            existing = provider.get(world, chunkX, chunkY, chunkZ);
+            if(existing == null)
+            {
+                long key = ChunkCoord.pack(chunkX, chunkY, chunkZ);
+                PendingChunk task = pending.get(key);
+                if(task == null)
+                {
+                    task = new PendingChunk(chunkX, chunkY, chunkZ);
+                    pending.put(key, task);
+                    getExecutor().execute(task);
+                }
+                if(listener != null)
+                    task.listeners.add(listener);
+                return task.result;
+            }
+        }
+        if(listener != null)
+            listener.onChunkReady(world, existing);
+        FutureTask<Chunk> result = new FutureTask<Chunk>(new ChunkResult(existing));
+        result.run();
+        return result;
+    }
+
+    /**
+     * Adds chunks completed by the workers to the world and decorates them. Called once per world update
+     */
+    public void update()
+    {
+        PendingChunk task;
+        for(int i = 0; i < maxChunksPerUpdate && (task = ready.poll()) != null; i++ )
+        {
+            synchronized(world)
+            {
+                task.result.run();
+                pending.remove(ChunkCoord.pack(task.chunkX, task.chunkY, task.chunkZ));
+            }
+            try
+            {
+                Chunk chunk = task.result.get();
+                for(IChunkGenerationListener listener : task.listeners)
+                    listener.onChunkReady(world, chunk);
+            }
+            catch(Exception e)
+            {
+                Log.error("Failed to generate chunk " + task.chunkX + ", " + task.chunkY + ", " + task.chunkZ + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Stops the workers and drops every pending request
+     */
+    public void shutdown()
+    {
+        synchronized(world)
+        {
+            if(executor != null)
+                executor.shutdownNow();
+            executor = null;
+            pending.clear();
+            ready.clear();
+        }
+    }
+
+    /**
+     * Sets the number of worker threads. Only taken into account if no chunk has been requested yet
+     */
+    public void setThreadsCount(int threadsCount)
+    {
+        this.threadsCount = threadsCount;
+    }
+
+    public int getThreadsCount()
+    {
+        return threadsCount;
+    }
+
+    /**
+     * Sets the maximum number of chunks added to the world by a single call to {@link #update()}
+     */
+    public void setMaxChunksPerUpdate(int maxChunksPerUpdate)
+    {
+        this.maxChunksPerUpdate = maxChunksPerUpdate;
+    }
+
+    /**
+     * Returns the number of requests not added to the world yet
+     */
+    public int getPendingCount()
+    {
+        synchronized(world)
+        {
+            return pending.size();
+        }
+    }
+
+    /**
+     * Returns the number of chunks whose terrain has been generated by the workers
+     */
+    public long getGeneratedChunksCount()
+    {
+        return generatedChunks.get();
+    }
+
+    /**
+     * Returns the number of chunks read from the disk by the workers
+     */
+    public long getLoadedChunksCount()
+    {
+        return loadedChunks.get();
+    }
+
+    private ExecutorService getExecutor()
+    {
+        if(executor == null)
+        {
+            executor = Executors.newFixedThreadPool(threadsCount, new ThreadFactory()
+            {
+                private int count;
+
+                @Override
+                public Thread newThread(Runnable r)
+                {
+                    Thread thread = new Thread(r, "Chunk generation #" + (count++ ));
+                    thread.setDaemon(true);
+                    thread.setPriority(Thread.NORM_PRIORITY - 1);
+                    return thread;
+                }
+            });
+        }
+        return executor;
+    }
+
+    private static class ChunkResult implements Callable<Chunk>
+    {
+
+        private Chunk chunk;
+
+        ChunkResult(Chunk chunk)
+        {
+            this.chunk = chunk;
+        }
+
+        @Override
+        public Chunk call() throws Exception
+        {
+            return chunk;
+        }
+    }
+
+    private class PendingChunk implements Runnable
+    {
+
+        private final int                            chunkX;
+        private final int                            chunkY;
+        private final int                            chunkZ;
+        private final FutureTask<Chunk>              result;
+        private final List<IChunkGenerationListener> listeners;
+        private volatile Chunk                       chunk;
+        private volatile boolean                     loaded;
+        private volatile Throwable                   error;
+
+        PendingChunk(int chunkX, int chunkY, int chunkZ)
+        {
+            this.chunkX = chunkX;
+            this.chunkY = chunkY;
+            this.chunkZ = chunkZ;
+            this.listeners = new ArrayList<IChunkGenerationListener>();
+            this.result = new FutureTask<Chunk>(new Callable<Chunk>()
+            {
+                @Override
+                public Chunk call() throws Exception
+                {
+                    return finish();
+                }
+            });
+        }
+
+        /**
+         * Worker side: loads or generates the terrain of the chunk
+         */
+        @Override
+        public void run()
+        {
+            try
+            {
+                chunk = provider.loadChunk(world, chunkX, chunkY, chunkZ);
+                loaded = chunk != null;
+                if(loaded)
+                {
+                    loadedChunks.incrementAndGet();
+                }
+                else
+                {
+                    chunk = provider.generateTerrain(world, chunkX, chunkY, chunkZ);
+                    generatedChunks.incrementAndGet();
+                }
+            }
+            catch(Throwable t)
+            {
+                error = t;
+            }
+            ready.add(this);
+        }
+
+        /**
+         * World side: adds the chunk to the world, unless it has been created in the meantime
+         */
+        private Chunk finish() throws Exception
+        {
+            if(error != null)
+                throw new Exception("Chunk task failed", error);
+            Chunk existing = provider.get(world, chunkX, chunkY, chunkZ);
+            if(existing != null)
+                return existing;
+            if(loaded)
+                provider.addLoadedChunk(world, chunk);
+            else
+                provider.addGeneratedChunk(world, chunk);
+            return chunk;
+        }
+    }
+}
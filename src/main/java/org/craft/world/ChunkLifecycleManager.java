@@ -0,0 +1,367 @@
+package org.craft.world;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+import org.craft.entity.*;
+import org.craft.utils.*;
+
+/**
+ * Keeps the number of chunks resident in a world's ChunkProvider under a budget.<br/>
+ * When the budget is exceeded, idle chunks are unloaded starting from the farthest from every viewer (player, camera, etc.) and then the least
+ * recently accessed. Modified chunks are copied and handed to the world's {@link WorldSaveService}, and only dropped once their copy has been
+ * written: the update thread never waits for the disk. The number of chunks copied per update is bounded, and none is copied while the I/O
+ * thread is too far behind.<br/>
+ * Viewers may be added, removed and moved from other threads, such as the network threads of a server: their positions are copied at the
+ * start of each update.
+ */
+public class ChunkLifecycleManager
+{
+
+    /**
+     * Default number of chunks allowed to stay loaded
+     */
+    public static final int              DEFAULT_MAX_RESIDENT_CHUNKS = 4096;
+
+    private World                        world;
+    private int                          maxResidentChunks;
+    private int                          maxEvictionsPerUpdate;
+    private int                          maxSavesPerUpdate;
+    private int                          maxPendingSaves;
+    private int                          minIdleTicks;
+    private CopyOnWriteArrayList<Entity> viewers;
+    private float[]                      viewerPositions;
+    private int                          viewersCount;
+    private HashSet<Long>                evictedCoords;
+    private Comparator<Chunk>            evictionComparator;
+    private IChunkSaveListener           saveListener;
+
+    /**
+     * Chunks whose copy has been written or could not be, waiting for the next update to drop them
+     */
+    private ConcurrentLinkedQueue<Chunk> savedEvictions;
+
+    /**
+     * Chunks handed to the save service to be unloaded, and not yet dropped or kept
+     */
+    private HashSet<Chunk>               pendingEvictions;
+    private int                          lastUpdateSaves;
+    private long                         lastUpdateSaveCost;
+
+    private long                         evictions;
+    private long                         reloads;
+    private AtomicLong                   savedChunks;
+    private AtomicLong                   failedSaves;
+
+    public ChunkLifecycleManager(World world)
+    {
+        this(world, DEFAULT_MAX_RESIDENT_CHUNKS);
+    }
+
+    public ChunkLifecycleManager(World world, int maxResidentChunks)
+    {
+        this.world = world;
+        this.maxResidentChunks = maxResidentChunks;
+        this.maxEvictionsPerUpdate = 64;
+        this.maxSavesPerUpdate = 64;
+        this.maxPendingSaves = 1024;
+        this.minIdleTicks = 60;
+        viewers = new CopyOnWriteArrayList<Entity>();
+        viewerPositions = new float[3];
+        evictedCoords = new HashSet<Long>();
+        pendingEvictions = new HashSet<Chunk>();
+        savedEvictions = new ConcurrentLinkedQueue<Chunk>();
+        savedChunks = new AtomicLong();
+        failedSaves = new AtomicLong();
+        saveListener = new IChunkSaveListener()
+        {
+            @Override
+            public void onChunkSaved(Chunk chunk, boolean success)
+            {
+                if(success)
+                    savedChunks.incrementAndGet();
+                else
+                    failedSaves.incrementAndGet();
+                savedEvictions.add(chunk);
+            }
+        };
+        evictionComparator = new Comparator<Chunk>()
+        {
+            @Override
+            public int compare(Chunk a, Chunk b)
+            {
+                int distanceComparison = Float.compare(getDistanceToViewers(b), getDistanceToViewers(a));
+                if(distanceComparison != 0)
+                    return distanceComparison;
+                return a.getLastAccess() < b.getLastAccess() ? -1 : (a.getLastAccess() == b.getLastAccess() ? 0 : 1);
+            }
+        };
+    }
+
+    /**
+     * Adds an entity around which chunks should be kept loaded
+     */
+    public void addViewer(Entity viewer)
+    {
+        viewers.addIfAbsent(viewer);
+    }
+
+    /**
+     * Removes a viewer previously added with {@link #addViewer(Entity)}
+     */
+    public void removeViewer(Entity viewer)
+    {
+        viewers.remove(viewer);
+    }
+
+    /**
+     * Returns the entities around which chunks are kept loaded
+     */
+    public List<Entity> getViewers()
+    {
+        return viewers;
+    }
+
+    /**
+     * Drops the chunks whose copy has been written, then unloads chunks if the budget is exceeded. Called once per world update
+     */
+    public void update()
+    {
+        ChunkProvider provider = world.getChunkProvider();
+        provider.advanceAccessClock();
+        lastUpdateSaves = 0;
+        lastUpdateSaveCost = 0;
+        if(!savedEvictions.isEmpty())
+            removeSavedChunks();
+        int excess = provider.getLoadedChunksCount() - pendingEvictions.size() - maxResidentChunks;
+        if(excess <= 0)
+            return;
+        copyViewerPositions();
+        WorldSaveService saveService = world.getSaveService();
+        synchronized(world)
+        {
+            long now = provider.getAccessClock();
+            ArrayList<Chunk> candidates = new ArrayList<Chunk>();
+            for(Chunk c : provider)
+            {
+                if(now - c.getLastAccess() >= minIdleTicks && !saveService.isSaving(c) && !pendingEvictions.contains(c))
+                    candidates.add(c);
+            }
+            Collections.sort(candidates, evictionComparator);
+            int toEvict = Math.min(excess, maxEvictionsPerUpdate);
+            int maxSaves = saveService.getPendingCount() > maxPendingSaves ? 0 : maxSavesPerUpdate;
+            ArrayList<Chunk> toSave = new ArrayList<Chunk>();
+            for(int i = 0; i < candidates.size() && toEvict > 0; i++ )
+            {
+                Chunk c = candidates.get(i);
+                if(c.isModified())
+                {
+                    // Kept until a later update if the I/O thread is busy, a farther unmodified chunk being dropped instead
+                    if(toSave.size() >= maxSaves)
+                        continue;
+                    toSave.add(c);
+                }
+                else
+                    remove(c);
+                toEvict-- ;
+            }
+            if(!toSave.isEmpty())
+            {
+                saveService.saveChunks(toSave, saveListener);
+                pendingEvictions.addAll(toSave);
+                lastUpdateSaves = toSave.size();
+                lastUpdateSaveCost = saveService.getLastCopyDuration();
+            }
+        }
+    }
+
+    /**
+     * Drops the chunks whose copy has been written. A chunk modified or accessed since it was copied, whose copy could not be written or
+     * which has been copied again by an autosave is kept, and will be a candidate again
+     */
+    private void removeSavedChunks()
+    {
+        WorldSaveService saveService = world.getSaveService();
+        long now = world.getChunkProvider().getAccessClock();
+        synchronized(world)
+        {
+            Chunk c;
+            while((c = savedEvictions.poll()) != null)
+            {
+                if(pendingEvictions.remove(c) && !c.isModified() && !saveService.isSaving(c) && now - c.getLastAccess() >= minIdleTicks)
+                    remove(c);
+            }
+        }
+    }
+
+    /**
+     * Removes given chunk from the provider. Must be called with the lock of the world held
+     */
+    private void remove(Chunk chunk)
+    {
+        ChunkCoord coords = chunk.getCoords();
+        world.getChunkProvider().removeChunk(world, coords.x, coords.y, coords.z);
+        world.onChunkUnloaded(chunk);
+        evictions++ ;
+        if(evictedCoords.size() >= maxResidentChunks * 4)
+            evictedCoords.clear();
+        evictedCoords.add(ChunkCoord.pack(coords.x, coords.y, coords.z));
+    }
+
+    /**
+     * Called by chunk providers when a chunk has been loaded from storage or received
+     */
+    public void onChunkLoaded(Chunk chunk)
+    {
+        ChunkCoord coords = chunk.getCoords();
+        if(evictedCoords.remove(ChunkCoord.pack(coords.x, coords.y, coords.z)))
+            reloads++ ;
+    }
+
+    /**
+     * Copies the positions of the viewers, so that they stay the same while candidates are sorted
+     */
+    private void copyViewerPositions()
+    {
+        viewersCount = 0;
+        for(Entity viewer : viewers)
+        {
+            if(viewersCount * 3 >= viewerPositions.length)
+                viewerPositions = Arrays.copyOf(viewerPositions, viewerPositions.length * 2);
+            viewerPositions[viewersCount * 3] = viewer.posX;
+            viewerPositions[viewersCount * 3 + 1] = viewer.posY;
+            viewerPositions[viewersCount * 3 + 2] = viewer.posZ;
+            viewersCount++ ;
+        }
+    }
+
+    /**
+     * Returns the distance in chunks between given chunk and the nearest viewer, as of the start of the update, or 0 if there is no viewer
+     */
+    private float getDistanceToViewers(Chunk c)
+    {
+        float min = Float.MAX_VALUE;
+        float cx = c.getCoords().x * 16 + 8;
+        float cy = c.getCoords().y * 16 + 8;
+        float cz = c.getCoords().z * 16 + 8;
+        for(int i = 0; i < viewersCount; i++ )
+        {
+            float dx = viewerPositions[i * 3] - cx;
+            float dy = viewerPositions[i * 3 + 1] - cy;
+            float dz = viewerPositions[i * 3 + 2] - cz;
+            float dist = dx * dx + dy * dy + dz * dz;
+            if(dist < min)
+                min = dist;
+        }
+        if(min == Float.MAX_VALUE)
+            return 0;
+        return (float) Math.sqrt(min) / 16f;
+    }
+
+    public int getMaxResidentChunks()
+    {
+        return maxResidentChunks;
+    }
+
+    public void setMaxResidentChunks(int maxResidentChunks)
+    {
+        this.maxResidentChunks = maxResidentChunks;
+    }
+
+    /**
+     * Sets the maximum number of chunks unloaded in a single update
+     */
+    public void setMaxEvictionsPerUpdate(int maxEvictionsPerUpdate)
+    {
+        this.maxEvictionsPerUpdate = maxEvictionsPerUpdate;
+    }
+
+    /**
+     * Sets the maximum number of modified chunks copied for saving in a single update, and the number of chunks waiting to be written above
+     * which none is copied
+     */
+    public void setSaveBudget(int maxSavesPerUpdate, int maxPendingSaves)
+    {
+        this.maxSavesPerUpdate = maxSavesPerUpdate;
+        this.maxPendingSaves = maxPendingSaves;
+    }
+
+    /**
+     * Returns the number of modified chunks copied for saving by the last update
+     */
+    public int getLastUpdateSaves()
+    {
+        return lastUpdateSaves;
+    }
+
+    /**
+     * Returns the time the last update spent copying modified chunks, in nanoseconds
+     */
+    public long getLastUpdateSaveCost()
+    {
+        return lastUpdateSaveCost;
+    }
+
+    /**
+     * Returns the number of chunks waiting for their copy to be written before being unloaded
+     */
+    public int getPendingEvictionsCount()
+    {
+        return pendingEvictions.size();
+    }
+
+    /**
+     * Sets the number of updates a chunk must have gone unaccessed before it can be unloaded
+     */
+    public void setMinIdleTicks(int minIdleTicks)
+    {
+        this.minIdleTicks = minIdleTicks;
+    }
+
+    /**
+     * Returns the number of chunks currently loaded
+     */
+    public int getResidentChunksCount()
+    {
+        return world.getChunkProvider().getLoadedChunksCount();
+    }
+
+    /**
+     * Returns the number of chunks unloaded since this manager was created
+     */
+    public long getEvictionsCount()
+    {
+        return evictions;
+    }
+
+    /**
+     * Returns the number of chunks loaded again after having been unloaded
+     */
+    public long getReloadsCount()
+    {
+        return reloads;
+    }
+
+    /**
+     * Returns the number of modified chunks written on unload
+     */
+    public long getSavedChunksCount()
+    {
+        return savedChunks.get();
+    }
+
+    /**
+     * Returns the number of chunks that could not be saved and were kept loaded
+     */
+    public long getFailedSavesCount()
+    {
+        return failedSaves.get();
+    }
+
+    @Override
+    public String toString()
+    {
+        return "Chunks: " + getResidentChunksCount() + "/" + maxResidentChunks + " resident, " + evictions + " evicted, " + pendingEvictions.size() + " waiting for their save, " + reloads + " reloaded, " + savedChunks.get() + " saved, " + failedSaves.get() + " failed saves";
+    }
+}
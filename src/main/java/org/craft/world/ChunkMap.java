@@ -1,15 +1,37 @@
 package org.craft.world;
 
 import java.util.*;
+import java.util.concurrent.atomic.*;
 
+/**
+ * Open-addressing hash table of chunks keyed by their packed coordinates (see {@link ChunkCoord#pack(int, int, int)}).<br/>
+ * Lookups do not allocate. Writers are serialized and modify the table in place, so lookups and iterations can run on any thread without
+ * locking:
+ * <ul>
+ * <li>a slot's key is written before its chunk is published, so a reader seeing a chunk also sees its key;</li>
+ * <li>entries are never moved: a removed chunk leaves a tombstone which readers skip, and tombstones are only cleaned when the table is
+ * rebuilt, so a lookup never misses a chunk which stays in the map;</li>
+ * <li>a rebuilt table is only published, through a volatile reference, once complete.</li>
+ * </ul>
+ * Iterations are weakly consistent: they see the chunks held by the map when they start, and may or may not see later changes.
+ */
 public class ChunkMap implements Iterable<Chunk>
 {
 
-    private HashMap<ChunkCoord, Chunk> map;
+    private static final int    INITIAL_CAPACITY = 256;
+    private static final float  LOAD_FACTOR      = 0.5f;
+
+    /**
+     * Marks the slot of a removed chunk, so that probe sequences going through it are not cut
+     */
+    private static final Object TOMBSTONE        = new Object();
+
+    private volatile Table      table;
+    private volatile int        size;
 
     public ChunkMap()
     {
-        map = new HashMap<ChunkCoord, Chunk>();
+        table = new Table(INITIAL_CAPACITY);
     }
 
     /**
@@ -17,22 +39,213 @@ public class ChunkMap implements Iterable<Chunk>
      */
     public Chunk getAt(int chunkX, int chunkY, int chunkZ)
     {
-        return map.get(new ChunkCoord(chunkX, chunkY, chunkZ));
+        long key = ChunkCoord.pack(chunkX, chunkY, chunkZ);
+        Table table = this.table;
+        AtomicReferenceArray<Object> values = table.values;
+        long[] keys = table.keys;
+        int mask = table.mask;
+        for(int i = slot(key, table.shift);; i = (i + 1) & mask)
+        {
+            Object value = values.get(i);
+            if(value == null)
+                return null;
+            if(value != TOMBSTONE && keys[i] == key)
+                return (Chunk) value;
+        }
     }
 
+    /**
+     * Iterates over the chunks held by this map, see the class description for the changes made during the iteration
+     */
     @Override
     public Iterator<Chunk> iterator()
     {
-        return map.values().iterator();
+        final AtomicReferenceArray<Object> values = table.values;
+        return new Iterator<Chunk>()
+        {
+            private int   index;
+            private Chunk next = advance();
+
+            private Chunk advance()
+            {
+                while(index < values.length())
+                {
+                    Object value = values.get(index++ );
+                    if(value != null && value != TOMBSTONE)
+                        return (Chunk) value;
+                }
+                return null;
+            }
+
+            @Override
+            public boolean hasNext()
+            {
+                return next != null;
+            }
+
+            @Override
+            public Chunk next()
+            {
+                if(next == null)
+                    throw new NoSuchElementException();
+                Chunk c = next;
+                next = advance();
+                return c;
+            }
+
+            @Override
+            public void remove()
+            {
+                throw new UnsupportedOperationException();
+            }
+        };
     }
 
-    public void add(Chunk c)
+    public synchronized void add(Chunk c)
     {
-        map.put(c.getCoords(), c);
+        ChunkCoord coords = c.getCoords();
+        long key = ChunkCoord.pack(coords.x, coords.y, coords.z);
+        Table current = table;
+        int slot = current.find(key);
+        if(slot >= 0)
+        {
+            current.values.set(slot, c);
+            return;
+        }
+        if(current.used + 1 > current.resizeThreshold)
+        {
+            // Grow only if the chunks fill the table, otherwise rebuilding it is enough to drop the tombstones
+            int capacity = current.mask + 1;
+            if(size + 1 > current.resizeThreshold / 2)
+                capacity *= 2;
+            current = current.rebuild(capacity);
+            table = current;
+        }
+        current.insert(key, c);
+        size++ ;
     }
 
     public boolean contains(ChunkCoord coords)
     {
-        return map.containsKey(coords);
+        return contains(coords.x, coords.y, coords.z);
+    }
+
+    /**
+     * Checks if a chunk is present at given chunk coordinates
+     */
+    public boolean contains(int chunkX, int chunkY, int chunkZ)
+    {
+        return getAt(chunkX, chunkY, chunkZ) != null;
+    }
+
+    /**
+     * Removes the chunk at given chunk coordinates and returns it, or null if there was none
+     */
+    public synchronized Chunk remove(int chunkX, int chunkY, int chunkZ)
+    {
+        Table current = table;
+        int slot = current.find(ChunkCoord.pack(chunkX, chunkY, chunkZ));
+        if(slot < 0)
+            return null;
+        Chunk c = (Chunk) current.values.get(slot);
+        current.values.set(slot, TOMBSTONE);
+        size-- ;
+        return c;
+    }
+
+    /**
+     * Returns the number of chunks held by this map
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * Returns the first slot of the probe sequence of given key: the top bits of the key multiplied by 2^64 / phi (Fibonacci hashing), so
+     * that every coordinate bit affects the slot while costing a single multiplication
+     */
+    private static int slot(long key, int shift)
+    {
+        return (int) ((key * 0x9E3779B97F4A7C15L) >>> shift);
+    }
+
+    /**
+     * Slots of the map. Only the thread holding the lock of the map writes into a table
+     */
+    private static class Table
+    {
+
+        private final long[]                       keys;
+        private final AtomicReferenceArray<Object> values;
+        private final int                          mask;
+
+        /**
+         * 64 minus the number of bits of the slot indices
+         */
+        private final int                          shift;
+        private final int                          resizeThreshold;
+
+        /**
+         * Number of slots holding a chunk or a tombstone
+         */
+        private int                                used;
+
+        Table(int capacity)
+        {
+            keys = new long[capacity];
+            values = new AtomicReferenceArray<Object>(capacity);
+            mask = capacity - 1;
+            shift = Long.numberOfLeadingZeros(mask);
+            resizeThreshold = (int) (capacity * LOAD_FACTOR);
+        }
+
+        /**
+         * Returns a new table of given capacity holding the chunks of this one, without its tombstones
+         */
+        Table rebuild(int capacity)
+        {
+            Table rebuilt = new Table(capacity);
+            for(int i = 0; i < keys.length; i++ )
+            {
+                Object value = values.get(i);
+                if(value != null && value != TOMBSTONE)
+                    rebuilt.insert(keys[i], (Chunk) value);
+            }
+            return rebuilt;
+        }
+
+        /**
+         * Returns the slot of given key, or -1 if it is not in this table
+         */
+        int find(long key)
+        {
+            for(int i = slot(key, shift);; i = (i + 1) & mask)
+            {
+                Object value = values.get(i);
+                if(value == null)
+                    return -1;
+                if(value != TOMBSTONE && keys[i] == key)
+                    return i;
+            }
+        }
+
+        /**
+         * Puts given chunk in the first empty slot of the probe sequence of its key, which must not be in this table
+         */
+        void insert(long key, Chunk c)
+        {
+            for(int i = slot(key, shift);; i = (i + 1) & mask)
+            {
+                if(values.get(i) == null)
+                {
+                    keys[i] = key;
+                    // Publishes the key along with the chunk
+                    values.set(i, c);
+                    used++ ;
+                    return;
+                }
+            }
+        }
     }
 }
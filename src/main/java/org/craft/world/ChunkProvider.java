@@ -5,11 +5,32 @@ import java.util.*;
 public abstract class ChunkProvider implements Iterable<Chunk>
 {
 
+    /**
+     * Clock stamped on chunks when they are looked up, advanced once per world update
+     */
+    protected long accessClock;
+
     public ChunkProvider()
     {
 
     }
 
+    /**
+     * Returns the current value of the access clock
+     */
+    public long getAccessClock()
+    {
+        return accessClock;
+    }
+
+    /**
+     * Advances the access clock by one
+     */
+    public void advanceAccessClock()
+    {
+        accessClock++ ;
+    }
+
     /**
      * Gets a Chunk. If this chunk is null, then create one
      */
@@ -35,5 +56,16 @@ public abstract class ChunkProvider implements Iterable<Chunk>
      */
     public abstract void addChunk(World w, Chunk c);
 
+    /**
+     * Removes the chunk at given chunk coordinates from the chunk list and returns it, or null if there was none.<br/>
+     * The chunk is not saved, see {@link ChunkLifecycleManager}.
+     */
+    public abstract Chunk removeChunk(World world, int chunkX, int chunkY, int chunkZ);
+
+    /**
+     * Returns the number of chunks currently held by this provider
+     */
+    public abstract int getLoadedChunksCount();
+
     public abstract Iterator<Chunk> iterator();
 }
@@ -0,0 +1,137 @@
+package org.craft.world;
+
+import org.craft.blocks.*;
+import org.craft.blocks.states.*;
+
+/**
+ * Immutable view of the blocks, block states and light of a chunk, as they were at a given {@link Chunk#getVersion() version}. Obtained
+ * with {@link Chunk#getSnapshot()}, it can be read from any thread while the chunk keeps being modified.<br/>
+ * Taking a snapshot does not copy anything: the storages of the chunk are frozen and shared, and the chunk copies a storage the next time it
+ * writes into it.
+ */
+public class ChunkSnapshot
+{
+
+    private final ChunkCoord           coords;
+    private final long                 version;
+    private final PalettedBlockStorage blocks;
+    private final PalettedBlockStorage blockStates;
+    private final NibbleArray          skyLight;
+    private final NibbleArray          blockLight;
+    private final int[]                highest;
+
+    ChunkSnapshot(ChunkCoord coords, long version, PalettedBlockStorage blocks, PalettedBlockStorage blockStates, NibbleArray skyLight, NibbleArray blockLight, int[] highest)
+    {
+        this.coords = coords;
+        this.version = version;
+        this.blocks = blocks;
+        this.blockStates = blockStates;
+        this.skyLight = skyLight;
+        this.blockLight = blockLight;
+        this.highest = highest;
+    }
+
+    public ChunkCoord getCoords()
+    {
+        return coords;
+    }
+
+    /**
+     * Returns the version of the chunk this snapshot has been taken at
+     */
+    public long getVersion()
+    {
+        return version;
+    }
+
+    /**
+     * Returns the unique id of the block at given coords in chunk space
+     */
+    public int getBlockID(int x, int y, int z)
+    {
+        return blocks.get(PalettedBlockStorage.index(x, y, z));
+    }
+
+    /**
+     * Returns the block at given coords in chunk space
+     */
+    public Block getBlock(int x, int y, int z)
+    {
+        Block b = Blocks.getByID(getBlockID(x, y, z));
+        if(b == null)
+            return Blocks.air;
+        return b;
+    }
+
+    /**
+     * Returns a read-only view of the block states at given coords in chunk space, or null if there is none
+     */
+    public BlockStatesObject getBlockStates(int x, int y, int z)
+    {
+        return BlockStates.getPackedStates(blockStates.get(PalettedBlockStorage.index(x, y, z)));
+    }
+
+    /**
+     * Returns requested block state value at given coords in chunk space, or null if the block has none
+     */
+    public IBlockStateValue getBlockState(int x, int y, int z, BlockState state)
+    {
+        return BlockStates.getPackedValue(blockStates.get(PalettedBlockStorage.index(x, y, z)), state);
+    }
+
+    /**
+     * Returns sky light level at given coords in chunk space
+     */
+    public int getSkyLight(int x, int y, int z)
+    {
+        return skyLight.get(PalettedBlockStorage.index(x, y, z));
+    }
+
+    /**
+     * Returns block light level at given coords in chunk space
+     */
+    public int getBlockLight(int x, int y, int z)
+    {
+        return blockLight.get(PalettedBlockStorage.index(x, y, z));
+    }
+
+    /**
+     * Returns highest y value in chunk space of the column at given coords, or -1 if the column is empty
+     */
+    public int getHighest(int x, int z)
+    {
+        return highest[x << 4 | z];
+    }
+
+    /**
+     * Returns the frozen block storage
+     */
+    public PalettedBlockStorage getBlocks()
+    {
+        return blocks;
+    }
+
+    /**
+     * Returns the frozen block states storage
+     */
+    public PalettedBlockStorage getBlockStatesStorage()
+    {
+        return blockStates;
+    }
+
+    /**
+     * Returns the frozen sky light array
+     */
+    public NibbleArray getSkyLightArray()
+    {
+        return skyLight;
+    }
+
+    /**
+     * Returns the frozen block light array
+     */
+    public NibbleArray getBlockLightArray()
+    {
+        return blockLight;
+    }
+}
@@ -0,0 +1,474 @@
+package org.craft.world;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+import org.craft.blocks.*;
+import org.craft.blocks.states.*;
+import org.craft.entity.*;
+
+/**
+ * Updates the entities of a world, either one after the other on the thread updating the world (the default), or on a pool of worker
+ * threads when more than one thread is set with {@link #setThreadsCount(int)}.<br/>
+ * In parallel mode, entities are sorted into regions of {@code 16 x 16} block columns. Regions which contain entities and touch each
+ * other, diagonals included, form an island, so two islands are always separated by at least one region without any entity. Each island is
+ * updated by a single thread, its entities in the order of the world entity list, which gives the same result as a sequential update for
+ * every interaction shorter than a region. Block edits, block ticks and spawns requested while islands are updated are deferred, then
+ * applied in the order of the entities which requested them once every island is done, so the outcome does not depend on the number of
+ * threads nor on how islands are scheduled. Dead entities are removed by the world after the update, as in sequential mode.<br/>
+ * Unlike sequential mode, a deferred block edit is not seen by the other entities until the next update.
+ */
+public class EntityTicker
+{
+
+    /**
+     * Regions are {@code 1 << REGION_SHIFT} blocks wide
+     */
+    private static final int          REGION_SHIFT = 4;
+
+    private World                     world;
+    private int                       threadsCount;
+    private boolean                   deferredWhenSequential;
+    private ExecutorService           executor;
+    private volatile boolean          ticking;
+    private ThreadLocal<Island>       currentIsland;
+    private HashMap<Long, Region>     regions;
+    private Region[]                  entityRegions;
+    private ArrayList<Island>         islands;
+    private int                       lastIslandsCount;
+
+    public EntityTicker(World world)
+    {
+        this.world = world;
+        this.threadsCount = 1;
+        currentIsland = new ThreadLocal<Island>();
+        regions = new HashMap<Long, Region>();
+        entityRegions = new Region[64];
+        islands = new ArrayList<Island>();
+    }
+
+    /**
+     * Updates given entities. Called once per world update, on the thread updating the world
+     */
+    public void tick(List<Entity> entities)
+    {
+        if((threadsCount <= 1 && !deferredWhenSequential) || entities.size() < 2)
+        {
+            lastIslandsCount = entities.isEmpty() ? 0 : 1;
+            for(int i = 0; i < entities.size(); i++ )
+                entities.get(i).update();
+            return;
+        }
+        partition(entities);
+        lastIslandsCount = islands.size();
+        Throwable error;
+        ticking = true;
+        try
+        {
+            error = runIslands(entities);
+        }
+        finally
+        {
+            ticking = false;
+        }
+        try
+        {
+            if(error != null)
+                throw new RuntimeException("Failed to update entities", error);
+            applyDeferredEffects();
+        }
+        finally
+        {
+            islands.clear();
+            regions.clear();
+        }
+    }
+
+    /**
+     * Sets the number of threads updating entities. 1, the default, updates them sequentially on the thread updating the world
+     */
+    public void setThreadsCount(int threadsCount)
+    {
+        if(threadsCount != this.threadsCount)
+            shutdown();
+        this.threadsCount = Math.max(1, threadsCount);
+    }
+
+    public int getThreadsCount()
+    {
+        return threadsCount;
+    }
+
+    /**
+     * Makes a single thread update the entities island by island and defer their effects, as several threads do. A sequential update then
+     * gives the result expected from a parallel one, which is what the parallel mode is checked against
+     */
+    void setDeferredWhenSequential(boolean deferredWhenSequential)
+    {
+        this.deferredWhenSequential = deferredWhenSequential;
+    }
+
+    /**
+     * Returns the number of islands the entities were split into during the last update
+     */
+    public int getLastIslandsCount()
+    {
+        return lastIslandsCount;
+    }
+
+    /**
+     * Returns a checksum of the position, velocity, rotation and state of every entity of the world, in the order of the entity list.<br/>
+     * Running the same world with one thread and with several threads must give the same checksum after each update
+     */
+    public long computeChecksum()
+    {
+        long hash = 17;
+        List<Entity> entities = world.getEntitiesList();
+        for(int i = 0; i < entities.size(); i++ )
+        {
+            Entity e = entities.get(i);
+            hash = hash * 31 + Float.floatToIntBits(e.posX);
+            hash = hash * 31 + Float.floatToIntBits(e.posY);
+            hash = hash * 31 + Float.floatToIntBits(e.posZ);
+            hash = hash * 31 + Float.floatToIntBits(e.velX);
+            hash = hash * 31 + Float.floatToIntBits(e.velY);
+            hash = hash * 31 + Float.floatToIntBits(e.velZ);
+            hash = hash * 31 + Float.floatToIntBits(e.yaw);
+            hash = hash * 31 + Float.floatToIntBits(e.pitch);
+            hash = hash * 31 + (e.onGround ? 1 : 0);
+            hash = hash * 31 + (e.isDead() ? 1 : 0);
+        }
+        return hash;
+    }
+
+    /**
+     * Stops the worker threads
+     */
+    public void shutdown()
+    {
+        if(executor != null)
+            executor.shutdownNow();
+        executor = null;
+    }
+
+    /**
+     * Defers a block change if called by an entity being updated by an island, returns true if it did
+     */
+    boolean deferSetBlock(final int x, final int y, final int z, final Block block)
+    {
+        if(!ticking)
+            return false;
+        return defer(new DeferredEffect()
+        {
+            @Override
+            void apply()
+            {
+                world.setBlock(x, y, z, block);
+            }
+        });
+    }
+
+    /**
+     * Defers a block state change if called by an entity being updated by an island, returns true if it did
+     */
+    boolean deferSetBlockState(final int x, final int y, final int z, final BlockState state, final IBlockStateValue value, final boolean notify)
+    {
+        if(!ticking)
+            return false;
+        return defer(new DeferredEffect()
+        {
+            @Override
+            void apply()
+            {
+                world.setBlockState(x, y, z, state, value, notify);
+            }
+        });
+    }
+
+    /**
+     * Defers a block tick request if called by an entity being updated by an island, returns true if it did
+     */
+    boolean deferScheduleUpdate(final int x, final int y, final int z, final int delay)
+    {
+        if(!ticking)
+            return false;
+        return defer(new DeferredEffect()
+        {
+            @Override
+            void apply()
+            {
+                world.scheduleUpdate(x, y, z, delay);
+            }
+        });
+    }
+
+    /**
+     * Defers a spawn if called by an entity being updated by an island, returns true if it did
+     */
+    boolean deferSpawn(final Entity e)
+    {
+        if(!ticking)
+            return false;
+        return defer(new DeferredEffect()
+        {
+            @Override
+            void apply()
+            {
+                world.spawn(e);
+            }
+        });
+    }
+
+    private boolean defer(DeferredEffect effect)
+    {
+        if(!ticking)
+            return false;
+        Island island = currentIsland.get();
+        if(island == null)
+            return false;
+        effect.order = island.current;
+        effect.sequence = island.effects.size();
+        island.effects.add(effect);
+        return true;
+    }
+
+    /**
+     * Sorts entities into regions, then joins touching regions into islands. Islands and their entities are in the order of the entity list
+     */
+    private void partition(List<Entity> entities)
+    {
+        int count = entities.size();
+        if(entityRegions.length < count)
+            entityRegions = new Region[Math.max(count, entityRegions.length * 2)];
+        for(int i = 0; i < count; i++ )
+        {
+            Entity e = entities.get(i);
+            int regionX = (int) Math.floor(e.posX) >> REGION_SHIFT;
+            int regionZ = (int) Math.floor(e.posZ) >> REGION_SHIFT;
+            long key = regionKey(regionX, regionZ);
+            Region region = regions.get(key);
+            if(region == null)
+            {
+                region = new Region(regionX, regionZ);
+                regions.put(key, region);
+            }
+            entityRegions[i] = region;
+        }
+        for(Region region : regions.values())
+        {
+            for(int dx = -1; dx <= 1; dx++ )
+            {
+                for(int dz = -1; dz <= 1; dz++ )
+                {
+                    Region neighbor = regions.get(regionKey(region.x + dx, region.z + dz));
+                    if(neighbor != null)
+                        union(region, neighbor);
+                }
+            }
+        }
+        for(int i = 0; i < count; i++ )
+        {
+            Region root = find(entityRegions[i]);
+            if(root.island == null)
+            {
+                root.island = new Island();
+                islands.add(root.island);
+            }
+            root.island.add(i);
+            entityRegions[i] = null;
+        }
+    }
+
+    /**
+     * Updates the islands on the worker threads and on the calling thread, biggest islands first. Returns the first error thrown by an
+     * entity, or null
+     */
+    private Throwable runIslands(final List<Entity> entities)
+    {
+        final Island[] queue = islands.toArray(new Island[islands.size()]);
+        Arrays.sort(queue, new Comparator<Island>()
+        {
+            @Override
+            public int compare(Island a, Island b)
+            {
+                return b.size - a.size;
+            }
+        });
+        final AtomicInteger next = new AtomicInteger();
+        final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+        int workers = Math.min(threadsCount, queue.length) - 1;
+        final CountDownLatch done = new CountDownLatch(workers);
+        Runnable worker = new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    runQueue(queue, next, entities, error);
+                }
+                finally
+                {
+                    done.countDown();
+                }
+            }
+        };
+        for(int i = 0; i < workers; i++ )
+            getExecutor().execute(worker);
+        runQueue(queue, next, entities, error);
+        try
+        {
+            done.await();
+        }
+        catch(InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            error.compareAndSet(null, e);
+        }
+        return error.get();
+    }
+
+    private void runQueue(Island[] queue, AtomicInteger next, List<Entity> entities, AtomicReference<Throwable> error)
+    {
+        int index;
+        while((index = next.getAndIncrement()) < queue.length)
+        {
+            Island island = queue[index];
+            currentIsland.set(island);
+            try
+            {
+                for(int i = 0; i < island.size; i++ )
+                {
+                    island.current = island.entities[i];
+                    entities.get(island.current).update();
+                }
+            }
+            catch(Throwable t)
+            {
+                error.compareAndSet(null, t);
+            }
+            finally
+            {
+                currentIsland.set(null);
+            }
+        }
+    }
+
+    private void applyDeferredEffects()
+    {
+        ArrayList<DeferredEffect> effects = new ArrayList<DeferredEffect>();
+        for(Island island : islands)
+            effects.addAll(island.effects);
+        if(effects.isEmpty())
+            return;
+        Collections.sort(effects);
+        for(DeferredEffect effect : effects)
+            effect.apply();
+    }
+
+    private ExecutorService getExecutor()
+    {
+        if(executor == null)
+        {
+            executor = Executors.newFixedThreadPool(threadsCount - 1, new ThreadFactory()
+            {
+                private int count;
+
+                @Override
+                public Thread newThread(Runnable r)
+                {
+                    Thread thread = new Thread(r, "Entity update #" + (count++ ) + " - " + world.getName());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return executor;
+    }
+
+    private static Region find(Region region)
+    {
+        while(region.parent != region)
+        {
+            region.parent = region.parent.parent;
+            region = region.parent;
+        }
+        return region;
+    }
+
+    private static void union(Region a, Region b)
+    {
+        Region rootA = find(a);
+        Region rootB = find(b);
+        if(rootA != rootB)
+            rootB.parent = rootA;
+    }
+
+    private static long regionKey(int regionX, int regionZ)
+    {
+        return (long) regionX << 32 | (regionZ & 0xFFFFFFFFL);
+    }
+
+    private static class Region
+    {
+
+        private final int x;
+        private final int z;
+        private Region    parent;
+        private Island    island;
+
+        Region(int x, int z)
+        {
+            this.x = x;
+            this.z = z;
+            this.parent = this;
+        }
+    }
+
+    /**
+     * Entities updated by a single thread, as indices in the entity list, and the effects they deferred
+     */
+    private static class Island
+    {
+
+        private int[]                     entities;
+        private int                       size;
+        private int                       current;
+        private ArrayList<DeferredEffect> effects;
+
+        Island()
+        {
+            entities = new int[8];
+            effects = new ArrayList<DeferredEffect>();
+        }
+
+        void add(int index)
+        {
+            if(size == entities.length)
+                entities = Arrays.copyOf(entities, size * 2);
+            entities[size++ ] = index;
+        }
+    }
+
+    /**
+     * World change requested by an entity while islands are updated. Effects are applied in the order of the entities which requested
+     * them, then in the order they were requested
+     */
+    private static abstract class DeferredEffect implements Comparable<DeferredEffect>
+    {
+
+        private int order;
+        private int sequence;
+
+        abstract void apply();
+
+        @Override
+        public int compareTo(DeferredEffect other)
+        {
+            if(order != other.order)
+                return order < other.order ? -1 : 1;
+            return sequence < other.sequence ? -1 : (sequence == other.sequence ? 0 : 1);
+        }
+    }
+}
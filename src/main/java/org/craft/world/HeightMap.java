@@ -0,0 +1,169 @@
+package org.craft.world;
+
+import java.util.*;
+
+/**
+ * Keeps, for every column of blocks of a world, the height of the highest block which stops sky light.<br/>
+ * Only loaded chunks are taken into account: columns are raised when chunks are added and updated when blocks change, but are not lowered
+ * when chunks are unloaded. A column is dropped once none of its chunks is loaded.
+ */
+public class HeightMap
+{
+
+    /**
+     * Height of a column in which no light-blocking block has been found
+     */
+    public static final int        NONE = Integer.MIN_VALUE;
+
+    private World                  world;
+    private HashMap<Long, int[]>   columns;
+    private HashMap<Long, Integer> lowestChunks;
+    private HashMap<Long, Integer> highestChunks;
+
+    public HeightMap(World world)
+    {
+        this.world = world;
+        columns = new HashMap<Long, int[]>();
+        lowestChunks = new HashMap<Long, Integer>();
+        highestChunks = new HashMap<Long, Integer>();
+    }
+
+    /**
+     * Returns the height of the highest light-blocking block at given world coordinates, or {@link #NONE}
+     */
+    public synchronized int getHeight(int x, int z)
+    {
+        int[] column = columns.get(key(x >> 4, z >> 4));
+        if(column == null)
+            return NONE;
+        return column[(x & 15) << 4 | (z & 15)];
+    }
+
+    /**
+     * Takes given chunk into account. The heights of its columns before the chunk was added are written into {@code previousHeights},
+     * indexed by {@code x << 4 | z}
+     */
+    public synchronized void onChunkAdded(Chunk chunk, int[] previousHeights)
+    {
+        ChunkCoord coords = chunk.getCoords();
+        long key = key(coords.x, coords.z);
+        int[] column = getColumn(key);
+        Integer lowest = lowestChunks.get(key);
+        if(lowest == null || coords.y < lowest)
+            lowestChunks.put(key, coords.y);
+        Integer highest = highestChunks.get(key);
+        if(highest == null || coords.y > highest)
+            highestChunks.put(key, coords.y);
+        System.arraycopy(column, 0, previousHeights, 0, column.length);
+        int baseY = coords.y << 4;
+        PalettedBlockStorage blocks = chunk.getBlocksSnapshot();
+        if(blocks.isSingleValue() && LightEngine.getOpacity(blocks.get(0)) == 0)
+            return;
+        for(int x = 0; x < 16; x++ )
+        {
+            for(int z = 0; z < 16; z++ )
+            {
+                int i = x << 4 | z;
+                if(column[i] >= baseY + 15)
+                    continue;
+                int top = findHighest(blocks, x, 15, z);
+                if(top >= 0 && baseY + top > column[i])
+                    column[i] = baseY + top;
+            }
+        }
+    }
+
+    /**
+     * Drops the column of given chunk, which has just been removed from the world, if no other chunk between the lowest and the highest ever
+     * added to that column is still loaded
+     */
+    public synchronized void onChunkRemoved(Chunk chunk)
+    {
+        ChunkCoord coords = chunk.getCoords();
+        long key = key(coords.x, coords.z);
+        if(!columns.containsKey(key))
+            return;
+        // The column may have been created by a block change before any of its chunks was lit
+        Integer lowest = lowestChunks.get(key);
+        Integer highest = highestChunks.get(key);
+        int maxY = highest == null ? coords.y : highest;
+        for(int chunkY = lowest == null ? coords.y : lowest; chunkY <= maxY; chunkY++ )
+        {
+            if(world.getChunkProvider().doesChunkExists(world, coords.x, chunkY, coords.z))
+                return;
+        }
+        columns.remove(key);
+        lowestChunks.remove(key);
+        highestChunks.remove(key);
+    }
+
+    /**
+     * Returns the number of columns of 16x16 blocks held by this map
+     */
+    public synchronized int getColumnsCount()
+    {
+        return columns.size();
+    }
+
+    /**
+     * Updates the column at given world coordinates after the block at given position has changed
+     */
+    public synchronized void onBlockChanged(int x, int y, int z, boolean blocksLight)
+    {
+        long key = key(x >> 4, z >> 4);
+        int[] column = getColumn(key);
+        int i = (x & 15) << 4 | (z & 15);
+        if(blocksLight)
+        {
+            if(y > column[i])
+                column[i] = y;
+        }
+        else if(y == column[i])
+        {
+            column[i] = NONE;
+            Integer lowest = lowestChunks.get(key);
+            if(lowest == null)
+                return;
+            for(int chunkY = (y - 1) >> 4; chunkY >= lowest; chunkY-- )
+            {
+                Chunk chunk = world.getChunkProvider().get(world, x >> 4, chunkY, z >> 4);
+                if(chunk == null)
+                    continue;
+                int startY = chunkY == (y - 1) >> 4 ? (y - 1) & 15 : 15;
+                int top = findHighest(chunk.getBlocksSnapshot(), x & 15, startY, z & 15);
+                if(top >= 0)
+                {
+                    column[i] = (chunkY << 4) + top;
+                    break;
+                }
+            }
+        }
+    }
+
+    private static int findHighest(PalettedBlockStorage blocks, int x, int startY, int z)
+    {
+        for(int y = startY; y >= 0; y-- )
+        {
+            if(LightEngine.getOpacity(blocks.get(PalettedBlockStorage.index(x, y, z))) > 0)
+                return y;
+        }
+        return -1;
+    }
+
+    private int[] getColumn(long key)
+    {
+        int[] column = columns.get(key);
+        if(column == null)
+        {
+            column = new int[256];
+            Arrays.fill(column, NONE);
+            columns.put(key, column);
+        }
+        return column;
+    }
+
+    private static long key(int chunkX, int chunkZ)
+    {
+        return (long) chunkX << 32 | (chunkZ & 0xFFFFFFFFL);
+    }
+}
@@ -0,0 +1,44 @@
+package org.craft.world;
+
+import org.craft.blocks.*;
+import org.craft.blocks.states.*;
+import org.craft.utils.*;
+
+/**
+ * Read access to the blocks and light of a world. Implemented by {@link World} and by {@link RegionSnapshot}, which lets blocks be rendered
+ * away from the world.
+ */
+public interface IBlockAccess
+{
+
+    /**
+     * Returns block at given coords
+     */
+    public Block getBlockAt(int x, int y, int z);
+
+    /**
+     * Returns block next to given coords on given side
+     */
+    public Block getBlockNextTo(int x, int y, int z, EnumSide side);
+
+    /**
+     * Returns the value of given state of the block at given coords, or null if it has none
+     */
+    public IBlockStateValue getBlockState(int x, int y, int z, BlockState state);
+
+    /**
+     * Returns the light level at given coords: the highest of the sky and block light levels
+     */
+    public int getLightLevel(int x, int y, int z);
+
+    /**
+     * Returns the brightness used to render a face next to given coords, between 0 and 1
+     */
+    public float getBrightness(int x, int y, int z);
+
+    /**
+     * Returns the brightness used to render the block at given coords, between 0 and 1. Blocks which stop light are lit by the brightest of
+     * their neighbours
+     */
+    public float getLightValue(int x, int y, int z);
+}
@@ -0,0 +1,10 @@
+package org.craft.world;
+
+public interface IChunkGenerationListener
+{
+
+    /**
+     * Called once requested chunk has been added to the world, on the thread updating it
+     */
+    public void onChunkReady(World world, Chunk chunk);
+}
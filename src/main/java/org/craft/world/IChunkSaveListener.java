@@ -0,0 +1,11 @@
+package org.craft.world;
+
+public interface IChunkSaveListener
+{
+
+    /**
+     * Called on the I/O thread of the {@link WorldSaveService} once the copy of given chunk has been written, or could not be. In the latter
+     * case the chunk has been marked as modified again
+     */
+    public void onChunkSaved(Chunk chunk, boolean success);
+}
@@ -0,0 +1,10 @@
+package org.craft.world;
+
+public interface IChunkUnloadListener
+{
+
+    /**
+     * Called once given chunk has been removed from the world, on the thread updating it
+     */
+    public void onChunkUnloaded(World world, Chunk chunk);
+}
@@ -0,0 +1,10 @@
+package org.craft.world;
+
+/**
+ * A populator which may write blocks outside of the chunk it is given, through the World.<br/>
+ * Decorators run after every other populator, once the chunk has been added to the world and on the thread updating it.
+ */
+public interface IWorldDecorator extends IWorldPopulator
+{
+
+}
@@ -0,0 +1,760 @@
+package org.craft.world;
+
+import java.util.*;
+
+import org.craft.blocks.*;
+import org.craft.utils.*;
+
+/**
+ * Computes the sky and block light of a world by flood filling, on a dedicated thread.<br/>
+ * Chunks added to the world and blocks changed through {@link World#setBlock(int, int, int, Block)} are queued; the light thread then relights
+ * them in batches. All the changes of a batch share the same queues, so light crossing chunk borders is propagated once for the whole batch
+ * instead of once per chunk.<br/>
+ * Batches do not take the world lock, so the game thread never waits for them: chunks are looked up through the chunk provider, whose
+ * {@link ChunkMap} can be read from any thread, blocks are read from frozen snapshots and light is written through the synchronized setters
+ * of the chunks. A block changed during a batch is queued again, and relit by a later one.<br/>
+ * Each update first runs the removal queue (light which lost its source is cleared, and the light found around the cleared area is queued
+ * again) then the propagation queue. Sky light keeps its full level while going straight down through transparent blocks, the columns
+ * above the world {@link HeightMap} being the sky light sources.
+ */
+public class LightEngine implements Runnable
+{
+
+    public static final int      SKY         = 0;
+    public static final int      BLOCK       = 1;
+
+    /**
+     * Highest light level
+     */
+    public static final int      MAX_LEVEL   = 15;
+
+    private static final int[]   OFFSETS_X   =
+                                             {
+            0, 0, 0, 0, -1, 1
+                                             };
+    private static final int[]   OFFSETS_Y   =
+                                             {
+            -1, 1, 0, 0, 0, 0
+                                             };
+    private static final int[]   OFFSETS_Z   =
+                                             {
+            0, 0, -1, 1, 0, 0
+                                             };
+    private static final int     DOWN        = 0;
+
+    private static final float[] BRIGHTNESS  = new float[MAX_LEVEL + 1];
+    private static final byte[]  opacities   = new byte[1 << 16];
+    private static final byte[]  emissions   = new byte[1 << 16];
+
+    static
+    {
+        for(int i = 0; i <= MAX_LEVEL; i++ )
+        {
+            float f = (float) i / MAX_LEVEL;
+            BRIGHTNESS[i] = 0.1f + 0.9f * f / (3f - 2f * f);
+        }
+        Arrays.fill(opacities, (byte) -1);
+        Arrays.fill(emissions, (byte) -1);
+    }
+
+    private World                world;
+    private Object               batchLock;
+    private HeightMap            heightMap;
+    private LinkedHashSet<Chunk> pendingChunks;
+    private LinkedHashSet<Long>  pendingBlocks;
+    private LightQueue[]         increaseQueues;
+    private LightQueue[]         decreaseQueues;
+    private HashSet<Chunk>       touchedChunks;
+    private HashSet<Chunk>       touchedBorders;
+    private int[]                previousHeights;
+    private Chunk                cachedChunk;
+    private Chunk                blocksChunk;
+    private PalettedBlockStorage blocksStorage;
+    private int                  maxChunksPerBatch;
+    private int                  maxBlocksPerBatch;
+    private Thread               thread;
+    private volatile boolean     running;
+    private long                 processedNodes;
+    private long                 batches;
+
+    public LightEngine(World world)
+    {
+        this.world = world;
+        this.heightMap = new HeightMap(world);
+        this.batchLock = new Object();
+        this.maxChunksPerBatch = 16;
+        this.maxBlocksPerBatch = 256;
+        pendingChunks = new LinkedHashSet<Chunk>();
+        pendingBlocks = new LinkedHashSet<Long>();
+        increaseQueues = new LightQueue[]
+        {
+                new LightQueue(), new LightQueue()
+        };
+        decreaseQueues = new LightQueue[]
+        {
+                new LightQueue(), new LightQueue()
+        };
+        touchedChunks = new HashSet<Chunk>();
+        touchedBorders = new HashSet<Chunk>();
+        previousHeights = new int[256];
+    }
+
+    /**
+     * Returns the brightness used to render given light level, between 0 and 1
+     */
+    public static float getBrightness(int level)
+    {
+        return BRIGHTNESS[level];
+    }
+
+    /**
+     * Returns the light opacity of the block with given unique id
+     */
+    public static int getOpacity(int blockID)
+    {
+        int opacity = opacities[blockID & 0xFFFF];
+        if(opacity < 0)
+        {
+            opacity = Blocks.getByID(blockID).getLightOpacity();
+            opacities[blockID & 0xFFFF] = (byte) opacity;
+        }
+        return opacity;
+    }
+
+    /**
+     * Returns the light emitted by the block with given unique id
+     */
+    public static int getEmission(int blockID)
+    {
+        int emission = emissions[blockID & 0xFFFF];
+        if(emission < 0)
+        {
+            emission = Blocks.getByID(blockID).getLightEmission();
+            emissions[blockID & 0xFFFF] = (byte) emission;
+        }
+        return emission;
+    }
+
+    public HeightMap getHeightMap()
+    {
+        return heightMap;
+    }
+
+    /**
+     * Queues the initial lighting of a chunk which has just been added to the world
+     */
+    public void onChunkAdded(Chunk chunk)
+    {
+        synchronized(this)
+        {
+            pendingChunks.add(chunk);
+            wakeUp();
+        }
+    }
+
+    /**
+     * Drops a chunk which has just been removed from the world from the queue, and from the height map if no chunk of its column is left
+     */
+    public void onChunkRemoved(Chunk chunk)
+    {
+        synchronized(this)
+        {
+            pendingChunks.remove(chunk);
+        }
+        heightMap.onChunkRemoved(chunk);
+    }
+
+    /**
+     * Queues the relighting of the block at given world coordinates
+     */
+    public void onBlockChanged(int x, int y, int z)
+    {
+        synchronized(this)
+        {
+            pendingBlocks.add(pack(x, y, z));
+            wakeUp();
+        }
+    }
+
+    /**
+     * Queues the relighting of the blocks at the first {@code count} positions of given array, packed with {@link ChunkCoord#pack(int, int, int)}
+     */
+    public void onBlocksChanged(long[] positions, int count)
+    {
+        if(count == 0)
+            return;
+        synchronized(this)
+        {
+            for(int i = 0; i < count; i++ )
+                pendingBlocks.add(positions[i]);
+            wakeUp();
+        }
+    }
+
+    /**
+     * Returns the number of chunks and blocks waiting to be relit
+     */
+    public synchronized int getPendingCount()
+    {
+        return pendingChunks.size() + pendingBlocks.size();
+    }
+
+    private void wakeUp()
+    {
+        if(thread == null)
+        {
+            running = true;
+            thread = new Thread(this, "Light engine - " + world.getName());
+            thread.setDaemon(true);
+            thread.setPriority(Thread.NORM_PRIORITY - 1);
+            thread.start();
+        }
+        notifyAll();
+    }
+
+    @Override
+    public void run()
+    {
+        while(running)
+        {
+            synchronized(this)
+            {
+                while(running && pendingChunks.isEmpty() && pendingBlocks.isEmpty())
+                {
+                    try
+                    {
+                        wait();
+                    }
+                    catch(InterruptedException e)
+                    {
+                        return;
+                    }
+                }
+            }
+            if(!running)
+                return;
+            try
+            {
+                processPendingUpdates();
+            }
+            catch(Exception e)
+            {
+                Log.error("Light update failed: " + e.getMessage());
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Stops the light thread. Pending updates are dropped
+     */
+    public void shutdown()
+    {
+        synchronized(this)
+        {
+            running = false;
+            pendingChunks.clear();
+            pendingBlocks.clear();
+            notifyAll();
+            thread = null;
+        }
+    }
+
+    /**
+     * Relights one batch of the queued chunks and blocks, and returns the number of light values visited. Called by the light thread, but
+     * can be called from any thread: batches run one at a time
+     */
+    public long processPendingUpdates()
+    {
+        synchronized(batchLock)
+        {
+            ArrayList<Chunk> chunks = new ArrayList<Chunk>();
+            ArrayList<Long> blocks = new ArrayList<Long>();
+            synchronized(this)
+            {
+                Iterator<Chunk> chunkIterator = pendingChunks.iterator();
+                while(chunkIterator.hasNext() && chunks.size() < maxChunksPerBatch)
+                {
+                    chunks.add(chunkIterator.next());
+                    chunkIterator.remove();
+                }
+                Iterator<Long> blockIterator = pendingBlocks.iterator();
+                while(blockIterator.hasNext() && blocks.size() < maxBlocksPerBatch)
+                {
+                    blocks.add(blockIterator.next());
+                    blockIterator.remove();
+                }
+            }
+            if(chunks.isEmpty() && blocks.isEmpty())
+                return 0;
+            long nodes = 0;
+            for(Chunk chunk : chunks)
+            {
+                if(chunk.isInWorld())
+                    lightChunk(chunk);
+            }
+            for(Long block : blocks)
+                relightBlock(unpackX(block), unpackY(block), unpackZ(block));
+            for(int channel = SKY; channel <= BLOCK; channel++ )
+                nodes += runDecrease(channel);
+            for(int channel = SKY; channel <= BLOCK; channel++ )
+                nodes += runIncrease(channel);
+            markTouchedChunks();
+            cachedChunk = null;
+            blocksChunk = null;
+            blocksStorage = null;
+            processedNodes += nodes;
+            batches++ ;
+            return nodes;
+        }
+    }
+
+    /**
+     * Relights every queued chunk and block on the calling thread. Returns once the light is up to date, a batch run by the light thread
+     * included
+     */
+    public void flush()
+    {
+        synchronized(batchLock)
+        {
+            while(getPendingCount() > 0)
+                processPendingUpdates();
+        }
+    }
+
+    /**
+     * Seeds the light of a chunk which has just been added: sky light above the height map, light emitted by its blocks, and light coming
+     * from already lit neighbours
+     */
+    private void lightChunk(Chunk chunk)
+    {
+        ChunkCoord coords = chunk.getCoords();
+        int baseX = coords.x << 4;
+        int baseY = coords.y << 4;
+        int baseZ = coords.z << 4;
+        heightMap.onChunkAdded(chunk, previousHeights);
+
+        int[] heights = new int[256];
+        for(int x = 0; x < 16; x++ )
+        {
+            for(int z = 0; z < 16; z++ )
+                heights[x << 4 | z] = heightMap.getHeight(baseX + x, baseZ + z);
+        }
+        Chunk below = getChunk(coords.x, coords.y - 1, coords.z);
+        for(int x = 0; x < 16; x++ )
+        {
+            for(int z = 0; z < 16; z++ )
+            {
+                int height = heights[x << 4 | z];
+                for(int y = 15; y >= 0 && baseY + y > height; y-- )
+                {
+                    chunk.setSkyLight(PalettedBlockStorage.index(x, y, z), MAX_LEVEL);
+                    // Only the sky light which can go somewhere darker needs to be propagated
+                    if(y == 0 || baseY + y == height + 1 || x == 0 || x == 15 || z == 0 || z == 15 || heights[(x - 1) << 4 | z] >= baseY + y || heights[(x + 1) << 4 | z] >= baseY + y || heights[x << 4 | (z - 1)] >= baseY + y || heights[x << 4 | (z + 1)] >= baseY + y)
+                        increaseQueues[SKY].add(pack(baseX + x, baseY + y, baseZ + z), MAX_LEVEL);
+                }
+                // This chunk now stops the sky light which was going down the column
+                if(below != null && height >= baseY && previousHeights[x << 4 | z] < baseY)
+                {
+                    int index = PalettedBlockStorage.index(x, 15, z);
+                    int level = below.skyLight.get(index);
+                    if(level > 0)
+                    {
+                        setLevel(below, SKY, index, x, 15, z, 0);
+                        decreaseQueues[SKY].add(pack(baseX + x, baseY - 1, baseZ + z), level);
+                    }
+                }
+            }
+        }
+        touchedChunks.add(chunk);
+        touchedBorders.add(chunk);
+
+        PalettedBlockStorage blocks = getBlocks(chunk);
+        if(hasEmittingBlock(blocks))
+        {
+            for(int index = 0; index < PalettedBlockStorage.SIZE; index++ )
+            {
+                int emission = getEmission(blocks.get(index));
+                if(emission > 0)
+                {
+                    chunk.setBlockLight(index, emission);
+                    increaseQueues[BLOCK].add(pack(baseX + (index >> 8), baseY + (index >> 4 & 15), baseZ + (index & 15)), emission);
+                }
+            }
+        }
+
+        for(int side = 0; side < 6; side++ )
+        {
+            Chunk neighbor = getChunk(coords.x + OFFSETS_X[side], coords.y + OFFSETS_Y[side], coords.z + OFFSETS_Z[side]);
+            if(neighbor != null)
+                queueBorder(neighbor, side);
+        }
+    }
+
+    /**
+     * Queues the light values of the face of {@code neighbor} touching the chunk on its {@code side}, so that they flow into that chunk
+     */
+    private void queueBorder(Chunk neighbor, int side)
+    {
+        ChunkCoord coords = neighbor.getCoords();
+        for(int a = 0; a < 16; a++ )
+        {
+            for(int b = 0; b < 16; b++ )
+            {
+                int x;
+                int y;
+                int z;
+                if(OFFSETS_X[side] != 0)
+                {
+                    x = OFFSETS_X[side] < 0 ? 15 : 0;
+                    y = a;
+                    z = b;
+                }
+                else if(OFFSETS_Y[side] != 0)
+                {
+                    x = a;
+                    y = OFFSETS_Y[side] < 0 ? 15 : 0;
+                    z = b;
+                }
+                else
+                {
+                    x = a;
+                    y = b;
+                    z = OFFSETS_Z[side] < 0 ? 15 : 0;
+                }
+                int index = PalettedBlockStorage.index(x, y, z);
+                int sky = neighbor.skyLight.get(index);
+                int block = neighbor.blockLight.get(index);
+                if(sky > 0)
+                    increaseQueues[SKY].add(pack((coords.x << 4) + x, (coords.y << 4) + y, (coords.z << 4) + z), sky);
+                if(block > 0)
+                    increaseQueues[BLOCK].add(pack((coords.x << 4) + x, (coords.y << 4) + y, (coords.z << 4) + z), block);
+            }
+        }
+    }
+
+    /**
+     * Clears the light of a changed block, puts back the light it emits and lets the light around it flow again
+     */
+    private void relightBlock(int x, int y, int z)
+    {
+        Chunk chunk = getChunk(x >> 4, y >> 4, z >> 4);
+        if(chunk == null)
+            return;
+        int index = PalettedBlockStorage.index(x & 15, y & 15, z & 15);
+        int blockID = getBlocks(chunk).get(index);
+        int opacity = getOpacity(blockID);
+        heightMap.onBlockChanged(x, y, z, opacity > 0);
+        long position = pack(x, y, z);
+        for(int channel = SKY; channel <= BLOCK; channel++ )
+        {
+            int level = getLevel(chunk, channel, index);
+            if(level > 0)
+            {
+                setLevel(chunk, channel, index, x & 15, y & 15, z & 15, 0);
+                decreaseQueues[channel].add(position, level);
+            }
+            int source = getSource(channel, blockID, x, y, z);
+            if(source > 0)
+            {
+                setLevel(chunk, channel, index, x & 15, y & 15, z & 15, source);
+                increaseQueues[channel].add(position, source);
+            }
+            for(int side = 0; side < 6; side++ )
+                increaseQueues[channel].add(pack(x + OFFSETS_X[side], y + OFFSETS_Y[side], z + OFFSETS_Z[side]), 0);
+        }
+    }
+
+    /**
+     * Clears the light which came from the positions in the removal queue. Neighbours lit by another source are queued for propagation
+     */
+    private long runDecrease(int channel)
+    {
+        LightQueue queue = decreaseQueues[channel];
+        LightQueue increaseQueue = increaseQueues[channel];
+        long nodes = 0;
+        while(!queue.isEmpty())
+        {
+            long position = queue.poll();
+            int level = queue.getLastLevel();
+            int x = unpackX(position);
+            int y = unpackY(position);
+            int z = unpackZ(position);
+            nodes++ ;
+            for(int side = 0; side < 6; side++ )
+            {
+                int nx = x + OFFSETS_X[side];
+                int ny = y + OFFSETS_Y[side];
+                int nz = z + OFFSETS_Z[side];
+                Chunk chunk = getChunk(nx >> 4, ny >> 4, nz >> 4);
+                if(chunk == null)
+                    continue;
+                int index = PalettedBlockStorage.index(nx & 15, ny & 15, nz & 15);
+                int neighborLevel = getLevel(chunk, channel, index);
+                if(neighborLevel == 0)
+                    continue;
+                long neighbor = pack(nx, ny, nz);
+                if(neighborLevel < level || (channel == SKY && side == DOWN && level == MAX_LEVEL && neighborLevel == MAX_LEVEL))
+                {
+                    setLevel(chunk, channel, index, nx & 15, ny & 15, nz & 15, 0);
+                    queue.add(neighbor, neighborLevel);
+                    int source = getSource(channel, getBlocks(chunk).get(index), nx, ny, nz);
+                    if(source > 0)
+                    {
+                        setLevel(chunk, channel, index, nx & 15, ny & 15, nz & 15, source);
+                        increaseQueue.add(neighbor, source);
+                    }
+                }
+                else
+                {
+                    increaseQueue.add(neighbor, neighborLevel);
+                }
+            }
+        }
+        return nodes;
+    }
+
+    /**
+     * Spreads the light of the positions in the propagation queue to their neighbours
+     */
+    private long runIncrease(int channel)
+    {
+        LightQueue queue = increaseQueues[channel];
+        long nodes = 0;
+        while(!queue.isEmpty())
+        {
+            long position = queue.poll();
+            int x = unpackX(position);
+            int y = unpackY(position);
+            int z = unpackZ(position);
+            Chunk current = getChunk(x >> 4, y >> 4, z >> 4);
+            if(current == null)
+                continue;
+            // The level may have changed since the position was queued
+            int level = getLevel(current, channel, PalettedBlockStorage.index(x & 15, y & 15, z & 15));
+            if(level <= 1)
+                continue;
+            nodes++ ;
+            for(int side = 0; side < 6; side++ )
+            {
+                int nx = x + OFFSETS_X[side];
+                int ny = y + OFFSETS_Y[side];
+                int nz = z + OFFSETS_Z[side];
+                Chunk chunk = getChunk(nx >> 4, ny >> 4, nz >> 4);
+                if(chunk == null)
+                    continue;
+                int index = PalettedBlockStorage.index(nx & 15, ny & 15, nz & 15);
+                int opacity = getOpacity(getBlocks(chunk).get(index));
+                if(opacity >= MAX_LEVEL)
+                    continue;
+                int newLevel;
+                if(channel == SKY && side == DOWN && level == MAX_LEVEL && opacity == 0)
+                    newLevel = MAX_LEVEL;
+                else
+                    newLevel = level - Math.max(1, opacity);
+                if(newLevel <= getLevel(chunk, channel, index))
+                    continue;
+                setLevel(chunk, channel, index, nx & 15, ny & 15, nz & 15, newLevel);
+                queue.add(pack(nx, ny, nz), newLevel);
+            }
+        }
+        return nodes;
+    }
+
+    private int getSource(int channel, int blockID, int x, int y, int z)
+    {
+        if(channel == BLOCK)
+            return getEmission(blockID);
+        if(getOpacity(blockID) == 0 && y > heightMap.getHeight(x, z))
+            return MAX_LEVEL;
+        return 0;
+    }
+
+    private static boolean hasEmittingBlock(PalettedBlockStorage storage)
+    {
+        for(int i = 0; i < storage.getPaletteSize(); i++ )
+        {
+            if(getEmission(storage.getPaletteValue(i)) > 0)
+                return true;
+        }
+        return false;
+    }
+
+    private static int getLevel(Chunk chunk, int channel, int index)
+    {
+        return channel == SKY ? chunk.skyLight.get(index) : chunk.blockLight.get(index);
+    }
+
+    private void setLevel(Chunk chunk, int channel, int index, int x, int y, int z, int level)
+    {
+        if(channel == SKY)
+            chunk.setSkyLight(index, level);
+        else
+            chunk.setBlockLight(index, level);
+        touchedChunks.add(chunk);
+        if(x == 0 || x == 15 || y == 0 || y == 15 || z == 0 || z == 15)
+            touchedBorders.add(chunk);
+    }
+
+    /**
+     * Marks the chunks whose light changed during the batch dirty, along with the neighbours of the ones whose borders changed
+     */
+    private void markTouchedChunks()
+    {
+        for(Chunk chunk : touchedChunks)
+            chunk.markDirty();
+        for(Chunk chunk : touchedBorders)
+        {
+            ChunkCoord coords = chunk.getCoords();
+            for(int side = 0; side < 6; side++ )
+            {
+                Chunk neighbor = getChunk(coords.x + OFFSETS_X[side], coords.y + OFFSETS_Y[side], coords.z + OFFSETS_Z[side]);
+                if(neighbor != null)
+                    neighbor.markDirty();
+            }
+        }
+        touchedChunks.clear();
+        touchedBorders.clear();
+    }
+
+    private Chunk getChunk(int chunkX, int chunkY, int chunkZ)
+    {
+        Chunk chunk = cachedChunk;
+        if(chunk != null)
+        {
+            ChunkCoord coords = chunk.getCoords();
+            if(coords.x == chunkX && coords.y == chunkY && coords.z == chunkZ)
+                return chunk;
+        }
+        chunk = world.getChunkProvider().get(world, chunkX, chunkY, chunkZ);
+        if(chunk != null)
+            cachedChunk = chunk;
+        return chunk;
+    }
+
+    /**
+     * Returns the blocks of given chunk, frozen so that the game thread can keep changing the chunk while a batch reads them. The storage of the
+     * last chunk read is kept until the end of the batch, so that reading its neighbouring blocks does not take the lock of the chunk again
+     */
+    private PalettedBlockStorage getBlocks(Chunk chunk)
+    {
+        if(chunk != blocksChunk)
+        {
+            blocksChunk = chunk;
+            blocksStorage = chunk.getBlocksSnapshot();
+        }
+        return blocksStorage;
+    }
+
+    /**
+     * Sets the maximum number of chunks and of blocks relit by a single batch
+     */
+    public void setBatchSize(int maxChunks, int maxBlocks)
+    {
+        this.maxChunksPerBatch = maxChunks;
+        this.maxBlocksPerBatch = maxBlocks;
+    }
+
+    /**
+     * Returns the number of light values visited since this engine was created
+     */
+    public long getProcessedNodesCount()
+    {
+        return processedNodes;
+    }
+
+    public long getBatchesCount()
+    {
+        return batches;
+    }
+
+    /**
+     * Packs given world coordinates into a single long (21 bits per axis)
+     */
+    private static long pack(int x, int y, int z)
+    {
+        return ((long) x & 0x1FFFFFL) << 42 | ((long) y & 0x1FFFFFL) << 21 | ((long) z & 0x1FFFFFL);
+    }
+
+    private static int unpackX(long position)
+    {
+        return (int) (position << 1 >> 43);
+    }
+
+    private static int unpackY(long position)
+    {
+        return (int) (position << 22 >> 43);
+    }
+
+    private static int unpackZ(long position)
+    {
+        return (int) (position << 43 >> 43);
+    }
+
+    /**
+     * FIFO of packed positions and light levels, backed by growable arrays
+     */
+    private static class LightQueue
+    {
+
+        private long[] positions;
+        private byte[] levels;
+        private int    head;
+        private int    tail;
+        private int    lastLevel;
+
+        LightQueue()
+        {
+            positions = new long[4096];
+            levels = new byte[4096];
+        }
+
+        void add(long position, int level)
+        {
+            if(tail == positions.length)
+            {
+                if(head > positions.length / 2)
+                {
+                    System.arraycopy(positions, head, positions, 0, tail - head);
+                    System.arraycopy(levels, head, levels, 0, tail - head);
+                }
+                else
+                {
+                    long[] newPositions = new long[positions.length * 2];
+                    byte[] newLevels = new byte[levels.length * 2];
+                    System.arraycopy(positions, head, newPositions, 0, tail - head);
+                    System.arraycopy(levels, head, newLevels, 0, tail - head);
+                    positions = newPositions;
+                    levels = newLevels;
+                }
+                tail -= head;
+                head = 0;
+            }
+            positions[tail] = position;
+            levels[tail] = (byte) level;
+            tail++ ;
+        }
+
+        boolean isEmpty()
+        {
+            return head == tail;
+        }
+
+        /**
+         * Removes and returns the first position. Its level is then given by {@link #getLastLevel()}
+         */
+        long poll()
+        {
+            lastLevel = levels[head];
+            long position = positions[head++ ];
+            if(head == tail)
+                head = tail = 0;
+            return position;
+        }
+
+        int getLastLevel()
+        {
+            return lastLevel;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package org.craft.world;
+
+import java.util.*;
+
+/**
+ * Stores one 4-bit value per block of a chunk, two values per byte. Indices are the ones of {@link PalettedBlockStorage#index(int, int, int)}.<br/>
+ * Like {@link PalettedBlockStorage}, an array can be frozen so that it can be shared with other threads.
+ */
+public class NibbleArray
+{
+
+    private byte[]           data;
+    private volatile boolean frozen;
+
+    public NibbleArray()
+    {
+        data = new byte[PalettedBlockStorage.SIZE / 2];
+    }
+
+    private NibbleArray(NibbleArray other)
+    {
+        data = other.data.clone();
+    }
+
+    /**
+     * Returns an independent copy of this array, which is not frozen
+     */
+    public NibbleArray copy()
+    {
+        return new NibbleArray(this);
+    }
+
+    /**
+     * Returns the value at given index, between 0 and 15
+     */
+    public int get(int index)
+    {
+        return (data[index >> 1] >> ((index & 1) << 2)) & 0xF;
+    }
+
+    /**
+     * Sets the value at given index. Only the 4 lowest bits of {@code value} are kept
+     */
+    public void set(int index, int value)
+    {
+        checkNotFrozen();
+        int shift = (index & 1) << 2;
+        int i = index >> 1;
+        data[i] = (byte) ((data[i] & ~(0xF << shift)) | ((value & 0xF) << shift));
+    }
+
+    /**
+     * Sets every value to given value
+     */
+    public void fill(int value)
+    {
+        checkNotFrozen();
+        value &= 0xF;
+        Arrays.fill(data, (byte) (value | value << 4));
+    }
+
+    /**
+     * Forbids any further change to this array
+     */
+    public void freeze()
+    {
+        frozen = true;
+    }
+
+    /**
+     * Returns true if this array can no longer be changed
+     */
+    public boolean isFrozen()
+    {
+        return frozen;
+    }
+
+    private void checkNotFrozen()
+    {
+        if(frozen)
+            throw new IllegalStateException("Frozen array can not be changed");
+    }
+}
@@ -0,0 +1,237 @@
+package org.craft.world;
+
+import java.util.*;
+
+import org.craft.blocks.*;
+import org.craft.blocks.states.*;
+import org.craft.utils.*;
+
+/**
+ * Copy of the block ids, block states and light levels of a chunk and of the blocks one block around it, in flat arrays of
+ * {@code 18 x 18 x 18} values. It is filled once per mesh build from a {@link RegionSnapshot}, after which every read the renderers make
+ * around a block of the chunk is an array access, without any chunk lookup nor allocation. Reads further away fall back to the region.<br/>
+ * Arrays are indexed by {@link #index(int, int, int)} in chunk space, from -1 to 16 on each axis. The neighbour of a cell on a side is at
+ * {@code index + getSideOffset(side)}. A snapshot is meant to be reused for several chunks, by a single thread at a time.
+ */
+public class PaddedChunkSnapshot implements IBlockAccess
+{
+
+    /**
+     * Number of cells along each axis: the 16 blocks of the chunk plus one on each side
+     */
+    public static final int      SIZE        = 18;
+
+    /**
+     * Number of cells of the arrays
+     */
+    public static final int      VOLUME      = SIZE * SIZE * SIZE;
+
+    /**
+     * Offsets between the index of a cell and the index of its neighbour, in the order of {@link EnumSide#ordinal()}
+     */
+    private static final int[]   SIDE_OFFSETS;
+
+    /**
+     * Bits of the sides each block is opaque on, in the order of {@link EnumSide#ordinal()}, by block id. -1 until computed
+     */
+    private static final byte[]  opaqueSides = new byte[1 << 16];
+
+    static
+    {
+        Arrays.fill(opaqueSides, (byte) -1);
+        SIDE_OFFSETS = new int[6];
+        for(int i = 0; i < SIDE_OFFSETS.length; i++ )
+        {
+            EnumSide side = EnumSide.values()[i];
+            SIDE_OFFSETS[i] = side.getTranslationX() * SIZE * SIZE + side.getTranslationY() * SIZE + side.getTranslationZ();
+        }
+    }
+
+    private final int[]          blockIDs;
+    private final int[]          blockStates;
+    private final byte[]         lightLevels;
+    private RegionSnapshot       region;
+    private int                  baseX;
+    private int                  baseY;
+    private int                  baseZ;
+
+    public PaddedChunkSnapshot()
+    {
+        blockIDs = new int[VOLUME];
+        blockStates = new int[VOLUME];
+        lightLevels = new byte[VOLUME];
+    }
+
+    /**
+     * Copies the center chunk of given region and its border. Cells in chunks which were not loaded are air, lit by the sky only
+     */
+    public void fill(RegionSnapshot region)
+    {
+        this.region = region;
+        ChunkCoord center = region.getCenter();
+        baseX = center.x * 16;
+        baseY = center.y * 16;
+        baseZ = center.z * 16;
+        int air = Blocks.air.getUniqueID();
+        for(int x = -1; x <= 16; x++ )
+        {
+            for(int y = -1; y <= 16; y++ )
+            {
+                int i = index(x, y, -1);
+                for(int z = -1; z <= 16; z++ , i++ )
+                {
+                    ChunkSnapshot s = region.getSnapshot(baseX + x, baseY + y, baseZ + z);
+                    if(s == null)
+                    {
+                        blockIDs[i] = air;
+                        blockStates[i] = 0;
+                        lightLevels[i] = (byte) region.getLightLevel(baseX + x, baseY + y, baseZ + z);
+                        continue;
+                    }
+                    int index = PalettedBlockStorage.index(x & 15, y & 15, z & 15);
+                    blockIDs[i] = s.getBlocks().get(index);
+                    blockStates[i] = s.getBlockStatesStorage().get(index);
+                    lightLevels[i] = (byte) Math.max(s.getSkyLightArray().get(index), s.getBlockLightArray().get(index));
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the index of the cell at given coords in chunk space, each between -1 and 16
+     */
+    public static int index(int x, int y, int z)
+    {
+        return ((x + 1) * SIZE + y + 1) * SIZE + z + 1;
+    }
+
+    /**
+     * Returns the offset between the index of a cell and the index of its neighbour on given side
+     */
+    public static int getSideOffset(EnumSide side)
+    {
+        return SIDE_OFFSETS[side.ordinal()];
+    }
+
+    /**
+     * Returns the sides the block with given unique id is opaque on, as bits in the order of {@link EnumSide#ordinal()}. Computed once per
+     * block, as {@link Block#isSideOpaque(IBlockAccess, int, int, int, EnumSide)} only depends on the block and the side
+     */
+    public static int getOpaqueSides(int blockID)
+    {
+        int sides = opaqueSides[blockID & 0xFFFF];
+        if(sides < 0)
+        {
+            Block block = Blocks.getByID(blockID);
+            sides = 0;
+            for(int i = 0; i < SIDE_OFFSETS.length; i++ )
+            {
+                if(block.isSideOpaque(null, 0, 0, 0, EnumSide.values()[i]))
+                    sides |= 1 << i;
+            }
+            opaqueSides[blockID & 0xFFFF] = (byte) sides;
+        }
+        return sides;
+    }
+
+    /**
+     * Returns the block ids, indexed by {@link #index(int, int, int)}
+     */
+    public int[] getBlockIDs()
+    {
+        return blockIDs;
+    }
+
+    /**
+     * Returns the ids of the packed block states, indexed by {@link #index(int, int, int)}
+     */
+    public int[] getBlockStates()
+    {
+        return blockStates;
+    }
+
+    /**
+     * Returns the light levels, the highest of the sky and block light levels, indexed by {@link #index(int, int, int)}
+     */
+    public byte[] getLightLevels()
+    {
+        return lightLevels;
+    }
+
+    /**
+     * Returns the brightness used to render the block of the cell at given index, which must not be on the border. Blocks which stop light
+     * are lit by the brightest of their neighbours
+     */
+    public float getLightValue(int index)
+    {
+        if(LightEngine.getOpacity(blockIDs[index]) < LightEngine.MAX_LEVEL)
+            return LightEngine.getBrightness(lightLevels[index]);
+        int level = 0;
+        for(int i = 0; i < SIDE_OFFSETS.length; i++ )
+            level = Math.max(level, lightLevels[index + SIDE_OFFSETS[i]]);
+        return LightEngine.getBrightness(level);
+    }
+
+    /**
+     * Returns the index of the cell at given world coords, or -1 if it is not copied
+     */
+    private int cellAt(int x, int y, int z)
+    {
+        int localX = x - baseX;
+        int localY = y - baseY;
+        int localZ = z - baseZ;
+        if(localX < -1 || localX > 16 || localY < -1 || localY > 16 || localZ < -1 || localZ > 16)
+            return -1;
+        return index(localX, localY, localZ);
+    }
+
+    @Override
+    public Block getBlockAt(int x, int y, int z)
+    {
+        int i = cellAt(x, y, z);
+        if(i < 0)
+            return region.getBlockAt(x, y, z);
+        return Blocks.getByID(blockIDs[i]);
+    }
+
+    @Override
+    public Block getBlockNextTo(int x, int y, int z, EnumSide side)
+    {
+        return getBlockAt(x + side.getTranslationX(), y + side.getTranslationY(), z + side.getTranslationZ());
+    }
+
+    @Override
+    public IBlockStateValue getBlockState(int x, int y, int z, BlockState state)
+    {
+        int i = cellAt(x, y, z);
+        if(i < 0)
+            return region.getBlockState(x, y, z, state);
+        return BlockStates.getPackedValue(blockStates[i], state);
+    }
+
+    @Override
+    public int getLightLevel(int x, int y, int z)
+    {
+        int i = cellAt(x, y, z);
+        if(i < 0)
+            return region.getLightLevel(x, y, z);
+        return lightLevels[i];
+    }
+
+    @Override
+    public float getBrightness(int x, int y, int z)
+    {
+        return LightEngine.getBrightness(getLightLevel(x, y, z));
+    }
+
+    @Override
+    public float getLightValue(int x, int y, int z)
+    {
+        int localX = x - baseX;
+        int localY = y - baseY;
+        int localZ = z - baseZ;
+        if(localX >= 0 && localX < 16 && localY >= 0 && localY < 16 && localZ >= 0 && localZ < 16)
+            return getLightValue(index(localX, localY, localZ));
+        return region.getLightValue(x, y, z);
+    }
+}
@@ -0,0 +1,227 @@
+package org.craft.world;
+
+/**
+ * Stores 4096 int values (block ids, packed block states ids) as indices into a per-chunk palette.<br/>
+ * Indices are bit-packed into a long[] and the bit width grows with the palette size (1, 2, 4, 8 then 16 bits).<br/>
+ * While the palette holds a single value (all-air or all-stone chunks for instance), no index array is allocated at all.<br/>
+ * A storage can be frozen, after which it never changes and can be read from any thread; writers then work on a {@link #copy()}.
+ */
+public class PalettedBlockStorage
+{
+
+    /**
+     * Number of entries held by a storage (16x16x16)
+     */
+    public static final int  SIZE = 16 * 16 * 16;
+
+    private int[]            palette;
+    private int              paletteSize;
+    private int              bitsPerEntry;
+    private long[]           data;
+    private volatile boolean frozen;
+
+    /**
+     * Creates a storage filled with given value
+     */
+    public PalettedBlockStorage(int initialValue)
+    {
+        fill(initialValue);
+    }
+
+    private PalettedBlockStorage(PalettedBlockStorage other)
+    {
+        palette = other.palette.clone();
+        paletteSize = other.paletteSize;
+        bitsPerEntry = other.bitsPerEntry;
+        data = other.data == null ? null : other.data.clone();
+    }
+
+    /**
+     * Returns an independent copy of this storage, which is not frozen
+     */
+    public PalettedBlockStorage copy()
+    {
+        return new PalettedBlockStorage(this);
+    }
+
+    /**
+     * Returns index in storage of given chunk space coordinates
+     */
+    public static int index(int x, int y, int z)
+    {
+        return x << 8 | y << 4 | z;
+    }
+
+    /**
+     * Returns value stored at given index
+     */
+    public int get(int index)
+    {
+        if(data == null)
+            return palette[0];
+        return palette[getPaletteIndex(index)];
+    }
+
+    /**
+     * Sets value stored at given index
+     */
+    public void set(int index, int value)
+    {
+        checkNotFrozen();
+        int paletteIndex = indexOf(value);
+        if(paletteIndex < 0)
+            paletteIndex = addToPalette(value);
+        if(data == null)
+        {
+            if(paletteIndex == 0)
+                return;
+            grow(1);
+        }
+        setPaletteIndex(index, paletteIndex);
+    }
+
+    /**
+     * Fills the whole storage with given value and drops the index array
+     */
+    public void fill(int value)
+    {
+        checkNotFrozen();
+        palette = new int[2];
+        palette[0] = value;
+        paletteSize = 1;
+        bitsPerEntry = 0;
+        data = null;
+    }
+
+    /**
+     * Returns true if every entry holds the same value
+     */
+    public boolean isSingleValue()
+    {
+        return data == null;
+    }
+
+    /**
+     * Returns the number of values in the palette
+     */
+    public int getPaletteSize()
+    {
+        return paletteSize;
+    }
+
+    /**
+     * Returns the value at given index in the palette. The palette may still hold values which are no longer used
+     */
+    public int getPaletteValue(int paletteIndex)
+    {
+        return palette[paletteIndex];
+    }
+
+    /**
+     * Returns the current number of bits used per entry (0 when single valued)
+     */
+    public int getBitsPerEntry()
+    {
+        return bitsPerEntry;
+    }
+
+    /**
+     * Rebuilds the palette from the values actually in use, shrinking the index array when possible
+     */
+    public void compact()
+    {
+        checkNotFrozen();
+        if(data == null)
+            return;
+        int[] values = new int[SIZE];
+        for(int i = 0; i < SIZE; i++ )
+            values[i] = get(i);
+        fill(values[0]);
+        for(int i = 1; i < SIZE; i++ )
+            set(i, values[i]);
+    }
+
+    /**
+     * Forbids any further change to this storage
+     */
+    public void freeze()
+    {
+        frozen = true;
+    }
+
+    /**
+     * Returns true if this storage can no longer be changed
+     */
+    public boolean isFrozen()
+    {
+        return frozen;
+    }
+
+    private void checkNotFrozen()
+    {
+        if(frozen)
+            throw new IllegalStateException("Frozen storage can not be changed");
+    }
+
+    private int indexOf(int value)
+    {
+        for(int i = 0; i < paletteSize; i++ )
+        {
+            if(palette[i] == value)
+                return i;
+        }
+        return -1;
+    }
+
+    private int addToPalette(int value)
+    {
+        if(paletteSize == palette.length)
+        {
+            int[] newPalette = new int[palette.length * 2];
+            System.arraycopy(palette, 0, newPalette, 0, paletteSize);
+            palette = newPalette;
+        }
+        palette[paletteSize] = value;
+        int paletteIndex = paletteSize++ ;
+        if(data != null && paletteSize > 1 << bitsPerEntry)
+            grow(bitsPerEntry * 2);
+        return paletteIndex;
+    }
+
+    /**
+     * Repacks index array with given number of bits per entry
+     */
+    private void grow(int newBits)
+    {
+        long[] oldData = data;
+        int oldBits = bitsPerEntry;
+        bitsPerEntry = newBits;
+        data = new long[SIZE * newBits / 64];
+        if(oldData != null)
+        {
+            long oldMask = (1L << oldBits) - 1L;
+            int oldPerLong = 64 / oldBits;
+            for(int i = 0; i < SIZE; i++ )
+            {
+                int paletteIndex = (int) (oldData[i / oldPerLong] >>> ((i % oldPerLong) * oldBits) & oldMask);
+                setPaletteIndex(i, paletteIndex);
+            }
+        }
+    }
+
+    private int getPaletteIndex(int index)
+    {
+        int perLong = 64 / bitsPerEntry;
+        int shift = (index % perLong) * bitsPerEntry;
+        return (int) (data[index / perLong] >>> shift & ((1L << bitsPerEntry) - 1L));
+    }
+
+    private void setPaletteIndex(int index, int paletteIndex)
+    {
+        int perLong = 64 / bitsPerEntry;
+        int shift = (index % perLong) * bitsPerEntry;
+        long mask = ((1L << bitsPerEntry) - 1L) << shift;
+        int slot = index / perLong;
+        data[slot] = (data[slot] & ~mask) | ((long) paletteIndex << shift & mask);
+    }
+}
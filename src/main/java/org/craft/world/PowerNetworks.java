@@ -0,0 +1,484 @@
+package org.craft.world;
+
+import java.util.*;
+
+import org.craft.blocks.*;
+import org.craft.blocks.states.*;
+
+/**
+ * Keeps the electric networks of a world: the connected components of the {@link IPowerableBlock powerable blocks} of its loaded chunks,
+ * two blocks being connected when they share a face.<br/>
+ * Placing a block can only raise power levels, so it is propagated from that block only. Breaking a block splits its network into the
+ * components left around it, whose power levels are computed again, each with a single breadth-first search from its power sources.
+ * The {@link BlockStates#electricPower power} and {@link BlockStates#cableConnexions connexions} states of the blocks are written whenever
+ * they change.<br/>
+ * Must only be used on the thread updating the world.
+ */
+public class PowerNetworks
+{
+
+    private static final int    NORTH     = 0;
+    private static final int    SOUTH     = 1;
+    private static final int    EAST      = 2;
+    private static final int    WEST      = 3;
+
+    private static final int[]  OFFSETS_X =
+                                          {
+            0, 0, 1, -1, 0, 0
+                                          };
+    private static final int[]  OFFSETS_Y =
+                                          {
+            0, 0, 0, 0, 1, -1
+                                          };
+    private static final int[]  OFFSETS_Z =
+                                          {
+            -1, 1, 0, 0, 0, 0
+                                          };
+
+    private World               world;
+    private HashMap<Long, Node> nodes;
+    private int                 networkCount;
+    private long                lastVisitedNodes;
+    private ArrayList<Node>[]   buckets;
+    private HashSet<Network>    splitNetworks;
+
+    @SuppressWarnings("unchecked")
+    public PowerNetworks(World world)
+    {
+        this.world = world;
+        nodes = new HashMap<Long, Node>();
+        splitNetworks = new HashSet<Network>();
+        buckets = new ArrayList[EnumPowerStates.POWER_15.powerValue() + 1];
+        for(int i = 0; i < buckets.length; i++ )
+            buckets[i] = new ArrayList<Node>();
+    }
+
+    /**
+     * Updates the networks after the block at given coords has been replaced
+     */
+    public void onBlockChanged(int x, int y, int z, Block previous, Block block)
+    {
+        lastVisitedNodes = 0;
+        if(previous instanceof IPowerableBlock)
+        {
+            Node node = nodes.get(ChunkCoord.pack(x, y, z));
+            if(node != null)
+            {
+                ArrayList<Node> removed = new ArrayList<Node>();
+                removed.add(node);
+                removeNodes(removed);
+            }
+        }
+        if(block instanceof IPowerableBlock)
+            addNode(x, y, z, (IPowerableBlock) block);
+    }
+
+    /**
+     * Adds the powerable blocks of a chunk which has just been added to the world
+     */
+    public void onChunkAdded(Chunk chunk)
+    {
+        lastVisitedNodes = 0;
+        if(!hasPowerableBlock(chunk.blocks))
+            return;
+        ChunkCoord coords = chunk.getCoords();
+        for(int index = 0; index < PalettedBlockStorage.SIZE; index++ )
+        {
+            Block block = Blocks.getByID(chunk.blocks.get(index));
+            if(block instanceof IPowerableBlock)
+                addNode((coords.x << 4) + (index >> 8), (coords.y << 4) + (index >> 4 & 15), (coords.z << 4) + (index & 15), (IPowerableBlock) block);
+        }
+    }
+
+    /**
+     * Removes the powerable blocks of a chunk which has just been removed from the world. The power levels of the networks it was part of are
+     * computed again without it
+     */
+    public void onChunkRemoved(Chunk chunk)
+    {
+        lastVisitedNodes = 0;
+        if(nodes.isEmpty() || !hasPowerableBlock(chunk.blocks))
+            return;
+        ChunkCoord coords = chunk.getCoords();
+        ArrayList<Node> removed = new ArrayList<Node>();
+        for(int index = 0; index < PalettedBlockStorage.SIZE; index++ )
+        {
+            Node node = nodes.get(ChunkCoord.pack((coords.x << 4) + (index >> 8), (coords.y << 4) + (index >> 4 & 15), (coords.z << 4) + (index & 15)));
+            if(node != null)
+                removed.add(node);
+        }
+        if(!removed.isEmpty())
+            removeNodes(removed);
+    }
+
+    /**
+     * Writes the states of the powerable block at given coords again, after they have been cleared
+     */
+    public void refresh(int x, int y, int z)
+    {
+        Node node = nodes.get(ChunkCoord.pack(x, y, z));
+        if(node != null)
+        {
+            writePower(node);
+            writeConnexions(node);
+        }
+    }
+
+    /**
+     * Returns the power level of the powerable block at given coords, or 0 if there is none
+     */
+    public int getPower(int x, int y, int z)
+    {
+        Node node = nodes.get(ChunkCoord.pack(x, y, z));
+        return node == null ? 0 : node.power;
+    }
+
+    /**
+     * Returns the number of blocks in the network of the powerable block at given coords, or 0 if there is none
+     */
+    public int getNetworkSize(int x, int y, int z)
+    {
+        Node node = nodes.get(ChunkCoord.pack(x, y, z));
+        if(node == null)
+            return 0;
+        if(node.network.split)
+            split(node.network);
+        return node.network.nodes.size();
+    }
+
+    /**
+     * Returns the number of networks
+     */
+    public int getNetworkCount()
+    {
+        splitNetworks();
+        return networkCount;
+    }
+
+    /**
+     * Returns the number of blocks visited by the last block or chunk change
+     */
+    public long getLastVisitedNodes()
+    {
+        return lastVisitedNodes;
+    }
+
+    private void addNode(int x, int y, int z, IPowerableBlock block)
+    {
+        long key = ChunkCoord.pack(x, y, z);
+        if(nodes.containsKey(key))
+            return;
+        Node node = new Node(x, y, z, block);
+        nodes.put(key, node);
+        Network network = null;
+        for(int side = 0; side < 6; side++ )
+        {
+            Node neighbor = nodes.get(ChunkCoord.pack(x + OFFSETS_X[side], y + OFFSETS_Y[side], z + OFFSETS_Z[side]));
+            if(neighbor == null)
+                continue;
+            node.neighbors[side] = neighbor;
+            neighbor.neighbors[side ^ 1] = node;
+            if(network == null)
+                network = neighbor.network;
+            else if(neighbor.network != network)
+                network = merge(network, neighbor.network);
+        }
+        if(network == null)
+        {
+            network = new Network();
+            networkCount++ ;
+        }
+        node.network = network;
+        network.nodes.add(node);
+
+        // The networks joined by this block keep their power levels, which can only be raised by it
+        int power = node.emission;
+        for(int side = 0; side < 6; side++ )
+        {
+            Node neighbor = node.neighbors[side];
+            if(neighbor != null && neighbor.power - 1 > power)
+                power = neighbor.power - 1;
+        }
+        node.power = power;
+        writePower(node);
+        writeConnexions(node);
+        for(int side = NORTH; side <= WEST; side++ )
+        {
+            if(node.neighbors[side] != null)
+                writeConnexions(node.neighbors[side]);
+        }
+        if(power > 0)
+        {
+            buckets[power].add(node);
+            propagate(power);
+        }
+    }
+
+    /**
+     * Moves the blocks of the smallest network into the other one, and returns the network left
+     */
+    private Network merge(Network a, Network b)
+    {
+        if(a.nodes.size() < b.nodes.size())
+        {
+            Network tmp = a;
+            a = b;
+            b = tmp;
+        }
+        for(Node node : b.nodes)
+        {
+            if(node.network == b)
+                node.network = a;
+        }
+        a.nodes.addAll(b.nodes);
+        a.removedCount += b.removedCount;
+        if(b.split)
+        {
+            splitNetworks.remove(b);
+            if(!a.split)
+            {
+                a.split = true;
+                splitNetworks.add(a);
+            }
+        }
+        networkCount-- ;
+        return a;
+    }
+
+    private void removeNodes(ArrayList<Node> removed)
+    {
+        for(Node node : removed)
+        {
+            nodes.remove(ChunkCoord.pack(node.x, node.y, node.z));
+            node.removed = true;
+            Network network = node.network;
+            if(!network.split)
+            {
+                network.split = true;
+                splitNetworks.add(network);
+            }
+            network.removedCount++ ;
+        }
+        ArrayList<Node> darkened = new ArrayList<Node>();
+        ArrayList<Integer> darkenedPowers = new ArrayList<Integer>();
+        int maxPower = 0;
+        for(Node node : removed)
+        {
+            for(int side = 0; side < 6; side++ )
+            {
+                Node neighbor = node.neighbors[side];
+                if(neighbor == null)
+                    continue;
+                neighbor.neighbors[side ^ 1] = null;
+                node.neighbors[side] = null;
+                if(!neighbor.removed)
+                {
+                    if(side <= WEST)
+                        writeConnexions(neighbor);
+                    maxPower = Math.max(maxPower, darken(neighbor, node.power, darkened, darkenedPowers));
+                }
+            }
+        }
+        // Blocks powered through the removed blocks lose their power, and get back what the blocks still powered around them give
+        for(int i = 0; i < darkened.size(); i++ )
+        {
+            Node node = darkened.get(i);
+            int power = darkenedPowers.get(i);
+            lastVisitedNodes++ ;
+            for(int side = 0; side < 6; side++ )
+            {
+                Node neighbor = node.neighbors[side];
+                if(neighbor != null)
+                    maxPower = Math.max(maxPower, darken(neighbor, power, darkened, darkenedPowers));
+            }
+        }
+        if(maxPower > 0)
+            propagate(maxPower);
+        for(Node node : darkened)
+            writePower(node);
+
+        for(Node node : removed)
+        {
+            Network network = node.network;
+            node.network = null;
+            // Networks left with too many removed blocks are split right away, so that their lists of blocks do not keep growing
+            if(network.split && network.removedCount > network.nodes.size() / 2)
+                split(network);
+        }
+    }
+
+    /**
+     * Removes the power given to {@code node} by a block of given power level which lost it. Returns the power level of the block if it
+     * keeps it and has to power its neighbours again, 0 otherwise
+     */
+    private int darken(Node node, int fromPower, ArrayList<Node> darkened, ArrayList<Integer> darkenedPowers)
+    {
+        if(node.power == 0)
+            return 0;
+        if(node.power < fromPower && node.power > node.emission)
+        {
+            darkened.add(node);
+            darkenedPowers.add(node.power);
+            node.power = node.emission;
+            if(node.emission == 0)
+                return 0;
+        }
+        buckets[node.power].add(node);
+        return node.power;
+    }
+
+    /**
+     * Splits all networks which lost blocks into their connected components
+     */
+    private void splitNetworks()
+    {
+        if(splitNetworks.isEmpty())
+            return;
+        for(Network network : new ArrayList<Network>(splitNetworks))
+            split(network);
+    }
+
+    /**
+     * Splits a network which lost blocks into its connected components
+     */
+    private void split(Network network)
+    {
+        network.split = false;
+        splitNetworks.remove(network);
+        networkCount-- ;
+        for(Node node : network.nodes)
+        {
+            if(node.removed || node.network != network)
+                continue;
+            Network component = new Network();
+            networkCount++ ;
+            ArrayList<Node> componentNodes = component.nodes;
+            node.network = component;
+            componentNodes.add(node);
+            for(int i = 0; i < componentNodes.size(); i++ )
+            {
+                Node current = componentNodes.get(i);
+                for(int side = 0; side < 6; side++ )
+                {
+                    Node neighbor = current.neighbors[side];
+                    if(neighbor != null && neighbor.network != component)
+                    {
+                        neighbor.network = component;
+                        componentNodes.add(neighbor);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Spreads the power levels of the blocks queued in {@link #buckets}, from the highest level down. Every block reached gets the level of
+     * the block it was reached from, minus one
+     */
+    private void propagate(int maxPower)
+    {
+        for(int level = maxPower; level > 1; level-- )
+        {
+            ArrayList<Node> bucket = buckets[level];
+            for(int i = 0; i < bucket.size(); i++ )
+            {
+                Node node = bucket.get(i);
+                if(node.power != level)
+                    continue;
+                lastVisitedNodes++ ;
+                for(int side = 0; side < 6; side++ )
+                {
+                    Node neighbor = node.neighbors[side];
+                    if(neighbor != null && neighbor.power < level - 1)
+                    {
+                        neighbor.power = level - 1;
+                        buckets[level - 1].add(neighbor);
+                        writePower(neighbor);
+                    }
+                }
+            }
+            bucket.clear();
+        }
+        buckets[1].clear();
+    }
+
+    private void writePower(Node node)
+    {
+        writeState(node, BlockStates.electricPower, EnumPowerStates.fromPowerValue(node.power));
+    }
+
+    /**
+     * Writes the connexions of a block to the powerable blocks around it, only used by cables
+     */
+    private void writeConnexions(Node node)
+    {
+        if(!(node.block instanceof BlockCable))
+            return;
+        int flag = 0;
+        if(node.neighbors[NORTH] != null)
+            flag |= 1 << 0;
+        if(node.neighbors[SOUTH] != null)
+            flag |= 1 << 1;
+        if(node.neighbors[EAST] != null)
+            flag |= 1 << 2;
+        if(node.neighbors[WEST] != null)
+            flag |= 1 << 3;
+        writeState(node, BlockStates.cableConnexions, EnumConnexionStates.fromFlag(flag));
+    }
+
+    /**
+     * Writes a state of the block of given node if it changed, so that loading a chunk does not mark it as modified
+     */
+    private void writeState(Node node, BlockState state, IBlockStateValue value)
+    {
+        Chunk chunk = world.getChunk(node.x, node.y, node.z);
+        if(chunk != null && chunk.getBlockState(node.x, node.y, node.z, state) != value)
+            chunk.applyBlockStateEdit(PalettedBlockStorage.index(node.x & 15, node.y & 15, node.z & 15), state, value);
+    }
+
+    private static boolean hasPowerableBlock(PalettedBlockStorage storage)
+    {
+        for(int i = 0; i < storage.getPaletteSize(); i++ )
+        {
+            if(Blocks.getByID(storage.getPaletteValue(i) & 0xFFFF) instanceof IPowerableBlock)
+                return true;
+        }
+        return false;
+    }
+
+    private static class Node
+    {
+
+        private final int             x;
+        private final int             y;
+        private final int             z;
+        private final IPowerableBlock block;
+        private final int             emission;
+        private final Node[]          neighbors;
+        private int                   power;
+        private Network               network;
+        private boolean               removed;
+
+        Node(int x, int y, int z, IPowerableBlock block)
+        {
+            this.x = x;
+            this.y = y;
+            this.z = z;
+            this.block = block;
+            this.emission = block.getEmittedPower();
+            this.neighbors = new Node[6];
+        }
+    }
+
+    private static class Network
+    {
+
+        private final ArrayList<Node> nodes = new ArrayList<Node>();
+
+        /**
+         * True if blocks have been removed from this network since it was built, so that it may have to be split
+         */
+        private boolean               split;
+        private int                   removedCount;
+    }
+}
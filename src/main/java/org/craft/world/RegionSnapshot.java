@@ -0,0 +1,128 @@
+package org.craft.world;
+
+import org.craft.blocks.*;
+import org.craft.blocks.states.*;
+import org.craft.utils.*;
+
+/**
+ * Read-only view of a chunk and of the 26 chunks around it, built from their {@link ChunkSnapshot}s. It can be read from any thread while
+ * the world keeps changing, which lets chunks be rendered off the render thread.<br/>
+ * Blocks outside of these chunks, or in chunks which were not loaded, are read as air lit by the sky only, as {@link World} does for
+ * chunks which are not loaded.
+ */
+public class RegionSnapshot implements IBlockAccess
+{
+
+    private final World           world;
+    private final ChunkCoord      center;
+    private final ChunkSnapshot[] chunks;
+
+    /**
+     * Takes the snapshots of the chunk at given coords and of its neighbours. Only looks up loaded chunks, so it never loads nor generates
+     * any. The snapshots are taken under the world lock, so that a {@link BlockEditSession} commit is seen in all of them or in none
+     */
+    public RegionSnapshot(World world, ChunkCoord center)
+    {
+        this.world = world;
+        this.center = center;
+        this.chunks = new ChunkSnapshot[27];
+        ChunkProvider provider = world.getChunkProvider();
+        synchronized(world)
+        {
+            for(int dx = -1; dx <= 1; dx++ )
+            {
+                for(int dy = -1; dy <= 1; dy++ )
+                {
+                    for(int dz = -1; dz <= 1; dz++ )
+                    {
+                        Chunk c = provider.get(world, center.x + dx, center.y + dy, center.z + dz);
+                        if(c != null)
+                            chunks[(dx + 1) * 9 + (dy + 1) * 3 + dz + 1] = c.getSnapshot();
+                    }
+                }
+            }
+        }
+    }
+
+    public ChunkCoord getCenter()
+    {
+        return center;
+    }
+
+    /**
+     * Returns the snapshot of the center chunk, or null if it was not loaded
+     */
+    public ChunkSnapshot getCenterSnapshot()
+    {
+        return chunks[13];
+    }
+
+    /**
+     * Returns the snapshot of the chunk holding given world coords, or null if it is outside of the region or was not loaded
+     */
+    public ChunkSnapshot getSnapshot(int x, int y, int z)
+    {
+        int dx = (x >> 4) - center.x;
+        int dy = (y >> 4) - center.y;
+        int dz = (z >> 4) - center.z;
+        if(dx < -1 || dx > 1 || dy < -1 || dy > 1 || dz < -1 || dz > 1)
+            return null;
+        return chunks[(dx + 1) * 9 + (dy + 1) * 3 + dz + 1];
+    }
+
+    @Override
+    public Block getBlockAt(int x, int y, int z)
+    {
+        ChunkSnapshot s = getSnapshot(x, y, z);
+        if(s == null)
+            return Blocks.air;
+        return s.getBlock(x & 15, y & 15, z & 15);
+    }
+
+    @Override
+    public Block getBlockNextTo(int x, int y, int z, EnumSide side)
+    {
+        return getBlockAt(x + side.getTranslationX(), y + side.getTranslationY(), z + side.getTranslationZ());
+    }
+
+    @Override
+    public IBlockStateValue getBlockState(int x, int y, int z, BlockState state)
+    {
+        ChunkSnapshot s = getSnapshot(x, y, z);
+        if(s == null)
+            return null;
+        return s.getBlockState(x & 15, y & 15, z & 15, state);
+    }
+
+    @Override
+    public int getLightLevel(int x, int y, int z)
+    {
+        ChunkSnapshot s = getSnapshot(x, y, z);
+        if(s == null)
+            return world.canBlockSeeSky(x, y - 1, z) ? LightEngine.MAX_LEVEL : 0;
+        return Math.max(s.getSkyLight(x & 15, y & 15, z & 15), s.getBlockLight(x & 15, y & 15, z & 15));
+    }
+
+    @Override
+    public float getBrightness(int x, int y, int z)
+    {
+        return LightEngine.getBrightness(getLightLevel(x, y, z));
+    }
+
+    @Override
+    public float getLightValue(int x, int y, int z)
+    {
+        ChunkSnapshot s = getSnapshot(x, y, z);
+        if(s == null)
+            return getBrightness(x, y, z);
+        if(LightEngine.getOpacity(s.getBlockID(x & 15, y & 15, z & 15)) < LightEngine.MAX_LEVEL)
+            return getBrightness(x, y, z);
+        int level = 0;
+        for(EnumSide side : EnumSide.values())
+        {
+            if(side != EnumSide.UNDEFINED)
+                level = Math.max(level, getLightLevel(x + side.getTranslationX(), y + side.getTranslationY(), z + side.getTranslationZ()));
+        }
+        return LightEngine.getBrightness(level);
+    }
+}
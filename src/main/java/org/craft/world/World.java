@@ -1,6 +1,8 @@
 package org.craft.world;
 
+import java.io.*;
 import java.util.*;
+import java.util.concurrent.*;
 
 import com.google.common.base.Optional;
 
@@ -14,10 +16,10 @@ import org.craft.utils.CollisionInfos.CollisionType;
 import org.spongepowered.api.math.*;
 import org.spongepowered.api.world.biome.*;
 
-public class World implements org.spongepowered.api.world.World
+public class World implements org.spongepowered.api.world.World, IBlockAccess
 {
 
-    private LinkedList<Entity> entities;
+    private ArrayList<Entity>  entities;
     private ArrayList<Entity>  spawingQueue;
     private ChunkProvider      chunkProvider;
     private WorldGenerator     generator;
@@ -26,6 +28,27 @@ public class World implements org.spongepowered.api.world.World
     public boolean             isRemote;
     private Random             rng;
 
+    /**
+     * Last chunk returned by {@link #getChunk(int, int, int)}, checked first for spatially coherent accesses
+     */
+    private Chunk              lastChunk;
+
+    /**
+     * Packed coordinates of {@link #lastChunk}, compared before dereferencing it so that a miss costs no pointer chasing. Both fields are
+     * written without locking, so a hit is still checked against the coordinates of the chunk itself
+     */
+    private long               lastChunkKey;
+
+    private ChunkLifecycleManager      chunkLifecycleManager;
+    private ChunkGenerationService     chunkGenerationService;
+    private WorldSaveService           saveService;
+    private LightEngine                lightEngine;
+    private BlockTickScheduler         tickScheduler;
+    private PowerNetworks              powerNetworks;
+    private EntityIndex                entityIndex;
+    private EntityTicker               entityTicker;
+    private List<IChunkUnloadListener> unloadListeners;
+
     public World(String name, ChunkProvider prov, WorldGenerator generator, WorldLoader worldLoader)
     {
         this.rng = new Random(generator.getSeed());
@@ -34,27 +57,50 @@ public class World implements org.spongepowered.api.world.World
         this.generator = generator;
         this.chunkProvider = prov;
         spawingQueue = new ArrayList<Entity>();
-        entities = new LinkedList<Entity>();
+        entities = new ArrayList<Entity>();
+        entityIndex = new EntityIndex();
+        entityTicker = new EntityTicker(this);
+        chunkLifecycleManager = new ChunkLifecycleManager(this);
+        saveService = new WorldSaveService(this);
+        lightEngine = new LightEngine(this);
+        tickScheduler = new BlockTickScheduler(this, generator.getSeed());
+        powerNetworks = new PowerNetworks(this);
+        unloadListeners = new CopyOnWriteArrayList<IChunkUnloadListener>();
+        if(prov instanceof BaseChunkProvider)
+            chunkGenerationService = new ChunkGenerationService(this, (BaseChunkProvider) prov);
     }
 
     public void update(double delta)
     {
-        while(!spawingQueue.isEmpty())
-            entities.add(spawingQueue.remove(0));
-        ArrayList<Entity> deadEntities = new ArrayList<Entity>();
-        for(Entity e : entities)
+        if(chunkGenerationService != null)
+            chunkGenerationService.update();
+        for(Entity e : spawingQueue)
         {
-            Chunk c = getChunk((int) e.getX(), (int) e.getY(), (int) e.getZ());
-            if(c != null)
-                c.update();
-            e.update();
-
+            entities.add(e);
+            entityIndex.add(e);
+        }
+        spawingQueue.clear();
+        entityTicker.tick(entities);
+        int alive = 0;
+        for(int i = 0; i < entities.size(); i++ )
+        {
+            Entity e = entities.get(i);
             if(e.isDead())
             {
-                deadEntities.add(e);
+                entityIndex.remove(e);
+            }
+            else
+            {
+                entityIndex.update(e);
+                entities.set(alive++ , e);
             }
         }
-        entities.removeAll(deadEntities);
+        // Dead entities are dropped by moving the living ones down, keeping their order
+        entities.subList(alive, entities.size()).clear();
+        tickScheduler.update();
+        // Forget the cached chunk so that the first access of the next tick refreshes its last access time
+        lastChunk = null;
+        chunkLifecycleManager.update();
     }
 
     /**
@@ -62,7 +108,52 @@ public class World implements org.spongepowered.api.world.World
      */
     public Chunk getChunk(int x, int y, int z)
     {
-        return chunkProvider.get(this, (int) Math.floor((float) x / 16f), (int) Math.floor((float) y / 16f), (int) Math.floor((float) z / 16f));
+        int chunkX = x >> 4;
+        int chunkY = y >> 4;
+        int chunkZ = z >> 4;
+        long key = ChunkCoord.pack(chunkX, chunkY, chunkZ);
+        Chunk c;
+        if(key == lastChunkKey)
+        {
+            c = lastChunk;
+            if(c != null)
+            {
+                ChunkCoord coords = c.getCoords();
+                if(coords.x == chunkX && coords.y == chunkY && coords.z == chunkZ)
+                    return c;
+            }
+        }
+        c = chunkProvider.get(this, chunkX, chunkY, chunkZ);
+        if(c != null)
+        {
+            lastChunk = c;
+            lastChunkKey = key;
+        }
+        return c;
+    }
+
+    /**
+     * Called by the {@link ChunkLifecycleManager} once given chunk has been removed from the chunk provider
+     */
+    void onChunkUnloaded(Chunk c)
+    {
+        if(lastChunk == c)
+            lastChunk = null;
+        for(IChunkUnloadListener listener : unloadListeners)
+            listener.onChunkUnloaded(this, c);
+    }
+
+    /**
+     * Registers a listener called each time a chunk is unloaded from this world
+     */
+    public void addChunkUnloadListener(IChunkUnloadListener listener)
+    {
+        unloadListeners.add(listener);
+    }
+
+    public void removeChunkUnloadListener(IChunkUnloadListener listener)
+    {
+        unloadListeners.remove(listener);
     }
 
     public void addChunk(Chunk c)
@@ -107,6 +198,8 @@ public class World implements org.spongepowered.api.world.World
 
     public void setBlockState(int x, int y, int z, BlockState state, IBlockStateValue value, boolean notify)
     {
+        if(entityTicker.deferSetBlockState(x, y, z, state, value, notify))
+            return;
         Chunk c = getChunk(x, y, z);
         if(c == null)
             return;
@@ -120,21 +213,40 @@ public class World implements org.spongepowered.api.world.World
      */
     public void setBlock(int x, int y, int z, Block block)
     {
+        if(entityTicker.deferSetBlock(x, y, z, block))
+            return;
         Chunk c = getChunk(x, y, z);
         if(c == null)
         {
             return;
         }
+        Block previous = c.getBlock(this, x, y, z);
         c.setBlock(this, x, y, z, block);
+        lightEngine.onBlockChanged(x, y, z);
+        if(previous instanceof IPowerableBlock || block instanceof IPowerableBlock)
+            powerNetworks.onBlockChanged(x, y, z, previous, block);
         updateBlockAndNeighbors(x, y, z);
         c.markDirty();
     }
 
+    /**
+     * Schedules a tick of the block at given coords in {@code delay} world ticks, see {@link Block#updateTick(World, int, int, int)}. Does
+     * nothing if a tick is already scheduled at these coords
+     */
+    public void scheduleUpdate(int x, int y, int z, int delay)
+    {
+        if(entityTicker.deferScheduleUpdate(x, y, z, delay))
+            return;
+        tickScheduler.scheduleUpdate(x, y, z, delay);
+    }
+
     /**
      * Spawns a new entity in world
      */
     public void spawn(Entity e)
     {
+        if(entityTicker.deferSpawn(e))
+            return;
         Log.message("added " + e.getClass());
         this.spawingQueue.add(e);
     }
@@ -144,87 +256,97 @@ public class World implements org.spongepowered.api.world.World
      */
     public void performRayCast(Entity sender, CollisionInfos infos, float maxDist)
     {
-        float maxReachedDist = maxDist;
-        float size = 0.45f;
-        Vector3 origin = Vector3.get(sender.posX, sender.posY + sender.getEyeOffset() - size / 2f, sender.posZ);
-        Vector3 pos = origin;
         Vector3 ray = sender.getQuaternionRotation().getForward();
+        // The camera is placed half a block away from the entity position on the horizontal axes
+        rayCast(sender.posX + 0.5f, sender.posY + sender.getEyeOffset(), sender.posZ + 0.5f, ray.getX(), ray.getY(), ray.getZ(), maxDist, sender, infos);
+        ray.dispose();
+    }
 
-        int x = 0;
-        int y = 0;
-        int z = 0;
-        float step = 0.005f;
-        AABB rayBB = new AABB(Vector3.get(0, 0, 0), Vector3.get(size, size, size));
-        Vector3 blockPos = Vector3.get(x, y, z);
-        for(float dist = 0f; dist <= maxDist + step; dist += step)
+    /**
+     * Finds the first block or entity hit by given ray within {@code maxDist} blocks, and writes it into {@code infos}. The ray visits the
+     * blocks it goes through one after the other (Amanatides & Woo), and is tested against the selection boxes of non-air blocks and the
+     * bounding boxes of entities other than {@code ignored}. Returns true if something has been hit
+     */
+    public boolean rayCast(float originX, float originY, float originZ, float dirX, float dirY, float dirZ, float maxDist, Entity ignored, CollisionInfos infos)
+    {
+        infos.type = CollisionType.NONE;
+        infos.value = null;
+        infos.side = EnumSide.UNDEFINED;
+        infos.distance = maxDist;
+        float length = (float) Math.sqrt(dirX * dirX + dirY * dirY + dirZ * dirZ);
+        if(length == 0f)
+            return false;
+        dirX /= length;
+        dirY /= length;
+        dirZ /= length;
+
+        int x = (int) Math.floor(originX);
+        int y = (int) Math.floor(originY);
+        int z = (int) Math.floor(originZ);
+        int stepX = dirX > 0f ? 1 : -1;
+        int stepY = dirY > 0f ? 1 : -1;
+        int stepZ = dirZ > 0f ? 1 : -1;
+        // Distance along the ray between two block boundaries on each axis, and distance to the next boundary
+        float deltaX = dirX == 0f ? Float.POSITIVE_INFINITY : Math.abs(1f / dirX);
+        float deltaY = dirY == 0f ? Float.POSITIVE_INFINITY : Math.abs(1f / dirY);
+        float deltaZ = dirZ == 0f ? Float.POSITIVE_INFINITY : Math.abs(1f / dirZ);
+        float nextX = dirX == 0f ? Float.POSITIVE_INFINITY : (dirX > 0f ? x + 1 - originX : originX - x) * deltaX;
+        float nextY = dirY == 0f ? Float.POSITIVE_INFINITY : (dirY > 0f ? y + 1 - originY : originY - y) * deltaY;
+        float nextZ = dirZ == 0f ? Float.POSITIVE_INFINITY : (dirZ > 0f ? z + 1 - originZ : originZ - z) * deltaZ;
+        float dist = 0f;
+        while(dist <= maxDist)
         {
-            x = (int) Math.round(pos.getX());
-            y = (int) Math.round(pos.getY());
-            z = (int) Math.round(pos.getZ());
             Block b = getBlockAt(x, y, z);
-            if(b != null)
+            if(b != null && b != Blocks.air)
             {
                 AABB blockBB = b.getSelectionBox(this, x, y, z);
                 if(blockBB != null)
                 {
-                    if(blockBB.intersectAABB(rayBB.translate(pos)))
+                    float hit = blockBB.intersectRay(originX, originY, originZ, dirX, dirY, dirZ, maxDist, infos);
+                    blockBB.dispose();
+                    if(hit >= 0f)
                     {
+                        infos.type = CollisionType.BLOCK;
+                        infos.value = b;
                         infos.x = x;
                         infos.y = y;
                         infos.z = z;
-                        infos.type = CollisionType.BLOCK;
-                        infos.side = EnumSide.BOTTOM;
-                        infos.value = b;
-                        blockPos = Vector3.get(x + 0.5f, y + 0.5f, z + 0.5f);
-
-                        Vector3 diff = blockPos.sub(pos.add(0.5f));
-
-                        float absx = Math.abs(diff.getX());
-                        float absy = Math.abs(diff.getY());
-                        float absz = Math.abs(diff.getZ());
-
-                        if(absx > absy && absx > absz)
-                        {
-                            if(diff.getX() > 0)
-                                infos.side = EnumSide.WEST;
-                            else
-                                infos.side = EnumSide.EAST;
-                        }
-                        if(absy > absx && absy > absz)
-                        {
-                            if(diff.getY() > 0)
-                                infos.side = EnumSide.BOTTOM;
-                            else
-                                infos.side = EnumSide.TOP;
-                        }
-                        if(absz > absy && absz > absx)
-                        {
-                            if(diff.getZ() > 0)
-                                infos.side = EnumSide.NORTH;
-                            else
-                                infos.side = EnumSide.SOUTH;
-                        }
+                        infos.distance = hit;
+                        maxDist = hit;
+                        break;
                     }
                 }
             }
-            pos = origin.add(ray.mul((maxDist + step) - dist));
-            for(Entity e : entities)
+            if(nextX < nextY && nextX < nextZ)
             {
-                if(e.getBoundingBox().intersectAABB(rayBB))
-                {
-                    infos.type = CollisionType.ENTITY;
-                    infos.value = e;
-                    infos.x = e.posX;
-                    infos.y = e.posY;
-                    infos.z = e.posZ;
-                    infos.distance = maxReachedDist;
-                }
+                x += stepX;
+                dist = nextX;
+                nextX += deltaX;
+            }
+            else if(nextY < nextZ)
+            {
+                y += stepY;
+                dist = nextY;
+                nextY += deltaY;
+            }
+            else
+            {
+                z += stepZ;
+                dist = nextZ;
+                nextZ += deltaZ;
             }
         }
-        origin.dispose();
-        pos.dispose();
-        ray.dispose();
-        rayBB.dispose();
+
+        Entity e = entityIndex.rayCast(originX, originY, originZ, dirX, dirY, dirZ, maxDist, ignored, infos);
+        if(e != null)
+        {
+            infos.type = CollisionType.ENTITY;
+            infos.value = e;
+            infos.x = e.posX;
+            infos.y = e.posY;
+            infos.z = e.posZ;
+        }
+        return infos.type != CollisionType.NONE;
     }
 
     public WorldGenerator getGenerator()
@@ -242,14 +364,39 @@ public class World implements org.spongepowered.api.world.World
      */
     public boolean canBlockSeeSky(int x, int y, int z)
     {
-        for(int y1 = y + 1; y1 < 256; y1++ )
-        {
-            if(!getBlockAt(x, y1, z).letLightGoThrough())
-            {
-                return false;
-            }
-        }
-        return true;
+        return y >= lightEngine.getHeightMap().getHeight(x, z);
+    }
+
+    /**
+     * Returns the light level at given coords: the highest of the sky and block light levels. Outside of loaded chunks, only the sky light
+     * is known
+     */
+    public int getLightLevel(int x, int y, int z)
+    {
+        Chunk c = getChunk(x, y, z);
+        if(c == null)
+            return canBlockSeeSky(x, y - 1, z) ? LightEngine.MAX_LEVEL : 0;
+        return c.getChunkLightLevel(x & 15, y & 15, z & 15);
+    }
+
+    /**
+     * Returns the brightness used to render a face next to given coords, between 0 and 1
+     */
+    public float getBrightness(int x, int y, int z)
+    {
+        return LightEngine.getBrightness(getLightLevel(x, y, z));
+    }
+
+    /**
+     * Returns the brightness used to render the block at given coords, between 0 and 1. Blocks which stop light are lit by the brightest of
+     * their neighbours
+     */
+    public float getLightValue(int x, int y, int z)
+    {
+        Chunk c = getChunk(x, y, z);
+        if(c == null)
+            return getBrightness(x, y, z);
+        return c.getLightValue(this, x, y, z);
     }
 
     public List<Entity> getEntitiesList()
@@ -257,6 +404,14 @@ public class World implements org.spongepowered.api.world.World
         return entities;
     }
 
+    /**
+     * Returns the spatial index of the entities of this world, to query the entities in an area
+     */
+    public EntityIndex getEntityIndex()
+    {
+        return entityIndex;
+    }
+
     public void clearStates(int x, int y, int z)
     {
         Chunk c = getChunk(x, y, z);
@@ -438,6 +593,79 @@ public class World implements org.spongepowered.api.world.World
         return getGenerator().getSeed();
     }
 
+    public ChunkLifecycleManager getChunkLifecycleManager()
+    {
+        return chunkLifecycleManager;
+    }
+
+    /**
+     * Returns the service generating chunks off the game thread, or null if chunks of this world are not generated locally
+     */
+    public ChunkGenerationService getChunkGenerationService()
+    {
+        return chunkGenerationService;
+    }
+
+    /**
+     * Returns the service saving this world in the background
+     */
+    public WorldSaveService getSaveService()
+    {
+        return saveService;
+    }
+
+    /**
+     * Returns the scheduler running the block ticks of this world
+     */
+    public BlockTickScheduler getTickScheduler()
+    {
+        return tickScheduler;
+    }
+
+    /**
+     * Returns the entity ticker of this world, which can update entities on several threads
+     */
+    public EntityTicker getEntityTicker()
+    {
+        return entityTicker;
+    }
+
+    /**
+     * Returns the electric networks of this world
+     */
+    public PowerNetworks getPowerNetworks()
+    {
+        return powerNetworks;
+    }
+
+    /**
+     * Returns the engine computing the light of this world
+     */
+    public LightEngine getLightEngine()
+    {
+        return lightEngine;
+    }
+
+    /**
+     * Stops the background tasks of this world, waits for pending writes and releases its files
+     */
+    public void dispose()
+    {
+        if(chunkGenerationService != null)
+            chunkGenerationService.shutdown();
+        lightEngine.shutdown();
+        entityTicker.shutdown();
+        saveService.shutdown();
+        try
+        {
+            worldLoader.close();
+        }
+        catch(IOException e)
+        {
+            e.printStackTrace();
+        }
+    }
+
     public WorldLoader getLoader()
     {
         return worldLoader;
@@ -3,13 +3,20 @@ package org.craft.world;
 import java.util.*;
 
 import org.craft.blocks.*;
+import org.craft.maths.*;
 
 public class WorldGenerator
 {
 
+    /**
+     * Number of chunk columns whose terrain heights are kept
+     */
+    private static final int           COLUMN_CACHE_SIZE = 1024;
+
     private long                       seed;
-    private ArrayList<IWorldPopulator> populators = new ArrayList<IWorldPopulator>();
-    private Random                     rng;
+    private ArrayList<IWorldPopulator> populators        = new ArrayList<IWorldPopulator>();
+    private volatile NoiseField        terrainNoise;
+    private LinkedHashMap<Long, int[]> columnHeights;
 
     public WorldGenerator()
     {
@@ -19,19 +26,46 @@ public class WorldGenerator
     public WorldGenerator(long seed)
     {
         this.seed = seed;
-        this.rng = new Random(seed);
+        this.terrainNoise = new NoiseField(seed);
+        this.columnHeights = new LinkedHashMap<Long, int[]>(COLUMN_CACHE_SIZE, 0.75f, true)
+        {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, int[]> eldest)
+            {
+                return size() > COLUMN_CACHE_SIZE;
+            }
+        };
     }
 
     /**
      * Generates and populates given chunk
      */
     public boolean populateChunk(World world, Chunk chunk)
+    {
+        if(!generateTerrain(world, chunk))
+            return false;
+        return decorateChunk(world, chunk);
+    }
+
+    /**
+     * Runs every populator which only writes into given chunk. Safe to call from any thread as long as the chunk has not been added to the world
+     * yet
+     */
+    public boolean generateTerrain(World world, Chunk chunk)
     {
         if(chunk == null)
             return false;
-        for(IWorldPopulator populator : populators)
+        ChunkRandom rng = new ChunkRandom(0L);
+        for(int i = 0; i < populators.size(); i++ )
         {
-            populator.populate(world, chunk, rng);
+            IWorldPopulator populator = populators.get(i);
+            if(!(populator instanceof IWorldDecorator))
+            {
+                rng.setSeed(getPopulatorSeed(chunk, i));
+                populator.populate(world, chunk, rng);
+            }
         }
         if(chunk.getCoords().y == 0) // Temporary Bottom layer
         {
@@ -46,6 +80,63 @@ public class WorldGenerator
         return true;
     }
 
+    /**
+     * Runs every {@link IWorldDecorator}. Must be called on the thread updating the world, once given chunk has been added to it
+     */
+    public boolean decorateChunk(World world, Chunk chunk)
+    {
+        if(chunk == null)
+            return false;
+        ChunkRandom rng = new ChunkRandom(0L);
+        for(int i = 0; i < populators.size(); i++ )
+        {
+            IWorldPopulator populator = populators.get(i);
+            if(populator instanceof IWorldDecorator)
+            {
+                rng.setSeed(getPopulatorSeed(chunk, i));
+                populator.populate(world, chunk, rng);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the world y of the surface block of each column of given chunk column, at index {@code x << 4 | z}. Heights are computed for
+     * a whole chunk column at once and the most recently used ones are kept, so populators asking for the same column from every chunk
+     * above each other do not compute the noise again. Safe to call from any thread; the returned array must not be modified
+     */
+    public int[] getColumnHeights(int chunkX, int chunkZ)
+    {
+        long key = (long) chunkX << 32 | (chunkZ & 0xFFFFFFFFL);
+        int[] heights;
+        synchronized(columnHeights)
+        {
+            heights = columnHeights.get(key);
+        }
+        if(heights != null)
+            return heights;
+        double[] noise = new double[256];
+        terrainNoise.fillColumnMap(noise, chunkX << 4, chunkZ << 4);
+        heights = new int[256];
+        for(int i = 0; i < 256; i++ )
+            heights[i] = Math.round(4f * (float) noise[i]) + 11 * 16 + 1;
+        synchronized(columnHeights)
+        {
+            columnHeights.put(key, heights);
+        }
+        return heights;
+    }
+
+    /**
+     * Returns the seed of the random stream given to the populator at given index for given chunk.<br/>
+     * It only depends on the world seed, the chunk coordinates and the populator index, so chunks can be generated in any order.
+     */
+    private long getPopulatorSeed(Chunk chunk, int populatorIndex)
+    {
+        ChunkCoord coords = chunk.getCoords();
+        return ChunkRandom.chunkSeed(seed, coords.x, coords.y, coords.z, populatorIndex);
+    }
+
     public void addPopulator(IWorldPopulator populator)
     {
         populators.add(populator);
@@ -59,6 +150,11 @@ public class WorldGenerator
     public void setSeed(long seed)
     {
         this.seed = seed;
+        this.terrainNoise = new NoiseField(seed);
+        synchronized(columnHeights)
+        {
+            columnHeights.clear();
+        }
     }
 
 }
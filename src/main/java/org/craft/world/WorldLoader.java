@@ -33,6 +33,24 @@ public abstract class WorldLoader
 
     public abstract void writeChunk(ByteDataBuffer buffer, Chunk chunk, int chunkX, int chunkY, int chunkZ) throws IOException;
 
+    /**
+     * Writes given chunk to the world storage and returns the number of bytes written. May be called from any thread, on a chunk which is
+     * not part of the world
+     */
+    public abstract int saveChunk(Chunk chunk) throws IOException;
+
+    /**
+     * Writes the world constants to the world storage and returns the number of bytes written
+     */
+    public abstract int saveWorldConstants(World world) throws IOException;
+
+    /**
+     * Releases the files held by this loader. Called when the world is disposed
+     */
+    public void close() throws IOException
+    {
+    }
+
     public HashMap<String, String> loadWorldInfos(File worldDataFile)
     {
         return Maps.newHashMap();
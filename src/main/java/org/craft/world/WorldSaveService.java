@@ -0,0 +1,382 @@
+package org.craft.world;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+import org.craft.utils.*;
+
+/**
+ * Saves a world on a background thread.<br/>
+ * Modified chunks are copied on the thread updating the world and their modified flag is cleared; encoding and writing the copies is done on
+ * a single I/O thread, in submission order. A chunk which could not be saved is marked as modified again.<br/>
+ * Batches of a bounded size resume the pass over the loaded chunks where the previous batch stopped, so that a pass over the world visits
+ * each chunk once however many batches it is split into.
+ */
+public class WorldSaveService
+{
+
+    private World                  world;
+    private ExecutorService        executor;
+    private HashMap<Long, Integer> pendingChunks;
+    private int                    pendingCount;
+    private volatile long          lastSaveDuration;
+    private volatile long          lastSaveBytes;
+    private volatile int           lastSaveChunks;
+    private long                   lastCopyDuration;
+    private AtomicLong             savedChunks;
+    private AtomicLong             writtenBytes;
+    private AtomicLong             failedSaves;
+
+    private Iterator<Chunk>        cursor;
+    private long                   passStart;
+    private long                   passCopyDuration;
+    private int                    passChunks;
+    private long                   passWriteDuration;
+    private long                   passBytes;
+    private int                    passSaved;
+
+    public WorldSaveService(World world)
+    {
+        this.world = world;
+        pendingChunks = new HashMap<Long, Integer>();
+        savedChunks = new AtomicLong();
+        writtenBytes = new AtomicLong();
+        failedSaves = new AtomicLong();
+    }
+
+    /**
+     * Copies every modified chunk and queues the copies for writing. Must be called on the thread updating the world. Returns the number of
+     * queued chunks.<br/>
+     * A pass left unfinished by {@link #saveModifiedChunks(int)} is dropped and a complete pass is done from the first chunk.
+     */
+    public int saveModifiedChunks()
+    {
+        cursor = null;
+        return saveModifiedChunks(Integer.MAX_VALUE);
+    }
+
+    /**
+     * Copies at most {@code maxChunks} modified chunks and queues the copies for writing. Must be called on the thread updating the world.
+     * Returns the number of queued chunks, which is less than {@code maxChunks} only if the current pass over the loaded chunks is complete.
+     * The next call then starts a new pass
+     */
+    public int saveModifiedChunks(int maxChunks)
+    {
+        final long start = System.nanoTime();
+        final ArrayList<Chunk> originals = new ArrayList<Chunk>();
+        final ArrayList<Chunk> copies = new ArrayList<Chunk>();
+        boolean passComplete;
+        synchronized(world)
+        {
+            if(cursor == null)
+            {
+                cursor = world.getChunkProvider().iterator();
+                passStart = start;
+                passCopyDuration = 0;
+                passChunks = 0;
+            }
+            while(originals.size() < maxChunks && cursor.hasNext())
+            {
+                Chunk c = cursor.next();
+                if(c.isModified())
+                {
+                    originals.add(c);
+                    copies.add(c.copy());
+                    c.clearModified();
+                    addPending(c);
+                }
+            }
+            passComplete = !cursor.hasNext();
+        }
+        final long copyDuration = System.nanoTime() - start;
+        lastCopyDuration = copyDuration;
+        passCopyDuration += copyDuration;
+        passChunks += originals.size();
+        if(!originals.isEmpty())
+            submitWrites(originals, copies, null);
+        if(passComplete)
+        {
+            cursor = null;
+            if(passChunks > 0)
+                submitPassEnd(passStart, passCopyDuration);
+        }
+        return originals.size();
+    }
+
+    /**
+     * Copies given modified chunks, clears their modified flag and queues the copies for writing, then notifies given listener of each write
+     * on the I/O thread. Must be called on the thread updating the world, with the lock of the world held. Used to save chunks before
+     * unloading them without writing on the calling thread
+     */
+    public void saveChunks(List<Chunk> chunks, IChunkSaveListener listener)
+    {
+        long start = System.nanoTime();
+        ArrayList<Chunk> originals = new ArrayList<Chunk>(chunks);
+        ArrayList<Chunk> copies = new ArrayList<Chunk>(chunks.size());
+        for(Chunk c : originals)
+        {
+            copies.add(c.copy());
+            c.clearModified();
+            addPending(c);
+        }
+        lastCopyDuration = System.nanoTime() - start;
+        submitWrites(originals, copies, listener);
+    }
+
+    /**
+     * Queues the writing of given copies, marking the matching original as modified again if its copy could not be written. Given listener,
+     * if any, is notified once the pending state of each original has been updated
+     */
+    private void submitWrites(final ArrayList<Chunk> originals, final ArrayList<Chunk> copies, final IChunkSaveListener listener)
+    {
+        submit(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                long writeStart = System.nanoTime();
+                long bytes = 0;
+                int saved = 0;
+                for(int i = 0; i < copies.size(); i++ )
+                {
+                    Chunk original = originals.get(i);
+                    boolean success = false;
+                    try
+                    {
+                        bytes += world.getLoader().saveChunk(copies.get(i));
+                        saved++ ;
+                        success = true;
+                    }
+                    catch(IOException e)
+                    {
+                        failedSaves.incrementAndGet();
+                        original.markModified();
+                        Log.error("Failed to save chunk " + original.getCoords().x + ", " + original.getCoords().y + ", " + original.getCoords().z + ": " + e.getMessage());
+                    }
+                    removePending(original);
+                    if(listener != null)
+                        listener.onChunkSaved(original, success);
+                }
+                long duration = System.nanoTime() - writeStart;
+                lastSaveDuration = duration;
+                lastSaveBytes = bytes;
+                lastSaveChunks = saved;
+                savedChunks.addAndGet(saved);
+                writtenBytes.addAndGet(bytes);
+                passWriteDuration += duration;
+                passBytes += bytes;
+                passSaved += saved;
+            }
+        });
+    }
+
+    /**
+     * Queues the report of a complete pass, which runs once every batch of the pass has been written
+     */
+    private void submitPassEnd(final long start, final long copyDuration)
+    {
+        submit(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                Log.message("Saved " + passSaved + " chunks (" + (passBytes / 1024) + " KB) in " + ((System.nanoTime() - start) / 1000000) + " ms, " + (passWriteDuration / 1000000) + " ms spent writing them and " + (copyDuration / 1000) + " us copying them on the game thread");
+                passWriteDuration = 0;
+                passBytes = 0;
+                passSaved = 0;
+            }
+        });
+    }
+
+    /**
+     * Queues the writing of the world constants
+     */
+    public void saveWorldConstants()
+    {
+        submit(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    writtenBytes.addAndGet(world.getLoader().saveWorldConstants(world));
+                }
+                catch(IOException e)
+                {
+                    Log.error("Failed to save world constants: " + e.getMessage());
+                }
+            }
+        });
+    }
+
+    /**
+     * Runs given task on the I/O thread, after every task already submitted
+     */
+    public synchronized Future<?> submit(Runnable task)
+    {
+        if(executor == null)
+        {
+            executor = Executors.newSingleThreadExecutor(new ThreadFactory()
+            {
+                @Override
+                public Thread newThread(Runnable r)
+                {
+                    Thread thread = new Thread(r, "World saving - " + world.getName());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return executor.submit(task);
+    }
+
+    /**
+     * Blocks until every task submitted so far has been run
+     */
+    public void flush()
+    {
+        Future<?> marker;
+        synchronized(this)
+        {
+            if(executor == null)
+                return;
+            marker = executor.submit(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                }
+            });
+        }
+        try
+        {
+            marker.get();
+        }
+        catch(InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+        catch(ExecutionException e)
+        {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Waits for pending writes then stops the I/O thread
+     */
+    public void shutdown()
+    {
+        flush();
+        synchronized(this)
+        {
+            if(executor != null)
+                executor.shutdown();
+            executor = null;
+        }
+    }
+
+    /**
+     * Returns true if a copy of given chunk is waiting to be written. Such a chunk must not be unloaded, or reloading it would read outdated
+     * data
+     */
+    public boolean isSaving(Chunk chunk)
+    {
+        synchronized(pendingChunks)
+        {
+            return pendingChunks.containsKey(key(chunk));
+        }
+    }
+
+    /**
+     * Returns the number of chunk copies waiting to be written
+     */
+    public int getPendingCount()
+    {
+        synchronized(pendingChunks)
+        {
+            return pendingCount;
+        }
+    }
+
+    private void addPending(Chunk chunk)
+    {
+        synchronized(pendingChunks)
+        {
+            Long key = key(chunk);
+            Integer count = pendingChunks.get(key);
+            pendingChunks.put(key, count == null ? 1 : count + 1);
+            pendingCount++ ;
+        }
+    }
+
+    private void removePending(Chunk chunk)
+    {
+        synchronized(pendingChunks)
+        {
+            Long key = key(chunk);
+            Integer count = pendingChunks.get(key);
+            if(count == null || count <= 1)
+                pendingChunks.remove(key);
+            else
+                pendingChunks.put(key, count - 1);
+            pendingCount-- ;
+        }
+    }
+
+    private static Long key(Chunk chunk)
+    {
+        return ChunkCoord.pack(chunk.getCoords().x, chunk.getCoords().y, chunk.getCoords().z);
+    }
+
+    /**
+     * Returns the time spent writing the last batch of chunks, in nanoseconds
+     */
+    public long getLastSaveDuration()
+    {
+        return lastSaveDuration;
+    }
+
+    /**
+     * Returns the number of bytes written by the last batch of chunks
+     */
+    public long getLastSaveBytes()
+    {
+        return lastSaveBytes;
+    }
+
+    /**
+     * Returns the number of chunks written by the last batch
+     */
+    public int getLastSaveChunks()
+    {
+        return lastSaveChunks;
+    }
+
+    /**
+     * Returns the time spent by the last call to {@link #saveModifiedChunks(int)} or {@link #saveChunks(List, IChunkSaveListener)} on the
+     * calling thread, in nanoseconds
+     */
+    public long getLastCopyDuration()
+    {
+        return lastCopyDuration;
+    }
+
+    public long getSavedChunksCount()
+    {
+        return savedChunks.get();
+    }
+
+    public long getWrittenBytes()
+    {
+        return writtenBytes.get();
+    }
+
+    public long getFailedSavesCount()
+    {
+        return failedSaves.get();
+    }
+}
@@ -31,4 +31,16 @@ public class FallbackWorldLoader extends WorldLoader
     public void writeChunk(ByteDataBuffer buffer, Chunk chunk, int chunkX, int chunkY, int chunkZ) throws IOException
     {
     }
+
+    @Override
+    public int saveChunk(Chunk chunk) throws IOException
+    {
+        return 0;
+    }
+
+    @Override
+    public int saveWorldConstants(World world) throws IOException
+    {
+        return 0;
+    }
 }
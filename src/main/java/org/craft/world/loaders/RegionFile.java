@@ -0,0 +1,234 @@
+package org.craft.world.loaders;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.util.*;
+
+import org.craft.utils.*;
+
+/**
+ * A file holding the chunks of a {@link #SIZE}x{@link #SIZE}x{@link #SIZE} chunks region.<br/>
+ * The file is split into {@link #SECTOR_SIZE} bytes sectors. The first sectors hold the header: one int per chunk, giving the first sector of
+ * the chunk (upper 24 bits) and the number of sectors it uses (lower 8 bits), or 0 if the chunk has never been saved.<br/>
+ * Each chunk starts with its length in bytes (int) followed by its compressed data.<br/>
+ * A chunk is never rewritten in place: each write goes to the first run of free sectors large enough for it, which may be past the end of
+ * the file, and the sectors of the previous version are only freed once the header points to the new ones.<br/>
+ * When memory mapped, reads go through read-only mappings of fixed-size windows of the file instead of seeking and reading the file. Each
+ * window also maps the largest chunk which can start in it, so that a chunk is always read from a single window. Only the window at the end
+ * of the file is mapped again when the file grows, and every mapping is released as soon as it is replaced or the file is closed.
+ */
+public class RegionFile implements Closeable
+{
+
+    /**
+     * Number of chunks along each axis of a region
+     */
+    public static final int  SIZE           = 16;
+
+    /**
+     * Number of bits to shift chunk coordinates by to get region coordinates
+     */
+    public static final int  SHIFT          = 4;
+
+    public static final int  SECTOR_SIZE    = 4096;
+
+    private static final int CHUNKS_COUNT   = SIZE * SIZE * SIZE;
+    private static final int HEADER_SECTORS = CHUNKS_COUNT * 4 / SECTOR_SIZE;
+
+    /**
+     * Size of the windows the file is mapped by, in bytes
+     */
+    private static final int WINDOW_SIZE    = 1024 * SECTOR_SIZE;
+
+    /**
+     * Number of bytes mapped past the end of each window, enough for the largest chunk
+     */
+    private static final int WINDOW_OVERLAP = 0xFF * SECTOR_SIZE;
+
+    private RandomAccessFile   file;
+    private int[]              offsets;
+    private BitSet             usedSectors;
+    private int                sectorsCount;
+    private boolean            memoryMapped;
+    private MappedByteBuffer[] windows;
+
+    public RegionFile(File path) throws IOException
+    {
+        this(path, false);
+    }
+
+    public RegionFile(File path, boolean memoryMapped) throws IOException
+    {
+        this.memoryMapped = memoryMapped;
+        windows = new MappedByteBuffer[0];
+        if(!path.getParentFile().exists())
+            path.getParentFile().mkdirs();
+        file = new RandomAccessFile(path, "rw");
+        offsets = new int[CHUNKS_COUNT];
+        usedSectors = new BitSet();
+        if(file.length() < HEADER_SECTORS * SECTOR_SIZE)
+        {
+            file.setLength(HEADER_SECTORS * SECTOR_SIZE);
+            file.seek(0);
+            file.write(new byte[HEADER_SECTORS * SECTOR_SIZE]);
+        }
+        sectorsCount = (int) ((file.length() + SECTOR_SIZE - 1) / SECTOR_SIZE);
+        usedSectors.set(0, HEADER_SECTORS);
+        byte[] header = new byte[HEADER_SECTORS * SECTOR_SIZE];
+        file.seek(0);
+        file.readFully(header);
+        for(int i = 0; i < CHUNKS_COUNT; i++ )
+        {
+            int offset = (header[i * 4] & 0xFF) << 24 | (header[i * 4 + 1] & 0xFF) << 16 | (header[i * 4 + 2] & 0xFF) << 8 | (header[i * 4 + 3] & 0xFF);
+            offsets[i] = offset;
+            if(offset != 0 && (offset >>> 8) + (offset & 0xFF) <= sectorsCount)
+                usedSectors.set(offset >>> 8, (offset >>> 8) + (offset & 0xFF));
+        }
+    }
+
+    /**
+     * Returns index in header of chunk at given chunk coordinates. Works with both world and region relative chunk coordinates
+     */
+    public static int index(int chunkX, int chunkY, int chunkZ)
+    {
+        return (chunkX & (SIZE - 1)) << (SHIFT * 2) | (chunkY & (SIZE - 1)) << SHIFT | (chunkZ & (SIZE - 1));
+    }
+
+    /**
+     * Returns true if chunk at given coordinates has been written in this region
+     */
+    public synchronized boolean hasChunk(int chunkX, int chunkY, int chunkZ)
+    {
+        return offsets[index(chunkX, chunkY, chunkZ)] != 0;
+    }
+
+    /**
+     * Reads compressed data of chunk at given coordinates, or returns null if it has never been written
+     */
+    public synchronized byte[] read(int chunkX, int chunkY, int chunkZ) throws IOException
+    {
+        ByteBuffer buffer = readBuffer(chunkX, chunkY, chunkZ);
+        if(buffer == null)
+            return null;
+        byte[] data = new byte[buffer.remaining()];
+        buffer.get(data);
+        return data;
+    }
+
+    /**
+     * Returns a buffer over the compressed data of chunk at given coordinates, or null if it has never been written.<br/>
+     * If this region is memory mapped, the buffer is a view of a mapping and no data is copied. Mappings are released when they are replaced,
+     * so the buffer must only be used while holding the lock of this region file, and not after any other call to it.
+     */
+    public synchronized ByteBuffer readBuffer(int chunkX, int chunkY, int chunkZ) throws IOException
+    {
+        int offset = offsets[index(chunkX, chunkY, chunkZ)];
+        if(offset == 0)
+            return null;
+        long start = (long) (offset >>> 8) * SECTOR_SIZE;
+        int maxLength = (offset & 0xFF) * SECTOR_SIZE;
+        if(!memoryMapped)
+        {
+            file.seek(start);
+            int length = checkLength(file.readInt(), maxLength, chunkX, chunkY, chunkZ);
+            byte[] data = new byte[length];
+            file.readFully(data);
+            return ByteBuffer.wrap(data);
+        }
+        int window = (int) (start / WINDOW_SIZE);
+        long windowStart = (long) window * WINDOW_SIZE;
+        MappedByteBuffer mapping = getWindow(window, start + maxLength - windowStart);
+        ByteBuffer buffer = mapping.duplicate();
+        buffer.position((int) (start - windowStart));
+        int length = checkLength(buffer.getInt(), maxLength, chunkX, chunkY, chunkZ);
+        buffer.limit(buffer.position() + length);
+        return buffer.slice();
+    }
+
+    /**
+     * Returns the mapping of given window, mapping it again if it does not hold at least {@code length} bytes
+     */
+    private MappedByteBuffer getWindow(int window, long length) throws IOException
+    {
+        if(window >= windows.length)
+            windows = Arrays.copyOf(windows, Math.max(window + 1, windows.length * 2));
+        MappedByteBuffer mapping = windows[window];
+        if(mapping == null || length > mapping.capacity())
+        {
+            long windowStart = (long) window * WINDOW_SIZE;
+            // The channel is writable, never map past the end of the file or it would grow
+            long size = Math.min(WINDOW_SIZE + WINDOW_OVERLAP, file.length() - windowStart);
+            if(size < length)
+                throw new IOException("Chunk data past the end of the region file");
+            if(mapping != null)
+                IOUtils.unmap(mapping);
+            windows[window] = null;
+            mapping = file.getChannel().map(FileChannel.MapMode.READ_ONLY, windowStart, size);
+            windows[window] = mapping;
+        }
+        return mapping;
+    }
+
+    private static int checkLength(int length, int maxLength, int chunkX, int chunkY, int chunkZ) throws IOException
+    {
+        if(length < 0 || length + 4 > maxLength)
+            throw new IOException("Invalid chunk length " + length + " for chunk " + chunkX + ", " + chunkY + ", " + chunkZ);
+        return length;
+    }
+
+    /**
+     * Writes compressed data of chunk at given coordinates.<br/>
+     * The data is always written to free sectors before the header entry is switched to them, so that a crash while writing never leaves the
+     * chunk half written: the header still points to the previous version.
+     */
+    public synchronized void write(int chunkX, int chunkY, int chunkZ, byte[] data, int length) throws IOException
+    {
+        int index = index(chunkX, chunkY, chunkZ);
+        int needed = (length + 4 + SECTOR_SIZE - 1) / SECTOR_SIZE;
+        if(needed > 0xFF)
+            throw new IOException("Chunk " + chunkX + ", " + chunkY + ", " + chunkZ + " is too big to be saved: " + length + " bytes");
+        int start = findFreeSectors(needed);
+        usedSectors.set(start, start + needed);
+        if(start + needed > sectorsCount)
+            sectorsCount = start + needed;
+        file.seek((long) start * SECTOR_SIZE);
+        file.writeInt(length);
+        file.write(data, 0, length);
+        int padding = needed * SECTOR_SIZE - length - 4;
+        if(padding > 0)
+            file.write(new byte[padding]);
+
+        int previous = offsets[index];
+        offsets[index] = start << 8 | needed;
+        file.seek(index * 4);
+        file.writeInt(offsets[index]);
+        if(previous != 0)
+            usedSectors.clear(previous >>> 8, (previous >>> 8) + (previous & 0xFF));
+    }
+
+    private int findFreeSectors(int needed)
+    {
+        int start = usedSectors.nextClearBit(HEADER_SECTORS);
+        while(start < sectorsCount)
+        {
+            int end = usedSectors.nextSetBit(start);
+            if(end < 0 || end - start >= needed)
+                return start;
+            start = usedSectors.nextClearBit(end);
+        }
+        return start;
+    }
+
+    @Override
+    public synchronized void close() throws IOException
+    {
+        for(int i = 0; i < windows.length; i++ )
+        {
+            if(windows[i] != null)
+                IOUtils.unmap(windows[i]);
+            windows[i] = null;
+        }
+        file.close();
+    }
+}
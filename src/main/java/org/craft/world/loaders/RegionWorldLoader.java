@@ -0,0 +1,401 @@
+package org.craft.world.loaders;
+
+import java.io.*;
+import java.nio.*;
+import java.util.*;
+import java.util.regex.*;
+import java.util.zip.*;
+
+import org.craft.blocks.*;
+import org.craft.blocks.states.*;
+import org.craft.resources.*;
+import org.craft.utils.*;
+import org.craft.world.*;
+
+/**
+ * Stores chunks in {@link RegionFile}s instead of one file per chunk.<br/>
+ * Each chunk is written as a palette of block ids and a palette of block states, followed by one index per voxel into each palette (none if
+ * the palette holds a single entry), the whole being deflated.<br/>
+ * World constants are stored like {@link VanillaWorldLoader} does.
+ */
+public class RegionWorldLoader extends VanillaWorldLoader
+{
+
+    /**
+     * Chunk data compression types, stored before the compressed data. Sized types are followed by the uncompressed length (int)
+     */
+    private static final byte             COMPRESSION_DEFLATE       = 1;
+    private static final byte             COMPRESSION_DEFLATE_SIZED = 2;
+
+    private static final Pattern          LEGACY_CHUNK_FILE         = Pattern.compile("chunk(-?\\d+)\\.(-?\\d+)\\.(-?\\d+)\\.data");
+
+    private HashMap<Long, RegionFile>     regions;
+    private boolean                       memoryMapped;
+
+    public RegionWorldLoader(ResourceLocation worldFolder, ResourceLoader loader)
+    {
+        this(worldFolder, loader, true);
+    }
+
+    /**
+     * Creates a loader. If {@code memoryMapped} is true, region files are read through memory mappings, cached until {@link #close()}
+     */
+    public RegionWorldLoader(ResourceLocation worldFolder, ResourceLoader loader, boolean memoryMapped)
+    {
+        super(worldFolder, loader);
+        this.memoryMapped = memoryMapped;
+        regions = new HashMap<Long, RegionFile>();
+    }
+
+    @Override
+    public Chunk loadChunk(World world, int chunkX, int chunkY, int chunkZ) throws IOException
+    {
+        RegionFile region = getRegion(chunkX, chunkY, chunkZ);
+        byte[] data;
+        // The mapped buffer is only valid until the chunk is written again, inflate it before letting anyone write
+        synchronized(region)
+        {
+            ByteBuffer compressed = region.readBuffer(chunkX, chunkY, chunkZ);
+            if(compressed == null)
+                return null;
+            data = decompress(compressed);
+        }
+        try
+        {
+            return readChunk(world, new ByteDataBuffer(data), chunkX, chunkY, chunkZ);
+        }
+        catch(Exception e)
+        {
+            throw new IOException("Failed to load chunk (" + chunkX + "," + chunkY + "," + chunkZ + ")", e);
+        }
+    }
+
+    @Override
+    public void writeChunk(ByteDataBuffer buffer, Chunk chunk, int chunkX, int chunkY, int chunkZ) throws IOException
+    {
+        buffer.writeInt(chunkX);
+        buffer.writeInt(chunkY);
+        buffer.writeInt(chunkZ);
+
+        int[] palette = new int[PalettedBlockStorage.SIZE];
+        int[] indices = new int[PalettedBlockStorage.SIZE];
+        int paletteSize = buildPalette(chunk.blocks, palette, indices);
+        buffer.writeShort(paletteSize);
+        for(int i = 0; i < paletteSize; i++ )
+        {
+            Block block = Blocks.getByID(palette[i]);
+            buffer.writeString(block == null ? Blocks.air.getId() : block.getId());
+        }
+        writeIndices(buffer, indices, paletteSize);
+
+        paletteSize = buildPalette(chunk.blockStates, palette, indices);
+        buffer.writeShort(paletteSize);
+        for(int i = 0; i < paletteSize; i++ )
+        {
+            BlockStatesObject states = BlockStates.getPackedStates(palette[i]);
+            if(states == null)
+            {
+                buffer.writeInt(0);
+                continue;
+            }
+            buffer.writeInt(states.size());
+            Iterator<BlockState> it = states.getMap().keySet().iterator();
+            while(it.hasNext())
+            {
+                BlockState state = it.next();
+                IBlockStateValue value = states.get(state);
+                buffer.writeString(state.toString());
+                buffer.writeString(value == null ? "null" : value.toString());
+            }
+        }
+        writeIndices(buffer, indices, paletteSize);
+    }
+
+    /**
+     * Reads a chunk written by {@link #writeChunk(ByteDataBuffer, Chunk, int, int, int)}
+     */
+    public Chunk readChunk(World world, ByteDataBuffer buffer, int chunkX, int chunkY, int chunkZ) throws IOException
+    {
+        int readChunkX = buffer.readInt();
+        int readChunkY = buffer.readInt();
+        int readChunkZ = buffer.readInt();
+        if(readChunkX != chunkX || readChunkY != chunkY || readChunkZ != chunkZ)
+            throw new IOException("Read chunk coordinates (" + readChunkX + "," + readChunkY + "," + readChunkZ + ") do not match");
+        Chunk chunk = new Chunk(world, ChunkCoord.get(chunkX, chunkY, chunkZ));
+
+        int paletteSize = buffer.readUnsignedShort();
+        int[] palette = new int[paletteSize];
+        for(int i = 0; i < paletteSize; i++ )
+        {
+            String blockId = buffer.readString();
+            Block block = Blocks.get(blockId);
+            if(block == null)
+            {
+                Log.message("Unknown block in chunk " + chunkX + "," + chunkY + "," + chunkZ + " = " + blockId);
+                block = Blocks.air;
+            }
+            palette[i] = block.getUniqueID();
+        }
+        readIndices(buffer, chunk.blocks, palette);
+
+        paletteSize = buffer.readUnsignedShort();
+        palette = new int[paletteSize];
+        for(int i = 0; i < paletteSize; i++ )
+        {
+            int packedID = 0;
+            int count = buffer.readInt();
+            for(int j = 0; j < count; j++ )
+            {
+                BlockState state = BlockStates.getState(buffer.readString());
+                String valueName = buffer.readString();
+                if(state != null)
+                    packedID = BlockStates.withPackedValue(packedID, state, BlockStates.getValue(state, valueName));
+            }
+            palette[i] = packedID;
+        }
+        readIndices(buffer, chunk.blockStates, palette);
+        chunk.updateHighest();
+        return chunk;
+    }
+
+    @Override
+    public int saveChunk(Chunk chunk) throws IOException
+    {
+        ChunkCoord coords = chunk.getCoords();
+        ByteDataBuffer buffer = new ByteDataBuffer();
+        writeChunk(buffer, chunk, coords.x, coords.y, coords.z);
+        buffer.flush();
+        buffer.close();
+        byte[] data = compress(buffer.toBytes());
+        getRegion(coords.x, coords.y, coords.z).write(coords.x, coords.y, coords.z, data, data.length);
+        return data.length;
+    }
+
+    /**
+     * Moves every chunk saved with the one file per chunk format of {@link VanillaWorldLoader} into region files, deleting the old files.
+     * Returns the number of converted chunks
+     */
+    public int convertLegacyChunks() throws IOException
+    {
+        File folder = getDiskLoader().getFile(new ResourceLocation(worldFolder, "chunkData"));
+        File[] files = folder.listFiles();
+        if(files == null)
+            return 0;
+        int converted = 0;
+        for(File file : files)
+        {
+            Matcher matcher = LEGACY_CHUNK_FILE.matcher(file.getName());
+            if(!matcher.matches())
+                continue;
+            int chunkX = Integer.parseInt(matcher.group(1));
+            int chunkY = Integer.parseInt(matcher.group(2));
+            int chunkZ = Integer.parseInt(matcher.group(3));
+            Chunk chunk = super.loadChunk(null, chunkX, chunkY, chunkZ);
+            if(chunk == null)
+                continue;
+            saveChunk(chunk);
+            getDiskLoader().unload(getChunkLocation(chunkX, chunkY, chunkZ));
+            if(!file.delete())
+                Log.error("Could not delete converted chunk file " + file.getAbsolutePath());
+            converted++ ;
+        }
+        if(converted > 0)
+            Log.message("Converted " + converted + " chunks to region files");
+        folder.delete();
+        return converted;
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        synchronized(regions)
+        {
+            for(RegionFile region : regions.values())
+                region.close();
+            regions.clear();
+        }
+    }
+
+    /**
+     * Returns the region file holding chunk at given chunk coordinates, opening it if needed
+     */
+    private RegionFile getRegion(int chunkX, int chunkY, int chunkZ) throws IOException
+    {
+        int regionX = chunkX >> RegionFile.SHIFT;
+        int regionY = chunkY >> RegionFile.SHIFT;
+        int regionZ = chunkZ >> RegionFile.SHIFT;
+        long key = ChunkCoord.pack(regionX, regionY, regionZ);
+        synchronized(regions)
+        {
+            RegionFile region = regions.get(key);
+            if(region == null)
+            {
+                region = new RegionFile(getDiskLoader().getFile(new ResourceLocation(worldFolder, "regions/r." + regionX + "." + regionY + "." + regionZ + ".ocr")), memoryMapped);
+                regions.put(key, region);
+            }
+            return region;
+        }
+    }
+
+    /**
+     * Fills {@code indices} with the index in {@code palette} of each value of given storage and returns the palette size
+     */
+    private static int buildPalette(PalettedBlockStorage storage, int[] palette, int[] indices)
+    {
+        palette[0] = storage.get(0);
+        if(storage.isSingleValue())
+            return 1;
+        int paletteSize = 1;
+        int lastValue = palette[0];
+        int lastIndex = 0;
+        for(int i = 0; i < PalettedBlockStorage.SIZE; i++ )
+        {
+            int value = storage.get(i);
+            if(value != lastValue)
+            {
+                lastIndex = -1;
+                for(int j = 0; j < paletteSize; j++ )
+                {
+                    if(palette[j] == value)
+                    {
+                        lastIndex = j;
+                        break;
+                    }
+                }
+                if(lastIndex < 0)
+                {
+                    palette[paletteSize] = value;
+                    lastIndex = paletteSize++ ;
+                }
+                lastValue = value;
+            }
+            indices[i] = lastIndex;
+        }
+        return paletteSize;
+    }
+
+    private static void writeIndices(ByteDataBuffer buffer, int[] indices, int paletteSize) throws IOException
+    {
+        if(paletteSize <= 1)
+            return;
+        if(paletteSize <= 256)
+        {
+            byte[] bytes = new byte[PalettedBlockStorage.SIZE];
+            for(int i = 0; i < bytes.length; i++ )
+                bytes[i] = (byte) indices[i];
+            buffer.write(bytes);
+        }
+        else
+        {
+            for(int i = 0; i < PalettedBlockStorage.SIZE; i++ )
+                buffer.writeShort(indices[i]);
+        }
+    }
+
+    private static void readIndices(ByteDataBuffer buffer, PalettedBlockStorage storage, int[] palette) throws IOException
+    {
+        if(palette.length == 0)
+            return;
+        storage.fill(palette[0]);
+        if(palette.length == 1)
+            return;
+        if(palette.length <= 256)
+        {
+            byte[] bytes = new byte[PalettedBlockStorage.SIZE];
+            buffer.readFully(bytes);
+            for(int i = 0; i < bytes.length; i++ )
+                storage.set(i, palette[bytes[i] & 0xFF]);
+        }
+        else
+        {
+            for(int i = 0; i < PalettedBlockStorage.SIZE; i++ )
+                storage.set(i, palette[buffer.readUnsignedShort()]);
+        }
+    }
+
+    private static byte[] compress(byte[] data)
+    {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        deflater.setInput(data);
+        deflater.finish();
+        ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 4 + 16);
+        out.write(COMPRESSION_DEFLATE_SIZED);
+        out.write(data.length >>> 24);
+        out.write(data.length >>> 16);
+        out.write(data.length >>> 8);
+        out.write(data.length);
+        byte[] chunk = new byte[8192];
+        while(!deflater.finished())
+        {
+            int n = deflater.deflate(chunk);
+            out.write(chunk, 0, n);
+        }
+        deflater.end();
+        return out.toByteArray();
+    }
+
+    /**
+     * Inflates the content of given buffer. When the uncompressed length is known, data is inflated straight into an array of that size
+     */
+    private static byte[] decompress(ByteBuffer data) throws IOException
+    {
+        if(!data.hasRemaining())
+            throw new IOException("Empty chunk data");
+        byte type = data.get();
+        if(type != COMPRESSION_DEFLATE && type != COMPRESSION_DEFLATE_SIZED)
+            throw new IOException("Unknown chunk compression type " + type);
+        int rawLength = type == COMPRESSION_DEFLATE_SIZED ? data.getInt() : -1;
+        byte[] input;
+        int inputOffset;
+        if(data.hasArray())
+        {
+            input = data.array();
+            inputOffset = data.arrayOffset() + data.position();
+        }
+        else
+        {
+            // Inflater only reads from arrays
+            input = new byte[data.remaining()];
+            data.duplicate().get(input);
+            inputOffset = 0;
+        }
+        Inflater inflater = new Inflater();
+        inflater.setInput(input, inputOffset, data.remaining());
+        try
+        {
+            if(rawLength >= 0)
+            {
+                byte[] out = new byte[rawLength];
+                int read = 0;
+                while(read < rawLength && !inflater.finished())
+                {
+                    int n = inflater.inflate(out, read, rawLength - read);
+                    if(n == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+                        throw new IOException("Truncated chunk data");
+                    read += n;
+                }
+                if(read != rawLength)
+                    throw new IOException("Chunk data is " + read + " bytes long instead of " + rawLength);
+                return out;
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream(data.remaining() * 4);
+            byte[] chunk = new byte[8192];
+            while(!inflater.finished())
+            {
+                int n = inflater.inflate(chunk);
+                if(n == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+                    throw new IOException("Truncated chunk data");
+                out.write(chunk, 0, n);
+            }
+            return out.toByteArray();
+        }
+        catch(DataFormatException e)
+        {
+            throw new IOException("Corrupted chunk data", e);
+        }
+        finally
+        {
+            inflater.end();
+        }
+    }
+}
@@ -43,7 +43,7 @@ public class VanillaWorldLoader extends WorldLoader
     @Override
     public Chunk loadChunk(World world, int chunkX, int chunkY, int chunkZ) throws IOException
     {
-        ResourceLocation res = new ResourceLocation(worldFolder, "chunkData/chunk" + chunkX + "." + chunkY + "." + chunkZ + ".data");
+        ResourceLocation res = getChunkLocation(chunkX, chunkY, chunkZ);
         if(loader.doesResourceExists(res))
         {
             Chunk chunk = new Chunk(world, ChunkCoord.get(chunkX, chunkY, chunkZ));
@@ -130,6 +130,53 @@ public class VanillaWorldLoader extends WorldLoader
         }
     }
 
+    @Override
+    public int saveChunk(Chunk chunk) throws IOException
+    {
+        ChunkCoord coords = chunk.getCoords();
+        ResourceLocation res = getChunkLocation(coords.x, coords.y, coords.z);
+        ByteDataBuffer buffer = new ByteDataBuffer();
+        writeChunk(buffer, chunk, coords.x, coords.y, coords.z);
+        buffer.flush();
+        buffer.close();
+        byte[] data = buffer.toBytes();
+        IOUtils.writeAtomically(getDiskLoader().getFile(res), data, data.length);
+        getDiskLoader().unload(res);
+        return data.length;
+    }
+
+    @Override
+    public int saveWorldConstants(World world) throws IOException
+    {
+        ResourceLocation res = new ResourceLocation(worldFolder, "world.data");
+        ByteDataBuffer buffer = new ByteDataBuffer();
+        writeWorldConstants(buffer, world);
+        buffer.flush();
+        buffer.close();
+        byte[] data = buffer.toBytes();
+        IOUtils.writeAtomically(getDiskLoader().getFile(res), data, data.length);
+        getDiskLoader().unload(res);
+        return data.length;
+    }
+
+    /**
+     * Returns the resource loader as a DiskSimpleResourceLoader, the only one able to write
+     */
+    protected DiskSimpleResourceLoader getDiskLoader() throws IOException
+    {
+        if(!(loader instanceof DiskSimpleResourceLoader))
+            throw new IOException("Cannot write world data through " + loader);
+        return (DiskSimpleResourceLoader) loader;
+    }
+
+    /**
+     * Returns location of the file holding chunk at given chunk coordinates
+     */
+    protected ResourceLocation getChunkLocation(int chunkX, int chunkY, int chunkZ)
+    {
+        return new ResourceLocation(worldFolder, "chunkData/chunk" + chunkX + "." + chunkY + "." + chunkZ + ".data");
+    }
+
     public HashMap<String, String> loadWorldInfos(File worldDataFile)
     {
         HashMap<String, String> map = Maps.newHashMap();
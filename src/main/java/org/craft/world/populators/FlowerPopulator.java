@@ -5,7 +5,7 @@ import java.util.*;
 import org.craft.blocks.*;
 import org.craft.world.*;
 
-public class FlowerPopulator implements IWorldPopulator
+public class FlowerPopulator implements IWorldDecorator
 {
 
     @Override
@@ -3,7 +3,6 @@ package org.craft.world.populators;
 import java.util.*;
 
 import org.craft.blocks.*;
-import org.craft.maths.*;
 import org.craft.world.*;
 
 public class GrassPopulator implements IWorldPopulator
@@ -14,11 +13,12 @@ public class GrassPopulator implements IWorldPopulator
     {
         if(c.getCoords().y >= 11)
         {
+            int[] heights = world.getGenerator().getColumnHeights(c.getCoords().x, c.getCoords().z);
             for(int x = 0; x < 16; x++ )
             {
                 for(int z = 0; z < 16; z++ )
                 {
-                    int maxY = (int) Math.round(4f * MathHelper.perlinNoise(x + c.getCoords().x * 16, z + c.getCoords().z * 16, world.getGenerator().getSeed())) - (c.getCoords().y - 11) * 16 + 1;
+                    int maxY = heights[x << 4 | z] - c.getCoords().y * 16;
                     for(int y = 0; y <= maxY && y < 16; y++ )
                     {
                         if(y == maxY)
@@ -7,13 +7,17 @@ import org.craft.blocks.states.*;
 import org.craft.utils.*;
 import org.craft.world.*;
 
-public class TreePopulator implements IWorldPopulator
+public class TreePopulator implements IWorldDecorator
 {
 
     @Override
     public boolean populate(World world, Chunk c, Random rng)
     {
         int n = rng.nextInt(8);
+        BlockEditSession session = new BlockEditSession(world);
+        int baseX = c.getCoords().x * 16;
+        int baseY = c.getCoords().y * 16;
+        int baseZ = c.getCoords().z * 16;
         for(int i = 0; i < n; i++ )
         {
             int x = rng.nextInt(8);
@@ -28,7 +32,7 @@ public class TreePopulator implements IWorldPopulator
                 noBlockAside = false;
             if(world.getBlockNextTo(x, y + 1, z, EnumSide.WEST) == Blocks.log)
                 noBlockAside = false;
-            if(c.getHighestBlock(x, z) == Blocks.grass && noBlockAside)
+            if(c.getHighestBlock(x, z) == Blocks.grass && noBlockAside && isFree(session, x + baseX, y + baseY, z + baseZ))
             {
                 for(int yy = 0; yy < 2; yy++ )
                 {
@@ -36,18 +40,32 @@ public class TreePopulator implements IWorldPopulator
                     {
                         for(int zz = -1; zz <= 1; zz++ )
                         {
-                            world.setBlock(xx + x + c.getCoords().x * 16, yy + y + 3 + c.getCoords().y * 16, zz + z + c.getCoords().z * 16, Blocks.leaves);
+                            session.setBlock(xx + x + baseX, yy + y + 3 + baseY, zz + z + baseZ, Blocks.leaves);
                         }
                     }
                 }
                 for(int j = 1; j < 4; j++ )
                 {
-                    c.setChunkBlock(x, y + j, z, Blocks.log);
-                    c.setChunkBlockState(x, y + j, z, BlockStates.logOrientation, EnumLogBlockStates.UP);
+                    session.setBlock(x + baseX, y + j + baseY, z + baseZ, Blocks.log);
+                    session.setBlockState(x + baseX, y + j + baseY, z + baseZ, BlockStates.logOrientation, EnumLogBlockStates.UP);
                 }
-                world.setBlock(x + c.getCoords().x * 16, y + 5 + c.getCoords().y * 16, z + c.getCoords().z * 16, Blocks.leaves);
+                session.setBlock(x + baseX, y + 5 + baseY, z + baseZ, Blocks.leaves);
             }
         }
+        session.commit();
+        return true;
+    }
+
+    /**
+     * Returns true if no tree added to given session so far goes through the five blocks above given coords
+     */
+    private boolean isFree(BlockEditSession session, int x, int y, int z)
+    {
+        for(int j = 1; j <= 5; j++ )
+        {
+            if(session.getBlockAt(x, y + j, z) != Blocks.air)
+                return false;
+        }
         return true;
     }
 
@@ -0,0 +1,111 @@
+package org.craft.blocks;
+
+import java.util.*;
+
+import org.craft.world.*;
+
+/**
+ * Blocks registered by tests only, for what no block of the game does yet
+ */
+public class TestBlocks
+{
+
+    private static Block         lamp;
+    private static CountingBlock counter;
+
+    /**
+     * Returns an opaque block emitting light of level 14, registering it the first time
+     */
+    public static synchronized Block getLamp()
+    {
+        if(lamp == null)
+        {
+            lamp = new Block("test_lamp")
+            {
+                @Override
+                public int getLightEmission()
+                {
+                    return 14;
+                }
+            };
+            register(lamp);
+        }
+        return lamp;
+    }
+
+    /**
+     * Returns a block counting the updates it receives, registering it the first time
+     */
+    public static synchronized CountingBlock getCounter()
+    {
+        if(counter == null)
+        {
+            counter = new CountingBlock();
+            register(counter);
+        }
+        return counter;
+    }
+
+    private static void register(Block block)
+    {
+        // Blocks.init() gives each block its index in the registration order
+        short id = (short) Blocks.BLOCK_REGISTRY.size();
+        Blocks.register(block);
+        block.setUniqueID(id);
+    }
+
+    /**
+     * Block counting, for each position, the calls to {@link #onBlockUpdate(World, int, int, int)} and to
+     * {@link #onBlockUpdateFromNeighbor(World, int, int, int)} it receives
+     */
+    public static class CountingBlock extends Block
+    {
+
+        private final HashMap<Long, Integer> updates;
+        private final HashMap<Long, Integer> neighborUpdates;
+
+        CountingBlock()
+        {
+            super("test_counter");
+            updates = new HashMap<Long, Integer>();
+            neighborUpdates = new HashMap<Long, Integer>();
+        }
+
+        @Override
+        public void onBlockUpdate(World world, int x, int y, int z)
+        {
+            increment(updates, x, y, z);
+        }
+
+        @Override
+        public void onBlockUpdateFromNeighbor(World world, int x, int y, int z)
+        {
+            increment(neighborUpdates, x, y, z);
+        }
+
+        public int getUpdates(int x, int y, int z)
+        {
+            Integer count = updates.get(ChunkCoord.pack(x, y, z));
+            return count == null ? 0 : count;
+        }
+
+        public int getNeighborUpdates(int x, int y, int z)
+        {
+            Integer count = neighborUpdates.get(ChunkCoord.pack(x, y, z));
+            return count == null ? 0 : count;
+        }
+
+        public void clear()
+        {
+            updates.clear();
+            neighborUpdates.clear();
+        }
+
+        private static void increment(HashMap<Long, Integer> counts, int x, int y, int z)
+        {
+            long key = ChunkCoord.pack(x, y, z);
+            Integer count = counts.get(key);
+            counts.put(key, count == null ? 1 : count + 1);
+        }
+    }
+}
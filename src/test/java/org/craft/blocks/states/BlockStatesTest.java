@@ -0,0 +1,74 @@
+package org.craft.blocks.states;
+
+import static org.junit.Assert.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.junit.*;
+
+public class BlockStatesTest
+{
+
+    @BeforeClass
+    public static void initStates()
+    {
+        if(BlockStates.logOrientation == null)
+            BlockStates.init();
+    }
+
+    @Test
+    public void transitionsGiveTheSetsOfTheirValues()
+    {
+        int id = BlockStates.withPackedValue(0, BlockStates.electricPower, EnumPowerStates.values()[7]);
+        id = BlockStates.withPackedValue(id, BlockStates.logOrientation, EnumLogBlockStates.values()[1]);
+        assertEquals(EnumPowerStates.values()[7], BlockStates.getPackedValue(id, BlockStates.electricPower));
+        assertEquals(EnumLogBlockStates.values()[1], BlockStates.getPackedValue(id, BlockStates.logOrientation));
+        assertEquals(BlockStates.getPackedID(BlockStates.getPackedStates(id)), id);
+        assertEquals(0, BlockStates.withPackedValue(BlockStates.withPackedValue(id, BlockStates.electricPower, null), BlockStates.logOrientation, null));
+    }
+
+    /**
+     * Walks random transitions from several threads at once, most of them not computed yet, and checks that every thread ends up with the
+     * same ids
+     */
+    @Test
+    public void concurrentTransitionsAgree() throws Exception
+    {
+        final BlockState[] states =
+        {
+                BlockStates.logOrientation, BlockStates.cableConnexions, BlockStates.electricPower
+        };
+        final IBlockStateValue[][] values =
+        {
+                EnumLogBlockStates.values(), EnumConnexionStates.values(), EnumPowerStates.values()
+        };
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<int[]>> results = new ArrayList<Future<int[]>>();
+        for(int thread = 0; thread < 4; thread++ )
+        {
+            results.add(executor.submit(new Callable<int[]>()
+            {
+                @Override
+                public int[] call()
+                {
+                    Random rng = new Random(8L);
+                    int[] ids = new int[20000];
+                    int id = 0;
+                    for(int i = 0; i < ids.length; i++ )
+                    {
+                        int state = rng.nextInt(states.length);
+                        int value = rng.nextInt(values[state].length + 1);
+                        id = BlockStates.withPackedValue(id, states[state], value == values[state].length ? null : values[state][value]);
+                        ids[i] = id;
+                    }
+                    return ids;
+                }
+            }));
+        }
+        int[] expected = results.get(0).get();
+        for(Future<int[]> result : results)
+            assertArrayEquals(expected, result.get());
+        executor.shutdown();
+    }
+}
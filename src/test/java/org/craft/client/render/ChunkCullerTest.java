@@ -0,0 +1,182 @@
+package org.craft.client.render;
+
+import static org.junit.Assert.*;
+
+import java.util.*;
+
+import org.craft.blocks.*;
+import org.craft.maths.*;
+import org.craft.utils.*;
+import org.craft.utils.CollisionInfos.CollisionType;
+import org.craft.world.*;
+import org.junit.*;
+
+public class ChunkCullerTest
+{
+
+    private static final int   RENDER_DISTANCE = 4;
+
+    private static World       world;
+    private static ChunkCuller culler;
+
+    @BeforeClass
+    public static void createWorld()
+    {
+        world = TestWorlds.createTerrain(4, 7, 13);
+        // A room in the rock, from which only a few chunks can be seen
+        for(int x = -28; x < -20; x++ )
+        {
+            for(int y = 148; y < 153; y++ )
+            {
+                for(int z = -28; z < -20; z++ )
+                    world.setBlock(x, y, z, Blocks.air);
+            }
+        }
+        // A tunnel going east through a chunk of rock
+        for(int x = 16; x < 32; x++ )
+            world.setBlock(x, 150, 20, Blocks.air);
+
+        culler = new ChunkCuller();
+        PaddedChunkSnapshot padded = new PaddedChunkSnapshot();
+        int[] queue = new int[PalettedBlockStorage.SIZE];
+        boolean[] visited = new boolean[PalettedBlockStorage.SIZE];
+        for(int x = -4; x < 4; x++ )
+        {
+            for(int y = 7; y < 14; y++ )
+            {
+                for(int z = -4; z < 4; z++ )
+                {
+                    ChunkCoord coords = new ChunkCoord(x, y, z);
+                    padded.fill(new RegionSnapshot(world, coords));
+                    culler.setVisibility(coords, ChunkVisibility.compute(padded, queue, visited));
+                }
+            }
+        }
+    }
+
+    @AfterClass
+    public static void disposeWorld()
+    {
+        world.dispose();
+    }
+
+    @Test
+    public void visibilityOnlyConnectsFacesOfTheSameArea()
+    {
+        ChunkVisibility tunnel = culler.getVisibility(world.getChunk(16, 150, 20));
+        assertTrue(tunnel.isConnected(EnumSide.WEST, EnumSide.EAST));
+        assertTrue(tunnel.isConnected(EnumSide.EAST, EnumSide.WEST));
+        assertFalse(tunnel.isConnected(EnumSide.WEST, EnumSide.TOP));
+        assertFalse(tunnel.isConnected(EnumSide.TOP, EnumSide.BOTTOM));
+        assertFalse(tunnel.isConnected(EnumSide.NORTH, EnumSide.SOUTH));
+
+        ChunkVisibility sky = culler.getVisibility(world.getChunk(0, 13 * 16, 0));
+        assertSame(ChunkVisibility.OPEN, sky);
+    }
+
+    /**
+     * Looks around from above the ground and from the room in the rock, and checks that every block hit by a ray inside of the frustum is
+     * in a chunk kept by the culler
+     */
+    @Test
+    public void chunksReachedByRaysAreKept()
+    {
+        Random rng = new Random(4L);
+        int hits = 0;
+        for(int i = 0; i < 16; i++ )
+        {
+            float yaw = rng.nextFloat() * (float) Math.PI * 2;
+            float pitch = (rng.nextFloat() - 0.5f) * 1.2f;
+            hits += checkRays(rng, 8.5f, 180f, 8.5f, yaw, pitch);
+            hits += checkRays(rng, -24f, 150.5f, -24f, yaw, pitch);
+        }
+        assertTrue("Only " + hits + " rays hit a block in the frustum", hits > 500);
+    }
+
+    /**
+     * Checks that the frustum drops chunks behind the camera, and that the chunks hidden by the rock around the room are dropped too
+     */
+    @Test
+    public void rockHidesChunksAroundTheRoom()
+    {
+        Frustum frustum = createFrustum(-24f, 150.5f, -24f, 0, 0);
+        int inRange = 0;
+        for(int x = -RENDER_DISTANCE; x < RENDER_DISTANCE; x++ )
+        {
+            for(int y = -RENDER_DISTANCE; y < RENDER_DISTANCE; y++ )
+            {
+                for(int z = -RENDER_DISTANCE; z < RENDER_DISTANCE; z++ )
+                {
+                    if(world.getChunkProvider().get(world, x - 2, y + 9, z - 2) != null)
+                        inRange++ ;
+                }
+            }
+        }
+        ArrayList<Chunk> inFrustum = new ArrayList<Chunk>();
+        culler.setOcclusionCulling(false);
+        culler.getVisibleChunks(world, -2, 9, -2, RENDER_DISTANCE, frustum, inFrustum);
+        ArrayList<Chunk> visible = new ArrayList<Chunk>();
+        culler.setOcclusionCulling(true);
+        culler.getVisibleChunks(world, -2, 9, -2, RENDER_DISTANCE, frustum, visible);
+
+        assertTrue(inFrustum.size() + " of " + inRange + " chunks are in the frustum", inFrustum.size() * 2 < inRange);
+        assertTrue(inFrustum.containsAll(visible));
+        assertTrue(visible.size() + " of " + inFrustum.size() + " chunks are visible", visible.size() * 4 < inFrustum.size());
+        assertTrue(visible.contains(world.getChunk(-24, 150, -24)));
+    }
+
+    /**
+     * Casts rays from given eye within the frustum of a camera looking by given angles, and checks that the chunk of every block they hit is
+     * visible. Returns the number of rays which hit a block
+     */
+    private static int checkRays(Random rng, float eyeX, float eyeY, float eyeZ, float yaw, float pitch)
+    {
+        Frustum frustum = createFrustum(eyeX, eyeY, eyeZ, yaw, pitch);
+        int cameraX = (int) Math.floor(eyeX / 16f);
+        int cameraY = (int) Math.floor(eyeY / 16f);
+        int cameraZ = (int) Math.floor(eyeZ / 16f);
+        ArrayList<Chunk> visible = new ArrayList<Chunk>();
+        culler.getVisibleChunks(world, cameraX, cameraY, cameraZ, RENDER_DISTANCE, frustum, visible);
+        HashSet<ChunkCoord> visibleCoords = new HashSet<ChunkCoord>();
+        for(Chunk c : visible)
+            visibleCoords.add(c.getCoords());
+
+        CollisionInfos infos = new CollisionInfos();
+        int hits = 0;
+        for(int i = 0; i < 200; i++ )
+        {
+            float dirX = rng.nextFloat() - 0.5f;
+            float dirY = rng.nextFloat() - 0.5f;
+            float dirZ = rng.nextFloat() - 0.5f;
+            float length = (float) Math.sqrt(dirX * dirX + dirY * dirY + dirZ * dirZ);
+            dirX /= length;
+            dirY /= length;
+            dirZ /= length;
+            world.rayCast(eyeX, eyeY, eyeZ, dirX, dirY, dirZ, 40f, null, infos);
+            if(infos.type != CollisionType.BLOCK)
+                continue;
+            Vector3 hit = Vector3.get(eyeX + dirX * infos.distance, eyeY + dirY * infos.distance, eyeZ + dirZ * infos.distance);
+            boolean inFrustum = frustum.pointIn(hit);
+            hit.dispose();
+            if(!inFrustum)
+                continue;
+            hits++ ;
+            ChunkCoord coords = new ChunkCoord((int) infos.x >> 4, (int) infos.y >> 4, (int) infos.z >> 4);
+            assertTrue("Block " + infos.x + ", " + infos.y + ", " + infos.z + " seen from " + eyeX + ", " + eyeY + ", " + eyeZ + " is culled", visibleCoords.contains(coords));
+        }
+        return hits;
+    }
+
+    /**
+     * Creates the frustum of a camera at given eye looking by given angles, as the render engine does
+     */
+    private static Frustum createFrustum(float eyeX, float eyeY, float eyeZ, float yaw, float pitch)
+    {
+        Quaternion rotation = new Quaternion(Vector3.yAxis, yaw).mul(new Quaternion(Vector3.xAxis, pitch));
+        Matrix4 projection = Matrix4.get().initPerspective((float) Math.toRadians(90), 16f / 9f, 0.1f, 100f);
+        Matrix4 translation = Matrix4.get().initTranslation(-eyeX, -eyeY, -eyeZ);
+        Frustum frustum = new Frustum();
+        frustum.update(projection.mul(rotation.conjugate().toRotationMatrix().mul(translation)));
+        return frustum;
+    }
+}
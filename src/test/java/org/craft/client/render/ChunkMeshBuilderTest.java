@@ -0,0 +1,84 @@
+package org.craft.client.render;
+
+import static org.junit.Assert.*;
+
+import org.craft.blocks.*;
+import org.craft.client.render.blocks.*;
+import org.craft.world.*;
+import org.junit.*;
+
+public class ChunkMeshBuilderTest
+{
+
+    @BeforeClass
+    public static void initBlocks()
+    {
+        TestWorlds.initBlocks();
+    }
+
+    /**
+     * Meshes generated terrain whose blocks are drawn by cube models with their textures in an atlas, and checks that without tile rect the
+     * builder draws as many quads as the renderers of the blocks, none of the textures covering its whole image, while with tile rect it
+     * merges a large part of them. Faces of different light are never merged, so the terrain is not meshed into a few quads
+     */
+    @Test
+    public void modelCubesOfGeneratedTerrainAreMerged()
+    {
+        World world = TestWorlds.createTerrain(-2, 9, -2, 2, 12, 2);
+
+        ModelRenderers renderers = new ModelRenderers();
+        ChunkMeshBuilder builder = new ChunkMeshBuilder(null, renderers);
+        MeshBuffer untiled = new MeshBuffer(EnumVertexFormat.FLOATS);
+        MeshBuffer tiled = new MeshBuffer(EnumVertexFormat.TILED);
+        MeshBuffer perBlock = new MeshBuffer(EnumVertexFormat.FLOATS);
+        MeshBuffer alpha = new MeshBuffer(EnumVertexFormat.FLOATS);
+        int untiledQuads = 0;
+        int tiledQuads = 0;
+        int perBlockQuads = 0;
+        for(int x = -1; x <= 1; x++ )
+        {
+            for(int y = 10; y <= 11; y++ )
+            {
+                for(int z = -1; z <= 1; z++ )
+                {
+                    RegionSnapshot region = new RegionSnapshot(world, new ChunkCoord(x, y, z));
+                    builder.build(region, 0, 0, 0, untiled, alpha);
+                    untiledQuads += untiled.getIndicesCount() / 6;
+                    builder.build(region, 0, 0, 0, tiled, alpha);
+                    tiledQuads += tiled.getIndicesCount() / 6;
+                    perBlockQuads += renderBlocks(renderers, region, perBlock);
+                }
+            }
+        }
+        world.dispose();
+
+        assertTrue("No face was drawn", perBlockQuads > 0);
+        assertEquals(perBlockQuads, untiledQuads);
+        assertTrue("Only " + (untiledQuads - tiledQuads) + " of " + untiledQuads + " quads were merged", tiledQuads * 3 < untiledQuads * 2);
+    }
+
+    /**
+     * Draws the blocks of the normal pass of the center chunk of given region one by one and returns the number of quads
+     */
+    private static int renderBlocks(IBlockRendererProvider renderers, RegionSnapshot region, MeshBuffer buffer)
+    {
+        buffer.clear();
+        ChunkCoord center = region.getCenter();
+        for(int x = center.x * 16; x < center.x * 16 + 16; x++ )
+        {
+            for(int y = center.y * 16; y < center.y * 16 + 16; y++ )
+            {
+                for(int z = center.z * 16; z < center.z * 16 + 16; z++ )
+                {
+                    Block block = region.getBlockAt(x, y, z);
+                    if(block == Blocks.air || !block.shouldRender())
+                        continue;
+                    AbstractBlockRenderer renderer = renderers.getRenderer(block);
+                    if(renderer.shouldRenderInPass(EnumRenderPass.NORMAL, region, block, x, y, z))
+                        renderer.render(null, buffer, region, block, x, y, z);
+                }
+            }
+        }
+        return buffer.getIndicesCount() / 6;
+    }
+}
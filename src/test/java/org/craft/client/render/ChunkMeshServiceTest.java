@@ -0,0 +1,116 @@
+package org.craft.client.render;
+
+import static org.junit.Assert.*;
+
+import java.util.*;
+
+import org.craft.client.render.ChunkMeshService.ChunkMesh;
+import org.craft.world.*;
+import org.junit.*;
+
+public class ChunkMeshServiceTest
+{
+
+    private static final long     TIMEOUT = 30000L;
+
+    private static World          world;
+    private static ModelRenderers renderers;
+    private static List<Chunk>    chunks;
+
+    @BeforeClass
+    public static void createWorld()
+    {
+        world = TestWorlds.createTerrain(-2, 9, -2, 2, 12, 2);
+        chunks = new ArrayList<Chunk>();
+        for(int x = -1; x <= 1; x++ )
+        {
+            for(int y = 10; y <= 11; y++ )
+            {
+                for(int z = -1; z <= 1; z++ )
+                    chunks.add(world.getChunkProvider().get(world, x, y, z));
+            }
+        }
+        renderers = new ModelRenderers();
+    }
+
+    @AfterClass
+    public static void disposeWorld()
+    {
+        world.dispose();
+    }
+
+    /**
+     * Builds the chunks with several workers and checks that each mesh holds the same vertices and indices as the one of a builder run on
+     * the calling thread
+     */
+    @Test
+    public void workersBuildTheSameMeshesAsTheBuilder() throws InterruptedException
+    {
+        ChunkMeshService service = new ChunkMeshService(null, renderers, 3);
+        for(Chunk chunk : chunks)
+            service.submit(world, chunk, 4, 180, 4);
+        Map<ChunkCoord, ChunkMesh> meshes = pollAll(service, chunks.size());
+        service.shutdown();
+
+        ChunkMeshBuilder builder = new ChunkMeshBuilder(null, renderers);
+        MeshBuffer normal = new MeshBuffer(service.getVertexFormat());
+        MeshBuffer alpha = new MeshBuffer(service.getVertexFormat());
+        int vertices = 0;
+        for(Chunk chunk : chunks)
+        {
+            builder.build(new RegionSnapshot(world, chunk.getCoords()), 4, 180, 4, normal, alpha);
+            ChunkMesh mesh = meshes.get(chunk.getCoords());
+            assertNotNull(mesh);
+            assertEquals(normal.getVertexData(), mesh.getBuffer(EnumRenderPass.NORMAL).getVertexData());
+            assertEquals(normal.getIndexData(), mesh.getBuffer(EnumRenderPass.NORMAL).getIndexData());
+            assertEquals(alpha.getVertexData(), mesh.getBuffer(EnumRenderPass.ALPHA).getVertexData());
+            assertEquals(alpha.getIndexData(), mesh.getBuffer(EnumRenderPass.ALPHA).getIndexData());
+            vertices += normal.getVerticesCount() + alpha.getVerticesCount();
+        }
+        assertTrue("No vertex was built", vertices > 0);
+    }
+
+    /**
+     * Requests every chunk several times in a row and checks that only one mesh per chunk is delivered, every other request being counted
+     * as stale
+     */
+    @Test
+    public void onlyTheLatestRequestOfAChunkIsDelivered() throws InterruptedException
+    {
+        ChunkMeshService service = new ChunkMeshService(null, renderers, 1);
+        for(int i = 0; i < 10; i++ )
+        {
+            for(Chunk chunk : chunks)
+                service.submit(world, chunk, 4, 180, 4);
+        }
+        pollAll(service, chunks.size());
+        long start = System.currentTimeMillis();
+        while(service.getStaleMeshesCount() < chunks.size() * 9 && System.currentTimeMillis() - start < TIMEOUT)
+        {
+            assertNull(service.poll());
+            Thread.sleep(1);
+        }
+        service.shutdown();
+        assertEquals(chunks.size() * 9, service.getStaleMeshesCount());
+        assertEquals(0, service.getPendingCount());
+    }
+
+    /**
+     * Polls given service until it has delivered given number of meshes, and returns them by chunk
+     */
+    private static Map<ChunkCoord, ChunkMesh> pollAll(ChunkMeshService service, int count) throws InterruptedException
+    {
+        Map<ChunkCoord, ChunkMesh> meshes = new HashMap<ChunkCoord, ChunkMesh>();
+        long start = System.currentTimeMillis();
+        while(meshes.size() < count)
+        {
+            assertTrue("Only " + meshes.size() + " of " + count + " meshes were delivered", System.currentTimeMillis() - start < TIMEOUT);
+            ChunkMesh mesh = service.poll();
+            if(mesh == null)
+                Thread.sleep(1);
+            else
+                assertNull("Chunk delivered twice", meshes.put(mesh.getCoords(), mesh));
+        }
+        return meshes;
+    }
+}
@@ -0,0 +1,158 @@
+package org.craft.client.render;
+
+import static org.junit.Assert.*;
+
+import java.nio.*;
+import java.util.*;
+
+import org.junit.*;
+
+public class MeshBufferTest
+{
+
+    /**
+     * Offset of the texture coordinates in a {@link EnumVertexFormat#COMPACT} vertex
+     */
+    private static final int TEX_COORDS = 8;
+
+    @Test
+    public void compactVerticesRoundTrip()
+    {
+        MeshBuffer buffer = new MeshBuffer(EnumVertexFormat.COMPACT, 1);
+        buffer.setOrigin(32, -16, 48);
+        buffer.addVertex(32.5f, -16f + 127.25f, 48f - 127f, 3f, 0.0625f, 0f, 0.5f, 1.2f, 0.25f, 0.5f, 0.0625f, 1f);
+        assertEquals(1, buffer.getVerticesCount());
+        ByteBuffer data = buffer.getVertexData();
+        assertEquals(24, data.remaining());
+        assertEquals(0.5f, data.getShort(0) / (float) EnumVertexFormat.COMPACT_POSITION_SCALE, 0f);
+        assertEquals(127.25f, data.getShort(2) / (float) EnumVertexFormat.COMPACT_POSITION_SCALE, 0f);
+        assertEquals(-127f, data.getShort(4) / (float) EnumVertexFormat.COMPACT_POSITION_SCALE, 0f);
+        assertEquals(3f, fromHalf(data.getShort(TEX_COORDS)), 0f);
+        assertEquals(0.0625f, fromHalf(data.getShort(TEX_COORDS + 2)), 0f);
+        assertEquals(0, data.get(12) & 0xFF);
+        assertEquals(128, data.get(13) & 0xFF);
+        assertEquals(255, data.get(14) & 0xFF);
+        assertEquals(255, data.get(15) & 0xFF);
+        assertEquals(0.25f, data.getShort(16) / (float) Short.MAX_VALUE, 1f / Short.MAX_VALUE);
+        assertEquals(0.5f, data.getShort(18) / (float) Short.MAX_VALUE, 1f / Short.MAX_VALUE);
+        assertEquals(0.0625f, data.getShort(20) / (float) Short.MAX_VALUE, 1f / Short.MAX_VALUE);
+        assertEquals(Short.MAX_VALUE, data.getShort(22));
+    }
+
+    @Test
+    public void halfFloatEdgeCases()
+    {
+        assertEquals(0x0000, toHalf(0f));
+        assertEquals(0x8000, toHalf(-0f));
+        assertEquals(0x3C00, toHalf(1f));
+        assertEquals(0xC000, toHalf(-2f));
+        assertEquals(0x4C00, toHalf(16f));
+        // Highest half float, and the values rounding to it or past it
+        assertEquals(0x7BFF, toHalf(65504f));
+        assertEquals(0x7BFF, toHalf(65519.99f));
+        assertEquals(0x7C00, toHalf(65520f));
+        assertEquals(0xFC00, toHalf(-1e10f));
+        assertEquals(0x7C00, toHalf(Float.POSITIVE_INFINITY));
+        assertEquals(0xFC00, toHalf(Float.NEGATIVE_INFINITY));
+        assertEquals(0x7E00, toHalf(Float.NaN));
+        // Lowest normal half float, and subnormals down to the half of the lowest one, which rounds to 0 as a tie
+        assertEquals(0x0400, toHalf((float) Math.pow(2, -14)));
+        assertEquals(0x03FF, toHalf((float) (Math.pow(2, -14) - Math.pow(2, -24))));
+        assertEquals(0x0001, toHalf((float) Math.pow(2, -24)));
+        assertEquals(0x0000, toHalf((float) Math.pow(2, -25)));
+        assertEquals(0x0001, toHalf(Math.nextUp((float) Math.pow(2, -25))));
+        assertEquals(0x0002, toHalf((float) (3 * Math.pow(2, -25))));
+        // Ties between normal half floats round to the even one
+        assertEquals(0x3C00, toHalf(1f + (float) Math.pow(2, -11)));
+        assertEquals(0x3C02, toHalf(1f + 3 * (float) Math.pow(2, -11)));
+        assertEquals(0x3C01, toHalf(Math.nextUp(1f + (float) Math.pow(2, -11))));
+    }
+
+    /**
+     * Every float within the range of half floats must be written as the closest half float, ties going to the even one
+     */
+    @Test
+    public void halfFloatsAreTheClosest()
+    {
+        Random rng = new Random(3L);
+        for(int i = 0; i < 200000; i++ )
+        {
+            // Scaled down to every exponent from subnormal halves to the highest normal ones
+            float value = (rng.nextFloat() * 2f - 1f) * (float) Math.pow(2, rng.nextInt(42) - 26);
+            if(Math.abs(value) > 65504f)
+                continue;
+            int half = toHalf(value);
+            double error = Math.abs(fromHalf((short) half) - (double) value);
+            int magnitude = half & 0x7FFF;
+            if(magnitude < 0x7BFF)
+                checkCloser(value, half, half + 1, error);
+            if(magnitude > 0)
+                checkCloser(value, half, half - 1, error);
+        }
+    }
+
+    @Test
+    public void indicesAreWidenedPastAnUnsignedShort()
+    {
+        MeshBuffer buffer = new MeshBuffer(EnumVertexFormat.COMPACT, 16);
+        int quads = 20000;
+        for(int quad = 0; quad < quads; quad++ )
+        {
+            for(int corner = 0; corner < 4; corner++ )
+                buffer.addVertex(corner & 1, corner >> 1, 0, 0, 0, 1, 1, 1);
+            buffer.addIndex(0);
+            buffer.addIndex(1);
+            buffer.addIndex(2);
+            buffer.addIndex(2);
+            buffer.addIndex(3);
+            buffer.addIndex(0);
+            // The last index of the quad is 4 * quad + 3, so quad 16383 is the last one to fit in shorts
+            assertEquals(quad < 16384 ? 2 : 4, buffer.getIndexSize());
+            buffer.setOffsetToEnd();
+        }
+        assertEquals(quads * 4, buffer.getVerticesCount());
+        assertEquals(quads * 6, buffer.getIndicesCount());
+        IntBuffer indices = buffer.getIndexData().asIntBuffer();
+        int[] pattern =
+        {
+                0, 1, 2, 2, 3, 0
+        };
+        for(int i = 0; i < quads * 6; i++ )
+            assertEquals("Index " + i, (i / 6) * 4 + pattern[i % 6], indices.get(i));
+
+        buffer.clear();
+        assertEquals(2, buffer.getIndexSize());
+        assertEquals(0, buffer.getIndicesCount());
+    }
+
+    private static void checkCloser(float value, int half, int neighbor, double error)
+    {
+        double neighborError = Math.abs(fromHalf((short) neighbor) - (double) value);
+        String message = value + " written as " + Integer.toHexString(half) + " instead of " + Integer.toHexString(neighbor);
+        assertTrue(message, error <= neighborError);
+        if(error == neighborError)
+            assertEquals(message, 0, half & 1);
+    }
+
+    /**
+     * Returns the bits of the half float given value is written as, in the texture coordinates of a compact vertex
+     */
+    private static int toHalf(float value)
+    {
+        MeshBuffer buffer = new MeshBuffer(EnumVertexFormat.COMPACT, 1);
+        buffer.addVertex(0, 0, 0, value, 0, 0, 0, 0);
+        return buffer.getVertexData().getShort(TEX_COORDS) & 0xFFFF;
+    }
+
+    private static float fromHalf(short half)
+    {
+        int sign = (half & 0x8000) != 0 ? -1 : 1;
+        int exponent = half >> 10 & 0x1F;
+        int mantissa = half & 0x3FF;
+        if(exponent == 0x1F)
+            return mantissa == 0 ? sign * Float.POSITIVE_INFINITY : Float.NaN;
+        if(exponent == 0)
+            return (float) (sign * mantissa * Math.pow(2, -24));
+        return (float) (sign * (1024 + mantissa) * Math.pow(2, exponent - 25));
+    }
+}
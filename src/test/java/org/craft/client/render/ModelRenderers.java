@@ -0,0 +1,104 @@
+package org.craft.client.render;
+
+import java.util.*;
+
+import org.craft.blocks.*;
+import org.craft.client.models.*;
+import org.craft.client.render.blocks.*;
+import org.craft.maths.*;
+
+/**
+ * Draws the terrain blocks with the model of a cube and the other blocks with the model of a bottom slab, every texture being a different
+ * tile of a 4x4 atlas. Needs no OpenGL context, so that meshes can be built by tests and benchmarks
+ */
+public class ModelRenderers implements IBlockRendererProvider
+{
+
+    private static final List<String>             TEXTURES = Arrays.asList("stone", "dirt", "grass_top", "grass_side", "log", "log_top");
+
+    private HashMap<Block, AbstractBlockRenderer> renderers;
+
+    public ModelRenderers()
+    {
+        renderers = new HashMap<Block, AbstractBlockRenderer>();
+        renderers.put(Blocks.stone, createRenderer(createCube("stone", "stone", "stone")));
+        renderers.put(Blocks.bedrock, createRenderer(createCube("stone", "stone", "stone")));
+        renderers.put(Blocks.dirt, createRenderer(createCube("dirt", "dirt", "dirt")));
+        renderers.put(Blocks.grass, createRenderer(createCube("grass_top", "dirt", "grass_side")));
+        renderers.put(Blocks.log, createRenderer(createCube("log_top", "log_top", "log")));
+    }
+
+    @Override
+    public synchronized AbstractBlockRenderer getRenderer(Block block)
+    {
+        AbstractBlockRenderer renderer = renderers.get(block);
+        if(renderer == null)
+        {
+            renderer = createRenderer(createSlab("stone"));
+            renderers.put(block, renderer);
+        }
+        return renderer;
+    }
+
+    private static AbstractBlockRenderer createRenderer(BlockModel model)
+    {
+        BlockVariant variant = new BlockVariant();
+        variant.addBlockModel(model);
+        return new BlockModelRenderer(Arrays.asList(variant))
+        {
+            @Override
+            protected TextureIcon getIcon(String texture)
+            {
+                int tile = TEXTURES.indexOf(texture) + 1;
+                float u = (tile % 4) / 4f;
+                float v = (tile / 4) / 4f;
+                return new TextureRegion(null, u, v, u + 0.25f, v + 0.25f);
+            }
+        };
+    }
+
+    private static BlockModel createCube(String top, String bottom, String side)
+    {
+        BlockModel model = new BlockModel("cube");
+        model.setTexturePath("up", top);
+        model.setTexturePath("down", bottom);
+        model.setTexturePath("side", side);
+        BlockElement element = new BlockElement();
+        element.setFrom(Vector3.get(0, 0, 0));
+        element.setTo(Vector3.get(1, 1, 1));
+        element.setFace("up", createFace("#up", "up"));
+        element.setFace("down", createFace("#down", "down"));
+        element.setFace("north", createFace("#side", "north"));
+        element.setFace("south", createFace("#side", "south"));
+        element.setFace("east", createFace("#side", "east"));
+        element.setFace("west", createFace("#side", "west"));
+        model.addElement(element);
+        return model;
+    }
+
+    private static BlockModel createSlab(String texture)
+    {
+        BlockModel model = new BlockModel("half_slab");
+        model.setTexturePath("all", texture);
+        BlockElement element = new BlockElement();
+        element.setFrom(Vector3.get(0, 0, 0));
+        element.setTo(Vector3.get(1, 0.5f, 1));
+        element.setFace("up", createFace("#all", null));
+        element.setFace("down", createFace("#all", "down"));
+        element.setFace("north", createFace("#all", "north"));
+        element.setFace("south", createFace("#all", "south"));
+        element.setFace("east", createFace("#all", "east"));
+        element.setFace("west", createFace("#all", "west"));
+        model.addElement(element);
+        return model;
+    }
+
+    private static BlockFace createFace(String texture, String cullface)
+    {
+        BlockFace face = new BlockFace();
+        face.setTexture(texture);
+        if(cullface != null)
+            face.setCullface(cullface);
+        return face;
+    }
+}
@@ -0,0 +1,169 @@
+package org.craft.entity;
+
+import static org.junit.Assert.*;
+
+import org.craft.blocks.*;
+import org.craft.blocks.states.*;
+import org.craft.world.*;
+import org.craft.world.loaders.*;
+import org.junit.*;
+
+public class EntityColliderTest
+{
+
+    /**
+     * Height of the flat ground of the test worlds, whose chunks go from 0 to 31 on the horizontal axes
+     */
+    private static final int   GROUND = 64;
+    private static final float PUSH   = 0.1f;
+
+    private World              world;
+
+    @BeforeClass
+    public static void initBlocks()
+    {
+        if(Blocks.air == null)
+            Blocks.init();
+        if(BlockStates.logOrientation == null)
+            BlockStates.init();
+    }
+
+    @Before
+    public void createWorld()
+    {
+        FallbackWorldLoader loader = new FallbackWorldLoader();
+        BaseChunkProvider provider = new BaseChunkProvider(loader);
+        world = new World("test", provider, new WorldGenerator(0L), loader);
+        for(int x = 0; x < 2; x++ )
+        {
+            for(int y = 3; y < 5; y++ )
+            {
+                for(int z = 0; z < 2; z++ )
+                {
+                    Chunk chunk = new Chunk(world, new ChunkCoord(x, y, z));
+                    if(y * 16 < GROUND)
+                        chunk.fill(Blocks.stone);
+                    provider.addChunk(world, chunk);
+                }
+            }
+        }
+    }
+
+    @After
+    public void disposeWorld()
+    {
+        world.dispose();
+    }
+
+    @Test
+    public void fallingEntityRestsOnTheGround()
+    {
+        Entity e = createEntity(10.1f, GROUND + 6, 10.1f);
+        run(e, 0, 0, 80, -1);
+        assertTrue(e.onGround);
+        assertEquals(GROUND, e.posY, 1e-3f);
+    }
+
+    @Test
+    public void fullBlockStopsTheEntity()
+    {
+        world.setBlock(20, GROUND, 10, Blocks.stone);
+        Entity e = createEntity(10.1f, GROUND, 10.1f);
+        run(e, PUSH, 0, 200, -1);
+        assertEquals(GROUND, e.posY, 1e-3f);
+        assertEquals(20 - 0.75f, e.posX, 1e-2f);
+    }
+
+    @Test
+    public void slabsAreSteppedOnAlongBothAxes()
+    {
+        for(int i = 0; i < 32; i++ )
+        {
+            world.setBlock(20, GROUND, i, Blocks.dirtSlab);
+            world.setBlock(i, GROUND, 20, Blocks.dirtSlab);
+        }
+        Entity alongX = createEntity(10.1f, GROUND, 10.1f);
+        assertTrue(run(alongX, PUSH, 0, 200, -1) >= GROUND + 0.5f);
+        assertEquals(GROUND, alongX.posY, 1e-3f);
+        assertTrue(alongX.posX > 21);
+
+        Entity alongZ = createEntity(10.1f, GROUND, 10.1f);
+        assertTrue(run(alongZ, 0, PUSH, 200, -1) >= GROUND + 0.5f);
+        assertEquals(GROUND, alongZ.posY, 1e-3f);
+        assertTrue(alongZ.posZ > 21);
+    }
+
+    @Test
+    public void twoBlocksWallIsNotJumpedOver()
+    {
+        world.setBlock(20, GROUND, 10, Blocks.stone);
+        world.setBlock(20, GROUND + 1, 10, Blocks.stone);
+        Entity e = createEntity(10.1f, GROUND, 10.1f);
+        run(e, PUSH, 0, 200, 150);
+        assertTrue(e.onGround);
+        assertEquals(GROUND, e.posY, 1e-3f);
+        assertEquals(20 - 0.75f, e.posX, 1e-2f);
+    }
+
+    @Test
+    public void jumpingEntityLandsBackOnTheGround()
+    {
+        Entity e = createEntity(10.1f, GROUND, 10.1f);
+        assertTrue(run(e, 0, 0, 60, 10) > GROUND + 1);
+        assertTrue(e.onGround);
+        assertEquals(GROUND, e.posY, 1e-3f);
+    }
+
+    @Test
+    public void diagonalMoveSlidesAlongAPillar()
+    {
+        world.setBlock(12, GROUND, 12, Blocks.stone);
+        world.setBlock(12, GROUND + 1, 12, Blocks.stone);
+        Entity e = createEntity(11.5f, GROUND, 10.1f);
+        for(int i = 0; i < 300; i++ )
+        {
+            run(e, 0.07f, 0.07f, 1, -1);
+            boolean inPillar = e.posX + 0.75f > 12 + 1e-2f && e.posX < 13 - 1e-2f && e.posZ + 0.75f > 12 + 1e-2f && e.posZ < 13 - 1e-2f;
+            assertFalse("Entity went into the pillar at tick " + i, inPillar);
+        }
+        assertEquals(32 - 0.75f, e.posX, 1e-2f);
+        assertEquals(32 - 0.75f, e.posZ, 1e-2f);
+    }
+
+    @Test
+    public void unloadedChunksBlockLikeFullCubes()
+    {
+        Entity e = createEntity(28.1f, GROUND, 10.1f);
+        run(e, PUSH, 0, 200, -1);
+        assertEquals(GROUND, e.posY, 1e-3f);
+        assertEquals(32 - 0.75f, e.posX, 1e-2f);
+    }
+
+    private Entity createEntity(float x, float y, float z)
+    {
+        Entity e = new Entity(world);
+        e.setSize(0.75f, 1.8f, 0.75f);
+        e.setLocation(x, y, z);
+        e.stepHeight = 0.75f;
+        return e;
+    }
+
+    /**
+     * Updates given entity {@code ticks} times, pushing it by given amounts and making it jump at tick {@code jumpTick} if it is on ground,
+     * and returns the highest y it reached
+     */
+    private static float run(Entity e, float pushX, float pushZ, int ticks, int jumpTick)
+    {
+        float highest = e.posY;
+        for(int i = 0; i < ticks; i++ )
+        {
+            e.velX += pushX;
+            e.velZ += pushZ;
+            if(i == jumpTick && e.onGround)
+                e.velY = 0.25f;
+            e.update();
+            highest = Math.max(highest, e.posY);
+        }
+        return highest;
+    }
+}
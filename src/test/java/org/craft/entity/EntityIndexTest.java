@@ -0,0 +1,159 @@
+package org.craft.entity;
+
+import static org.junit.Assert.*;
+
+import java.util.*;
+
+import org.craft.maths.*;
+import org.craft.utils.*;
+import org.junit.*;
+
+public class EntityIndexTest
+{
+
+    private static final int   ENTITIES = 10000;
+    private static final float WIDTH    = 512;
+
+    private ArrayList<Entity>  entities;
+    private EntityIndex        index;
+    private Random             rng;
+
+    /**
+     * Spreads 10k entities of various sizes over 512x512 blocks, moves them for 20 updates, then removes 1% of them
+     */
+    @Before
+    public void populate()
+    {
+        rng = new Random(5L);
+        entities = new ArrayList<Entity>();
+        index = new EntityIndex();
+        for(int i = 0; i < ENTITIES; i++ )
+        {
+            Entity e = new Entity(null);
+            if(i % 10 == 0)
+                e.setSize(1 + rng.nextFloat() * 20, 1 + rng.nextFloat() * 4, 1 + rng.nextFloat() * 20);
+            else
+                e.setSize(0.75f, 1.8f, 0.75f);
+            e.setLocation(rng.nextFloat() * WIDTH, 60 + rng.nextFloat() * 8, rng.nextFloat() * WIDTH);
+            e.velX = (rng.nextFloat() - 0.5f) * 2f;
+            e.velY = (rng.nextFloat() - 0.5f) * 0.5f;
+            e.velZ = (rng.nextFloat() - 0.5f) * 2f;
+            entities.add(e);
+            index.add(e);
+        }
+        for(int update = 0; update < 20; update++ )
+        {
+            for(Entity e : entities)
+            {
+                e.posX += e.velX;
+                e.posY += e.velY;
+                e.posZ += e.velZ;
+                index.update(e);
+            }
+        }
+        for(Iterator<Entity> it = entities.iterator(); it.hasNext();)
+        {
+            Entity e = it.next();
+            if(rng.nextInt(100) == 0)
+            {
+                index.remove(e);
+                it.remove();
+            }
+        }
+    }
+
+    @Test
+    public void indexHoldsTheLivingEntities()
+    {
+        assertEquals(entities.size(), index.size());
+    }
+
+    @Test
+    public void boxQueriesMatchALinearScan()
+    {
+        ArrayList<Entity> result = new ArrayList<Entity>();
+        for(int i = 0; i < 1000; i++ )
+        {
+            float x = rng.nextFloat() * WIDTH;
+            float y = 56 + rng.nextFloat() * 16;
+            float z = rng.nextFloat() * WIDTH;
+            float size = rng.nextFloat() * 24;
+            result.clear();
+            index.getEntitiesInAABB(x - size, y - size, z - size, x + size, y + size, z + size, result);
+            Set<Entity> expected = Collections.newSetFromMap(new IdentityHashMap<Entity, Boolean>());
+            for(Entity e : entities)
+            {
+                AABB box = e.getLocalBoundingBox();
+                Vector3 min = box.getMinExtents();
+                Vector3 max = box.getMaxExtents();
+                if(e.posX + min.getX() <= x + size && e.posX + max.getX() >= x - size && e.posY + min.getY() <= y + size && e.posY + max.getY() >= y - size && e.posZ + min.getZ() <= z + size && e.posZ + max.getZ() >= z - size)
+                    expected.add(e);
+            }
+            assertEquals(expected.size(), result.size());
+            assertTrue(expected.containsAll(result));
+        }
+    }
+
+    @Test
+    public void rangeQueriesMatchALinearScan()
+    {
+        ArrayList<Entity> result = new ArrayList<Entity>();
+        for(int i = 0; i < 1000; i++ )
+        {
+            float x = rng.nextFloat() * WIDTH;
+            float y = 56 + rng.nextFloat() * 16;
+            float z = rng.nextFloat() * WIDTH;
+            float radius = rng.nextFloat() * 24;
+            result.clear();
+            index.getEntitiesInRange(x, y, z, radius, result);
+            Set<Entity> expected = Collections.newSetFromMap(new IdentityHashMap<Entity, Boolean>());
+            for(Entity e : entities)
+            {
+                float dx = e.posX - x;
+                float dy = e.posY - y;
+                float dz = e.posZ - z;
+                if(dx * dx + dy * dy + dz * dz <= radius * radius)
+                    expected.add(e);
+            }
+            assertEquals(expected.size(), result.size());
+            assertTrue(expected.containsAll(result));
+        }
+    }
+
+    @Test
+    public void rayCastsMatchALinearScan()
+    {
+        CollisionInfos infos = new CollisionInfos();
+        int hits = 0;
+        for(int i = 0; i < 5000; i++ )
+        {
+            float x = rng.nextFloat() * WIDTH;
+            float y = 60 + rng.nextFloat() * 8;
+            float z = rng.nextFloat() * WIDTH;
+            float yaw = rng.nextFloat() * (float) Math.PI * 2;
+            float dirX = (float) Math.cos(yaw);
+            float dirZ = (float) Math.sin(yaw);
+            float expectedDistance = 5f;
+            Entity expected = null;
+            for(Entity e : entities)
+            {
+                float hit = e.getLocalBoundingBox().intersectRay(x - e.posX, y - e.posY, z - e.posZ, dirX, 0, dirZ, expectedDistance, infos);
+                if(hit >= 0f)
+                {
+                    expected = e;
+                    expectedDistance = hit;
+                }
+            }
+            Entity hit = index.rayCast(x, y, z, dirX, 0, dirZ, 5f, null, infos);
+            if(expected == null)
+                assertNull(hit);
+            else
+            {
+                assertNotNull(hit);
+                assertEquals(expectedDistance, infos.distance, 0f);
+                hits++ ;
+            }
+        }
+        assertTrue(hits > 0);
+    }
+}
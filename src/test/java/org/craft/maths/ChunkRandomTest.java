@@ -0,0 +1,50 @@
+package org.craft.maths;
+
+import static org.junit.Assert.*;
+
+import org.junit.*;
+
+public class ChunkRandomTest
+{
+
+    /**
+     * A generator reused after an odd number of {@link ChunkRandom#nextGaussian()} calls must not give the cached second value to the next
+     * populator
+     */
+    @Test
+    public void setSeedForgetsCachedGaussian()
+    {
+        ChunkRandom reused = new ChunkRandom(1L);
+        reused.nextGaussian();
+        reused.setSeed(2L);
+        ChunkRandom fresh = new ChunkRandom(2L);
+        for(int i = 0; i < 8; i++ )
+            assertEquals(fresh.nextGaussian(), reused.nextGaussian(), 0.0);
+    }
+
+    @Test
+    public void sameSeedGivesSameStream()
+    {
+        ChunkRandom a = new ChunkRandom(ChunkRandom.chunkSeed(7L, 1, 2, 3, 0));
+        ChunkRandom b = new ChunkRandom(ChunkRandom.chunkSeed(7L, 1, 2, 3, 0));
+        for(int i = 0; i < 64; i++ )
+            assertEquals(a.nextLong(), b.nextLong());
+    }
+
+    @Test
+    public void gaussiansAreCentered()
+    {
+        ChunkRandom rng = new ChunkRandom(3L);
+        double sum = 0;
+        double sumOfSquares = 0;
+        int n = 100000;
+        for(int i = 0; i < n; i++ )
+        {
+            double value = rng.nextGaussian();
+            sum += value;
+            sumOfSquares += value * value;
+        }
+        assertEquals(0.0, sum / n, 0.02);
+        assertEquals(1.0, sumOfSquares / n, 0.02);
+    }
+}
@@ -0,0 +1,76 @@
+package org.craft.maths;
+
+import static org.junit.Assert.*;
+
+import java.util.*;
+
+import org.junit.*;
+
+public class FrustumTest
+{
+
+    /**
+     * Checks that the frustum holds the random points which are not clipped by given projected view matrix, leaving out points too close to
+     * a clip plane for float rounding to matter
+     */
+    @Test
+    public void frustumMatchesClipSpace()
+    {
+        Matrix4 projection = Matrix4.get().initPerspective((float) Math.toRadians(70), 16f / 9f, 0.1f, 100f);
+        Quaternion rotation = new Quaternion(Vector3.yAxis, 0.7f).mul(new Quaternion(Vector3.xAxis, -0.3f));
+        Matrix4 view = rotation.conjugate().toRotationMatrix().mul(Matrix4.get().initTranslation(-12.5f, -70f, 3.5f));
+        Matrix4 projectedView = projection.mul(view);
+        Frustum frustum = new Frustum();
+        frustum.update(projectedView);
+
+        Random rng = new Random(6L);
+        int inside = 0;
+        for(int i = 0; i < 200000; i++ )
+        {
+            float[] point =
+            {
+                    12.5f + (rng.nextFloat() - 0.5f) * 240, 70f + (rng.nextFloat() - 0.5f) * 240, -3.5f + (rng.nextFloat() - 0.5f) * 240, 1
+            };
+            float[] clip = new float[4];
+            for(int row = 0; row < 4; row++ )
+            {
+                for(int col = 0; col < 4; col++ )
+                    clip[row] += projectedView.get(row, col) * point[col];
+            }
+            float w = clip[3];
+            float margin = Math.max(Math.abs(w), 1f) * 1e-4f;
+            boolean nearBorder = false;
+            boolean clipped = false;
+            for(int axis = 0; axis < 3; axis++ )
+            {
+                float distance = w - Math.abs(clip[axis]);
+                nearBorder |= Math.abs(distance) < margin;
+                clipped |= distance < 0;
+            }
+            if(nearBorder)
+                continue;
+            Vector3 v = Vector3.get(point[0], point[1], point[2]);
+            assertEquals("Point " + point[0] + ", " + point[1] + ", " + point[2], !clipped, frustum.pointIn(v));
+            v.dispose();
+            if(!clipped)
+                inside++ ;
+        }
+        assertTrue("Only " + inside + " points are inside", inside > 1000);
+    }
+
+    /**
+     * Checks that a box is only dropped when it is fully outside of the frustum
+     */
+    @Test
+    public void boxesTouchingTheFrustumAreKept()
+    {
+        Matrix4 projectedView = Matrix4.get().initPerspective((float) Math.toRadians(90), 1f, 0.1f, 100f);
+        Frustum frustum = new Frustum();
+        frustum.update(projectedView);
+        assertTrue(frustum.boxIn(-1, -1, 10, 1, 1, 12));
+        assertTrue(frustum.boxIn(-20, -1, 10, -5, 1, 12));
+        assertFalse(frustum.boxIn(-1, -1, -12, 1, 1, -10));
+        assertFalse(frustum.boxIn(-1, -1, 110, 1, 1, 120));
+        assertFalse(frustum.boxIn(20, -1, 10, 25, 1, 12));
+    }
+}
@@ -0,0 +1,111 @@
+package org.craft.maths;
+
+import static org.junit.Assert.*;
+
+import java.util.*;
+
+import org.junit.*;
+
+public class NoiseFieldTest
+{
+
+    private static final long SEED = 0x5EEDL;
+
+    /**
+     * Checks that exact column maps hold the very values of {@link ImprovedNoise#perlinNoise(double, double)}, near the origin and far from
+     * it
+     */
+    @Test
+    public void exactColumnMapsMatchPerlinNoise()
+    {
+        ImprovedNoise noise = new ImprovedNoise(SEED);
+        NoiseField field = new NoiseField(SEED);
+        double[] map = new double[256];
+        Random rng = new Random(1L);
+        for(int i = 0; i < 200; i++ )
+        {
+            int baseX = (rng.nextInt(200000) - 100000) << 4;
+            int baseZ = (rng.nextInt(200000) - 100000) << 4;
+            if(i < 4)
+            {
+                baseX = (i & 1) == 0 ? 0 : -16;
+                baseZ = (i & 2) == 0 ? 0 : -16;
+            }
+            field.fillColumnMap(map, baseX, baseZ);
+            for(int x = 0; x < 16; x++ )
+            {
+                for(int z = 0; z < 16; z++ )
+                    assertEquals("Column " + (baseX + x) + ", " + (baseZ + z), noise.perlinNoise(baseX + x, baseZ + z), map[x << 4 | z], 0.0);
+            }
+        }
+    }
+
+    /**
+     * Checks that coarse column maps are exact on their lattice and stay close to the exact map in between
+     */
+    @Test
+    public void coarseColumnMapsInterpolateExactValues()
+    {
+        NoiseField field = new NoiseField(SEED);
+        double[] exact = new double[256];
+        double[] coarse = new double[256];
+        Random rng = new Random(2L);
+        double maxError = 0;
+        for(int i = 0; i < 200; i++ )
+        {
+            int baseX = (rng.nextInt(20000) - 10000) << 4;
+            int baseZ = (rng.nextInt(20000) - 10000) << 4;
+            field.fillColumnMap(exact, baseX, baseZ);
+            field.fillColumnMap(coarse, baseX, baseZ, 4);
+            for(int x = 0; x < 16; x++ )
+            {
+                for(int z = 0; z < 16; z++ )
+                {
+                    if(x % 4 == 0 && z % 4 == 0)
+                        assertEquals(exact[x << 4 | z], coarse[x << 4 | z], 1e-12);
+                    maxError = Math.max(maxError, Math.abs(exact[x << 4 | z] - coarse[x << 4 | z]));
+                }
+            }
+        }
+        assertTrue("Interpolated values are off by up to " + maxError, maxError < 0.25);
+    }
+
+    /**
+     * Checks that density grids sampled every block are not changed by interpolation, and that coarser ones are exact on their lattice
+     */
+    @Test
+    public void densityGridsAreExactOnTheirLattice()
+    {
+        NoiseField field = new NoiseField(SEED);
+        double[] exact = new double[4096];
+        double[] coarse = new double[4096];
+        field.fillDensityGrid(exact, 32, 160, -48, 32, 4, 1);
+        field.fillDensityGrid(coarse, 32, 160, -48, 32, 4, 4);
+        ImprovedNoise noise = new ImprovedNoise(SEED);
+        for(int x = 0; x < 16; x++ )
+        {
+            for(int y = 0; y < 16; y++ )
+            {
+                for(int z = 0; z < 16; z++ )
+                {
+                    double n = 0;
+                    for(int octave = 0; octave < 4; octave++ )
+                    {
+                        double wavelength = 32.0 / (1 << octave);
+                        n += noise.noise((32 + x) / wavelength, (160 + y) / wavelength, (-48 + z) / wavelength) / (1 << octave);
+                    }
+                    int i = x << 8 | y << 4 | z;
+                    assertEquals(n, exact[i], 1e-12);
+                    if(x % 4 == 0 && y % 4 == 0 && z % 4 == 0)
+                        assertEquals(n, coarse[i], 1e-12);
+                }
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void latticeMustBeAPowerOfTwo()
+    {
+        new NoiseField(SEED).fillColumnMap(new double[256], 0, 0, 3);
+    }
+}
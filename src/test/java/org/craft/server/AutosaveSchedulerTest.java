@@ -0,0 +1,90 @@
+package org.craft.server;
+
+import static org.junit.Assert.*;
+
+import java.util.*;
+
+import org.craft.world.*;
+import org.craft.world.loaders.*;
+import org.junit.*;
+
+public class AutosaveSchedulerTest
+{
+
+    private World       world;
+    private List<Chunk> chunks;
+
+    @BeforeClass
+    public static void initBlocks()
+    {
+        TestWorlds.initBlocks();
+    }
+
+    @Before
+    public void createWorld()
+    {
+        FallbackWorldLoader loader = new FallbackWorldLoader();
+        BaseChunkProvider provider = new BaseChunkProvider(loader);
+        world = new World("test", provider, new WorldGenerator(0L), loader);
+        chunks = new ArrayList<Chunk>();
+        for(int x = 0; x < 20; x++ )
+        {
+            Chunk chunk = new Chunk(world, new ChunkCoord(x, 0, 0));
+            provider.addChunk(world, chunk);
+            chunk.markModified();
+            chunks.add(chunk);
+        }
+    }
+
+    @After
+    public void disposeWorld()
+    {
+        world.dispose();
+    }
+
+    /**
+     * Chunks copied by the lifecycle manager to be unloaded use the chunks per tick budget, so the autosave copies none on that tick, and
+     * they are reported with the cycle
+     */
+    @Test
+    public void evictionSavesShareTheBudget()
+    {
+        ChunkLifecycleManager lifecycle = world.getChunkLifecycleManager();
+        lifecycle.setMinIdleTicks(0);
+        lifecycle.setMaxResidentChunks(10);
+        AutosaveScheduler scheduler = new AutosaveScheduler(world, 1, 4);
+
+        lifecycle.update();
+        scheduler.update();
+        assertEquals(4, lifecycle.getLastUpdateSaves());
+        assertEquals(4, scheduler.getEvictionChunksCount());
+        assertTrue(scheduler.isSaving());
+        assertEquals(4, countCopied());
+
+        lifecycle.setMaxResidentChunks(100);
+        lifecycle.update();
+        scheduler.update();
+        assertEquals(8, countCopied());
+
+        while(scheduler.isSaving())
+        {
+            lifecycle.update();
+            scheduler.update();
+        }
+        assertEquals(20, countCopied());
+        world.getSaveService().flush();
+        assertEquals(16, scheduler.getLastCycleChunks());
+        assertEquals(4, scheduler.getLastCycleEvictionChunks());
+    }
+
+    private int countCopied()
+    {
+        int copied = 0;
+        for(Chunk c : chunks)
+        {
+            if(!c.isModified())
+                copied++ ;
+        }
+        return copied;
+    }
+}
@@ -0,0 +1,147 @@
+package org.craft.world;
+
+import static org.junit.Assert.*;
+
+import org.craft.blocks.*;
+import org.craft.blocks.states.*;
+import org.craft.utils.*;
+import org.craft.world.loaders.*;
+import org.junit.*;
+
+public class BlockEditSessionTest
+{
+
+    /**
+     * The world holds the 2x2x2 chunks between 0 and 31 on each axis, filled with {@link TestBlocks#getCounter() counting blocks}
+     */
+    private static final int SIZE = 32;
+
+    private World                    world;
+    private BaseChunkProvider        provider;
+    private TestBlocks.CountingBlock counter;
+
+    @BeforeClass
+    public static void initBlocks()
+    {
+        TestWorlds.initBlocks();
+    }
+
+    @Before
+    public void createWorld()
+    {
+        FallbackWorldLoader loader = new FallbackWorldLoader();
+        provider = new BaseChunkProvider(loader);
+        world = new World("test", provider, new WorldGenerator(0L), loader);
+        for(int x = 0; x < 2; x++ )
+        {
+            for(int y = 0; y < 2; y++ )
+            {
+                for(int z = 0; z < 2; z++ )
+                    provider.addChunk(world, new Chunk(world, new ChunkCoord(x, y, z)));
+            }
+        }
+        counter = TestBlocks.getCounter();
+        BlockEditSession session = new BlockEditSession(world);
+        session.setNotifyNeighbors(false);
+        session.fill(0, 0, 0, SIZE - 1, SIZE - 1, SIZE - 1, counter);
+        session.commit();
+        world.getLightEngine().flush();
+        counter.clear();
+    }
+
+    @After
+    public void disposeWorld()
+    {
+        world.dispose();
+    }
+
+    /**
+     * Each edited block must get one update, and each block next to the edited box one update from its neighbours, even across chunk
+     * borders
+     */
+    @Test
+    public void commitNotifiesEachBlockOnce()
+    {
+        BlockEditSession session = new BlockEditSession(world);
+        session.fill(10, 4, 4, 20, 8, 8, counter);
+        assertEquals(11 * 5 * 5, session.commit());
+        for(int x = 0; x < SIZE; x++ )
+        {
+            for(int y = 0; y < SIZE; y++ )
+            {
+                for(int z = 0; z < SIZE; z++ )
+                {
+                    boolean edited = isInBox(x, y, z);
+                    boolean nextToEdited = false;
+                    for(EnumSide side : EnumSide.values())
+                    {
+                        if(side != EnumSide.UNDEFINED && isInBox(x + side.getTranslationX(), y + side.getTranslationY(), z + side.getTranslationZ()))
+                            nextToEdited = true;
+                    }
+                    String at = " at " + x + "," + y + "," + z;
+                    assertEquals("Updates" + at, edited ? 1 : 0, counter.getUpdates(x, y, z));
+                    assertEquals("Neighbour updates" + at, !edited && nextToEdited ? 1 : 0, counter.getNeighborUpdates(x, y, z));
+                }
+            }
+        }
+    }
+
+    /**
+     * Blocks and states written in a chunk count as a single change of that chunk. Chunks touched by the edited box on their border are
+     * marked dirty without being changed, and the others are left untouched
+     */
+    @Test
+    public void commitMarksEachChunkDirtyOnce()
+    {
+        long[] versions = new long[8];
+        for(int i = 0; i < 8; i++ )
+        {
+            Chunk chunk = getChunk(i);
+            chunk.cleanUpDirtiness();
+            versions[i] = chunk.getVersion();
+        }
+        BlockEditSession session = new BlockEditSession(world);
+        session.setNotifyNeighbors(false);
+        session.fill(10, 4, 4, 20, 15, 8, counter);
+        session.setBlockState(12, 5, 5, BlockStates.electricPower, EnumPowerStates.fromPowerValue(7));
+        session.setBlockState(18, 5, 5, BlockStates.electricPower, EnumPowerStates.fromPowerValue(3));
+        session.commit();
+
+        assertEquals(EnumPowerStates.fromPowerValue(7), world.getBlockState(12, 5, 5, BlockStates.electricPower));
+        assertEquals(EnumPowerStates.fromPowerValue(3), world.getBlockState(18, 5, 5, BlockStates.electricPower));
+        for(int i = 0; i < 8; i++ )
+        {
+            Chunk chunk = getChunk(i);
+            ChunkCoord coords = chunk.getCoords();
+            boolean edited = coords.y == 0 && coords.z == 0;
+            boolean touched = coords.y == 1 && coords.z == 0;
+            assertEquals("Dirty " + coords, edited || touched, chunk.isDirty());
+            assertEquals("Version " + coords, versions[i] + (edited ? 1 : 0), chunk.getVersion());
+        }
+    }
+
+    @Test
+    public void editsInUnloadedChunksAreDropped()
+    {
+        BlockEditSession session = new BlockEditSession(world);
+        session.fill(28, 4, 4, 40, 4, 4, Blocks.stone);
+        session.setBlock(100, 4, 4, Blocks.stone);
+        assertEquals(14, session.getEditsCount());
+        assertEquals(4, session.commit());
+        assertEquals(0, session.getEditsCount());
+        assertEquals(Blocks.stone, world.getBlockAt(31, 4, 4));
+        assertNull(provider.get(world, 2, 0, 0));
+        assertNull(provider.get(world, 6, 0, 0));
+        assertEquals(0, session.commit());
+    }
+
+    private boolean isInBox(int x, int y, int z)
+    {
+        return x >= 10 && x <= 20 && y >= 4 && y <= 8 && z >= 4 && z <= 8;
+    }
+
+    private Chunk getChunk(int index)
+    {
+        return provider.get(world, index >> 2, index >> 1 & 1, index & 1);
+    }
+}
@@ -0,0 +1,159 @@
+package org.craft.world;
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.craft.world.loaders.*;
+import org.junit.*;
+
+public class ChunkLifecycleManagerTest
+{
+
+    private World                 world;
+    private ChunkLifecycleManager lifecycle;
+    private List<Chunk>           chunks;
+    private CountDownLatch        writesAllowed;
+    private volatile boolean      failWrites;
+
+    @BeforeClass
+    public static void initBlocks()
+    {
+        TestWorlds.initBlocks();
+    }
+
+    @Before
+    public void createWorld()
+    {
+        writesAllowed = new CountDownLatch(1);
+        FallbackWorldLoader loader = new FallbackWorldLoader()
+        {
+            @Override
+            public int saveChunk(Chunk chunk) throws IOException
+            {
+                try
+                {
+                    writesAllowed.await();
+                }
+                catch(InterruptedException e)
+                {
+                    throw new InterruptedIOException();
+                }
+                if(failWrites)
+                    throw new IOException("Disk full");
+                return 1;
+            }
+        };
+        BaseChunkProvider provider = new BaseChunkProvider(loader);
+        world = new World("test", provider, new WorldGenerator(0L), loader);
+        lifecycle = world.getChunkLifecycleManager();
+        lifecycle.setMaxResidentChunks(10);
+        lifecycle.setMinIdleTicks(0);
+        chunks = new ArrayList<Chunk>();
+        for(int x = 0; x < 20; x++ )
+        {
+            Chunk chunk = new Chunk(world, new ChunkCoord(x, 0, 0));
+            provider.addChunk(world, chunk);
+            chunks.add(chunk);
+        }
+    }
+
+    @After
+    public void disposeWorld()
+    {
+        writesAllowed.countDown();
+        world.dispose();
+    }
+
+    /**
+     * Modified chunks must stay loaded until their copy has been written, without the update waiting for the disk, and must not be replaced
+     * by other evictions meanwhile
+     */
+    @Test
+    public void modifiedChunksAreDroppedOnceWritten()
+    {
+        for(Chunk c : chunks)
+            c.markModified();
+        lifecycle.update();
+        assertEquals(10, lifecycle.getLastUpdateSaves());
+        assertEquals(10, lifecycle.getPendingEvictionsCount());
+        assertEquals(20, lifecycle.getResidentChunksCount());
+        lifecycle.update();
+        assertEquals(0, lifecycle.getLastUpdateSaves());
+        assertEquals(20, lifecycle.getResidentChunksCount());
+
+        writesAllowed.countDown();
+        world.getSaveService().flush();
+        lifecycle.update();
+        assertEquals(10, lifecycle.getResidentChunksCount());
+        assertEquals(0, lifecycle.getPendingEvictionsCount());
+        assertEquals(10, lifecycle.getSavedChunksCount());
+        assertEquals(10, lifecycle.getEvictionsCount());
+    }
+
+    @Test
+    public void chunksModifiedWhileWrittenAreKept()
+    {
+        for(Chunk c : chunks)
+            c.markModified();
+        lifecycle.update();
+        int modifiedAgain = 0;
+        for(Chunk c : chunks)
+        {
+            if(world.getSaveService().isSaving(c))
+            {
+                c.markModified();
+                modifiedAgain++ ;
+                break;
+            }
+        }
+        assertEquals(1, modifiedAgain);
+        writesAllowed.countDown();
+        world.getSaveService().flush();
+        lifecycle.update();
+        assertEquals(11, lifecycle.getResidentChunksCount());
+    }
+
+    @Test
+    public void failedWritesKeepTheChunks()
+    {
+        failWrites = true;
+        for(Chunk c : chunks)
+            c.markModified();
+        lifecycle.update();
+        writesAllowed.countDown();
+        world.getSaveService().flush();
+        assertEquals(10, lifecycle.getFailedSavesCount());
+        for(Chunk c : chunks)
+            assertTrue(c.isModified());
+        lifecycle.update();
+        assertEquals(20, lifecycle.getResidentChunksCount());
+        // The failed chunks are candidates again
+        assertEquals(10, lifecycle.getLastUpdateSaves());
+    }
+
+    /**
+     * With a save budget, the update copies at most the budget and drops unmodified chunks instead of the modified ones it cannot save, and
+     * copies none while too many chunks are waiting to be written
+     */
+    @Test
+    public void savesStayWithinTheBudget()
+    {
+        for(int i = 0; i < chunks.size(); i += 2)
+            chunks.get(i).markModified();
+        lifecycle.setSaveBudget(3, 4);
+        lifecycle.update();
+        assertEquals(3, lifecycle.getLastUpdateSaves());
+        assertEquals(7, lifecycle.getEvictionsCount());
+        assertEquals(13, lifecycle.getResidentChunksCount());
+
+        lifecycle.setMaxResidentChunks(5);
+        lifecycle.setSaveBudget(3, 2);
+        lifecycle.update();
+        assertEquals(0, lifecycle.getLastUpdateSaves());
+        assertEquals(10, lifecycle.getEvictionsCount());
+        assertEquals(10, lifecycle.getResidentChunksCount());
+    }
+}
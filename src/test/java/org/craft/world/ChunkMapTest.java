@@ -0,0 +1,98 @@
+package org.craft.world;
+
+import static org.junit.Assert.*;
+
+import java.util.*;
+import java.util.concurrent.atomic.*;
+
+import org.craft.blocks.*;
+import org.junit.*;
+
+public class ChunkMapTest
+{
+
+    @BeforeClass
+    public static void initBlocks()
+    {
+        if(Blocks.air == null)
+            Blocks.init();
+    }
+
+    /**
+     * Applies the same random additions and removals to a map and to a HashMap, going through several resizes and tombstone cleanups
+     */
+    @Test
+    public void behavesLikeAHashMap()
+    {
+        ChunkMap map = new ChunkMap();
+        HashMap<Long, Chunk> expected = new HashMap<Long, Chunk>();
+        Random rng = new Random(19L);
+        for(int i = 0; i < 20000; i++ )
+        {
+            int x = rng.nextInt(40) - 20;
+            int y = rng.nextInt(8);
+            int z = rng.nextInt(40) - 20;
+            Long key = ChunkCoord.pack(x, y, z);
+            if(rng.nextInt(3) == 0)
+            {
+                assertSame(expected.remove(key), map.remove(x, y, z));
+            }
+            else
+            {
+                Chunk chunk = new Chunk(null, new ChunkCoord(x, y, z));
+                map.add(chunk);
+                expected.put(key, chunk);
+            }
+            assertEquals(expected.size(), map.size());
+            assertSame(expected.get(key), map.getAt(x, y, z));
+        }
+        HashSet<Chunk> iterated = new HashSet<Chunk>();
+        for(Chunk c : map)
+            assertTrue(iterated.add(c));
+        assertEquals(new HashSet<Chunk>(expected.values()), iterated);
+    }
+
+    /**
+     * Looks up chunks which stay in the map while another thread keeps adding and removing chunks around them
+     */
+    @Test
+    public void lookupsNeverMissAChunkWhichStays() throws InterruptedException
+    {
+        final ChunkMap map = new ChunkMap();
+        final List<Chunk> staying = new ArrayList<Chunk>();
+        for(int i = 0; i < 64; i++ )
+        {
+            Chunk chunk = new Chunk(null, new ChunkCoord(i, 0, 0));
+            map.add(chunk);
+            staying.add(chunk);
+        }
+        final AtomicBoolean running = new AtomicBoolean(true);
+        final AtomicInteger misses = new AtomicInteger();
+        Thread reader = new Thread()
+        {
+            @Override
+            public void run()
+            {
+                while(running.get())
+                {
+                    for(Chunk c : staying)
+                    {
+                        if(map.getAt(c.getCoords().x, 0, 0) != c)
+                            misses.incrementAndGet();
+                    }
+                }
+            }
+        };
+        reader.start();
+        Random rng = new Random(4L);
+        for(int i = 0; i < 200000; i++ )
+        {
+            int x = 64 + rng.nextInt(2000);
+            if(map.remove(x, 0, 0) == null)
+                map.add(new Chunk(null, new ChunkCoord(x, 0, 0)));
+        }
+        running.set(false);
+        reader.join();
+        assertEquals(0, misses.get());
+    }
+}
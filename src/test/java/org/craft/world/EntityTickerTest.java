@@ -0,0 +1,121 @@
+package org.craft.world;
+
+import static org.junit.Assert.*;
+
+import java.util.*;
+
+import org.craft.blocks.*;
+import org.craft.entity.*;
+import org.junit.*;
+
+public class EntityTickerTest
+{
+
+    private static final int UPDATES = 120;
+
+    /**
+     * Runs the same entities, which edit and read blocks and spawn other entities, with several threads and with a single thread deferring
+     * their effects the same way, and checks that every update gives the same checksum
+     */
+    @Test
+    public void parallelUpdatesMatchDeferredSequentialUpdates()
+    {
+        World reference = createWorld();
+        reference.getEntityTicker().setDeferredWhenSequential(true);
+        World parallel = createWorld();
+        parallel.getEntityTicker().setThreadsCount(4);
+        int maxIslands = 0;
+        try
+        {
+            for(int i = 0; i < UPDATES; i++ )
+            {
+                reference.update(1);
+                parallel.update(1);
+                maxIslands = Math.max(maxIslands, parallel.getEntityTicker().getLastIslandsCount());
+                assertEquals("Update " + i, reference.getEntityTicker().computeChecksum(), parallel.getEntityTicker().computeChecksum());
+            }
+        }
+        finally
+        {
+            reference.dispose();
+            parallel.dispose();
+        }
+        assertTrue("Entities were never split into islands", maxIslands > 1);
+        assertTrue(parallel.getEntitiesList().size() > 0);
+    }
+
+    /**
+     * Creates a world with generated terrain and groups of walkers far enough from each other to be updated by different threads
+     */
+    private static World createWorld()
+    {
+        World world = TestWorlds.createTerrain(4, 9, 12);
+        Random rng = new Random(42L);
+        int[] groups =
+        {
+                -40, -40, -40, 24, 24, -40, 24, 24
+        };
+        for(int group = 0; group < groups.length; group += 2)
+        {
+            for(int i = 0; i < 16; i++ )
+            {
+                Walker walker = new Walker(world, rng.nextLong());
+                walker.setLocation(groups[group] + rng.nextInt(4), 204, groups[group + 1] + rng.nextInt(4));
+                world.spawn(walker);
+            }
+        }
+        return world;
+    }
+
+    /**
+     * Walks randomly within the generated terrain, turns back when standing on a log, and now and then replaces the block under it,
+     * schedules a tick of it or spawns another walker
+     */
+    private static class Walker extends Entity
+    {
+
+        private static final int BOUND = 56;
+
+        private Random           rng;
+
+        Walker(World world, long seed)
+        {
+            super(world);
+            rng = new Random(seed);
+            setSize(0.5f, 1.5f, 0.5f);
+        }
+
+        @Override
+        public void onEntityUpdate()
+        {
+            int x = (int) Math.floor(posX);
+            int y = (int) Math.floor(posY);
+            int z = (int) Math.floor(posZ);
+            velX += (rng.nextFloat() - 0.5f) * 0.4f;
+            velZ += (rng.nextFloat() - 0.5f) * 0.4f;
+            // Blocks edited by other walkers during this update are only seen from the next one. Reading one too early changes every
+            // later move of this walker
+            if(worldObj.getBlockAt(x, y - 1, z) == Blocks.log)
+            {
+                velX = -velX;
+                velZ = -velZ;
+                rng.nextInt();
+            }
+            if(posX < -BOUND || posX > BOUND - 8)
+                velX = posX < 0 ? 0.2f : -0.2f;
+            if(posZ < -BOUND || posZ > BOUND - 8)
+                velZ = posZ < 0 ? 0.2f : -0.2f;
+            int action = rng.nextInt(8);
+            if(onGround && action == 0)
+                worldObj.setBlock(x, y - 1, z, rng.nextBoolean() ? Blocks.log : Blocks.stone);
+            else if(onGround && action == 1)
+                worldObj.scheduleUpdate(x, y - 1, z, 1 + rng.nextInt(4));
+            else if(action == 2 && rng.nextInt(8) == 0)
+            {
+                Walker child = new Walker(worldObj, rng.nextLong());
+                child.setLocation(posX, posY + 1, posZ);
+                worldObj.spawn(child);
+            }
+        }
+    }
+}
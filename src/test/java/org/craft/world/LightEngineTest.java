@@ -0,0 +1,179 @@
+package org.craft.world;
+
+import static org.junit.Assert.*;
+
+import java.util.*;
+
+import org.craft.blocks.*;
+import org.junit.*;
+
+public class LightEngineTest
+{
+
+    private static final int MIN_Y = 9;
+    private static final int MAX_Y = 12;
+
+    /**
+     * Block coordinates on both sides of chunk borders, picked for half of the edits
+     */
+    private static final int[] BORDERS =
+    {
+            -17, -16, -1, 0, 15, 16
+    };
+
+    @BeforeClass
+    public static void initBlocks()
+    {
+        TestWorlds.initBlocks();
+    }
+
+    /**
+     * Places and breaks opaque, transparent and light emitting blocks, half of them on chunk borders, digs shafts crossing chunks vertically
+     * and fills them again, relighting incrementally after each round. The light and heights must then be the ones a new world holding the
+     * same blocks computes from scratch
+     */
+    @Test
+    public void incrementalRelightingMatchesAFullRecompute()
+    {
+        World world = TestWorlds.createTerrain(2, MIN_Y, MAX_Y);
+        world.getLightEngine().flush();
+        Random rng = new Random(11L);
+        Block lamp = TestBlocks.getLamp();
+        List<int[]> lamps = new ArrayList<int[]>();
+        for(int round = 0; round < 8; round++ )
+        {
+            for(int i = 0; i < 40; i++ )
+            {
+                int x = rng.nextBoolean() ? BORDERS[rng.nextInt(BORDERS.length)] : rng.nextInt(64) - 32;
+                int z = rng.nextBoolean() ? BORDERS[rng.nextInt(BORDERS.length)] : rng.nextInt(64) - 32;
+                int surface = getSurface(world, x, z);
+                switch(rng.nextInt(6))
+                {
+                    case 0:
+                        world.setBlock(x, surface + rng.nextInt(4), z, Blocks.stone);
+                        break;
+                    case 1:
+                        world.setBlock(x, surface - 1 - rng.nextInt(3), z, Blocks.air);
+                        break;
+                    case 2:
+                        int y = surface - rng.nextInt(3);
+                        world.setBlock(x, y, z, lamp);
+                        lamps.add(new int[]
+                        {
+                                x, y, z
+                        });
+                        break;
+                    case 3:
+                        if(!lamps.isEmpty())
+                        {
+                            int[] position = lamps.remove(rng.nextInt(lamps.size()));
+                            world.setBlock(position[0], position[1], position[2], rng.nextBoolean() ? Blocks.air : Blocks.glass);
+                        }
+                        break;
+                    case 4:
+                        world.setBlock(x, surface + rng.nextInt(2), z, Blocks.glass);
+                        break;
+                    default:
+                        // A shaft going down through the chunk below, filled again half of the times
+                        Block fill = rng.nextBoolean() ? Blocks.air : Blocks.stone;
+                        for(int depth = 1; depth <= 20; depth++ )
+                            world.setBlock(x, surface - depth, z, Blocks.air);
+                        world.getLightEngine().flush();
+                        for(int depth = 1; depth <= 20; depth++ )
+                            world.setBlock(x, surface - depth, z, fill);
+                        break;
+                }
+            }
+            world.getLightEngine().flush();
+        }
+
+        World expected = copyBlocks(world, rng);
+        expected.getLightEngine().flush();
+        int mismatches = 0;
+        String first = null;
+        for(Chunk chunk : world.getChunkProvider())
+        {
+            ChunkCoord coords = chunk.getCoords();
+            Chunk other = expected.getChunkProvider().get(expected, coords.x, coords.y, coords.z);
+            for(int index = 0; index < PalettedBlockStorage.SIZE; index++ )
+            {
+                int sky = chunk.skyLight.get(index);
+                int block = chunk.blockLight.get(index);
+                int expectedSky = other.skyLight.get(index);
+                int expectedBlock = other.blockLight.get(index);
+                if(sky != expectedSky || block != expectedBlock)
+                {
+                    mismatches++ ;
+                    if(first == null)
+                        first = "chunk " + coords + " index " + index + ": sky " + sky + " instead of " + expectedSky + ", block " + block + " instead of " + expectedBlock;
+                }
+            }
+        }
+        assertEquals("First mismatch: " + first, 0, mismatches);
+        HeightMap heights = world.getLightEngine().getHeightMap();
+        HeightMap expectedHeights = expected.getLightEngine().getHeightMap();
+        for(int x = -32; x < 32; x++ )
+        {
+            for(int z = -32; z < 32; z++ )
+                assertEquals(expectedHeights.getHeight(x, z), heights.getHeight(x, z));
+        }
+        world.dispose();
+        expected.dispose();
+    }
+
+    @Test
+    public void heightColumnsAreDroppedWithTheirLastChunk()
+    {
+        World world = TestWorlds.createTerrain(1, MIN_Y, MIN_Y + 1);
+        world.getLightEngine().flush();
+        HeightMap heights = world.getLightEngine().getHeightMap();
+        assertEquals(4, heights.getColumnsCount());
+        world.getChunkProvider().removeChunk(world, -1, MIN_Y, -1);
+        assertEquals(4, heights.getColumnsCount());
+        world.getChunkProvider().removeChunk(world, -1, MIN_Y + 1, -1);
+        assertEquals(3, heights.getColumnsCount());
+        assertEquals(HeightMap.NONE, heights.getHeight(-1, -1));
+
+        world.getChunkProvider().create(world, -1, MIN_Y, -1);
+        world.getLightEngine().flush();
+        assertEquals(4, heights.getColumnsCount());
+        world.dispose();
+    }
+
+    /**
+     * Creates a world holding the blocks of every chunk of given world, added in a random order
+     */
+    private static World copyBlocks(World world, Random rng)
+    {
+        World copy = TestWorlds.createWorld();
+        List<Chunk> chunks = new ArrayList<Chunk>();
+        for(Chunk chunk : world.getChunkProvider())
+        {
+            Chunk other = new Chunk(copy, chunk.getCoords());
+            for(int x = 0; x < 16; x++ )
+            {
+                for(int y = 0; y < 16; y++ )
+                {
+                    for(int z = 0; z < 16; z++ )
+                        other.setChunkBlock(x, y, z, chunk.getChunkBlock(x, y, z));
+                }
+            }
+            chunks.add(other);
+        }
+        Collections.shuffle(chunks, rng);
+        for(Chunk chunk : chunks)
+            copy.getChunkProvider().addChunk(copy, chunk);
+        return copy;
+    }
+
+    /**
+     * Returns the y coordinate of the first air block above the highest opaque block of given column
+     */
+    private static int getSurface(World world, int x, int z)
+    {
+        int y = (MAX_Y + 1) << 4;
+        while(y > MIN_Y << 4 && LightEngine.getOpacity(world.getBlockAt(x, y - 1, z).getUniqueID()) == 0)
+            y-- ;
+        return y;
+    }
+}
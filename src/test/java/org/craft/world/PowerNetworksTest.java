@@ -0,0 +1,189 @@
+package org.craft.world;
+
+import static org.junit.Assert.*;
+
+import java.util.*;
+
+import org.craft.blocks.*;
+import org.craft.blocks.states.*;
+import org.craft.utils.*;
+import org.craft.world.loaders.*;
+import org.junit.*;
+
+public class PowerNetworksTest
+{
+
+    /**
+     * The grid crosses the borders of the four chunks of the world on both horizontal axes, and has two layers
+     */
+    private static final int MIN = 8;
+    private static final int MAX = 23;
+    private static final int Y   = 4;
+
+    private World            world;
+    private PowerNetworks    networks;
+
+    @BeforeClass
+    public static void initBlocks()
+    {
+        TestWorlds.initBlocks();
+    }
+
+    @Before
+    public void createWorld()
+    {
+        FallbackWorldLoader loader = new FallbackWorldLoader();
+        BaseChunkProvider provider = new BaseChunkProvider(loader);
+        world = new World("test", provider, new WorldGenerator(0L), loader);
+        for(int x = 0; x < 2; x++ )
+        {
+            for(int z = 0; z < 2; z++ )
+                provider.addChunk(world, new Chunk(world, new ChunkCoord(x, 0, z)));
+        }
+        networks = world.getPowerNetworks();
+    }
+
+    @After
+    public void disposeWorld()
+    {
+        world.dispose();
+    }
+
+    @Test
+    public void breakingACableSplitsItsNetwork()
+    {
+        world.setBlock(MIN, Y, MIN, Blocks.powerSource);
+        for(int x = MIN + 1; x <= MAX; x++ )
+            world.setBlock(x, Y, MIN, Blocks.cable);
+        assertEquals(1, networks.getNetworkCount());
+        assertEquals(16, networks.getNetworkSize(MAX, Y, MIN));
+        assertEquals(15 - (MAX - MIN), networks.getPower(MAX, Y, MIN));
+
+        world.setBlock(16, Y, MIN, Blocks.air);
+        assertEquals(2, networks.getNetworkCount());
+        assertEquals(8, networks.getNetworkSize(MIN, Y, MIN));
+        assertEquals(7, networks.getNetworkSize(MAX, Y, MIN));
+        assertEquals(0, networks.getPower(17, Y, MIN));
+        assertEquals(8, networks.getPower(15, Y, MIN));
+        checkNetworks();
+    }
+
+    /**
+     * Places and breaks cables and power sources at random on the grid, and checks the power levels, the network sizes and their count
+     * against the connected components found by a breadth-first search of the blocks of the world, powered from their sources
+     */
+    @Test
+    public void randomEditsMatchAFullSearch()
+    {
+        Random rng = new Random(5L);
+        for(int i = 0; i < 4000; i++ )
+        {
+            int x = MIN + rng.nextInt(MAX - MIN + 1);
+            int y = Y + rng.nextInt(2);
+            int z = MIN + rng.nextInt(MAX - MIN + 1);
+            int kind = rng.nextInt(20);
+            world.setBlock(x, y, z, kind < 11 ? Blocks.cable : kind < 13 ? Blocks.powerSource : Blocks.air);
+            if(i % 50 == 49)
+                checkNetworks();
+        }
+        checkNetworks();
+    }
+
+    private void checkNetworks()
+    {
+        HashSet<Long> visited = new HashSet<Long>();
+        int components = 0;
+        for(int x = MIN; x <= MAX; x++ )
+        {
+            for(int y = Y; y <= Y + 1; y++ )
+            {
+                for(int z = MIN; z <= MAX; z++ )
+                {
+                    if(!(world.getBlockAt(x, y, z) instanceof IPowerableBlock) || visited.contains(ChunkCoord.pack(x, y, z)))
+                        continue;
+                    components++ ;
+                    checkComponent(findComponent(x, y, z, visited));
+                }
+            }
+        }
+        assertEquals(components, networks.getNetworkCount());
+    }
+
+    /**
+     * Returns the positions of the powerable blocks connected to the one at given position, as {x, y, z}
+     */
+    private List<int[]> findComponent(int x, int y, int z, HashSet<Long> visited)
+    {
+        List<int[]> component = new ArrayList<int[]>();
+        visited.add(ChunkCoord.pack(x, y, z));
+        component.add(new int[]
+        {
+                x, y, z
+        });
+        for(int i = 0; i < component.size(); i++ )
+        {
+            int[] position = component.get(i);
+            for(EnumSide side : EnumSide.values())
+            {
+                int nx = position[0] + side.getTranslationX();
+                int ny = position[1] + side.getTranslationY();
+                int nz = position[2] + side.getTranslationZ();
+                if(world.getBlockAt(nx, ny, nz) instanceof IPowerableBlock && visited.add(ChunkCoord.pack(nx, ny, nz)))
+                    component.add(new int[]
+                    {
+                            nx, ny, nz
+                    });
+            }
+        }
+        return component;
+    }
+
+    /**
+     * Checks the size and the power levels of a network: each block gets the highest power of a source less its distance to that source
+     */
+    private void checkComponent(List<int[]> component)
+    {
+        HashMap<Long, Integer> indices = new HashMap<Long, Integer>();
+        for(int i = 0; i < component.size(); i++ )
+        {
+            int[] position = component.get(i);
+            indices.put(ChunkCoord.pack(position[0], position[1], position[2]), i);
+        }
+        int[] expected = new int[component.size()];
+        for(int i = 0; i < component.size(); i++ )
+        {
+            int[] source = component.get(i);
+            int emission = ((IPowerableBlock) world.getBlockAt(source[0], source[1], source[2])).getEmittedPower();
+            if(emission == 0)
+                continue;
+            int[] distances = new int[component.size()];
+            Arrays.fill(distances, -1);
+            distances[i] = 0;
+            LinkedList<Integer> queue = new LinkedList<Integer>();
+            queue.add(i);
+            while(!queue.isEmpty())
+            {
+                int current = queue.poll();
+                expected[current] = Math.max(expected[current], emission - distances[current]);
+                int[] position = component.get(current);
+                for(EnumSide side : EnumSide.values())
+                {
+                    Integer neighbor = indices.get(ChunkCoord.pack(position[0] + side.getTranslationX(), position[1] + side.getTranslationY(), position[2] + side.getTranslationZ()));
+                    if(neighbor != null && distances[neighbor] < 0)
+                    {
+                        distances[neighbor] = distances[current] + 1;
+                        queue.add(neighbor);
+                    }
+                }
+            }
+        }
+        for(int i = 0; i < component.size(); i++ )
+        {
+            int[] position = component.get(i);
+            String at = " at " + position[0] + "," + position[1] + "," + position[2];
+            assertEquals("Network size" + at, component.size(), networks.getNetworkSize(position[0], position[1], position[2]));
+            assertEquals("Power" + at, expected[i], networks.getPower(position[0], position[1], position[2]));
+            assertEquals("Power state" + at, EnumPowerStates.fromPowerValue(expected[i]), world.getBlockState(position[0], position[1], position[2], BlockStates.electricPower));
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package org.craft.world;
+
+import static org.junit.Assert.*;
+
+import java.util.*;
+
+import org.craft.blocks.*;
+import org.craft.entity.*;
+import org.craft.maths.*;
+import org.craft.utils.*;
+import org.craft.utils.CollisionInfos.CollisionType;
+import org.junit.*;
+
+public class RayCastTest
+{
+
+    private static World world;
+
+    @BeforeClass
+    public static void createWorld()
+    {
+        world = TestWorlds.createTerrain(2, 8, 13);
+    }
+
+    @AfterClass
+    public static void disposeWorld()
+    {
+        world.dispose();
+    }
+
+    /**
+     * Casts rays from above the ground in random directions and checks that they hit the block a march of 0.001 block steps finds first.
+     * Rays grazing an edge or a corner may be found by only one of them, so a few mismatches are allowed
+     */
+    @Test
+    public void blockHitsMatchAFineMarch()
+    {
+        Random rng = new Random(3L);
+        CollisionInfos infos = new CollisionInfos();
+        int rays = 0;
+        int hits = 0;
+        int mismatches = 0;
+        while(rays < 2000)
+        {
+            float originX = rng.nextFloat() * 32 - 16;
+            float originZ = rng.nextFloat() * 32 - 16;
+            float originY = getSurface((int) Math.floor(originX), (int) Math.floor(originZ)) + 0.2f + rng.nextFloat() * 3;
+            float dirX = rng.nextFloat() - 0.5f;
+            float dirY = rng.nextFloat() - 0.7f;
+            float dirZ = rng.nextFloat() - 0.5f;
+            float length = (float) Math.sqrt(dirX * dirX + dirY * dirY + dirZ * dirZ);
+            dirX /= length;
+            dirY /= length;
+            dirZ /= length;
+            if(isInsideBlock(originX, originY, originZ))
+                continue;
+            rays++ ;
+            world.rayCast(originX, originY, originZ, dirX, dirY, dirZ, 5f, null, infos);
+            int[] expected = march(originX, originY, originZ, dirX, dirY, dirZ, 5f);
+            if(expected != null)
+                hits++ ;
+            if(expected == null ? infos.type != CollisionType.NONE : infos.type != CollisionType.BLOCK || infos.x != expected[0] || infos.y != expected[1] || infos.z != expected[2])
+                mismatches++ ;
+        }
+        assertTrue("Only " + hits + " rays hit a block", hits > rays / 2);
+        assertTrue(mismatches + " of " + rays + " rays hit another block", mismatches <= rays / 200);
+    }
+
+    /**
+     * Checks that an entity between the origin of a ray and the ground is hit instead of the ground, and that the sender is ignored
+     */
+    @Test
+    public void entitiesAreHitBeforeTheGround()
+    {
+        int surface = getSurface(5, 5);
+        Entity sender = new Entity(world);
+        sender.setLocation(5, surface + 3, 5);
+        Entity target = new Entity(world);
+        target.setLocation(5, surface, 5);
+        world.spawn(sender);
+        world.spawn(target);
+        world.update(1);
+        CollisionInfos infos = new CollisionInfos();
+        world.rayCast(5.5f, surface + 3.5f, 5.5f, 0, -1, 0, 5f, sender, infos);
+        assertEquals(CollisionType.ENTITY, infos.type);
+        assertSame(target, infos.value);
+        assertEquals(2.5f, infos.distance, 0.001f);
+        sender.setDead();
+        target.setDead();
+        world.update(1);
+    }
+
+    /**
+     * Returns the coords of the first block whose selection box contains a point of given ray, sampled every 0.001 block, or null
+     */
+    private static int[] march(float originX, float originY, float originZ, float dirX, float dirY, float dirZ, float maxDist)
+    {
+        for(float t = 0; t <= maxDist; t += 0.001f)
+        {
+            float x = originX + dirX * t;
+            float y = originY + dirY * t;
+            float z = originZ + dirZ * t;
+            if(isInsideBlock(x, y, z))
+                return new int[]
+                {
+                        (int) Math.floor(x), (int) Math.floor(y), (int) Math.floor(z)
+                };
+        }
+        return null;
+    }
+
+    private static boolean isInsideBlock(float x, float y, float z)
+    {
+        int blockX = (int) Math.floor(x);
+        int blockY = (int) Math.floor(y);
+        int blockZ = (int) Math.floor(z);
+        Block block = world.getBlockAt(blockX, blockY, blockZ);
+        if(block == null || block == Blocks.air)
+            return false;
+        AABB box = block.getSelectionBox(world, blockX, blockY, blockZ);
+        if(box == null)
+            return false;
+        Vector3 min = box.getMinExtents();
+        Vector3 max = box.getMaxExtents();
+        boolean inside = x >= min.getX() && x <= max.getX() && y >= min.getY() && y <= max.getY() && z >= min.getZ() && z <= max.getZ();
+        box.dispose();
+        return inside;
+    }
+
+    /**
+     * Returns the y coordinate of the first air block above the highest solid block of given column
+     */
+    private static int getSurface(int x, int z)
+    {
+        int y = 14 * 16 - 1;
+        while(y > 0 && !world.getBlockAt(x, y - 1, z).isSideOpaque(world, x, y - 1, z, EnumSide.TOP))
+            y-- ;
+        return y;
+    }
+}
@@ -0,0 +1,69 @@
+package org.craft.world;
+
+import org.craft.blocks.*;
+import org.craft.blocks.states.*;
+import org.craft.world.loaders.*;
+import org.craft.world.populators.*;
+
+/**
+ * Creates the headless worlds shared by tests and benchmarks: generated and decorated terrain, held by a {@link BaseChunkProvider} and never
+ * saved
+ */
+public class TestWorlds
+{
+
+    public static final long SEED = 0x5EEDL;
+
+    /**
+     * Registers the blocks and their states if they are not yet
+     */
+    public static void initBlocks()
+    {
+        if(Blocks.air == null)
+            Blocks.init();
+        if(BlockStates.logOrientation == null)
+            BlockStates.init();
+    }
+
+    /**
+     * Creates a world without any chunk, whose generator decorates the terrain
+     */
+    public static World createWorld()
+    {
+        initBlocks();
+        WorldGenerator generator = new WorldGenerator(SEED);
+        generator.addPopulator(new RockPopulator());
+        generator.addPopulator(new GrassPopulator());
+        generator.addPopulator(new FlowerPopulator());
+        generator.addPopulator(new TreePopulator());
+        FallbackWorldLoader loader = new FallbackWorldLoader();
+        return new World("test", new BaseChunkProvider(loader), generator, loader);
+    }
+
+    /**
+     * Creates a world whose chunks from {@code -radius} to {@code radius - 1} on the horizontal axes, and from {@code minY} to
+     * {@code maxY} on the vertical one, are generated and decorated
+     */
+    public static World createTerrain(int radius, int minY, int maxY)
+    {
+        return createTerrain(-radius, minY, -radius, radius - 1, maxY, radius - 1);
+    }
+
+    /**
+     * Creates a world whose chunks between given chunk coordinates, included, are generated and decorated
+     */
+    public static World createTerrain(int minX, int minY, int minZ, int maxX, int maxY, int maxZ)
+    {
+        World world = createWorld();
+        BaseChunkProvider provider = (BaseChunkProvider) world.getChunkProvider();
+        for(int x = minX; x <= maxX; x++ )
+        {
+            for(int y = minY; y <= maxY; y++ )
+            {
+                for(int z = minZ; z <= maxZ; z++ )
+                    provider.addGeneratedChunk(world, provider.generateTerrain(world, x, y, z));
+            }
+        }
+        return world;
+    }
+}
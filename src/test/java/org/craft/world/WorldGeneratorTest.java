@@ -0,0 +1,182 @@
+package org.craft.world;
+
+import static org.junit.Assert.*;
+
+import java.util.*;
+
+import org.craft.blocks.*;
+import org.craft.blocks.states.*;
+import org.craft.maths.*;
+import org.craft.world.loaders.*;
+import org.craft.world.populators.*;
+import org.junit.*;
+
+public class WorldGeneratorTest
+{
+
+    private static final long SEED = 0x5EEDL;
+
+    @BeforeClass
+    public static void initBlocks()
+    {
+        if(Blocks.air == null)
+            Blocks.init();
+        if(BlockStates.logOrientation == null)
+            BlockStates.init();
+    }
+
+    /**
+     * Generates the terrain of the same region in two orders and checks that every chunk receives the same blocks and states
+     */
+    @Test
+    public void terrainDoesNotDependOnGenerationOrder()
+    {
+        List<ChunkCoord> region = createRegion();
+        Map<ChunkCoord, int[]> inOrder = generateTerrain(region);
+        Collections.shuffle(region, new Random(42L));
+        Map<ChunkCoord, int[]> shuffled = generateTerrain(region);
+        for(ChunkCoord coords : region)
+        {
+            assertArrayEquals("Chunk " + coords.x + ", " + coords.y + ", " + coords.z, inOrder.get(coords), shuffled.get(coords));
+        }
+    }
+
+    /**
+     * Decorates the same region in two orders and checks that each chunk is given the same random stream
+     */
+    @Test
+    public void decorationStreamsDoNotDependOnGenerationOrder()
+    {
+        List<ChunkCoord> region = createRegion();
+        Map<ChunkCoord, int[]> inOrder = recordDecorationStreams(region);
+        Collections.shuffle(region, new Random(42L));
+        Map<ChunkCoord, int[]> shuffled = recordDecorationStreams(region);
+        for(ChunkCoord coords : region)
+        {
+            assertArrayEquals("Chunk " + coords.x + ", " + coords.y + ", " + coords.z, inOrder.get(coords), shuffled.get(coords));
+        }
+    }
+
+    /**
+     * Checks that two populators of the same chunk, or the same populator of two neighbouring chunks, are not given the same stream
+     */
+    @Test
+    public void streamsDifferBetweenPopulatorsAndChunks()
+    {
+        long seed = ChunkRandom.chunkSeed(SEED, 3, 11, -2, 0);
+        assertNotEquals(seed, ChunkRandom.chunkSeed(SEED, 3, 11, -2, 1));
+        assertNotEquals(seed, ChunkRandom.chunkSeed(SEED, 4, 11, -2, 0));
+        assertNotEquals(seed, ChunkRandom.chunkSeed(SEED, 3, 12, -2, 0));
+        assertNotEquals(seed, ChunkRandom.chunkSeed(SEED, 3, 11, -1, 0));
+        assertNotEquals(seed, ChunkRandom.chunkSeed(SEED + 1, 3, 11, -2, 0));
+    }
+
+    /**
+     * Checks that the cached column heights are the ones the grass populator used to compute block by block, and that a column is only
+     * computed once
+     */
+    @Test
+    public void columnHeightsMatchPerBlockNoise()
+    {
+        WorldGenerator generator = new WorldGenerator(SEED);
+        for(int chunkX = -3; chunkX < 3; chunkX++ )
+        {
+            for(int chunkZ = -3; chunkZ < 3; chunkZ++ )
+            {
+                int[] heights = generator.getColumnHeights(chunkX, chunkZ);
+                for(int x = 0; x < 16; x++ )
+                {
+                    for(int z = 0; z < 16; z++ )
+                    {
+                        int expected = Math.round(4f * MathHelper.perlinNoise(chunkX * 16 + x, chunkZ * 16 + z, SEED)) + 11 * 16 + 1;
+                        assertEquals(expected, heights[x << 4 | z]);
+                    }
+                }
+                assertSame(heights, generator.getColumnHeights(chunkX, chunkZ));
+            }
+        }
+    }
+
+    /**
+     * Chunks around the surface, where every populator writes something
+     */
+    private static List<ChunkCoord> createRegion()
+    {
+        List<ChunkCoord> region = new ArrayList<ChunkCoord>();
+        for(int x = -3; x < 3; x++ )
+        {
+            for(int y = 9; y < 13; y++ )
+            {
+                for(int z = -3; z < 3; z++ )
+                {
+                    region.add(new ChunkCoord(x, y, z));
+                }
+            }
+        }
+        return region;
+    }
+
+    private static WorldGenerator createGenerator()
+    {
+        WorldGenerator generator = new WorldGenerator(SEED);
+        generator.addPopulator(new RockPopulator());
+        generator.addPopulator(new GrassPopulator());
+        generator.addPopulator(new FlowerPopulator());
+        generator.addPopulator(new TreePopulator());
+        return generator;
+    }
+
+    /**
+     * Generates the terrain of given chunks, in given order, in a new world, and returns the block ids then the block states of each chunk
+     */
+    private static Map<ChunkCoord, int[]> generateTerrain(List<ChunkCoord> chunks)
+    {
+        FallbackWorldLoader loader = new FallbackWorldLoader();
+        BaseChunkProvider provider = new BaseChunkProvider(loader);
+        World world = new World("test", provider, createGenerator(), loader);
+        Map<ChunkCoord, int[]> result = new HashMap<ChunkCoord, int[]>();
+        for(ChunkCoord coords : chunks)
+        {
+            Chunk chunk = provider.generateTerrain(world, coords.x, coords.y, coords.z);
+            int[] contents = new int[PalettedBlockStorage.SIZE * 2];
+            for(int i = 0; i < PalettedBlockStorage.SIZE; i++ )
+            {
+                contents[i] = chunk.blocks.get(i);
+                contents[PalettedBlockStorage.SIZE + i] = chunk.blockStates.get(i);
+            }
+            result.put(coords, contents);
+        }
+        world.dispose();
+        return result;
+    }
+
+    /**
+     * Decorates given chunks, in given order, with a decorator which records the first values of the stream it is given
+     */
+    private static Map<ChunkCoord, int[]> recordDecorationStreams(List<ChunkCoord> chunks)
+    {
+        final Map<ChunkCoord, int[]> result = new HashMap<ChunkCoord, int[]>();
+        WorldGenerator generator = createGenerator();
+        generator.addPopulator(new IWorldDecorator()
+        {
+            @Override
+            public boolean populate(World world, Chunk c, Random rng)
+            {
+                int[] values = new int[16];
+                for(int i = 0; i < values.length; i++ )
+                    values[i] = rng.nextInt();
+                result.put(c.getCoords(), values);
+                return true;
+            }
+        });
+        FallbackWorldLoader loader = new FallbackWorldLoader();
+        BaseChunkProvider provider = new BaseChunkProvider(loader);
+        World world = new World("test", provider, generator, loader);
+        for(ChunkCoord coords : chunks)
+        {
+            provider.addGeneratedChunk(world, provider.generateTerrain(world, coords.x, coords.y, coords.z));
+        }
+        world.dispose();
+        return result;
+    }
+}
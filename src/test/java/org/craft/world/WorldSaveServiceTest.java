@@ -0,0 +1,91 @@
+package org.craft.world;
+
+import static org.junit.Assert.*;
+
+import java.util.*;
+
+import org.craft.blocks.*;
+import org.craft.blocks.states.*;
+import org.craft.world.loaders.*;
+import org.junit.*;
+
+public class WorldSaveServiceTest
+{
+
+    private World            world;
+    private WorldSaveService saveService;
+    private List<Chunk>      chunks;
+
+    @BeforeClass
+    public static void initBlocks()
+    {
+        if(Blocks.air == null)
+            Blocks.init();
+        if(BlockStates.logOrientation == null)
+            BlockStates.init();
+    }
+
+    @Before
+    public void createWorld()
+    {
+        FallbackWorldLoader loader = new FallbackWorldLoader();
+        BaseChunkProvider provider = new BaseChunkProvider(loader);
+        world = new World("test", provider, new WorldGenerator(0L), loader);
+        saveService = world.getSaveService();
+        chunks = new ArrayList<Chunk>();
+        for(int x = 0; x < 10; x++ )
+        {
+            for(int z = 0; z < 10; z++ )
+            {
+                Chunk chunk = new Chunk(world, new ChunkCoord(x, 0, z));
+                provider.addChunk(world, chunk);
+                chunks.add(chunk);
+            }
+        }
+    }
+
+    @After
+    public void disposeWorld()
+    {
+        world.dispose();
+    }
+
+    /**
+     * Chunks modified again behind the cursor must wait for the next pass instead of being copied by every batch
+     */
+    @Test
+    public void batchesResumeWhereThePreviousOneStopped()
+    {
+        for(Chunk c : chunks)
+            c.markModified();
+        int queued = 0;
+        int batches = 0;
+        int batch;
+        do
+        {
+            batch = saveService.saveModifiedChunks(7);
+            queued += batch;
+            batches++ ;
+            for(int i = 0; i < 3; i++ )
+                chunks.get(i).markModified();
+        } while(batch == 7);
+        assertEquals(chunks.size(), queued);
+        assertEquals(chunks.size() / 7 + 1, batches);
+
+        assertEquals(3, saveService.saveModifiedChunks(7));
+        saveService.flush();
+        assertEquals(0, saveService.getPendingCount());
+    }
+
+    @Test
+    public void fullSaveRestartsThePass()
+    {
+        for(Chunk c : chunks)
+            c.markModified();
+        assertEquals(7, saveService.saveModifiedChunks(7));
+        chunks.get(0).markModified();
+        assertEquals(chunks.size() - 7 + 1, saveService.saveModifiedChunks());
+        for(Chunk c : chunks)
+            assertFalse(c.isModified());
+    }
+}
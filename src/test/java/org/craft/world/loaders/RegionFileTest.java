@@ -0,0 +1,71 @@
+package org.craft.world.loaders;
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.util.*;
+
+import org.junit.*;
+
+public class RegionFileTest
+{
+
+    private File path;
+
+    @Before
+    public void createPath() throws IOException
+    {
+        path = File.createTempFile("region", ".ocr");
+        path.delete();
+    }
+
+    @After
+    public void deletePath()
+    {
+        path.delete();
+    }
+
+    /**
+     * Grows a memory mapped region over several mapping windows, reading every chunk back after each write, then checks that the file can be
+     * deleted once closed, which fails on some systems while a mapping is still alive
+     */
+    @Test
+    public void mappedReadsFollowTheFileGrowth() throws IOException
+    {
+        RegionFile region = new RegionFile(path, true);
+        Map<Integer, byte[]> written = new HashMap<Integer, byte[]>();
+        Random rng = new Random(8L);
+        for(int i = 0; i < 600; i++ )
+        {
+            int x = rng.nextInt(RegionFile.SIZE);
+            int y = rng.nextInt(RegionFile.SIZE);
+            int z = rng.nextInt(RegionFile.SIZE);
+            byte[] data = new byte[rng.nextInt(RegionFile.SECTOR_SIZE * 6)];
+            rng.nextBytes(data);
+            region.write(x, y, z, data, data.length);
+            written.put(RegionFile.index(x, y, z), data);
+            assertArrayEquals(data, region.read(x, y, z));
+        }
+        checkContents(region, written);
+        region.close();
+
+        region = new RegionFile(path, true);
+        checkContents(region, written);
+        region.close();
+        assertTrue(path.delete());
+    }
+
+    private static void checkContents(RegionFile region, Map<Integer, byte[]> written) throws IOException
+    {
+        for(int x = 0; x < RegionFile.SIZE; x++ )
+        {
+            for(int y = 0; y < RegionFile.SIZE; y++ )
+            {
+                for(int z = 0; z < RegionFile.SIZE; z++ )
+                {
+                    assertArrayEquals(written.get(RegionFile.index(x, y, z)), region.read(x, y, z));
+                }
+            }
+        }
+    }
+}
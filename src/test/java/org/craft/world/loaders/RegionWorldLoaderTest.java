@@ -0,0 +1,106 @@
+package org.craft.world.loaders;
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.util.*;
+
+import org.craft.blocks.*;
+import org.craft.blocks.states.*;
+import org.craft.resources.*;
+import org.craft.world.*;
+import org.junit.*;
+
+public class RegionWorldLoaderTest
+{
+
+    private File                     folder;
+    private DiskSimpleResourceLoader diskLoader;
+    private ResourceLocation         worldFolder;
+
+    @BeforeClass
+    public static void initBlocks()
+    {
+        TestWorlds.initBlocks();
+    }
+
+    @Before
+    public void createFolder() throws IOException
+    {
+        folder = File.createTempFile("world", "");
+        folder.delete();
+        folder.mkdirs();
+        diskLoader = new DiskSimpleResourceLoader(folder.getAbsolutePath());
+        worldFolder = new ResourceLocation("test");
+    }
+
+    @After
+    public void deleteFolder()
+    {
+        delete(folder);
+    }
+
+    /**
+     * Saves a few chunks, on both sides of region borders and with block states, in the one file per chunk format, converts them and reads
+     * them back from the region files, before and after reopening them
+     */
+    @Test
+    public void legacyChunksAreConverted() throws IOException
+    {
+        World world = TestWorlds.createWorld();
+        BaseChunkProvider provider = (BaseChunkProvider) world.getChunkProvider();
+        List<Chunk> chunks = new ArrayList<Chunk>();
+        chunks.add(provider.generateTerrain(world, 0, 10, 0));
+        chunks.add(provider.generateTerrain(world, -1, 10, 0));
+        chunks.add(provider.generateTerrain(world, 15, 11, -17));
+        chunks.add(provider.generateTerrain(world, 16, 11, -16));
+        Chunk states = chunks.get(0);
+        states.setChunkBlock(3, 4, 5, Blocks.log);
+        states.setChunkBlockState(3, 4, 5, BlockStates.logOrientation, EnumLogBlockStates.LYING_NS);
+        states.setChunkBlock(6, 7, 8, Blocks.log);
+        states.setChunkBlockState(6, 7, 8, BlockStates.logOrientation, EnumLogBlockStates.LYING_WE);
+        VanillaWorldLoader legacy = new VanillaWorldLoader(worldFolder, diskLoader);
+        for(Chunk c : chunks)
+            legacy.saveChunk(c);
+
+        RegionWorldLoader loader = new RegionWorldLoader(worldFolder, diskLoader);
+        assertEquals(chunks.size(), loader.convertLegacyChunks());
+        assertFalse(diskLoader.getFile(new ResourceLocation(worldFolder, "chunkData")).exists());
+        checkChunks(loader, world, chunks);
+        assertEquals(0, loader.convertLegacyChunks());
+        loader.close();
+
+        loader = new RegionWorldLoader(worldFolder, diskLoader, false);
+        checkChunks(loader, world, chunks);
+        assertNull(loader.loadChunk(world, 1, 10, 0));
+        loader.close();
+        world.dispose();
+    }
+
+    private static void checkChunks(RegionWorldLoader loader, World world, List<Chunk> chunks) throws IOException
+    {
+        for(Chunk expected : chunks)
+        {
+            ChunkCoord coords = expected.getCoords();
+            Chunk read = loader.loadChunk(world, coords.x, coords.y, coords.z);
+            assertNotNull(read);
+            assertEquals(coords, read.getCoords());
+            for(int i = 0; i < PalettedBlockStorage.SIZE; i++ )
+            {
+                assertEquals(expected.blocks.get(i), read.blocks.get(i));
+                assertEquals(expected.blockStates.get(i), read.blockStates.get(i));
+            }
+        }
+    }
+
+    private static void delete(File file)
+    {
+        File[] children = file.listFiles();
+        if(children != null)
+        {
+            for(File child : children)
+                delete(child);
+        }
+        file.delete();
+    }
+}